@@ -14,6 +14,19 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("vectorApi") {
+        compileClasspath += sourceSets.main.get().output
+    }
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output + sourceSets["vectorApi"].output
+    }
+    test {
+        runtimeClasspath += sourceSets["vectorApi"].output
+    }
+}
+
 dependencies {
     // LangChain4j BOM for version management
     implementation(platform("dev.langchain4j:langchain4j-bom:1.15.0"))
@@ -55,10 +68,62 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter")
     testImplementation("org.assertj:assertj-core:3.24.2")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    // JMH microbenchmarks in src/jmh, run with the jmh task
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+// VectorApiKernel uses the incubating Vector API, so only its source set is compiled with the module;
+// main loads it reflectively and VectorMath falls back to scalar code when the module is not added.
+tasks.named<JavaCompile>("compileVectorApiJava") {
+    options.compilerArgs.add("--add-modules=jdk.incubator.vector")
+}
+
+tasks.jar {
+    from(sourceSets["vectorApi"].output)
 }
 
 tasks.test {
+    useJUnitPlatform {
+        excludeTags("benchmark")
+    }
+    jvmArgs("--add-modules=jdk.incubator.vector")
+}
+
+// The same kernel tests without the module, so the scalar fallback is the kernel under test
+val scalarFallbackTest by tasks.registering(Test::class) {
+    description = "Runs VectorMathTests without the Vector API module."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
     useJUnitPlatform()
+    filter {
+        includeTestsMatching("*VectorMathTests")
+    }
+}
+
+tasks.check {
+    dependsOn(scalarFallbackTest)
+}
+
+// Tests tagged "benchmark" are load tests or measure wall-clock time or heap, so they only run on request
+val benchmark by tasks.registering(Test::class) {
+    description = "Runs the tests tagged as benchmarks."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    jvmArgs("--add-modules=jdk.incubator.vector")
+}
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH microbenchmarks."
+    group = "verification"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
 }
 
 spotless {
@@ -0,0 +1,76 @@
+package com.kousenit.langchain4j;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of the scalar and Vector API similarity kernels on 384-d (MiniLM-sized) vectors.
+ *
+ * <p>Runs single-threaded, so the reported throughput is per core. Run it with {@code gradle jmh}
+ * or from an IDE's JMH support.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Threads(1)
+public class VectorMathBenchmark {
+
+    private static final int MINILM_DIMENSION = 384;
+
+    private final SimilarityKernel scalar = VectorMath.scalarKernel();
+    private final SimilarityKernel active = VectorMath.activeKernel();
+    private float[] a;
+    private float[] b;
+    private float normA;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        a = new float[MINILM_DIMENSION];
+        b = new float[MINILM_DIMENSION];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (float) random.nextGaussian();
+            b[i] = (float) random.nextGaussian();
+        }
+        normA = scalar.dot(a, a);
+    }
+
+    @Benchmark
+    public float scalarDot() {
+        return scalar.dot(a, b);
+    }
+
+    @Benchmark
+    public float vectorApiDot() {
+        return active.dot(a, b);
+    }
+
+    @Benchmark
+    public float scalarCosine() {
+        return scalar.cosine(a, b);
+    }
+
+    @Benchmark
+    public float vectorApiCosine() {
+        return active.cosine(a, b);
+    }
+
+    @Benchmark
+    public float vectorApiCosineWithKnownNorm() {
+        return active.cosine(a, normA, b);
+    }
+}
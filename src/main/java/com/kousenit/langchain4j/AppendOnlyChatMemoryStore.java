@@ -0,0 +1,688 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent {@link ChatMemoryStore} that appends each turn's new messages to a memory-mapped log
+ * instead of rewriting the whole conversation.
+ *
+ * <p>{@code ChatMemory} implementations hand the store the complete message list on every turn, so a
+ * store that writes that list out writes bytes quadratic in the length of the conversation, and every
+ * turn takes longer than the last. This store compares the new list with the one it already holds for the
+ * memory id (messages are matched with {@code equals}, in order) and logs only the difference: an
+ * APPEND record per new message, and a VIEW record listing which logged messages are still in the
+ * conversation when any were dropped, as when a message window slides. A turn therefore writes the
+ * new messages plus a few bytes, however long the conversation is.
+ *
+ * <p>The log is a sequence of fixed-size segment files in {@code directory}, written through a
+ * {@link MappedByteBuffer}. Records carry a CRC32, and reopening the directory replays the segments
+ * in order up to the first torn record. The heap holds, per memory id, only the offsets of its live
+ * messages, plus decoded messages for the {@code maxCachedMemories} most recently used ids. Memory ids
+ * are keyed by {@code toString()}, as in the other persistent stores.
+ *
+ * <p>After a write, the sealed segment with the smallest share of live bytes is compacted if that
+ * share is below {@code compactionThreshold}: its live messages, and the latest VIEW of any memory id
+ * whose latest VIEW is in it, are copied to the head of the log, the head is forced to disk and the
+ * file is deleted. Only the memory ids with records in that segment are visited, so the work per
+ * compaction is bounded by the segment and the windows of those ids. {@link #compact()} rewrites every
+ * segment. Mapped pages are written back by the operating system;
+ * {@link #close()} forces them to disk.
+ */
+public class AppendOnlyChatMemoryStore implements ChatMemoryStore, Closeable {
+
+    private static final int MAGIC = 0x43484D4C; // "CHML"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String FILE_PREFIX = "chat-log-";
+    private static final String FILE_SUFFIX = ".seg";
+
+    private static final byte APPEND = 1;
+    private static final byte MOVE = 2;
+    private static final byte VIEW = 3;
+    private static final byte CLEAR = 4;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final double compactionThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, Log> logs = new HashMap<>();
+    private final Map<String, List<ChatMessage>> cache;
+    private int nextSequence;
+    private boolean compacting;
+    private long bytesAppended;
+    private long compactions;
+
+    private AppendOnlyChatMemoryStore(Builder builder) {
+        if (builder.directory == null) {
+            throw new IllegalArgumentException("directory is required");
+        }
+        if (builder.segmentBytes < 1024) {
+            throw new IllegalArgumentException("segmentBytes must be at least 1024");
+        }
+        if (builder.compactionThreshold < 0 || builder.compactionThreshold > 1) {
+            throw new IllegalArgumentException("compactionThreshold must be between 0 and 1");
+        }
+        if (builder.maxCachedMemories < 0) {
+            throw new IllegalArgumentException("maxCachedMemories cannot be negative");
+        }
+        this.directory = builder.directory;
+        this.segmentBytes = builder.segmentBytes;
+        this.compactionThreshold = builder.compactionThreshold;
+        int maxCachedMemories = builder.maxCachedMemories;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<ChatMessage>> eldest) {
+                return size() > maxCachedMemories;
+            }
+        };
+        try {
+            Files.createDirectories(directory);
+            replay();
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException("Cannot open chat memory log in " + directory, e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = String.valueOf(memoryId);
+        lock.readLock().lock();
+        try {
+            Log log = logs.get(key);
+            return log == null ? new ArrayList<>() : new ArrayList<>(messages(key, log));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String key = String.valueOf(memoryId);
+        lock.writeLock().lock();
+        try {
+            Log log = logs.get(key);
+            if (log == null) {
+                if (messages.isEmpty()) {
+                    return;
+                }
+                log = new Log();
+                logs.put(key, log);
+            }
+            List<ChatMessage> previous = messages(key, log);
+            if (appendsTo(previous, messages)) {
+                // the usual turn: no matching, no new lists, just the new messages at the end
+                for (int i = previous.size(); i < messages.size(); i++) {
+                    log.live.add(append(APPEND, key, log.nextPosition++, json(messages.get(i))));
+                }
+            } else {
+                replace(key, log, previous, messages);
+            }
+            synchronized (cache) {
+                cache.put(key, List.copyOf(messages));
+            }
+            maybeCompact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Logs a list that dropped or reordered messages: APPENDs for the new ones and a VIEW if needed. */
+    private void replace(String key, Log log, List<ChatMessage> previous, List<ChatMessage> messages)
+            throws IOException {
+        int[] matches = match(previous, messages);
+        List<Ref> live = new ArrayList<>(messages.size());
+        boolean[] kept = new boolean[previous.size()];
+        boolean extended = messages.size() >= previous.size();
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] >= 0) {
+                live.add(log.live.get(matches[i]));
+                kept[matches[i]] = true;
+            } else {
+                live.add(append(APPEND, key, log.nextPosition++, json(messages.get(i))));
+            }
+            extended &= i >= previous.size() || matches[i] == i;
+        }
+        if (!extended) {
+            appendView(key, log, live);
+        }
+        for (int i = 0; i < kept.length; i++) {
+            if (!kept[i]) {
+                Ref dropped = log.live.get(i);
+                dropped.segment.liveBytes -= dropped.length;
+            }
+        }
+        log.live = live;
+    }
+
+    /**
+     * Whether {@code messages} starts with the very objects of {@code previous}, as it does when a memory
+     * adds a message to the list {@code getMessages} returned.
+     */
+    private static boolean appendsTo(List<ChatMessage> previous, List<ChatMessage> messages) {
+        if (messages.size() < previous.size()) {
+            return false;
+        }
+        for (int i = 0; i < previous.size(); i++) {
+            if (messages.get(i) != previous.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] json(ChatMessage message) {
+        return ChatMessageSerializer.messageToJson(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = String.valueOf(memoryId);
+        lock.writeLock().lock();
+        try {
+            Log log = logs.remove(key);
+            synchronized (cache) {
+                cache.remove(key);
+            }
+            if (log == null) {
+                return;
+            }
+            for (Ref ref : log.live) {
+                ref.segment.liveBytes -= ref.length;
+            }
+            append(CLEAR, key, 0, new byte[0]);
+            maybeCompact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Copies every live message into fresh segments and deletes the old ones. */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            List<Segment> old = new ArrayList<>(segments);
+            if (!old.isEmpty()) {
+                startSegment(0);
+            }
+            for (Segment segment : old) {
+                compact(segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public LogStats stats() {
+        lock.readLock().lock();
+        try {
+            long logBytes = 0;
+            long liveBytes = 0;
+            for (Segment segment : segments) {
+                logBytes += segment.writePosition - HEADER_BYTES;
+                liveBytes += segment.liveBytes;
+            }
+            return new LogStats(logs.size(), segments.size(), logBytes, liveBytes, bytesAppended, compactions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Forces the mapped segments to disk and closes them. */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+            closeQuietly();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeQuietly() {
+        for (Segment segment : segments) {
+            try {
+                segment.channel.close();
+            } catch (IOException ignored) {
+                // nothing useful to do while closing
+            }
+        }
+    }
+
+    /**
+     * For each message, the index of an equal message in {@code previous}, or -1 for a new one.
+     * Matches keep their order, so messages dropped from anywhere in the list are found in one pass.
+     */
+    private static int[] match(List<ChatMessage> previous, List<ChatMessage> messages) {
+        int[] matches = new int[messages.size()];
+        int next = 0;
+        for (int i = 0; i < matches.length; i++) {
+            ChatMessage message = messages.get(i);
+            matches[i] = -1;
+            for (int k = next; k < previous.size(); k++) {
+                // the memory usually hands back the very objects getMessages returned
+                ChatMessage candidate = previous.get(k);
+                if (candidate == message || candidate.equals(message)) {
+                    matches[i] = k;
+                    next = k + 1;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    /** The decoded messages of a log, from the cache when they are there. */
+    private List<ChatMessage> messages(String key, Log log) {
+        synchronized (cache) {
+            List<ChatMessage> cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<ChatMessage> messages = new ArrayList<>(log.live.size());
+        for (Ref ref : log.live) {
+            messages.add(ChatMessageDeserializer.messageFromJson(
+                    new String(ref.segment.read(ref.payloadOffset, ref.payloadLength), StandardCharsets.UTF_8)));
+        }
+        List<ChatMessage> decoded = List.copyOf(messages);
+        synchronized (cache) {
+            cache.put(key, decoded);
+        }
+        return decoded;
+    }
+
+    /** Logs which messages are live, and remembers the segment holding that VIEW. */
+    private void appendView(String key, Log log, List<Ref> live) throws IOException {
+        // runs of consecutive positions: a sliding window is two runs whatever its length
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<int[]> runs = new ArrayList<>();
+        for (Ref ref : live) {
+            int[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+            if (last != null && last[0] + last[1] == ref.position) {
+                last[1]++;
+            } else {
+                runs.add(new int[] {ref.position, 1});
+            }
+        }
+        out.writeInt(runs.size());
+        for (int[] run : runs) {
+            out.writeInt(run[0]);
+            out.writeInt(run[1]);
+        }
+        append(VIEW, key, 0, bytes.toByteArray());
+        log.viewSegment = segments.get(segments.size() - 1);
+    }
+
+    /** Writes one record at the head of the log; for APPEND and MOVE the result is the live message. */
+    private Ref append(byte kind, String key, int position, byte[] payload) throws IOException {
+        byte[] id = key.getBytes(StandardCharsets.UTF_8);
+        int bodyBytes = 1 + Integer.BYTES + id.length + Integer.BYTES + payload.length;
+        int recordBytes = RECORD_HEADER_BYTES + bodyBytes;
+        Segment head = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (head == null || head.writePosition + recordBytes > head.capacity) {
+            head = startSegment(recordBytes);
+        }
+        ByteBuffer body = ByteBuffer.allocate(bodyBytes);
+        body.put(kind).putInt(id.length).put(id).putInt(position).put(payload).flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        int offset = head.writePosition;
+        head.buffer.putInt(offset, bodyBytes);
+        head.buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        head.buffer.put(offset + RECORD_HEADER_BYTES, body, 0, bodyBytes);
+        head.writePosition += recordBytes;
+        bytesAppended += recordBytes;
+        if (kind != CLEAR) {
+            head.keys.add(key);
+        }
+        if (kind != APPEND && kind != MOVE) {
+            return null;
+        }
+        Ref ref = new Ref(
+                head, offset, recordBytes, offset + recordBytes - payload.length, payload.length, position);
+        head.liveBytes += recordBytes;
+        return ref;
+    }
+
+    private Segment startSegment(int recordBytes) throws IOException {
+        Segment segment = Segment.create(
+                directory.resolve(FILE_PREFIX + String.format("%08d", nextSequence++) + FILE_SUFFIX),
+                Math.max(segmentBytes, HEADER_BYTES + recordBytes));
+        segments.add(segment);
+        return segment;
+    }
+
+    /** Compacts the sealed segment with the fewest live bytes if they are below the threshold. */
+    private void maybeCompact() throws IOException {
+        if (compacting || segments.size() < 2) {
+            return;
+        }
+        Segment emptiest = null;
+        for (Segment segment : segments.subList(0, segments.size() - 1)) {
+            if (emptiest == null || segment.liveShare() < emptiest.liveShare()) {
+                emptiest = segment;
+            }
+        }
+        if (emptiest.liveShare() < compactionThreshold) {
+            compact(emptiest);
+        }
+    }
+
+    /** Moves a sealed segment's live messages to the head of the log and deletes its file. */
+    private void compact(Segment segment) throws IOException {
+        compacting = true;
+        try {
+            int firstHead = segments.size() - 1;
+            // an older segment may still hold messages of a memory this one deleted, and if the memory
+            // was created again its positions start over, so the CLEAR has to come before its new records
+            Set<String> cleared = new LinkedHashSet<>();
+            if (segment != segments.get(0)) {
+                cleared.addAll(segment.clearedKeys());
+            }
+            for (String key : cleared) {
+                append(CLEAR, key, 0, new byte[0]);
+            }
+            Set<String> keys = new LinkedHashSet<>(segment.keys);
+            keys.addAll(cleared);
+            for (String key : keys) {
+                Log log = logs.get(key);
+                if (log == null) {
+                    continue;
+                }
+                boolean recreated = cleared.contains(key);
+                boolean moved = false;
+                for (int i = 0; i < log.live.size(); i++) {
+                    Ref ref = log.live.get(i);
+                    if (ref.segment == segment || recreated) {
+                        // the CLEAR just written hides the records of a recreated memory, wherever they are
+                        byte[] json = ref.segment.read(ref.payloadOffset, ref.payloadLength);
+                        if (ref.segment != segment) {
+                            ref.segment.liveBytes -= ref.length;
+                        }
+                        log.live.set(i, append(MOVE, key, ref.position, json));
+                        moved = true;
+                    }
+                }
+                if (moved || recreated || log.viewSegment == segment) {
+                    // MOVE records do not change the conversation on replay; the VIEW after them does,
+                    // and without this one an older VIEW would bring back messages dropped since
+                    appendView(key, log, log.live);
+                }
+            }
+            for (Segment written : segments.subList(firstHead, segments.size())) {
+                if (written != segment) {
+                    written.buffer.force(); // the copies must be on disk before the originals go
+                }
+            }
+            segments.remove(segment);
+            segment.channel.close();
+            Files.delete(segment.file);
+            compactions++;
+        } finally {
+            compacting = false;
+        }
+    }
+
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+        Map<String, Replay> replays = new HashMap<>();
+        for (Path file : files) {
+            Segment segment = Segment.open(file);
+            segments.add(segment);
+            String name = file.getFileName().toString();
+            nextSequence = Integer.parseInt(name, FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length(), 10) + 1;
+            segment.writePosition = segment.forEachRecord((kind, key, position, offset, recordBytes, payloadOffset) -> {
+                Replay replay = replays.computeIfAbsent(key, k -> new Replay());
+                if (kind != CLEAR) {
+                    segment.keys.add(key);
+                }
+                int payloadLength = offset + recordBytes - payloadOffset;
+                switch (kind) {
+                    case APPEND, MOVE -> {
+                        Ref ref = new Ref(segment, offset, recordBytes, payloadOffset, payloadLength, position);
+                        replay.refs.put(position, ref);
+                        if (kind == APPEND) {
+                            replay.view.add(position);
+                        }
+                        replay.nextPosition = Math.max(replay.nextPosition, position + 1);
+                    }
+                    case VIEW -> {
+                        replay.viewSegment = segment;
+                        replay.view.clear();
+                        ByteBuffer runs = ByteBuffer.wrap(segment.read(payloadOffset, payloadLength));
+                        for (int run = runs.getInt(); run > 0; run--) {
+                            int start = runs.getInt();
+                            int length = runs.getInt();
+                            for (int p = start; p < start + length; p++) {
+                                replay.view.add(p);
+                            }
+                        }
+                    }
+                    default -> replays.remove(key);
+                }
+            });
+            if (segment.writePosition + Integer.BYTES <= segment.capacity
+                    && segment.buffer.getInt(segment.writePosition) != 0) {
+                // a torn record: clear it so that the next append does not leave half of it behind
+                segment.buffer.put(segment.writePosition, new byte[segment.capacity - segment.writePosition]);
+            }
+        }
+        for (Map.Entry<String, Replay> entry : replays.entrySet()) {
+            Replay replay = entry.getValue();
+            Log log = new Log();
+            log.nextPosition = replay.nextPosition;
+            log.viewSegment = replay.viewSegment;
+            for (int position : replay.view) {
+                Ref ref = replay.refs.get(position);
+                if (ref != null) {
+                    log.live.add(ref);
+                    ref.segment.liveBytes += ref.length;
+                }
+            }
+            if (!log.live.isEmpty()) {
+                logs.put(entry.getKey(), log);
+            }
+        }
+    }
+
+    /** A memory id's live messages, in conversation order, and the segment holding its latest VIEW. */
+    private static final class Log {
+        private List<Ref> live = new ArrayList<>();
+        private int nextPosition;
+        private Segment viewSegment;
+    }
+
+    /** A logged message; {@code position} numbers the messages of one memory id in the order logged. */
+    private record Ref(Segment segment, int offset, int length, int payloadOffset, int payloadLength, int position) {}
+
+    private static final class Replay {
+        private final Map<Integer, Ref> refs = new HashMap<>();
+        private final List<Integer> view = new ArrayList<>();
+        private int nextPosition;
+        private Segment viewSegment;
+    }
+
+    private interface RecordVisitor {
+        void visit(byte kind, String key, int position, int offset, int recordBytes, int payloadOffset);
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final Set<String> keys = new LinkedHashSet<>(); // memory ids with APPEND, MOVE or VIEW records
+        private int writePosition = HEADER_BYTES;
+        private long liveBytes;
+
+        private Segment(Path file, FileChannel channel, int capacity) throws IOException {
+            this.file = file;
+            this.channel = channel;
+            this.capacity = capacity;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        static Segment create(Path file, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(
+                    file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(file, channel, capacity);
+            segment.buffer.putInt(0, MAGIC).putInt(Integer.BYTES, VERSION);
+            return segment;
+        }
+
+        static Segment open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException("Not a chat memory log segment: " + file);
+            }
+            Segment segment = new Segment(file, channel, (int) size);
+            if (segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(Integer.BYTES) != VERSION) {
+                channel.close();
+                throw new IOException("Not a chat memory log segment: " + file);
+            }
+            return segment;
+        }
+
+        byte[] read(int offset, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return bytes;
+        }
+
+        double liveShare() {
+            int written = writePosition - HEADER_BYTES;
+            return written == 0 ? 1.0 : (double) liveBytes / written;
+        }
+
+        /**
+         * Visits the records up to the first one that is empty, cut short or fails its checksum, and
+         * returns where that one starts.
+         */
+        int forEachRecord(RecordVisitor visitor) {
+            int offset = HEADER_BYTES;
+            while (offset + RECORD_HEADER_BYTES <= capacity) {
+                int bodyBytes = buffer.getInt(offset);
+                if (bodyBytes <= 0 || bodyBytes > capacity - offset - RECORD_HEADER_BYTES) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(buffer.slice(offset + RECORD_HEADER_BYTES, bodyBytes));
+                if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+                    break;
+                }
+                int at = offset + RECORD_HEADER_BYTES;
+                byte kind = buffer.get(at);
+                int idLength = buffer.getInt(at + 1);
+                String key = new String(read(at + 1 + Integer.BYTES, idLength), StandardCharsets.UTF_8);
+                int position = buffer.getInt(at + 1 + Integer.BYTES + idLength);
+                int payloadOffset = at + 1 + Integer.BYTES + idLength + Integer.BYTES;
+                visitor.visit(kind, key, position, offset, RECORD_HEADER_BYTES + bodyBytes, payloadOffset);
+                offset += RECORD_HEADER_BYTES + bodyBytes;
+            }
+            return offset;
+        }
+
+        List<String> clearedKeys() {
+            List<String> keys = new ArrayList<>();
+            forEachRecord((kind, key, position, offset, recordBytes, payloadOffset) -> {
+                if (kind == CLEAR) {
+                    keys.add(key);
+                }
+            });
+            return keys;
+        }
+    }
+
+    /**
+     * Memory ids with messages, segment files, bytes of records in them and how many of those belong
+     * to live messages, bytes appended since the store was opened, and segments compacted.
+     */
+    public record LogStats(
+            int memories, int segments, long logBytes, long liveBytes, long bytesAppended, long compactions) {}
+
+    public static class Builder {
+        private Path directory;
+        private int segmentBytes = 16 * 1024 * 1024;
+        private double compactionThreshold = 0.5;
+        private int maxCachedMemories = 1_000;
+
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /** Size of each segment file (default 16 MiB); a larger record gets a segment of its own. */
+        public Builder segmentBytes(int segmentBytes) {
+            this.segmentBytes = segmentBytes;
+            return this;
+        }
+
+        /** Compact a sealed segment once less than this share of it is live (default 0.5). */
+        public Builder compactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /** Memory ids whose decoded messages are kept on the heap (default 1,000). */
+        public Builder maxCachedMemories(int maxCachedMemories) {
+            this.maxCachedMemories = maxCachedMemories;
+            return this;
+        }
+
+        public AppendOnlyChatMemoryStore build() {
+            return new AppendOnlyChatMemoryStore(this);
+        }
+    }
+}
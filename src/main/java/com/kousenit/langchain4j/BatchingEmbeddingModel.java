@@ -0,0 +1,251 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link EmbeddingModel} decorator that merges concurrent small {@code embedAll} calls into one
+ * batch.
+ *
+ * <p>Under load, every RAG request calls {@code embeddingModel.embed(query)} on its own thread, so an
+ * ONNX model such as {@code AllMiniLmL6V2QuantizedEmbeddingModel} runs dozens of batch-of-one
+ * inferences at once, each trying to use every core. This front-end queues those calls instead. A
+ * single dispatcher thread takes the first waiting call, keeps collecting for up to {@code maxDelay}
+ * or until {@code maxBatchSize} segments are waiting, and sends them to the delegate as one {@code
+ * embedAll}; each caller then gets its own slice of the result. While a batch is running the next one
+ * fills up, so under heavy load batches grow without waiting for the delay at all.
+ *
+ * <p>At most {@code maxConcurrentBatches} batches run at once (one by default, which suits ONNX's own
+ * intra-op parallelism). Calls with {@code maxBatchSize} or more segments already are a batch and go
+ * straight to the delegate. If a batch fails, every caller in it gets the exception. After {@link
+ * #close()} calls are passed straight through.
+ */
+public class BatchingEmbeddingModel implements EmbeddingModel, Closeable {
+
+    private static final Request SHUTDOWN = new Request(List.of(), new CompletableFuture<>());
+
+    private final EmbeddingModel delegate;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Semaphore batchPermits;
+    private final ExecutorService batchExecutor;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedSegments = new LongAdder();
+
+    private BatchingEmbeddingModel(Builder builder) {
+        if (builder.delegate == null) {
+            throw new IllegalArgumentException("delegate is required");
+        }
+        if (builder.maxBatchSize < 1 || builder.maxConcurrentBatches < 1) {
+            throw new IllegalArgumentException("maxBatchSize and maxConcurrentBatches must be positive");
+        }
+        if (builder.maxDelay == null || builder.maxDelay.isNegative()) {
+            throw new IllegalArgumentException("maxDelay cannot be negative");
+        }
+        this.delegate = builder.delegate;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.batchPermits = new Semaphore(builder.maxConcurrentBatches);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.batchExecutor = Executors.newFixedThreadPool(builder.maxConcurrentBatches, runnable -> {
+            Thread thread = new Thread(runnable, "embedding-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "embedding-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        if (textSegments.isEmpty() || textSegments.size() >= maxBatchSize || closed) {
+            return delegate.embedAll(textSegments);
+        }
+        requests.increment();
+        CompletableFuture<List<Embedding>> result = new CompletableFuture<>();
+        Request request = new Request(List.copyOf(textSegments), result);
+        queue.add(request);
+        if (closed && queue.remove(request)) {
+            // close() ran after the check above and the dispatcher may already be gone
+            return delegate.embedAll(textSegments);
+        }
+        try {
+            return Response.from(result.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Embedding batch failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an embedding batch", e);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    public BatchStats stats() {
+        return new BatchStats(requests.sum(), batches.sum(), batchedSegments.sum());
+    }
+
+    /** Stops batching; calls already queued are still embedded, later calls go straight to the delegate. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(SHUTDOWN);
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batchExecutor.shutdown();
+    }
+
+    private void dispatch() {
+        boolean running = true;
+        while (running) {
+            try {
+                batchPermits.acquire();
+                List<Request> batch = new ArrayList<>();
+                int segments = 0;
+                Request first = queue.take();
+                long deadline = System.nanoTime() + maxDelayNanos;
+                for (Request next = first; next != null; ) {
+                    if (next == SHUTDOWN) {
+                        running = false;
+                        break;
+                    }
+                    batch.add(next);
+                    segments += next.segments().size();
+                    if (segments >= maxBatchSize) {
+                        break;
+                    }
+                    // drain what is already waiting, then wait out the rest of the delay
+                    next = queue.poll();
+                    if (next == null) {
+                        next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    }
+                }
+                if (batch.isEmpty()) {
+                    batchPermits.release();
+                } else {
+                    batchExecutor.execute(() -> run(batch));
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+        }
+        // anything that raced with close() is still answered, on this thread and without a permit
+        List<Request> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.remove(SHUTDOWN);
+        remaining.forEach(request -> embed(List.of(request)));
+    }
+
+    /** Embeds a batch on the executor, then hands back the permit the dispatcher acquired for it. */
+    private void run(List<Request> batch) {
+        try {
+            embed(batch);
+        } finally {
+            batchPermits.release();
+        }
+    }
+
+    private void embed(List<Request> batch) {
+        try {
+            List<TextSegment> segments = new ArrayList<>();
+            batch.forEach(request -> segments.addAll(request.segments()));
+            List<Embedding> embeddings = delegate.embedAll(segments).content();
+            batches.increment();
+            batchedSegments.add(segments.size());
+            int offset = 0;
+            for (Request request : batch) {
+                int size = request.segments().size();
+                request.result().complete(embeddings.subList(offset, offset + size));
+                offset += size;
+            }
+        } catch (Throwable e) {
+            // an Error must reach the callers too, or they would wait on their futures forever
+            batch.forEach(request -> request.result().completeExceptionally(e));
+        }
+    }
+
+    private record Request(List<TextSegment> segments, CompletableFuture<List<Embedding>> result) {}
+
+    /** Calls that went through the batcher, batches sent to the delegate and the segments in them. */
+    public record BatchStats(long requests, long batches, long segments) {
+
+        public double averageBatchSize() {
+            return batches == 0 ? 0.0 : (double) segments / batches;
+        }
+    }
+
+    public static class Builder {
+        private EmbeddingModel delegate;
+        private int maxBatchSize = 64;
+        private Duration maxDelay = Duration.ofMillis(2);
+        private int maxConcurrentBatches = 1;
+
+        public Builder delegate(EmbeddingModel delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /** Segments per batch; a batch is sent as soon as this many are waiting. */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /** Longest a call waits for others to join its batch. */
+        public Builder maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /** Batches allowed to run at once; more calls queue up meanwhile and form the next batch. */
+        public Builder maxConcurrentBatches(int maxConcurrentBatches) {
+            this.maxConcurrentBatches = maxConcurrentBatches;
+            return this;
+        }
+
+        public BatchingEmbeddingModel build() {
+            return new BatchingEmbeddingModel(this);
+        }
+    }
+}
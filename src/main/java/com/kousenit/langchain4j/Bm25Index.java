@@ -0,0 +1,253 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.segment.TextSegment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory BM25 inverted index over {@link TextSegment}s, keyed by the same ids as the embedding
+ * store that holds their vectors.
+ *
+ * <p>Tokens are lowercased runs of letters and digits. Identifiers are kept whole and also split on
+ * camel case, so {@code AiServices} is indexed as {@code aiservices}, {@code ai} and {@code services}:
+ * a query for the exact class name scores highest on the segments that contain it, while "ai
+ * services" still finds them. Scoring uses the standard BM25 weights ({@code k1 = 1.2}, {@code b =
+ * 0.75}).
+ *
+ * <p>Adding an id that is already indexed replaces its segment. Replaced and removed segments are
+ * tombstoned and leave the document counts and average length at once; their postings are dropped
+ * once tombstones outnumber live segments.
+ */
+final class Bm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 1_024;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern CAMEL_CASE = Pattern.compile("(?<=\\p{Ll})(?=\\p{Lu})|(?<=\\p{Lu})(?=\\p{Lu}\\p{Ll})");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "how", "in", "is", "it", "of", "on", "or",
+            "that", "the", "this", "to", "was", "what", "when", "which", "with");
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final Map<String, Integer> documentsById = new HashMap<>();
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] lengths = new int[16];
+    private long totalLength;
+
+    void add(String id, TextSegment segment) {
+        List<String> tokens = tokenize(segment.text());
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            int document = ids.size();
+            ids.add(id);
+            segments.add(segment);
+            documentsById.put(id, document);
+            if (document == lengths.length) {
+                lengths = Arrays.copyOf(lengths, document * 2);
+            }
+            lengths[document] = tokens.size();
+            totalLength += tokens.size();
+            frequencies.forEach((token, frequency) ->
+                    postings.computeIfAbsent(token, t -> new Postings()).add(document, frequency));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes the segment indexed under {@code id}; returns whether there was one. */
+    boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            return removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return documentsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size() - removedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** The best {@code maxResults} segments for {@code query}, highest BM25 score first. */
+    List<Hit> search(String query, int maxResults) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            int documents = ids.size() - removedCount;
+            if (documents == 0 || terms.isEmpty()) {
+                return List.of();
+            }
+            float averageLength = (float) totalLength / documents;
+            float[] scores = new float[ids.size()];
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null || list.live == 0) {
+                    continue;
+                }
+                // Lucene's BM25 idf, which stays positive even for terms found in most documents
+                float idf = (float) Math.log(1 + (documents - list.live + 0.5) / (list.live + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int document = list.documents[i];
+                    if (removed.get(document)) {
+                        continue;
+                    }
+                    int frequency = list.frequencies[i];
+                    float norm = K1 * (1 - B + B * lengths[document] / averageLength);
+                    scores[document] += idf * frequency * (K1 + 1) / (frequency + norm);
+                }
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            for (int document = 0; document < scores.length; document++) {
+                float score = scores[document];
+                if (score <= 0 || (top.size() == maxResults && score <= top.peek().score())) {
+                    continue;
+                }
+                top.add(new Hit(ids.get(document), segments.get(document), score));
+                if (top.size() > maxResults) {
+                    top.poll();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Called with the write lock held. */
+    private boolean removeDocument(String id) {
+        Integer document = documentsById.remove(id);
+        if (document == null) {
+            return false;
+        }
+        removed.set(document);
+        removedCount++;
+        totalLength -= lengths[document];
+        for (String token : new HashSet<>(tokenize(segments.get(document).text()))) {
+            postings.get(token).live--;
+        }
+        if (removedCount >= MIN_TOMBSTONES_TO_COMPACT && removedCount > ids.size() - removedCount) {
+            compact();
+        }
+        return true;
+    }
+
+    /** Renumbers the live documents and drops the postings of removed ones. Called with the write lock held. */
+    private void compact() {
+        int[] renumbered = new int[ids.size()];
+        int live = 0;
+        for (int document = 0; document < ids.size(); document++) {
+            if (removed.get(document)) {
+                renumbered[document] = -1;
+                continue;
+            }
+            renumbered[document] = live;
+            ids.set(live, ids.get(document));
+            segments.set(live, segments.get(document));
+            lengths[live] = lengths[document];
+            documentsById.put(ids.get(live), live);
+            live++;
+        }
+        ids.subList(live, ids.size()).clear();
+        segments.subList(live, segments.size()).clear();
+        postings.values().removeIf(list -> {
+            list.renumber(renumbered);
+            return list.size == 0;
+        });
+        removed.clear();
+        removedCount = 0;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String word : NON_WORD.split(text)) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String lower = word.toLowerCase(Locale.ROOT);
+            if (!STOP_WORDS.contains(lower)) {
+                tokens.add(lower);
+            }
+            String[] parts = CAMEL_CASE.split(word);
+            if (parts.length > 1) {
+                for (String part : parts) {
+                    tokens.add(part.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    record Hit(String id, TextSegment segment, double score) {}
+
+    /** Parallel growable arrays of document number and term frequency, plus how many are not removed. */
+    private static final class Postings {
+        int[] documents = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+        int live;
+
+        void add(int document, int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            documents[size] = document;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+
+        /** Applies {@code renumbered} to the document numbers, dropping those mapped to -1. */
+        void renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int document = renumbered[documents[i]];
+                if (document >= 0) {
+                    documents[kept] = document;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
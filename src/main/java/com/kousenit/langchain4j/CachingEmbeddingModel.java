@@ -0,0 +1,248 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link EmbeddingModel} decorator that skips inference for text it has already embedded.
+ *
+ * <p>Each segment is keyed by the SHA-256 of the model id plus the segment text, so the same text
+ * embedded by a different model (for example {@code AllMiniLmL6V2EmbeddingModel} versus {@code
+ * AllMiniLmL6V2QuantizedEmbeddingModel}) never shares an entry. Lookups go through two tiers:
+ *
+ * <ul>
+ *   <li>a bounded, least-recently-used map on the heap
+ *   <li>an optional directory with one small little-endian float file per key
+ * </ul>
+ *
+ * <p>Only the misses of an {@code embedAll} call are sent to the delegate, in a single batch, so a
+ * nightly re-ingestion of mostly unchanged documents costs little more than hashing. The hit and
+ * miss counters in {@link #stats()} show how much inference was skipped.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final String modelId;
+    private final Path cacheDirectory;
+    private final Map<String, float[]> memory;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private CachingEmbeddingModel(Builder builder) {
+        if (builder.delegate == null) {
+            throw new IllegalArgumentException("delegate is required");
+        }
+        if (builder.maxCachedEmbeddings < 0) {
+            throw new IllegalArgumentException("maxCachedEmbeddings cannot be negative");
+        }
+        this.delegate = builder.delegate;
+        this.modelId = builder.modelId != null ? builder.modelId : builder.delegate.getClass().getName();
+        this.cacheDirectory = builder.cacheDirectory;
+        int maxEntries = builder.maxCachedEmbeddings;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        if (cacheDirectory != null) {
+            try {
+                Files.createDirectories(cacheDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        List<Embedding> results = new ArrayList<>(textSegments.size());
+        Map<String, List<Integer>> pending = new LinkedHashMap<>();
+        List<TextSegment> toEmbed = new ArrayList<>();
+
+        for (int i = 0; i < textSegments.size(); i++) {
+            TextSegment segment = textSegments.get(i);
+            String key = key(segment.text());
+            float[] cached = lookup(key);
+            if (cached != null) {
+                results.add(Embedding.from(cached.clone()));
+                continue;
+            }
+            results.add(null);
+            // identical texts in one batch are embedded once
+            List<Integer> positions = pending.get(key);
+            if (positions == null) {
+                positions = new ArrayList<>();
+                pending.put(key, positions);
+                toEmbed.add(segment);
+            }
+            positions.add(i);
+        }
+
+        if (!toEmbed.isEmpty()) {
+            misses.add(toEmbed.size());
+            List<Embedding> embedded = delegate.embedAll(toEmbed).content();
+            int next = 0;
+            for (Map.Entry<String, List<Integer>> entry : pending.entrySet()) {
+                float[] vector = embedded.get(next++).vector();
+                store(entry.getKey(), vector);
+                for (int position : entry.getValue()) {
+                    results.set(position, Embedding.from(vector.clone()));
+                }
+            }
+        }
+        return Response.from(results);
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(memoryHits.sum(), diskHits.sum(), misses.sum());
+    }
+
+    private float[] lookup(String key) {
+        float[] vector;
+        synchronized (memory) {
+            vector = memory.get(key);
+        }
+        if (vector != null) {
+            memoryHits.increment();
+            return vector;
+        }
+        if (cacheDirectory == null) {
+            return null;
+        }
+        Path file = fileFor(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            vector = new float[bytes.remaining() / Float.BYTES];
+            bytes.asFloatBuffer().get(vector);
+        } catch (IOException e) {
+            // an unreadable cache file is just a miss
+            return null;
+        }
+        diskHits.increment();
+        synchronized (memory) {
+            memory.put(key, vector);
+        }
+        return vector;
+    }
+
+    private void store(String key, float[] vector) {
+        synchronized (memory) {
+            memory.put(key, vector);
+        }
+        if (cacheDirectory == null) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(vector);
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            // write-then-rename so a concurrent reader never sees a half-written vector
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(temp, bytes.array());
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write embedding cache entry " + file, e);
+        }
+    }
+
+    private Path fileFor(String key) {
+        // two-character fan-out keeps any one directory from holding millions of files
+        return cacheDirectory.resolve(key.substring(0, 2)).resolve(key + ".f32");
+    }
+
+    private String key(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Cumulative counts: hits per tier, and misses as the number of segments actually sent to the
+     * delegate (repeated text within one batch is sent, and counted, once).
+     */
+    public record CacheStats(long memoryHits, long diskHits, long misses) {
+
+        public long hits() {
+            return memoryHits + diskHits;
+        }
+
+        public double hitRatio() {
+            long total = hits() + misses;
+            return total == 0 ? 0.0 : (double) hits() / total;
+        }
+    }
+
+    public static class Builder {
+        private EmbeddingModel delegate;
+        private String modelId;
+        private Path cacheDirectory;
+        private int maxCachedEmbeddings = 10_000;
+
+        public Builder delegate(EmbeddingModel delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /** Identifies the model in cache keys; defaults to the delegate's class name. */
+        public Builder modelId(String modelId) {
+            this.modelId = modelId;
+            return this;
+        }
+
+        /** Enables the on-disk tier in the given directory. */
+        public Builder cacheDirectory(Path cacheDirectory) {
+            this.cacheDirectory = cacheDirectory;
+            return this;
+        }
+
+        /** Capacity of the in-heap LRU tier. */
+        public Builder maxCachedEmbeddings(int maxCachedEmbeddings) {
+            this.maxCachedEmbeddings = maxCachedEmbeddings;
+            return this;
+        }
+
+        public CachingEmbeddingModel build() {
+            return new CachingEmbeddingModel(this);
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact binary encoding of a list of chat messages, as an alternative to {@link ChatMessageSerializer}'s
+ * JSON.
+ *
+ * <p>Lengths and counts are varints and strings are UTF-8, with one tag byte per message instead of
+ * field names. System message texts, tool names and user names repeat across conversations, so they
+ * are interned: the first time the codec sees one it adds it to a dictionary, and from then on writes
+ * its index, one or two bytes, instead of the text. The dictionary only grows, up to {@code
+ * maxDictionaryEntries}, after which new strings are written out in full. Blocks larger than a few
+ * hundred bytes are then compressed with an LZ4-style byte-oriented LZ77 (literal runs and matches
+ * within the last 64 KiB), and kept that way if that saves space.
+ *
+ * <p>Messages are written compactly only when decoding them gives back an equal message: a user
+ * message with a single text, an AI message with text and tool calls, a tool result or a system
+ * message. Any other message (images, attributes, message types added later) is stored as its JSON,
+ * so a round trip never changes a message.
+ *
+ * <p>Because of the dictionary, a block can only be decoded by a codec that holds the entries it
+ * refers to. To keep blocks beyond the life of the codec that wrote them, save {@link #dictionary()}
+ * with them and build the next codec with {@link Builder#dictionary(List)}. Entries are only ever
+ * appended, so a dictionary saved after a block was written decodes it. Decoding a block that refers
+ * to an entry the codec does not have fails with an {@code IllegalStateException}. The codec is
+ * thread-safe.
+ */
+public class ChatMessageCodec {
+
+    private static final byte RAW = 0;
+    private static final byte COMPRESSED = 1;
+
+    private static final byte SYSTEM = 1;
+    private static final byte USER = 2;
+    private static final byte NAMED_USER = 3;
+    private static final byte AI = 4;
+    private static final byte AI_WITH_TOOLS = 5;
+    private static final byte TOOL_RESULT = 6;
+    private static final byte JSON = 7;
+
+    private static final int MIN_COMPRESSED_BYTES = 256;
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65_535;
+    private static final int HASH_BITS = 12;
+
+    private final boolean compression;
+    private final int maxDictionaryEntries;
+
+    private final Map<String, Integer> dictionaryIds = new ConcurrentHashMap<>();
+    private volatile String[] dictionary;
+    private int dictionarySize;
+
+    private final LongAdder jsonMessages = new LongAdder();
+
+    private ChatMessageCodec(Builder builder) {
+        if (builder.maxDictionaryEntries < 0) {
+            throw new IllegalArgumentException("maxDictionaryEntries cannot be negative");
+        }
+        if (builder.dictionary == null) {
+            throw new IllegalArgumentException("dictionary cannot be null");
+        }
+        this.compression = builder.compression;
+        this.maxDictionaryEntries = builder.maxDictionaryEntries;
+        String[] entries = builder.dictionary.toArray(new String[Math.max(16, builder.dictionary.size())]);
+        for (int i = 0; i < builder.dictionary.size(); i++) {
+            if (entries[i] == null || dictionaryIds.putIfAbsent(entries[i], i) != null) {
+                throw new IllegalArgumentException("dictionary entries must be non-null and distinct");
+            }
+        }
+        this.dictionary = entries;
+        this.dictionarySize = builder.dictionary.size();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public byte[] encode(List<ChatMessage> messages) {
+        Output out = new Output(64 + 32 * messages.size());
+        out.writeByte(RAW);
+        out.writeVarint(messages.size());
+        for (ChatMessage message : messages) {
+            int start = out.position;
+            if (!writeCompact(out, message)) {
+                out.position = start;
+                out.writeByte(JSON);
+                out.writeString(ChatMessageSerializer.messageToJson(message));
+                jsonMessages.increment();
+            }
+        }
+        if (compression && out.position >= MIN_COMPRESSED_BYTES) {
+            byte[] compressed = compress(out.bytes, 1, out.position - 1);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        return Arrays.copyOf(out.bytes, out.position);
+    }
+
+    public List<ChatMessage> decode(byte[] block) {
+        Input in;
+        if (block[0] == COMPRESSED) {
+            Input header = new Input(block, 1);
+            int length = header.readVarint();
+            in = new Input(decompress(block, header.position, length), 0);
+        } else {
+            in = new Input(block, 1);
+        }
+        int count = in.readVarint();
+        List<ChatMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(readMessage(in));
+        }
+        return messages;
+    }
+
+    /** Strings interned so far. */
+    public int dictionarySize() {
+        synchronized (dictionaryIds) {
+            return dictionarySize;
+        }
+    }
+
+    /** The interned strings in index order, to be saved with blocks that outlive this codec. */
+    public List<String> dictionary() {
+        synchronized (dictionaryIds) {
+            return List.of(Arrays.copyOf(dictionary, dictionarySize));
+        }
+    }
+
+    /** Messages encoded as JSON because the compact form could not reproduce them. */
+    public long jsonMessages() {
+        return jsonMessages.sum();
+    }
+
+    /** Writes {@code message} compactly, or returns {@code false} if decoding it would not give it back. */
+    private boolean writeCompact(Output out, ChatMessage message) {
+        if (message instanceof SystemMessage system) {
+            if (system.text() == null || !SystemMessage.from(system.text()).equals(system)) {
+                return false;
+            }
+            out.writeByte(SYSTEM);
+            writeSymbol(out, system.text());
+            return true;
+        }
+        if (message instanceof UserMessage user) {
+            if (!user.hasSingleText() || user.singleText() == null) {
+                return false;
+            }
+            if (user.name() == null) {
+                if (!UserMessage.from(user.singleText()).equals(user)) {
+                    return false;
+                }
+                out.writeByte(USER);
+            } else {
+                if (!UserMessage.from(user.name(), user.singleText()).equals(user)) {
+                    return false;
+                }
+                out.writeByte(NAMED_USER);
+                writeSymbol(out, user.name());
+            }
+            out.writeString(user.singleText());
+            return true;
+        }
+        if (message instanceof AiMessage ai) {
+            if (!ai.hasToolExecutionRequests()) {
+                if (ai.text() == null || !AiMessage.from(ai.text()).equals(ai)) {
+                    return false;
+                }
+                out.writeByte(AI);
+                out.writeString(ai.text());
+                return true;
+            }
+            List<ToolExecutionRequest> requests = new ArrayList<>(ai.toolExecutionRequests().size());
+            for (ToolExecutionRequest request : ai.toolExecutionRequests()) {
+                if (request.name() == null) {
+                    return false;
+                }
+                requests.add(ToolExecutionRequest.builder()
+                        .id(request.id())
+                        .name(request.name())
+                        .arguments(request.arguments())
+                        .build());
+            }
+            AiMessage rebuilt = ai.text() == null ? AiMessage.from(requests) : AiMessage.from(ai.text(), requests);
+            if (!rebuilt.equals(ai)) {
+                return false;
+            }
+            out.writeByte(AI_WITH_TOOLS);
+            out.writeNullableString(ai.text());
+            out.writeVarint(requests.size());
+            for (ToolExecutionRequest request : requests) {
+                out.writeNullableString(request.id());
+                writeSymbol(out, request.name());
+                out.writeNullableString(request.arguments());
+            }
+            return true;
+        }
+        if (message instanceof ToolExecutionResultMessage result) {
+            if (result.toolName() == null
+                    || result.text() == null
+                    || !ToolExecutionResultMessage.from(result.id(), result.toolName(), result.text())
+                            .equals(result)) {
+                return false;
+            }
+            out.writeByte(TOOL_RESULT);
+            out.writeNullableString(result.id());
+            writeSymbol(out, result.toolName());
+            out.writeString(result.text());
+            return true;
+        }
+        return false;
+    }
+
+    private ChatMessage readMessage(Input in) {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case SYSTEM -> SystemMessage.from(readSymbol(in));
+            case USER -> UserMessage.from(in.readString());
+            case NAMED_USER -> {
+                String name = readSymbol(in);
+                yield UserMessage.from(name, in.readString());
+            }
+            case AI -> AiMessage.from(in.readString());
+            case AI_WITH_TOOLS -> {
+                String text = in.readNullableString();
+                int count = in.readVarint();
+                List<ToolExecutionRequest> requests = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    requests.add(ToolExecutionRequest.builder()
+                            .id(in.readNullableString())
+                            .name(readSymbol(in))
+                            .arguments(in.readNullableString())
+                            .build());
+                }
+                yield text == null ? AiMessage.from(requests) : AiMessage.from(text, requests);
+            }
+            case TOOL_RESULT -> {
+                String id = in.readNullableString();
+                String toolName = readSymbol(in);
+                yield ToolExecutionResultMessage.from(id, toolName, in.readString());
+            }
+            case JSON -> ChatMessageDeserializer.messageFromJson(in.readString());
+            default -> throw new IllegalStateException("Unknown message tag " + tag);
+        };
+    }
+
+    /** An interned string: its dictionary index shifted left, or its length shifted left plus one and its bytes. */
+    private void writeSymbol(Output out, String symbol) {
+        Integer id = intern(symbol);
+        if (id != null) {
+            out.writeVarint((long) id << 1);
+        } else {
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(((long) bytes.length << 1) | 1);
+            out.writeBytes(bytes, 0, bytes.length);
+        }
+    }
+
+    private String readSymbol(Input in) {
+        long value = in.readVarintLong();
+        if ((value & 1) == 0) {
+            long index = value >>> 1;
+            String[] entries = dictionary;
+            // entries are published before their index can be written, so a null slot was never interned here
+            String symbol = index < entries.length ? entries[(int) index] : null;
+            if (symbol == null) {
+                throw new IllegalStateException("Block refers to dictionary entry " + index + ", but this codec has "
+                        + dictionarySize() + " entries; decode it with the dictionary of the codec that wrote it");
+            }
+            return symbol;
+        }
+        return in.readString((int) (value >>> 1));
+    }
+
+    private Integer intern(String symbol) {
+        Integer id = dictionaryIds.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        synchronized (dictionaryIds) {
+            id = dictionaryIds.get(symbol);
+            if (id != null || dictionarySize >= maxDictionaryEntries) {
+                return id;
+            }
+            String[] entries = dictionary;
+            if (dictionarySize == entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            entries[dictionarySize] = symbol;
+            dictionary = entries; // published before the id can be seen
+            id = dictionarySize++;
+            dictionaryIds.put(symbol, id);
+            return id;
+        }
+    }
+
+    /**
+     * LZ4-style compression of {@code length} bytes from {@code offset}: sequences of a token (literal
+     * run length and match length, four bits each, continued in further bytes when they reach 15), the
+     * literals, and a two-byte little-endian match offset. The last sequence has literals only. Returns
+     * {@code null} unless the result is smaller than the input.
+     */
+    static byte[] compress(byte[] src, int offset, int length) {
+        Output out = new Output(length + length / 255 + 16);
+        out.writeByte(COMPRESSED);
+        out.writeVarint(length);
+        int headerBytes = out.position;
+
+        int[] table = new int[1 << HASH_BITS]; // position + 1 of the last 4-byte sequence with that hash
+        int end = offset + length;
+        int anchor = offset;
+        int i = offset;
+        while (i + MIN_MATCH <= end) {
+            int sequence = readIntLE(src, i);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int candidate = table[hash] - 1;
+            table[hash] = i + 1;
+            if (candidate >= 0 && i - candidate <= MAX_OFFSET && readIntLE(src, candidate) == sequence) {
+                int matchLength = MIN_MATCH;
+                while (i + matchLength < end && src[candidate + matchLength] == src[i + matchLength]) {
+                    matchLength++;
+                }
+                writeSequence(out, src, anchor, i - anchor, i - candidate, matchLength);
+                i += matchLength;
+                anchor = i;
+            } else {
+                i += 1 + ((i - anchor) >>> 6); // skip faster through incompressible runs
+            }
+        }
+        writeSequence(out, src, anchor, end - anchor, 0, 0);
+        if (out.position - headerBytes >= length) {
+            return null;
+        }
+        return Arrays.copyOf(out.bytes, out.position);
+    }
+
+    static byte[] decompress(byte[] src, int offset, int length) {
+        byte[] dst = new byte[length];
+        int in = offset;
+        int out = 0;
+        while (in < src.length) {
+            int token = src[in++] & 0xFF;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    b = src[in++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            System.arraycopy(src, in, dst, out, literals);
+            in += literals;
+            out += literals;
+            if (in >= src.length) {
+                break;
+            }
+            int distance = (src[in] & 0xFF) | (src[in + 1] & 0xFF) << 8;
+            in += 2;
+            int matchLength = (token & 15) + MIN_MATCH;
+            if (matchLength == 15 + MIN_MATCH) {
+                int b;
+                do {
+                    b = src[in++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            int from = out - distance;
+            if (distance >= matchLength) {
+                System.arraycopy(dst, from, dst, out, matchLength);
+                out += matchLength;
+            } else {
+                for (int k = 0; k < matchLength; k++) {
+                    dst[out++] = dst[from + k]; // overlapping copy repeats the pattern
+                }
+            }
+        }
+        if (out != length) {
+            throw new IllegalStateException("Corrupt block: expected " + length + " bytes, got " + out);
+        }
+        return dst;
+    }
+
+    private static void writeSequence(Output out, byte[] src, int from, int literals, int distance, int matchLength) {
+        int matchCode = matchLength == 0 ? 0 : matchLength - MIN_MATCH;
+        out.writeByte((byte) ((Math.min(literals, 15) << 4) | Math.min(matchCode, 15)));
+        if (literals >= 15) {
+            writeLengthTail(out, literals - 15);
+        }
+        out.writeBytes(src, from, literals);
+        if (matchLength > 0) {
+            out.writeByte((byte) distance);
+            out.writeByte((byte) (distance >>> 8));
+            if (matchCode >= 15) {
+                writeLengthTail(out, matchCode - 15);
+            }
+        }
+    }
+
+    private static void writeLengthTail(Output out, int remaining) {
+        while (remaining >= 255) {
+            out.writeByte((byte) 255);
+            remaining -= 255;
+        }
+        out.writeByte((byte) remaining);
+    }
+
+    private static int readIntLE(byte[] bytes, int i) {
+        return (bytes[i] & 0xFF)
+                | (bytes[i + 1] & 0xFF) << 8
+                | (bytes[i + 2] & 0xFF) << 16
+                | (bytes[i + 3] & 0xFF) << 24;
+    }
+
+    private static final class Output {
+        private byte[] bytes;
+        private int position;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void writeByte(byte b) {
+            ensure(1);
+            bytes[position++] = b;
+        }
+
+        void writeBytes(byte[] src, int from, int length) {
+            ensure(length);
+            System.arraycopy(src, from, bytes, position, length);
+            position += length;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        void writeString(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            writeBytes(utf8, 0, utf8.length);
+        }
+
+        /** Length plus one, so that zero means {@code null}. */
+        void writeNullableString(String s) {
+            if (s == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1L);
+            writeBytes(utf8, 0, utf8.length);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + extra));
+            }
+        }
+    }
+
+    private static final class Input {
+        private final byte[] bytes;
+        private int position;
+
+        Input(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        byte readByte() {
+            return bytes[position++];
+        }
+
+        int readVarint() {
+            return (int) readVarintLong();
+        }
+
+        long readVarintLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        String readString() {
+            return readString(readVarint());
+        }
+
+        String readString(int length) {
+            String s = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return s;
+        }
+
+        String readNullableString() {
+            int length = readVarint();
+            return length == 0 ? null : readString(length - 1);
+        }
+    }
+
+    public static class Builder {
+        private boolean compression = true;
+        private int maxDictionaryEntries = 1024;
+        private List<String> dictionary = List.of();
+
+        /** Compress blocks of a few hundred bytes or more (default {@code true}). */
+        public Builder compression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /** Strings interned at most; later ones are written in full (default 1,024). */
+        public Builder maxDictionaryEntries(int maxDictionaryEntries) {
+            this.maxDictionaryEntries = maxDictionaryEntries;
+            return this;
+        }
+
+        /**
+         * Entries to start from, in index order, as saved from {@link ChatMessageCodec#dictionary()}
+         * (default none). They are kept even beyond {@code maxDictionaryEntries}.
+         */
+        public Builder dictionary(List<String> dictionary) {
+            this.dictionary = dictionary;
+            return this;
+        }
+
+        public ChatMessageCodec build() {
+            return new ChatMessageCodec(this);
+        }
+    }
+}
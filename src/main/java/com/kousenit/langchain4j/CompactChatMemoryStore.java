@@ -0,0 +1,77 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link ChatMemoryStore} that keeps each memory's messages in memory as one block encoded by a
+ * {@link ChatMessageCodec}, instead of as message objects.
+ *
+ * <p>With many conversations held at once, most of the heap goes to copies of the same system
+ * message and to the field names and framing of every message. Encoded blocks share one copy of each
+ * system message and tool name through the codec's dictionary and are usually compressed, so they
+ * take a fraction of the space, at the cost of decoding the block on {@code getMessages}. Every
+ * message, including ones the codec does not know, comes back equal to the one stored.
+ *
+ * <p>The dictionary lives in the codec, so the blocks are not meant to outlive the store.
+ */
+public class CompactChatMemoryStore implements ChatMemoryStore {
+
+    private final ChatMessageCodec codec;
+    private final Map<Object, byte[]> blocks = new ConcurrentHashMap<>();
+
+    private CompactChatMemoryStore(Builder builder) {
+        if (builder.codec == null) {
+            throw new IllegalArgumentException("codec cannot be null");
+        }
+        this.codec = builder.codec;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        byte[] block = blocks.get(memoryId);
+        return block == null ? List.of() : codec.decode(block);
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        blocks.put(memoryId, codec.encode(messages));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        blocks.remove(memoryId);
+    }
+
+    public StoreStats stats() {
+        long bytes = 0;
+        for (byte[] block : blocks.values()) {
+            bytes += block.length;
+        }
+        return new StoreStats(blocks.size(), bytes, codec.dictionarySize(), codec.jsonMessages());
+    }
+
+    /** Memories stored, bytes of their blocks, strings interned and messages the codec stored as JSON. */
+    public record StoreStats(int memories, long bytes, int dictionaryEntries, long jsonMessages) {}
+
+    public static class Builder {
+        private ChatMessageCodec codec = ChatMessageCodec.builder().build();
+
+        /** Encodes the messages (default: interning and compression on). */
+        public Builder codec(ChatMessageCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        public CompactChatMemoryStore build() {
+            return new CompactChatMemoryStore(this);
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory {@link EmbeddingStore} built for corpora that change: updates and deletes are cheap
+ * and searches never wait for them.
+ *
+ * <p>Entries are appended to fixed-size pages and never moved. Adding an id that already exists is
+ * an upsert: the new entry is appended and the old one tombstoned. {@code removeAll} only sets
+ * tombstone bits, and a filtered delete finds its candidates through a {@link MetadataIndex}. Searches
+ * take no lock at all; they read the published entry count and skip tombstoned entries as they
+ * scan. During an upsert a search may briefly see both versions of an entry, but never neither.
+ *
+ * <p>Tombstones still cost scan time and memory, so once they make up {@code compactionThreshold} of
+ * the entries (and number at least {@code minTombstones}) a background thread compacts the store. It
+ * copies the live entries into fresh pages without holding the write lock, then takes the lock only
+ * to replay the writes made meanwhile and swap the new pages in. Searches that started on the old
+ * pages finish on them, so compaction never blocks a reader. {@link #compact()} runs the same thing
+ * on the calling thread.
+ */
+public class CompactingEmbeddingStore implements EmbeddingStore<TextSegment>, Closeable {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private final double compactionThreshold;
+    private final int minTombstones;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final LongAdder compactions = new LongAdder();
+
+    private volatile Table table = new Table();
+    private volatile int dimension = -1;
+
+    private CompactingEmbeddingStore(Builder builder) {
+        if (builder.compactionThreshold <= 0 || builder.compactionThreshold > 1) {
+            throw new IllegalArgumentException("compactionThreshold must be in (0, 1]");
+        }
+        if (builder.minTombstones < 1) {
+            throw new IllegalArgumentException("minTombstones must be positive");
+        }
+        this.compactionThreshold = builder.compactionThreshold;
+        this.minTombstones = builder.minTombstones;
+        this.compactor = builder.backgroundCompaction
+                ? Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "embedding-store-compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Number of live entries. */
+    public int size() {
+        Table current = table;
+        return current.size - current.tombstones;
+    }
+
+    /** Entries deleted or replaced but not yet reclaimed by compaction. */
+    public int tombstones() {
+        return table.tombstones;
+    }
+
+    /** Compactions completed so far. */
+    public long compactions() {
+        return compactions.sum();
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        upsert(id, embedding, textSegment);
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    /** Adds or replaces the entry stored under {@code id}. */
+    public void upsert(String id, Embedding embedding, TextSegment textSegment) {
+        addAll(List.of(id), List.of(embedding), textSegment == null ? null : Collections.singletonList(textSegment));
+    }
+
+    /** Adds the entries; an id that is already stored is replaced. */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<float[]> normalized = new ArrayList<>(ids.size());
+        for (Embedding embedding : embeddings) {
+            normalized.add(VectorMath.normalizedCopy(embedding.vector()));
+        }
+        writeLock.lock();
+        try {
+            if (dimension < 0) {
+                dimension = normalized.get(0).length;
+            }
+            for (float[] vector : normalized) {
+                checkDimension(vector.length);
+            }
+            Table current = table;
+            for (int i = 0; i < ids.size(); i++) {
+                current.append(ids.get(i), normalized.get(i), embedded == null ? null : embedded.get(i));
+            }
+            scheduleCompactionIfNeeded(current);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        writeLock.lock();
+        try {
+            Table current = table;
+            for (String id : ids) {
+                current.remove(id);
+            }
+            scheduleCompactionIfNeeded(current);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter cannot be null");
+        }
+        writeLock.lock();
+        try {
+            Table current = table;
+            MetadataIndex.Candidates candidates = current.metadataIndex.candidates(filter);
+            BitSet scan = candidates == null ? null : candidates.entries();
+            for (int i = scan == null ? 0 : scan.nextSetBit(0);
+                    i >= 0 && i < current.size;
+                    i = scan == null ? i + 1 : scan.nextSetBit(i + 1)) {
+                TextSegment segment = current.segment(i);
+                if (!current.isDeleted(i) && segment != null && filter.test(segment.metadata())) {
+                    current.remove(current.id(i));
+                }
+            }
+            scheduleCompactionIfNeeded(current);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        writeLock.lock();
+        try {
+            table = new Table();
+            dimension = -1;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        // read the count before the pages: a page is published before the count that covers it
+        Table current = table;
+        int count = current.size;
+        Page[] pages = current.pages;
+        if (count == 0) {
+            return new EmbeddingSearchResult<>(List.of());
+        }
+        float[] query = VectorMath.normalizedCopy(request.queryEmbedding().vector());
+        checkDimension(query.length);
+        Filter filter = request.filter();
+        int maxResults = request.maxResults();
+
+        PriorityQueue<Candidate> shortlist = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+        for (int i = 0; i < count; i++) {
+            Page page = pages[i >>> PAGE_SHIFT];
+            int offset = i & (PAGE_SIZE - 1);
+            if (page.isDeleted(offset)) {
+                continue;
+            }
+            float score = VectorMath.dot(query, page.vectors[offset]);
+            if (shortlist.size() == maxResults && score <= shortlist.peek().score()) {
+                continue;
+            }
+            TextSegment segment = page.segments[offset];
+            if (filter != null && (segment == null || !filter.test(segment.metadata()))) {
+                continue;
+            }
+            shortlist.add(new Candidate(page, offset, score));
+            if (shortlist.size() > maxResults) {
+                shortlist.poll();
+            }
+        }
+
+        List<Candidate> ranked = new ArrayList<>(shortlist);
+        ranked.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(ranked.size());
+        for (Candidate candidate : ranked) {
+            double score = RelevanceScore.fromCosineSimilarity(candidate.score());
+            if (score < request.minScore()) {
+                break;
+            }
+            Page page = candidate.page();
+            int offset = candidate.offset();
+            matches.add(new EmbeddingMatch<>(
+                    score, page.ids[offset], Embedding.from(page.vectors[offset].clone()), page.segments[offset]));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * Copies the live entries into fresh pages and swaps them in. Writers wait only while the writes
+     * made during the copy are replayed, which costs the number of those writes, not the size of the
+     * store; searches never wait.
+     */
+    public void compact() {
+        compactionLock.lock();
+        try {
+            Table source;
+            int copied;
+            writeLock.lock();
+            try {
+                source = table;
+                copied = source.size;
+                if (source.tombstones == 0) {
+                    return;
+                }
+                source.recordDeletes();
+            } finally {
+                writeLock.unlock();
+            }
+
+            // entries below `copied` are immutable apart from their tombstone bits
+            Table target = new Table();
+            int[] moved = new int[copied];
+            for (int i = 0; i < copied; i++) {
+                moved[i] = source.isDeleted(i) ? -1 : target.append(source.id(i), source.vector(i), source.segment(i));
+            }
+
+            writeLock.lock();
+            try {
+                if (table != source) {
+                    // removeAll() replaced the table while we were copying
+                    return;
+                }
+                // replay only what changed during the copy: the deletes recorded, then the appends
+                for (int r = 0; r < source.recordedDeleteCount; r++) {
+                    int i = source.recordedDeletes[r];
+                    if (i < copied && moved[i] >= 0) {
+                        target.remove(source.id(i));
+                    }
+                }
+                for (int i = copied; i < source.size; i++) {
+                    if (!source.isDeleted(i)) {
+                        target.append(source.id(i), source.vector(i), source.segment(i));
+                    }
+                }
+                table = target;
+                compactions.increment();
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private void scheduleCompactionIfNeeded(Table current) {
+        int tombstones = current.tombstones;
+        if (compactor == null || tombstones < minTombstones || tombstones < compactionThreshold * current.size) {
+            return;
+        }
+        if (compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private void checkDimension(int length) {
+        int expected = dimension;
+        if (expected >= 0 && length != expected) {
+            throw new IllegalArgumentException(
+                    "Embedding dimension " + length + " does not match store dimension " + expected);
+        }
+    }
+
+    /** Stops the background compactor, waiting for a running compaction to finish. */
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record Candidate(Page page, int offset, float score) {}
+
+    /**
+     * One generation of entries. Appends and tombstones happen under the store's write lock;
+     * searches read {@link #size} and {@link #pages} without it.
+     */
+    private static final class Table {
+        private final Map<String, Integer> indexById = new HashMap<>();
+        private final MetadataIndex metadataIndex = new MetadataIndex();
+        private volatile Page[] pages = new Page[0];
+        private volatile int size;
+        private volatile int tombstones;
+        // indexes tombstoned while a compaction copies this table, so it replays only those
+        private int[] recordedDeletes;
+        private int recordedDeleteCount;
+
+        int append(String id, float[] vector, TextSegment segment) {
+            int index = size;
+            int pageIndex = index >>> PAGE_SHIFT;
+            if (pageIndex == pages.length) {
+                Page[] grown = Arrays.copyOf(pages, pageIndex + 1);
+                grown[pageIndex] = new Page();
+                pages = grown;
+            }
+            Page page = pages[pageIndex];
+            int offset = index & (PAGE_SIZE - 1);
+            page.ids[offset] = id;
+            page.vectors[offset] = vector;
+            page.segments[offset] = segment;
+            if (segment != null) {
+                metadataIndex.add(index, segment.metadata());
+            }
+            // publish the new entry before hiding the one it replaces
+            size = index + 1;
+            Integer previous = indexById.put(id, index);
+            if (previous != null) {
+                delete(previous);
+            }
+            return index;
+        }
+
+        void remove(String id) {
+            Integer index = indexById.remove(id);
+            if (index != null) {
+                delete(index);
+            }
+        }
+
+        private void delete(int index) {
+            pages[index >>> PAGE_SHIFT].delete(index & (PAGE_SIZE - 1));
+            tombstones++;
+            if (recordedDeletes != null) {
+                if (recordedDeleteCount == recordedDeletes.length) {
+                    recordedDeletes = Arrays.copyOf(recordedDeletes, recordedDeleteCount * 2);
+                }
+                recordedDeletes[recordedDeleteCount++] = index;
+            }
+        }
+
+        /** From now on, remembers every index tombstoned; a compaction is about to copy this table. */
+        void recordDeletes() {
+            recordedDeletes = new int[16];
+            recordedDeleteCount = 0;
+        }
+
+        boolean isDeleted(int index) {
+            return pages[index >>> PAGE_SHIFT].isDeleted(index & (PAGE_SIZE - 1));
+        }
+
+        String id(int index) {
+            return pages[index >>> PAGE_SHIFT].ids[index & (PAGE_SIZE - 1)];
+        }
+
+        float[] vector(int index) {
+            return pages[index >>> PAGE_SHIFT].vectors[index & (PAGE_SIZE - 1)];
+        }
+
+        TextSegment segment(int index) {
+            return pages[index >>> PAGE_SHIFT].segments[index & (PAGE_SIZE - 1)];
+        }
+    }
+
+    /** A fixed block of entries; slots are written once and only their tombstone bits change after. */
+    private static final class Page {
+        private final String[] ids = new String[PAGE_SIZE];
+        private final float[][] vectors = new float[PAGE_SIZE][];
+        private final TextSegment[] segments = new TextSegment[PAGE_SIZE];
+        private final AtomicLongArray tombstones = new AtomicLongArray(PAGE_SIZE / Long.SIZE);
+
+        void delete(int offset) {
+            tombstones.getAndUpdate(offset >>> 6, word -> word | (1L << offset));
+        }
+
+        boolean isDeleted(int offset) {
+            return (tombstones.get(offset >>> 6) & (1L << offset)) != 0;
+        }
+    }
+
+    public static class Builder {
+        private double compactionThreshold = 0.25;
+        private int minTombstones = 1_000;
+        private boolean backgroundCompaction = true;
+
+        /** Fraction of tombstoned entries that triggers a background compaction. */
+        public Builder compactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /** Fewest tombstones worth a compaction, so small stores are not copied over and over. */
+        public Builder minTombstones(int minTombstones) {
+            this.minTombstones = minTombstones;
+            return this;
+        }
+
+        /** Whether to compact on a background thread; if not, call {@link #compact()} yourself. */
+        public Builder backgroundCompaction(boolean backgroundCompaction) {
+            this.backgroundCompaction = backgroundCompaction;
+            return this;
+        }
+
+        public CompactingEmbeddingStore build() {
+            return new CompactingEmbeddingStore(this);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A {@link DocumentSplitter} whose chunk boundaries depend on the text around them rather than on
+ * their position in the document.
+ *
+ * <p>{@code DocumentSplitters.recursive(300, 50)} fills each segment up to a size limit, so inserting
+ * one sentence near the top of a file shifts every later boundary and every later segment changes.
+ * This splitter runs a gear rolling hash (as in FastCDC) over the text and cuts wherever the hash of
+ * the last few dozen characters matches a bit mask. An edit only moves the boundaries in its own
+ * neighbourhood; after the next boundary the chunks are identical to before, which is what lets
+ * {@link IncrementalIndexer} re-embed only the segments that actually changed.
+ *
+ * <p>No chunk is cut before {@code minChars}, and every chunk is cut by {@code maxChars}; in between,
+ * a boundary is expected every {@code averageChars - minChars} characters or so. A boundary found by
+ * the hash is moved forward to the next whitespace so words are never split. Chunks have no overlap:
+ * overlapping text would tie each chunk to its neighbours and defeat the point.
+ */
+public class ContentDefinedChunker implements DocumentSplitter {
+
+    private static final long[] GEAR = gearTable();
+
+    private final int minChars;
+    private final int maxChars;
+    private final long mask;
+
+    private ContentDefinedChunker(Builder builder) {
+        if (builder.minChars < 1
+                || builder.averageChars <= builder.minChars
+                || builder.maxChars < builder.averageChars) {
+            throw new IllegalArgumentException("Required: 0 < minChars < averageChars <= maxChars");
+        }
+        this.minChars = builder.minChars;
+        this.maxChars = builder.maxChars;
+        // the top bits of a gear hash depend on the most characters; test those
+        int bits = 32 - Integer.numberOfLeadingZeros(builder.averageChars - builder.minChars - 1);
+        this.mask = bits == 0 ? 0 : -1L << (64 - bits);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<TextSegment> split(Document document) {
+        String text = document.text();
+        List<TextSegment> segments = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = nextBoundary(text, start);
+            String chunk = text.substring(start, end).strip();
+            if (!chunk.isEmpty()) {
+                Metadata metadata = document.metadata().copy();
+                metadata.put("index", String.valueOf(segments.size()));
+                segments.add(TextSegment.from(chunk, metadata));
+            }
+            start = end;
+        }
+        return segments;
+    }
+
+    /** The end (exclusive) of the chunk that starts at {@code start}. */
+    int nextBoundary(String text, int start) {
+        int limit = Math.min(text.length(), start + maxChars);
+        long hash = 0;
+        for (int i = start; i < limit; i++) {
+            char c = text.charAt(i);
+            hash = (hash << 1) + GEAR[(c ^ (c >>> 8)) & 0xff];
+            if (i + 1 - start >= minChars && (hash & mask) == 0) {
+                return endOfWord(text, i + 1, limit);
+            }
+        }
+        if (limit == text.length()) {
+            return limit;
+        }
+        // no boundary before maxChars: cut after the last complete word instead of inside one
+        for (int i = limit; i > start; i--) {
+            if (Character.isWhitespace(text.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private static int endOfWord(String text, int from, int limit) {
+        int i = from;
+        while (i < limit && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static long[] gearTable() {
+        // fixed seed: boundaries must be the same in every run for chunks to be reused
+        SplittableRandom random = new SplittableRandom(0x5EED_C0DEL);
+        long[] table = new long[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+        return table;
+    }
+
+    public static class Builder {
+        private int minChars = 150;
+        private int averageChars = 400;
+        private int maxChars = 1000;
+
+        /** Shortest chunk the hash may cut; shorter chunks only occur at the end of a document. */
+        public Builder minChars(int minChars) {
+            this.minChars = minChars;
+            return this;
+        }
+
+        /** Target chunk size; the gap after {@code minChars} is rounded up to a power of two. */
+        public Builder averageChars(int averageChars) {
+            this.averageChars = averageChars;
+            return this;
+        }
+
+        /** Hard limit: a chunk with no content-defined boundary is cut at the last word break before it. */
+        public Builder maxChars(int maxChars) {
+            this.maxChars = maxChars;
+            return this;
+        }
+
+        public ContentDefinedChunker build() {
+            return new ContentDefinedChunker(this);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ContentRetriever} decorator that cuts retrieved content down to the sentences most
+ * relevant to the query, within a token budget.
+ *
+ * <p>{@code EmbeddingStoreContentRetriever} returns whole segments, and the content injector pastes
+ * all of them into the prompt even when one sentence of each is all the question needs. Prompt tokens
+ * cost money and, through prefill, latency. This retriever splits each retrieved segment into
+ * sentences, embeds the query and all the sentences in one {@code embedAll} call, and keeps the
+ * highest-scoring sentences (by cosine similarity to the query) until {@code tokenBudget} is spent.
+ *
+ * <p>Kept sentences stay in their original order within their segment, and segments stay in the
+ * delegate's order. A segment with no kept sentence is dropped. The compressed segments keep their
+ * metadata, and each {@link Content} keeps its content metadata (score, embedding id). If everything
+ * retrieved already fits the budget, it is returned untouched without embedding anything.
+ *
+ * <p>The query is embedded here a second time, after the delegate (typically an {@code
+ * EmbeddingStoreContentRetriever}) has embedded it for its own search. Callers that already hold the
+ * query embedding can pass it to {@link #retrieve(Query, Embedding)} so only the sentences are embedded.
+ *
+ * <p>Tokens are counted with the configured {@link TokenCountEstimator} (for example {@code
+ * OpenAiTokenCountEstimator} for the chat model in use), or estimated at four characters per token.
+ */
+public class ContextCompressingContentRetriever implements ContentRetriever {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final ContentRetriever delegate;
+    private final EmbeddingModel embeddingModel;
+    private final int tokenBudget;
+    private final TokenCountEstimator tokenCountEstimator;
+    private final Locale locale;
+
+    private final LongAdder retrievals = new LongAdder();
+    private final LongAdder tokensRetrieved = new LongAdder();
+    private final LongAdder tokensReturned = new LongAdder();
+
+    private ContextCompressingContentRetriever(Builder builder) {
+        if (builder.delegate == null || builder.embeddingModel == null) {
+            throw new IllegalArgumentException("delegate and embeddingModel are required");
+        }
+        if (builder.tokenBudget < 1) {
+            throw new IllegalArgumentException("tokenBudget must be positive");
+        }
+        if (builder.locale == null) {
+            throw new IllegalArgumentException("locale cannot be null");
+        }
+        this.delegate = builder.delegate;
+        this.embeddingModel = builder.embeddingModel;
+        this.tokenBudget = builder.tokenBudget;
+        this.tokenCountEstimator = builder.tokenCountEstimator;
+        this.locale = builder.locale;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        return compress(query, null);
+    }
+
+    /**
+     * Like {@link #retrieve(Query)}, but scores sentences against {@code queryEmbedding} instead of
+     * embedding the query again. It must come from the same embedding model.
+     */
+    public List<Content> retrieve(Query query, Embedding queryEmbedding) {
+        if (queryEmbedding == null) {
+            throw new IllegalArgumentException("queryEmbedding cannot be null");
+        }
+        return compress(query, queryEmbedding);
+    }
+
+    private List<Content> compress(Query query, Embedding queryEmbedding) {
+        List<Content> contents = delegate.retrieve(query);
+        retrievals.increment();
+
+        List<Sentence> sentences = new ArrayList<>();
+        int totalTokens = 0;
+        for (int c = 0; c < contents.size(); c++) {
+            for (String text : sentences(contents.get(c).textSegment().text())) {
+                int tokens = countTokens(text);
+                sentences.add(new Sentence(c, sentences.size(), text, tokens));
+                totalTokens += tokens;
+            }
+        }
+        tokensRetrieved.add(totalTokens);
+        if (totalTokens <= tokenBudget) {
+            tokensReturned.add(totalTokens);
+            return contents;
+        }
+
+        // one embedAll call for the query (unless given) and every sentence
+        int first = queryEmbedding == null ? 1 : 0;
+        List<TextSegment> toEmbed = new ArrayList<>(sentences.size() + first);
+        if (queryEmbedding == null) {
+            toEmbed.add(TextSegment.from(query.text()));
+        }
+        sentences.forEach(sentence -> toEmbed.add(TextSegment.from(sentence.text())));
+        List<Embedding> embeddings = embeddingModel.embedAll(toEmbed).content();
+        float[] queryVector = queryEmbedding == null ? embeddings.get(0).vector() : queryEmbedding.vector();
+        float queryNorm = VectorMath.squaredNorm(queryVector);
+
+        List<Sentence> ranked = new ArrayList<>(sentences);
+        double[] scores = new double[sentences.size()];
+        for (Sentence sentence : sentences) {
+            scores[sentence.position()] = VectorMath.cosine(
+                    queryVector, queryNorm, embeddings.get(sentence.position() + first).vector());
+        }
+        ranked.sort(Comparator.comparingDouble((Sentence sentence) -> scores[sentence.position()])
+                .reversed());
+
+        // greedy by score: a sentence too long for what is left is skipped, shorter ones may still fit
+        boolean[] kept = new boolean[sentences.size()];
+        int remaining = tokenBudget;
+        for (Sentence sentence : ranked) {
+            if (sentence.tokens() <= remaining) {
+                kept[sentence.position()] = true;
+                remaining -= sentence.tokens();
+            }
+        }
+        tokensReturned.add(tokenBudget - remaining);
+
+        List<Content> compressed = new ArrayList<>();
+        for (int c = 0; c < contents.size(); c++) {
+            StringBuilder text = new StringBuilder();
+            for (Sentence sentence : sentences) {
+                if (sentence.content() == c && kept[sentence.position()]) {
+                    if (!text.isEmpty()) {
+                        text.append(' ');
+                    }
+                    text.append(sentence.text());
+                }
+            }
+            if (!text.isEmpty()) {
+                Content original = contents.get(c);
+                TextSegment segment = TextSegment.from(text.toString(), original.textSegment().metadata());
+                compressed.add(Content.from(segment, original.metadata()));
+            }
+        }
+        return compressed;
+    }
+
+    public CompressionStats stats() {
+        return new CompressionStats(retrievals.sum(), tokensRetrieved.sum(), tokensReturned.sum());
+    }
+
+    private List<String> sentences(String text) {
+        BreakIterator iterator = BreakIterator.getSentenceInstance(locale);
+        iterator.setText(text);
+        List<String> sentences = new ArrayList<>();
+        for (int start = iterator.first(), end = iterator.next();
+                end != BreakIterator.DONE;
+                start = end, end = iterator.next()) {
+            String sentence = text.substring(start, end).strip();
+            if (!sentence.isEmpty()) {
+                sentences.add(sentence);
+            }
+        }
+        return sentences;
+    }
+
+    private int countTokens(String text) {
+        return tokenCountEstimator != null
+                ? tokenCountEstimator.estimateTokenCountInText(text)
+                : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /** A sentence of the content at index {@code content}; {@code position} counts across all contents. */
+    private record Sentence(int content, int position, String text, int tokens) {}
+
+    /** Retrievals so far and the tokens of content before and after compression, summed over them. */
+    public record CompressionStats(long retrievals, long tokensRetrieved, long tokensReturned) {
+
+        /** Fraction of retrieved tokens that compression removed. */
+        public double reduction() {
+            return tokensRetrieved == 0 ? 0.0 : 1.0 - (double) tokensReturned / tokensRetrieved;
+        }
+    }
+
+    public static class Builder {
+        private ContentRetriever delegate;
+        private EmbeddingModel embeddingModel;
+        private int tokenBudget = 512;
+        private TokenCountEstimator tokenCountEstimator;
+        private Locale locale = Locale.ROOT;
+
+        public Builder delegate(ContentRetriever delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /** Embeds the query and the sentences; should be the model that embedded the store. */
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /** Most tokens of content returned per query, across all segments. */
+        public Builder tokenBudget(int tokenBudget) {
+            this.tokenBudget = tokenBudget;
+            return this;
+        }
+
+        /** Counts sentence tokens; defaults to an estimate of four characters per token. */
+        public Builder tokenCountEstimator(TokenCountEstimator tokenCountEstimator) {
+            this.tokenCountEstimator = tokenCountEstimator;
+            return this;
+        }
+
+        /** Language rules for finding sentence boundaries. */
+        public Builder locale(Locale locale) {
+            this.locale = locale;
+            return this;
+        }
+
+        public ContextCompressingContentRetriever build() {
+            return new ContextCompressingContentRetriever(this);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary snapshot format for embedding stores, as a fast alternative to {@code
+ * InMemoryEmbeddingStore.serializeToFile}.
+ *
+ * <p>The JSON form spells out every float in decimal and has to be parsed as one document, so a store
+ * with millions of segments takes gigabytes and minutes to restore. A snapshot is written as a stream
+ * of blocks of up to {@value #BLOCK_ENTRIES} entries, all little-endian:
+ *
+ * <ul>
+ *   <li>block: entry count, the vectors as one float block, then each entry's id, text and metadata
+ *       with strings as length-prefixed UTF-8 and metadata keys as indexes into a key dictionary
+ *   <li>footer: the key dictionary, then offset, length, entry count and CRC-32 of every block
+ *   <li>trailer: footer offset, dimension and the magic number
+ * </ul>
+ *
+ * <p>A {@link Writer} only holds one block in memory. {@link #read(Path)} reads the footer and then
+ * decodes all blocks in parallel, assembling them in their original order. The writer produces a
+ * temporary file and renames it into place on {@link Writer#commit()}, so neither a crash nor an
+ * exception while writing leaves a truncated snapshot in place of the last good one.
+ *
+ * <p>{@code InMemoryEmbeddingStore} has no way to list its entries, so {@link #write(EmbeddingStore,
+ * int, Path)} reads them with one search over the whole store. Entries whose vector is all zeros
+ * have no cosine similarity and are skipped by that search.
+ */
+public final class EmbeddingStoreSnapshot {
+
+    static final int BLOCK_ENTRIES = 4096;
+
+    private static final int MAGIC = 0x534E424D; // "MBNS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int TRAILER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte UUID_VALUE = 6;
+
+    private EmbeddingStoreSnapshot() {}
+
+    /** Writes every entry of {@code store}, whose vectors have {@code dimension} components, to {@code file}. */
+    public static void write(EmbeddingStore<TextSegment> store, int dimension, Path file) {
+        float[] probe = new float[dimension];
+        probe[0] = 1;
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(Embedding.from(probe))
+                        .maxResults(Integer.MAX_VALUE)
+                        .minScore(0.0)
+                        .build())
+                .matches();
+        try (Writer writer = writer(file, dimension)) {
+            for (EmbeddingMatch<TextSegment> match : matches) {
+                writer.add(match.embeddingId(), match.embedding(), match.embedded());
+            }
+            writer.commit();
+        }
+    }
+
+    /** Starts a streaming snapshot of vectors with {@code dimension} components. */
+    public static Writer writer(Path file, int dimension) {
+        return new Writer(file, dimension);
+    }
+
+    /** Restores a snapshot into a new {@link InMemoryEmbeddingStore}. */
+    public static InMemoryEmbeddingStore<TextSegment> read(Path file) {
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        readInto(file, store);
+        return store;
+    }
+
+    /** Adds every entry of a snapshot to {@code store} with one {@code addAll}; returns the count. */
+    public static int readInto(Path file, EmbeddingStore<TextSegment> store) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Footer footer = readFooter(channel, file);
+            Block[] blocks = new Block[footer.offsets().length];
+            // FileChannel positional reads are safe to issue from several threads at once
+            IntStream.range(0, blocks.length).parallel().forEach(i -> blocks[i] = readBlock(channel, footer, i, file));
+
+            int total = Arrays.stream(blocks).mapToInt(block -> block.ids().length).sum();
+            List<String> ids = new ArrayList<>(total);
+            List<Embedding> embeddings = new ArrayList<>(total);
+            List<TextSegment> segments = new ArrayList<>(total);
+            for (Block block : blocks) {
+                ids.addAll(Arrays.asList(block.ids()));
+                embeddings.addAll(Arrays.asList(block.embeddings()));
+                segments.addAll(Arrays.asList(block.segments()));
+            }
+            if (total > 0) {
+                store.addAll(ids, embeddings, segments);
+            }
+            return total;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + file, e);
+        }
+    }
+
+    private static Footer readFooter(FileChannel channel, Path file) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            throw new IOException("Not an embedding snapshot: " + file);
+        }
+        ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+        ByteBuffer trailer = readFully(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+        long footerOffset = trailer.getLong();
+        int dimension = trailer.getInt();
+        if (header.getInt() != MAGIC || trailer.getInt() != MAGIC) {
+            throw new IOException("Not an embedding snapshot: " + file);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " in " + file);
+        }
+        ByteBuffer footer = readFully(channel, footerOffset, (int) (size - TRAILER_BYTES - footerOffset));
+        String[] keys = new String[footer.getInt()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = getString(footer);
+        }
+        int blockCount = footer.getInt();
+        long[] offsets = new long[blockCount];
+        int[] lengths = new int[blockCount];
+        int[] checksums = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            offsets[i] = footer.getLong();
+            lengths[i] = footer.getInt();
+            checksums[i] = footer.getInt();
+        }
+        return new Footer(dimension, keys, offsets, lengths, checksums);
+    }
+
+    private static Block readBlock(FileChannel channel, Footer footer, int index, Path file) {
+        try {
+            ByteBuffer buffer = readFully(channel, footer.offsets()[index], footer.lengths()[index]);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if ((int) crc.getValue() != footer.checksums()[index]) {
+                throw new IOException("Corrupt block " + index + " in snapshot " + file);
+            }
+            int count = buffer.getInt();
+            int dimension = footer.dimension();
+            Embedding[] embeddings = new Embedding[count];
+            for (int i = 0; i < count; i++) {
+                float[] vector = new float[dimension];
+                buffer.asFloatBuffer().get(vector);
+                buffer.position(buffer.position() + dimension * Float.BYTES);
+                embeddings[i] = Embedding.from(vector);
+            }
+            String[] ids = new String[count];
+            TextSegment[] segments = new TextSegment[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = getString(buffer);
+                if (buffer.get() != 0) {
+                    String text = getString(buffer);
+                    segments[i] = TextSegment.from(text, getMetadata(buffer, footer.keys()));
+                }
+            }
+            return new Block(ids, embeddings, segments);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static Metadata getMetadata(ByteBuffer buffer, String[] keys) throws IOException {
+        int size = buffer.getInt();
+        Map<String, Object> map = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = keys[buffer.getInt()];
+            byte type = buffer.get();
+            map.put(key, switch (type) {
+                case STRING -> getString(buffer);
+                case INTEGER -> buffer.getInt();
+                case LONG -> buffer.getLong();
+                case FLOAT -> buffer.getFloat();
+                case DOUBLE -> buffer.getDouble();
+                case UUID_VALUE -> new UUID(buffer.getLong(), buffer.getLong());
+                default -> throw new IOException("Unknown metadata value type: " + type);
+            });
+        }
+        return Metadata.from(map);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value =
+                new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private record Footer(int dimension, String[] keys, long[] offsets, int[] lengths, int[] checksums) {}
+
+    private record Block(String[] ids, Embedding[] embeddings, TextSegment[] segments) {}
+
+    /**
+     * Streams entries into a snapshot one block at a time. Nothing is visible at {@code file} until
+     * {@link #commit()}; closing a writer that was not committed deletes what it wrote and leaves any
+     * existing snapshot at {@code file} alone.
+     */
+    public static final class Writer implements Closeable {
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final int dimension;
+        private final Map<String, Integer> keys = new LinkedHashMap<>();
+        private final List<long[]> blocks = new ArrayList<>(); // offset, length, checksum
+        private ByteBuffer vectors;
+        private ByteBuffer records = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private int pending;
+        private boolean closed;
+
+        private Writer(Path file, int dimension) {
+            if (dimension < 1) {
+                throw new IllegalArgumentException("dimension must be positive");
+            }
+            this.file = file.toAbsolutePath();
+            this.dimension = dimension;
+            this.vectors = ByteBuffer.allocate(BLOCK_ENTRIES * dimension * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                Files.createDirectories(this.file.getParent());
+                this.temp = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+                this.channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION);
+                writeFully(header.flip());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create snapshot " + file, e);
+            }
+        }
+
+        /** Appends one entry; {@code segment} may be {@code null} for a bare embedding. */
+        public Writer add(String id, Embedding embedding, TextSegment segment) {
+            if (closed) {
+                throw new IllegalStateException("Snapshot writer is closed");
+            }
+            float[] vector = embedding.vector();
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "Expected dimension " + dimension + " but got " + vector.length + " for " + id);
+            }
+            if (id == null) {
+                throw new IllegalArgumentException("id cannot be null");
+            }
+            // checked before anything is buffered, so a rejected entry leaves the block as it was
+            if (segment != null) {
+                checkMetadata(segment.metadata());
+            }
+            vectors.asFloatBuffer().put(vector);
+            vectors.position(vectors.position() + dimension * Float.BYTES);
+            putString(id);
+            if (segment == null) {
+                ensureRecordCapacity(1);
+                records.put((byte) 0);
+            } else {
+                ensureRecordCapacity(1);
+                records.put((byte) 1);
+                putString(segment.text());
+                putMetadata(segment.metadata());
+            }
+            if (++pending == BLOCK_ENTRIES) {
+                flushBlock();
+            }
+            return this;
+        }
+
+        /** Writes the last block and the footer, then moves the snapshot into place. */
+        public void commit() {
+            if (closed) {
+                throw new IllegalStateException("Snapshot writer is closed");
+            }
+            closed = true;
+            try {
+                flushBlock();
+                long footerOffset = channel.position();
+                records.clear();
+                ensureRecordCapacity(Integer.BYTES);
+                records.putInt(keys.size());
+                for (String key : keys.keySet()) {
+                    putString(key);
+                }
+                ensureRecordCapacity(Integer.BYTES + blocks.size() * (Long.BYTES + 2 * Integer.BYTES));
+                records.putInt(blocks.size());
+                for (long[] block : blocks) {
+                    records.putLong(block[0]).putInt((int) block[1]).putInt((int) block[2]);
+                }
+                ensureRecordCapacity(TRAILER_BYTES);
+                records.putLong(footerOffset).putInt(dimension).putInt(MAGIC);
+                writeFully(records.flip());
+                channel.force(true);
+                channel.close();
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                discard(e);
+                throw new UncheckedIOException("Cannot write snapshot " + file, e);
+            } catch (UncheckedIOException e) {
+                discard(e.getCause()); // from flushBlock
+                throw e;
+            }
+        }
+
+        /** Discards the snapshot unless it was committed. */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                channel.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot discard snapshot " + temp, e);
+            }
+        }
+
+        private void discard(IOException failure) {
+            try {
+                channel.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                failure.addSuppressed(suppressed);
+            }
+        }
+
+        private void flushBlock() throws UncheckedIOException {
+            if (pending == 0) {
+                return;
+            }
+            try {
+                ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                count.putInt(pending).flip();
+                vectors.flip();
+                records.flip();
+                CRC32 crc = new CRC32();
+                crc.update(count.duplicate());
+                crc.update(vectors.duplicate());
+                crc.update(records.duplicate());
+                long offset = channel.position();
+                int length = count.remaining() + vectors.remaining() + records.remaining();
+                writeFully(count);
+                writeFully(vectors);
+                writeFully(records);
+                blocks.add(new long[] {offset, length, (int) crc.getValue()});
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write snapshot " + file, e);
+            }
+            vectors.clear();
+            records.clear();
+            pending = 0;
+        }
+
+        private static void checkMetadata(Metadata metadata) {
+            for (Object value : metadata.toMap().values()) {
+                if (!(value instanceof String
+                        || value instanceof Integer
+                        || value instanceof Long
+                        || value instanceof Float
+                        || value instanceof Double
+                        || value instanceof UUID)) {
+                    throw new IllegalArgumentException("Unsupported metadata value type: " + value.getClass());
+                }
+            }
+        }
+
+        private void putMetadata(Metadata metadata) {
+            Map<String, Object> map = metadata.toMap();
+            ensureRecordCapacity(Integer.BYTES);
+            records.putInt(map.size());
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                ensureRecordCapacity(Integer.BYTES + 1 + 2 * Long.BYTES);
+                records.putInt(keys.computeIfAbsent(entry.getKey(), key -> keys.size()));
+                Object value = entry.getValue();
+                if (value instanceof String s) {
+                    records.put(STRING);
+                    putString(s);
+                } else if (value instanceof Integer i) {
+                    records.put(INTEGER).putInt(i);
+                } else if (value instanceof Long l) {
+                    records.put(LONG).putLong(l);
+                } else if (value instanceof Float f) {
+                    records.put(FLOAT).putFloat(f);
+                } else if (value instanceof Double d) {
+                    records.put(DOUBLE).putDouble(d);
+                } else if (value instanceof UUID u) {
+                    records.put(UUID_VALUE).putLong(u.getMostSignificantBits()).putLong(u.getLeastSignificantBits());
+                } else {
+                    throw new IllegalArgumentException("Unsupported metadata value type: " + value.getClass());
+                }
+            }
+        }
+
+        private void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureRecordCapacity(Integer.BYTES + bytes.length);
+            records.putInt(bytes.length).put(bytes);
+        }
+
+        private void ensureRecordCapacity(int bytes) {
+            if (records.remaining() < bytes) {
+                int capacity = Math.max(records.capacity() * 2, records.position() + bytes);
+                ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+                grown.put(records.flip());
+                records = grown;
+            }
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
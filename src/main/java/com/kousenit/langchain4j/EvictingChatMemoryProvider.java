@@ -0,0 +1,501 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link ChatMemoryProvider} that keeps a bounded number of message-window memories on the heap
+ * and spills the rest to a {@link ChatMemoryStore}.
+ *
+ * <p>The usual {@code memoryId -> MessageWindowChatMemory.withMaxMessages(10)} lambda is called
+ * once per memory id and {@code AiServices} keeps every memory it returns, so the heap grows with
+ * every user who has ever chatted. This provider holds at most {@code maxMemories} memories. When it
+ * is full, the least recently used memory is evicted. With an {@code idleTimeout}, a memory that has
+ * not been asked for in that long is evicted as well. An evicted memory's messages are written to
+ * the store with {@code updateMessages}, and the next {@link #get(Object)} for that id reloads them,
+ * so a returning user finds their history. While a memory is on the heap, turns do not touch the
+ * store at all.
+ *
+ * <p>Memories are spread over {@code stripes} independently locked access-ordered maps, so
+ * concurrent requests for different users rarely wait for each other. Idle memories are found with
+ * a hashed timing wheel per stripe rather than a scheduled task per memory: a memory sits in the
+ * slot for its deadline, a request only records the access time, and when the wheel reaches the slot
+ * an entry that was used since is moved to the slot for its new deadline. A memory evicted as least
+ * recently used is unlinked from its slot at once, so it does not stay on the heap until its
+ * deadline. The wheel advances on every {@code get} and, unless {@code backgroundEviction} is off,
+ * on a daemon thread once per tick (one sixty-fourth of the timeout), so idle memories are spilled
+ * at most a tick late.
+ *
+ * <p>Each memory keeps the last {@code maxMessages} messages, like {@code MessageWindowChatMemory}:
+ * the system message is never evicted, and tool results are evicted together with the AI message
+ * that requested them. A memory handle kept by a caller after it was evicted passes its calls on to
+ * the memory now loaded for its id. {@link #close()} spills every memory still on the heap.
+ */
+public class EvictingChatMemoryProvider implements ChatMemoryProvider, Closeable {
+
+    private static final int WHEEL_SLOTS = 128;
+    private static final int TICKS_PER_TIMEOUT = 64;
+
+    private final Stripe[] stripes;
+    private final int perStripe;
+    private final int maxMessages;
+    private final long idleTimeoutNanos;
+    private final long tickNanos;
+    private final ChatMemoryStore store;
+    private final LongSupplier nanoTime;
+    private final Thread ticker;
+    private volatile boolean closed;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder lruEvictions = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAdder spills = new LongAdder();
+
+    private EvictingChatMemoryProvider(Builder builder) {
+        if (builder.maxMemories < 1 || builder.maxMessages < 1) {
+            throw new IllegalArgumentException("maxMemories and maxMessages must be positive");
+        }
+        if (builder.stripes < 1 || Integer.bitCount(builder.stripes) != 1) {
+            throw new IllegalArgumentException("stripes must be a power of two");
+        }
+        if (builder.idleTimeout != null && builder.idleTimeout.toNanos() < TICKS_PER_TIMEOUT) {
+            throw new IllegalArgumentException("idleTimeout is too short");
+        }
+        if (builder.chatMemoryStore == null || builder.nanoTime == null) {
+            throw new IllegalArgumentException("chatMemoryStore and nanoTime cannot be null");
+        }
+        int stripeCount = Math.min(builder.stripes, Integer.highestOneBit(builder.maxMemories));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.perStripe = builder.maxMemories / stripeCount;
+        this.maxMessages = builder.maxMessages;
+        this.idleTimeoutNanos = builder.idleTimeout == null ? 0 : builder.idleTimeout.toNanos();
+        this.tickNanos = idleTimeoutNanos / TICKS_PER_TIMEOUT;
+        this.store = builder.chatMemoryStore;
+        this.nanoTime = builder.nanoTime;
+        if (idleTimeoutNanos > 0 && builder.backgroundEviction) {
+            this.ticker = new Thread(this::tickUntilClosed, "chat-memory-eviction");
+            ticker.setDaemon(true);
+            ticker.start();
+        } else {
+            this.ticker = null;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public ChatMemory get(Object memoryId) {
+        if (memoryId == null) {
+            throw new IllegalArgumentException("memoryId cannot be null");
+        }
+        Stripe stripe = stripeFor(memoryId);
+        long now = nanoTime.getAsLong();
+        stripe.lock.lock();
+        try {
+            if (idleTimeoutNanos > 0) {
+                stripe.advance(now);
+            }
+            Memory memory = stripe.memories.get(memoryId);
+            if (memory != null) {
+                memory.lastAccess = now;
+                hits.increment();
+                return memory;
+            }
+            // loading under the stripe lock orders it after any spill of the same id
+            memory = new Memory(memoryId, store.getMessages(memoryId), now);
+            loads.increment();
+            if (!memory.messages.isEmpty()) {
+                reloads.increment();
+            }
+            stripe.memories.put(memoryId, memory);
+            if (idleTimeoutNanos > 0) {
+                stripe.schedule(memory);
+            }
+            if (stripe.memories.size() > perStripe) {
+                Iterator<Memory> eldest = stripe.memories.values().iterator();
+                Memory evicted = eldest.next();
+                eldest.remove();
+                stripe.unschedule(evicted);
+                spill(evicted);
+                lruEvictions.increment();
+            }
+            return memory;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /** Spills every memory that has been idle for longer than {@code idleTimeout}. */
+    public void cleanUp() {
+        if (idleTimeoutNanos == 0) {
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.advance(nanoTime.getAsLong());
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /** Number of memories on the heap. */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.memories.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public ProviderStats stats() {
+        return new ProviderStats(
+                size(),
+                hits.sum(),
+                loads.sum(),
+                reloads.sum(),
+                lruEvictions.sum(),
+                idleEvictions.sum(),
+                spills.sum());
+    }
+
+    /** Stops the eviction thread and spills every memory still on the heap. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (ticker != null) {
+            ticker.interrupt();
+            try {
+                ticker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.memories.values().forEach(this::spill);
+                stripe.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private Stripe stripeFor(Object memoryId) {
+        int hash = memoryId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /** Called with the stripe lock held, after the memory has left the map. */
+    private void spill(Memory memory) {
+        synchronized (memory) {
+            memory.evicted = true;
+            if (memory.dirty) {
+                store.updateMessages(memory.id, memory.messages);
+                memory.dirty = false;
+                spills.increment();
+            }
+        }
+    }
+
+    private void tickUntilClosed() {
+        while (!closed) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(tickNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            cleanUp();
+        }
+    }
+
+    private final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<Object, Memory> memories = new LinkedHashMap<>(16, 0.75f, true);
+        // the first memory of each slot, linked through Memory.previous and Memory.next
+        private final Memory[] wheel = new Memory[WHEEL_SLOTS];
+        private boolean started; // System.nanoTime() may be negative, so no tick value can mean unset
+        private long tick;
+
+        /** Evicts the memories due in the slots between the last tick and now; callers hold the lock. */
+        void advance(long now) {
+            long target = Math.floorDiv(now, tickNanos);
+            if (!started) {
+                started = true;
+                tick = target;
+                return;
+            }
+            if (target <= tick) {
+                return;
+            }
+            List<Memory> due = new ArrayList<>();
+            for (long t = tick + 1, slots = 0; t <= target && slots < WHEEL_SLOTS; t++, slots++) {
+                int slot = slot(t);
+                for (Memory memory = wheel[slot]; memory != null; ) {
+                    Memory next = memory.next;
+                    memory.previous = null;
+                    memory.next = null;
+                    memory.slot = -1;
+                    due.add(memory);
+                    memory = next;
+                }
+                wheel[slot] = null;
+            }
+            tick = target;
+            for (Memory memory : due) {
+                if (now - memory.lastAccess >= idleTimeoutNanos) {
+                    memories.remove(memory.id);
+                    spill(memory);
+                    idleEvictions.increment();
+                } else {
+                    schedule(memory);
+                }
+            }
+        }
+
+        /** Puts the memory in the slot of its deadline, which is never more than a timeout ahead. */
+        void schedule(Memory memory) {
+            if (!started) {
+                started = true;
+                tick = Math.floorDiv(memory.lastAccess, tickNanos);
+            }
+            long deadline = Math.max(Math.floorDiv(memory.lastAccess + idleTimeoutNanos, tickNanos), tick + 1);
+            int slot = slot(deadline);
+            memory.slot = slot;
+            memory.next = wheel[slot];
+            if (memory.next != null) {
+                memory.next.previous = memory;
+            }
+            wheel[slot] = memory;
+        }
+
+        /** Takes a memory evicted as least recently used out of its slot, so it can be collected now. */
+        void unschedule(Memory memory) {
+            if (memory.slot < 0) {
+                return;
+            }
+            if (memory.previous == null) {
+                wheel[memory.slot] = memory.next;
+            } else {
+                memory.previous.next = memory.next;
+            }
+            if (memory.next != null) {
+                memory.next.previous = memory.previous;
+            }
+            memory.previous = null;
+            memory.next = null;
+            memory.slot = -1;
+        }
+
+        /** Empties the map and the wheel. */
+        void clear() {
+            memories.clear();
+            Arrays.fill(wheel, null);
+        }
+
+        private static int slot(long tick) {
+            return (int) (tick & (WHEEL_SLOTS - 1));
+        }
+    }
+
+    private final class Memory implements ChatMemory {
+
+        private final Object id;
+        private final List<ChatMessage> messages;
+        private volatile long lastAccess;
+        private boolean dirty;
+        private boolean evicted;
+        // the wheel slot the memory is in, or -1, and its neighbours there; guarded by the stripe lock
+        private int slot = -1;
+        private Memory previous;
+        private Memory next;
+
+        Memory(Object id, List<ChatMessage> stored, long now) {
+            this.id = id;
+            this.messages = new ArrayList<>(stored);
+            this.lastAccess = now;
+        }
+
+        @Override
+        public Object id() {
+            return id;
+        }
+
+        @Override
+        public void add(ChatMessage message) {
+            synchronized (this) {
+                if (!evicted) {
+                    append(message);
+                    return;
+                }
+            }
+            // a stale handle; the monitor is released first because get() takes the stripe lock
+            EvictingChatMemoryProvider.this.get(id).add(message);
+        }
+
+        @Override
+        public List<ChatMessage> messages() {
+            synchronized (this) {
+                if (!evicted) {
+                    return new ArrayList<>(messages);
+                }
+            }
+            return EvictingChatMemoryProvider.this.get(id).messages();
+        }
+
+        @Override
+        public void clear() {
+            synchronized (this) {
+                if (!evicted) {
+                    messages.clear();
+                    dirty = false;
+                    store.deleteMessages(id);
+                    return;
+                }
+            }
+            EvictingChatMemoryProvider.this.get(id).clear();
+        }
+
+        private void append(ChatMessage message) {
+            if (message instanceof SystemMessage) {
+                int existing = systemMessageIndex();
+                if (existing >= 0) {
+                    if (messages.get(existing).equals(message)) {
+                        return;
+                    }
+                    messages.remove(existing);
+                }
+                messages.add(0, message);
+            } else {
+                messages.add(message);
+            }
+            dirty = true;
+            while (messages.size() > maxMessages) {
+                int oldest = messages.get(0) instanceof SystemMessage ? 1 : 0;
+                ChatMessage evicted = messages.remove(oldest);
+                if (evicted instanceof AiMessage ai && ai.hasToolExecutionRequests()) {
+                    // results without their request would be rejected by the model
+                    while (oldest < messages.size() && messages.get(oldest) instanceof ToolExecutionResultMessage) {
+                        messages.remove(oldest);
+                    }
+                }
+            }
+        }
+
+        private int systemMessageIndex() {
+            for (int i = 0; i < messages.size(); i++) {
+                if (messages.get(i) instanceof SystemMessage) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Memories on the heap, requests served from them, memories created (and how many of those found
+     * messages in the store), memories evicted as least recently used or idle, and spills to the store.
+     */
+    public record ProviderStats(
+            int memories, long hits, long loads, long reloads, long lruEvictions, long idleEvictions, long spills) {
+
+        public double hitRatio() {
+            long requests = hits + loads;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+
+    public static class Builder {
+        private int maxMemories = 100_000;
+        private Duration idleTimeout;
+        private int maxMessages = 10;
+        private int stripes = 64;
+        private boolean backgroundEviction = true;
+        private ChatMemoryStore chatMemoryStore = new InMemoryChatMemoryStore();
+        private LongSupplier nanoTime = System::nanoTime;
+
+        /** Memories kept on the heap, shared evenly between the stripes (default 100,000). */
+        public Builder maxMemories(int maxMemories) {
+            this.maxMemories = maxMemories;
+            return this;
+        }
+
+        /** Spill memories that have not been asked for in this long (default: only when full). */
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /** Messages kept per memory (default 10). */
+        public Builder maxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        /** Independently locked maps, a power of two (default 64). */
+        public Builder stripes(int stripes) {
+            this.stripes = stripes;
+            return this;
+        }
+
+        /** Advance the timing wheels on a daemon thread as well as on every request (default true). */
+        public Builder backgroundEviction(boolean backgroundEviction) {
+            this.backgroundEviction = backgroundEviction;
+            return this;
+        }
+
+        /** Where evicted memories are spilled and reloaded from (default in-memory). */
+        public Builder chatMemoryStore(ChatMemoryStore chatMemoryStore) {
+            this.chatMemoryStore = chatMemoryStore;
+            return this;
+        }
+
+        /**
+         * Source of the time that idle timeouts are measured in, in nanoseconds (default {@code
+         * System::nanoTime}); tests pass a clock they advance themselves.
+         */
+        public Builder nanoTime(LongSupplier nanoTime) {
+            this.nanoTime = nanoTime;
+            return this;
+        }
+
+        public EvictingChatMemoryProvider build() {
+            return new EvictingChatMemoryProvider(this);
+        }
+    }
+}
@@ -0,0 +1,564 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * An {@link EmbeddingStore} backed by a Hierarchical Navigable Small World (HNSW) graph.
+ *
+ * <p>{@code InMemoryEmbeddingStore} scores every stored vector on each search, so query latency
+ * grows linearly with the corpus. HNSW trades a small, tunable amount of recall for logarithmic
+ * search: vectors are linked into a layered proximity graph and a query greedily walks from a sparse
+ * top layer down to the dense bottom layer, only scoring the nodes it visits.
+ *
+ * <p>The three classic knobs are exposed on the builder:
+ *
+ * <ul>
+ *   <li>{@code m} - links per node on the upper layers (twice that on layer 0)
+ *   <li>{@code efConstruction} - candidate list size while inserting; higher builds a better graph
+ *   <li>{@code efSearch} - candidate list size while querying; higher means better recall, slower
+ * </ul>
+ *
+ * <p>Vectors are normalized on insert so the graph ranks by cosine similarity, and scores are
+ * reported with {@link RelevanceScore#fromCosineSimilarity(double)} exactly like the in-memory
+ * store. Removal marks nodes as deleted: they are still used to navigate the graph but never
+ * returned. Metadata filters are resolved through a {@link MetadataIndex} first; when only a few
+ * entries pass, those are scored directly instead of walking the graph. The store is a drop-in for
+ * {@code EmbeddingStoreContentRetriever.builder().embeddingStore(...)}.
+ */
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private static final Comparator<Candidate> NEAREST_FIRST =
+            Comparator.comparingDouble(Candidate::score).reversed();
+    private static final Comparator<Candidate> FURTHEST_FIRST = Comparator.comparingDouble(Candidate::score);
+
+    private final int m;
+    private final int maxLinksLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private volatile int efSearch;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<String, Integer> nodeIndexById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private final MetadataIndex metadataIndex = new MetadataIndex();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int dimension = -1;
+
+    private HnswEmbeddingStore(Builder builder) {
+        if (builder.m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        if (builder.efConstruction < 1 || builder.efSearch < 1) {
+            throw new IllegalArgumentException("efConstruction and efSearch must be positive");
+        }
+        this.m = builder.m;
+        this.maxLinksLayer0 = builder.m * 2;
+        this.efConstruction = builder.efConstruction;
+        this.efSearch = builder.efSearch;
+        this.levelMultiplier = 1.0 / Math.log(builder.m);
+        this.random = new Random(builder.seed);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Changes the query-time candidate list size; safe to call while searches are running. */
+    public void efSearch(int efSearch) {
+        if (efSearch < 1) {
+            throw new IllegalArgumentException("efSearch must be positive");
+        }
+        this.efSearch = efSearch;
+    }
+
+    public int efSearch() {
+        return efSearch;
+    }
+
+    /** Number of live (not deleted) entries. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size() - deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), textSegment == null ? null : List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                insert(ids.get(i), embeddings.get(i), embedded == null ? null : embedded.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer index = nodeIndexById.remove(id);
+                if (index != null) {
+                    deleted.set(index);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                if (!deleted.get(i) && node.segment != null && filter.test(node.segment.metadata())) {
+                    nodeIndexById.remove(node.id);
+                    deleted.set(i);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            nodes.clear();
+            nodeIndexById.clear();
+            deleted.clear();
+            metadataIndex.clear();
+            entryPoint = -1;
+            maxLevel = -1;
+            dimension = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = VectorMath.normalizedCopy(request.queryEmbedding().vector());
+            checkDimension(query.length);
+
+            int ef = Math.max(efSearch, request.maxResults());
+            PriorityQueue<Candidate> found;
+            Filter filter = request.filter();
+            MetadataIndex.Candidates candidates = filter == null ? null : metadataIndex.candidates(filter);
+            if (candidates == null) {
+                int current = greedyDescend(query, entryPoint, maxLevel, 0);
+                found = searchLayer(query, current, ef, 0, acceptPredicate(filter));
+            } else {
+                BitSet allowed = candidates.entries();
+                allowed.andNot(deleted);
+                IntPredicate accept = candidates.exact()
+                        ? allowed::get
+                        : node -> allowed.get(node) && filter.test(nodes.get(node).segment.metadata());
+                // A selective filter leaves the graph walk few acceptable nodes to fill its result
+                // list with, so it ends up visiting most of the graph. Scoring the survivors directly
+                // is exact and cheaper whenever they are about as many as one walk would score.
+                if (allowed.cardinality() <= ef * maxLinksLayer0) {
+                    found = scoreAll(query, allowed, ef, accept);
+                } else {
+                    int current = greedyDescend(query, entryPoint, maxLevel, 0);
+                    found = searchLayer(query, current, ef, 0, accept);
+                }
+            }
+
+            List<Candidate> ranked = new ArrayList<>(found);
+            ranked.sort(NEAREST_FIRST);
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+            for (Candidate candidate : ranked) {
+                if (matches.size() == request.maxResults()) {
+                    break;
+                }
+                double score = RelevanceScore.fromCosineSimilarity(candidate.score());
+                if (score < request.minScore()) {
+                    break;
+                }
+                Node node = nodes.get(candidate.node());
+                matches.add(new EmbeddingMatch<>(score, node.id, node.embedding, node.segment));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private IntPredicate acceptPredicate(Filter filter) {
+        if (filter == null) {
+            return node -> !deleted.get(node);
+        }
+        return node -> {
+            if (deleted.get(node)) {
+                return false;
+            }
+            TextSegment segment = nodes.get(node).segment;
+            return segment != null && filter.test(segment.metadata());
+        };
+    }
+
+    private void insert(String id, Embedding embedding, TextSegment segment) {
+        float[] vector = VectorMath.normalizedCopy(embedding.vector());
+        if (dimension < 0) {
+            dimension = vector.length;
+        }
+        checkDimension(vector.length);
+
+        Integer existing = nodeIndexById.get(id);
+        if (existing != null) {
+            deleted.set(existing);
+        }
+
+        int level = randomLevel();
+        int index = nodes.size();
+        Node node = new Node(id, embedding, segment, vector, level, m, maxLinksLayer0);
+        nodes.add(node);
+        nodeIndexById.put(id, index);
+        if (segment != null) {
+            metadataIndex.add(index, segment.metadata());
+        }
+
+        if (entryPoint < 0) {
+            entryPoint = index;
+            maxLevel = level;
+            return;
+        }
+
+        int current = greedyDescend(vector, entryPoint, maxLevel, level + 1);
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            PriorityQueue<Candidate> candidates = searchLayer(vector, current, efConstruction, layer, n -> true);
+            int maxLinks = layer == 0 ? maxLinksLayer0 : m;
+            List<Candidate> neighbours = selectNeighbours(candidates, m);
+            for (Candidate neighbour : neighbours) {
+                node.link(layer, neighbour.node());
+                connect(neighbour.node(), index, layer, maxLinks);
+            }
+            current = nearest(candidates).node();
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = index;
+        }
+    }
+
+    private void connect(int from, int to, int layer, int maxLinks) {
+        Node node = nodes.get(from);
+        if (node.linkCount[layer] < maxLinks) {
+            node.link(layer, to);
+            return;
+        }
+        // Over capacity: re-run the neighbour heuristic over the existing links plus the new one.
+        PriorityQueue<Candidate> pool = new PriorityQueue<>(FURTHEST_FIRST);
+        pool.add(new Candidate(to, dot(node.vector, nodes.get(to).vector)));
+        for (int i = 0; i < node.linkCount[layer]; i++) {
+            int neighbour = node.links[layer][i];
+            pool.add(new Candidate(neighbour, dot(node.vector, nodes.get(neighbour).vector)));
+        }
+        List<Candidate> kept = selectNeighbours(pool, maxLinks);
+        node.linkCount[layer] = 0;
+        for (Candidate candidate : kept) {
+            node.link(layer, candidate.node());
+        }
+    }
+
+    /**
+     * The HNSW neighbour-selection heuristic: walk candidates nearest first and keep one only if it
+     * is closer to the base node than to every neighbour already kept. This spreads links across
+     * clusters instead of spending them all on one dense neighbourhood.
+     */
+    private List<Candidate> selectNeighbours(PriorityQueue<Candidate> candidates, int max) {
+        List<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(NEAREST_FIRST);
+        List<Candidate> selected = new ArrayList<>(max);
+        for (Candidate candidate : sorted) {
+            if (selected.size() >= max) {
+                break;
+            }
+            float[] vector = nodes.get(candidate.node()).vector;
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (dot(vector, nodes.get(kept.node()).vector) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            }
+        }
+        return selected;
+    }
+
+    private int greedyDescend(float[] query, int start, int fromLayer, int toLayer) {
+        int current = start;
+        float currentScore = dot(query, nodes.get(current).vector);
+        for (int layer = fromLayer; layer >= toLayer; layer--) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                Node node = nodes.get(current);
+                for (int i = 0; i < node.linkCount[layer]; i++) {
+                    int neighbour = node.links[layer][i];
+                    float score = dot(query, nodes.get(neighbour).vector);
+                    if (score > currentScore) {
+                        currentScore = score;
+                        current = neighbour;
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer. Every visited node is used for navigation, but only nodes that
+     * pass {@code accept} enter the result set, so filtered and deleted entries never crowd out real
+     * results.
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int start, int ef, int layer, IntPredicate accept) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(nodes.size());
+
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FURTHEST_FIRST);
+
+        Candidate first = new Candidate(start, dot(query, nodes.get(start).vector));
+        visited.mark(start);
+        frontier.add(first);
+        if (accept.test(start)) {
+            results.add(first);
+        }
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (results.size() >= ef && closest.score() < results.peek().score()) {
+                break;
+            }
+            Node node = nodes.get(closest.node());
+            for (int i = 0; i < node.linkCount[layer]; i++) {
+                int neighbour = node.links[layer][i];
+                if (!visited.mark(neighbour)) {
+                    continue;
+                }
+                float score = dot(query, nodes.get(neighbour).vector);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Candidate candidate = new Candidate(neighbour, score);
+                    frontier.add(candidate);
+                    if (accept.test(neighbour)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /** Brute-force counterpart of {@link #searchLayer}, over the entries the metadata index allowed. */
+    private PriorityQueue<Candidate> scoreAll(float[] query, BitSet allowed, int ef, IntPredicate accept) {
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FURTHEST_FIRST);
+        for (int node = allowed.nextSetBit(0); node >= 0; node = allowed.nextSetBit(node + 1)) {
+            if (!accept.test(node)) {
+                continue;
+            }
+            results.add(new Candidate(node, dot(query, nodes.get(node).vector)));
+            if (results.size() > ef) {
+                results.poll();
+            }
+        }
+        return results;
+    }
+
+    private static Candidate nearest(PriorityQueue<Candidate> candidates) {
+        Candidate best = null;
+        for (Candidate candidate : candidates) {
+            if (best == null || candidate.score() > best.score()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private void checkDimension(int length) {
+        if (dimension >= 0 && length != dimension) {
+            throw new IllegalArgumentException(
+                    "Embedding dimension " + length + " does not match store dimension " + dimension);
+        }
+    }
+
+    private static float dot(float[] a, float[] b) {
+        return VectorMath.dot(a, b);
+    }
+
+    private record Candidate(int node, float score) {}
+
+    private static final class Node {
+        final String id;
+        final Embedding embedding;
+        final TextSegment segment;
+        final float[] vector;
+        final int[][] links;
+        final int[] linkCount;
+
+        Node(String id, Embedding embedding, TextSegment segment, float[] vector, int level, int m, int m0) {
+            this.id = id;
+            this.embedding = embedding;
+            this.segment = segment;
+            this.vector = vector;
+            this.links = new int[level + 1][];
+            this.linkCount = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                links[layer] = new int[layer == 0 ? m0 : m];
+            }
+        }
+
+        void link(int layer, int neighbour) {
+            links[layer][linkCount[layer]++] = neighbour;
+        }
+    }
+
+    /** Generation-stamped visited marks so a search does not allocate a fresh bitmap each time. */
+    private static final class VisitedSet {
+        private int[] stamps = new int[0];
+        private int generation;
+
+        void reset(int size) {
+            if (stamps.length < size) {
+                stamps = new int[Math.max(size, stamps.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+        }
+
+        /** Returns {@code true} if the node had not been visited yet. */
+        boolean mark(int node) {
+            if (stamps[node] == generation) {
+                return false;
+            }
+            stamps[node] = generation;
+            return true;
+        }
+    }
+
+    public static class Builder {
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 50;
+        private long seed = 42L;
+
+        public Builder m(int m) {
+            this.m = m;
+            return this;
+        }
+
+        public Builder efConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        public Builder efSearch(int efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /** Seed for the random level assignment, so builds are reproducible. */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public HnswEmbeddingStore build() {
+            return new HnswEmbeddingStore(this);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ContentRetriever} that combines keyword (BM25) and vector search.
+ *
+ * <p>Embeddings capture meaning but blur exact identifiers: a question about {@code ChatModel} or
+ * {@code AiServices} may rank a paragraph about "language models" above the one that names the
+ * class. This retriever keeps a {@link Bm25Index} over the same segments as the embedding store, runs
+ * both searches concurrently and merges them with reciprocal rank fusion: each segment scores {@code
+ * sum(1 / (rrfK + rank))} over the lists it appears in, so a segment near the top of either list
+ * makes the cut and one near the top of both ranks first.
+ *
+ * <p>The whole retrieval shares one {@code timeout}. The keyword search runs on the calling thread
+ * while the query is embedded and searched on a background thread; if the vector side has not
+ * finished when the budget runs out, its result is abandoned and the keyword results are returned
+ * alone (counted in {@link #vectorTimeouts()}).
+ *
+ * <p>Segments must be added through {@link #add(List)} or {@link #addAll(List, List, List)}, and
+ * removed through {@link #remove(Collection)}, so that both indexes see them. Plug it in like any
+ * other retriever: {@code AiServices.builder(Assistant.class).contentRetriever(hybridRetriever)}.
+ */
+public class HybridContentRetriever implements ContentRetriever {
+
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingModel embeddingModel;
+    private final Bm25Index keywordIndex = new Bm25Index();
+    private final int maxResults;
+    private final int candidates;
+    private final int rrfK;
+    private final Duration timeout;
+    private final ExecutorService executor;
+    private final LongAdder vectorTimeouts = new LongAdder();
+
+    private HybridContentRetriever(Builder builder) {
+        if (builder.embeddingStore == null || builder.embeddingModel == null) {
+            throw new IllegalArgumentException("embeddingStore and embeddingModel are required");
+        }
+        if (builder.maxResults < 1 || builder.rrfK < 1) {
+            throw new IllegalArgumentException("maxResults and rrfK must be positive");
+        }
+        if (builder.timeout == null || builder.timeout.isNegative() || builder.timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.embeddingStore = builder.embeddingStore;
+        this.embeddingModel = builder.embeddingModel;
+        this.maxResults = builder.maxResults;
+        this.candidates = builder.candidates > 0 ? builder.candidates : builder.maxResults * 4;
+        this.rrfK = builder.rrfK;
+        this.timeout = builder.timeout;
+        this.executor = builder.executor != null ? builder.executor : defaultExecutor();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Embeds the segments, adds them to the embedding store and indexes their text; returns the ids. */
+    public List<String> add(List<TextSegment> segments) {
+        List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+        List<String> ids = embeddingStore.addAll(embeddings, segments);
+        for (int i = 0; i < ids.size(); i++) {
+            keywordIndex.add(ids.get(i), segments.get(i));
+        }
+        return ids;
+    }
+
+    /** Adds already embedded segments under the given ids, replacing any segment already added under one. */
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        // not every store replaces on add, and a duplicate would be fused twice
+        List<String> existing = ids.stream().filter(keywordIndex::contains).toList();
+        if (!existing.isEmpty()) {
+            embeddingStore.removeAll(existing);
+        }
+        embeddingStore.addAll(ids, embeddings, segments);
+        for (int i = 0; i < ids.size(); i++) {
+            keywordIndex.add(ids.get(i), segments.get(i));
+        }
+    }
+
+    /** Removes the segments with the given ids from both the embedding store and the keyword index. */
+    public void remove(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        embeddingStore.removeAll(ids);
+        ids.forEach(keywordIndex::remove);
+    }
+
+    /** Number of retrievals that returned keyword results only because vector search ran out of time. */
+    public long vectorTimeouts() {
+        return vectorTimeouts.sum();
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletableFuture<List<EmbeddingMatch<TextSegment>>> vectorSearch =
+                CompletableFuture.supplyAsync(() -> vectorSearch(query.text()), executor);
+        List<Bm25Index.Hit> keywordHits = keywordIndex.search(query.text(), candidates);
+
+        List<EmbeddingMatch<TextSegment>> vectorMatches;
+        try {
+            vectorMatches = vectorSearch.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            vectorSearch.cancel(true);
+            vectorTimeouts.increment();
+            vectorMatches = List.of();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Vector search failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            vectorSearch.cancel(true);
+            vectorMatches = List.of();
+        }
+        return fuse(keywordHits, vectorMatches);
+    }
+
+    private List<EmbeddingMatch<TextSegment>> vectorSearch(String text) {
+        Embedding queryEmbedding = embeddingModel.embed(text).content();
+        return embeddingStore
+                .search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(queryEmbedding)
+                        .maxResults(candidates)
+                        .build())
+                .matches();
+    }
+
+    private List<Content> fuse(List<Bm25Index.Hit> keywordHits, List<EmbeddingMatch<TextSegment>> vectorMatches) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, TextSegment> segments = new LinkedHashMap<>();
+        for (int rank = 0; rank < vectorMatches.size(); rank++) {
+            EmbeddingMatch<TextSegment> match = vectorMatches.get(rank);
+            scores.merge(match.embeddingId(), 1.0 / (rrfK + rank + 1), Double::sum);
+            segments.putIfAbsent(match.embeddingId(), match.embedded());
+        }
+        for (int rank = 0; rank < keywordHits.size(); rank++) {
+            Bm25Index.Hit hit = keywordHits.get(rank);
+            scores.merge(hit.id(), 1.0 / (rrfK + rank + 1), Double::sum);
+            segments.putIfAbsent(hit.id(), hit.segment());
+        }
+
+        List<String> ranked = new ArrayList<>(segments.keySet());
+        ranked.sort(Comparator.comparingDouble((String id) -> scores.get(id)).reversed());
+        List<Content> contents = new ArrayList<>();
+        for (String id : ranked.subList(0, Math.min(maxResults, ranked.size()))) {
+            contents.add(Content.from(
+                    segments.get(id), Map.of(ContentMetadata.SCORE, scores.get(id), ContentMetadata.EMBEDDING_ID, id)));
+        }
+        return contents;
+    }
+
+    private static ExecutorService defaultExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "hybrid-retriever-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static class Builder {
+        private EmbeddingStore<TextSegment> embeddingStore;
+        private EmbeddingModel embeddingModel;
+        private int maxResults = 3;
+        private int candidates;
+        private int rrfK = 60;
+        private Duration timeout = Duration.ofSeconds(2);
+        private ExecutorService executor;
+
+        public Builder embeddingStore(EmbeddingStore<TextSegment> embeddingStore) {
+            this.embeddingStore = embeddingStore;
+            return this;
+        }
+
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        public Builder maxResults(int maxResults) {
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        /** Results taken from each search before fusion; defaults to four times {@code maxResults}. */
+        public Builder candidates(int candidates) {
+            this.candidates = candidates;
+            return this;
+        }
+
+        /** The rank offset in reciprocal rank fusion; 60 is the value from the original paper. */
+        public Builder rrfK(int rrfK) {
+            this.rrfK = rrfK;
+            return this;
+        }
+
+        /** Latency budget for one retrieval, covering query embedding and both searches. */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /** Runs the vector side; defaults to a cached pool of daemon threads. */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public HybridContentRetriever build() {
+            return new HybridContentRetriever(this);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.kousenit.langchain4j;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import dev.langchain4j.data.document.BlankDocumentException;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentParser;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keeps an {@link EmbeddingStore} in step with a directory of documents, re-embedding only what
+ * changed.
+ *
+ * <p>Every segment gets an id derived from its file, its text and how many identical segments
+ * precede it in that file. When a file changes it is split again (by default with a {@link
+ * ContentDefinedChunker}, so an edit only disturbs the chunks around it) and the new ids are compared
+ * with the ones stored for that file: segments whose id is still present are left alone, new ids are
+ * embedded and added, and only then are ids that disappeared removed, so a failed update leaves the
+ * previous version searchable. A file whose text is byte-for-byte unchanged (editors often write
+ * twice) is skipped entirely. Each update is reported as a {@link Change}, whose {@code skipped}
+ * count is the number of embeddings that did not have to be computed. Unchanged segments keep the
+ * metadata they were stored with, including their original {@code index}.
+ *
+ * <p>{@link #scan()} indexes the whole directory once. {@link #start()} then watches it (and its
+ * subdirectories) with a {@link WatchService} on a background thread; events are collected for
+ * {@code debounce} so a burst of writes to one file causes one update. Close the indexer to stop
+ * watching. The indexer only knows about segments it added itself in this process.
+ */
+public class IncrementalIndexer implements Closeable {
+
+    private final Path directory;
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final DocumentSplitter documentSplitter;
+    private final DocumentParser documentParser;
+    private final PathMatcher include;
+    private final Duration debounce;
+    private final Consumer<Change> onChange;
+    private final BiConsumer<Path, RuntimeException> onError;
+
+    private final Map<Path, FileState> files = new HashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final LongAdder failures = new LongAdder();
+    private WatchService watchService;
+    private Thread watcher;
+
+    private IncrementalIndexer(Builder builder) {
+        if (builder.directory == null || builder.embeddingModel == null || builder.embeddingStore == null) {
+            throw new IllegalArgumentException("directory, embeddingModel and embeddingStore are required");
+        }
+        if (builder.debounce == null || builder.debounce.isNegative()) {
+            throw new IllegalArgumentException("debounce cannot be negative");
+        }
+        this.directory = builder.directory.toAbsolutePath().normalize();
+        this.embeddingModel = builder.embeddingModel;
+        this.embeddingStore = builder.embeddingStore;
+        this.documentSplitter = builder.documentSplitter != null
+                ? builder.documentSplitter
+                : ContentDefinedChunker.builder().build();
+        this.documentParser = builder.documentParser;
+        this.include = FileSystems.getDefault().getPathMatcher(builder.include);
+        this.debounce = builder.debounce;
+        this.onChange = builder.onChange;
+        this.onError = builder.onError;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Indexes every matching file under the directory and drops files that have gone away. */
+    public synchronized List<Change> scan() {
+        List<Change> changes = new ArrayList<>();
+        Set<Path> present = new HashSet<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                if (matches(file)) {
+                    present.add(file);
+                    changes.add(index(file));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot scan " + directory, e);
+        }
+        for (Path file : new ArrayList<>(files.keySet())) {
+            if (!present.contains(file)) {
+                changes.add(remove(file));
+            }
+        }
+        return changes;
+    }
+
+    /** Brings the store up to date with the current contents of {@code file}. */
+    public synchronized Change index(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        Document document = load(path);
+        FileState previous = files.getOrDefault(path, FileState.EMPTY);
+        String contentId = document == null
+                ? FileState.EMPTY.contentId()
+                : UUID.nameUUIDFromBytes(document.text().getBytes(StandardCharsets.UTF_8)).toString();
+        if (contentId.equals(previous.contentId())) {
+            return new Change(path, previous.ids().size(), 0, previous.ids().size(), 0);
+        }
+
+        List<TextSegment> segments = document == null ? List.of() : documentSplitter.split(document);
+        List<String> ids = segmentIds(path, segments);
+        Set<String> previousIds = new HashSet<>(previous.ids());
+        List<String> addedIds = new ArrayList<>();
+        List<TextSegment> added = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            String id = ids.get(i);
+            if (!previousIds.contains(id)) {
+                addedIds.add(id);
+                added.add(segments.get(i));
+            }
+        }
+        Set<String> removed = new HashSet<>(previousIds);
+        ids.forEach(removed::remove);
+
+        // add before removing, so a failed embedding or write leaves the previous version searchable
+        if (!added.isEmpty()) {
+            List<Embedding> embeddings = embeddingModel.embedAll(added).content();
+            embeddingStore.addAll(addedIds, embeddings, added);
+        }
+        if (!removed.isEmpty()) {
+            try {
+                embeddingStore.removeAll(removed);
+            } catch (RuntimeException e) {
+                // remember the stale ids too; a null content id makes the next index retry their removal
+                List<String> pending = new ArrayList<>(ids);
+                pending.addAll(removed);
+                files.put(path, new FileState(null, pending));
+                throw e;
+            }
+        }
+        if (ids.isEmpty()) {
+            files.remove(path);
+        } else {
+            files.put(path, new FileState(contentId, ids));
+        }
+        return new Change(path, ids.size(), added.size(), ids.size() - added.size(), removed.size());
+    }
+
+    /** Removes every segment indexed for {@code file}, or for any file under it if it is a directory. */
+    public synchronized Change remove(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        List<String> removed = new ArrayList<>();
+        files.entrySet().removeIf(entry -> {
+            if (entry.getKey().startsWith(path)) {
+                removed.addAll(entry.getValue().ids());
+                return true;
+            }
+            return false;
+        });
+        if (!removed.isEmpty()) {
+            embeddingStore.removeAll(removed);
+        }
+        return new Change(path, 0, 0, 0, removed.size());
+    }
+
+    /** Number of files currently indexed. */
+    public synchronized int indexedFiles() {
+        return files.size();
+    }
+
+    /** Number of background updates that failed; each was also passed to {@code onError}. */
+    public long failures() {
+        return failures.sum();
+    }
+
+    /** Starts watching the directory tree on a daemon thread; call {@link #scan()} first to index it. */
+    public synchronized void start() {
+        if (watcher != null) {
+            throw new IllegalStateException("Already watching " + directory);
+        }
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            registerTree(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot watch " + directory, e);
+        }
+        watcher = new Thread(this::watch, "incremental-indexer");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = watcher;
+            watcher = null;
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                Set<Path> pending = new LinkedHashSet<>();
+                boolean rescan = collect(watchService.take(), pending);
+                // keep collecting until the burst is over
+                for (WatchKey key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS);
+                        key != null;
+                        key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)) {
+                    rescan |= collect(key, pending);
+                }
+                if (rescan) {
+                    run(directory, () -> scan().forEach(this::report));
+                    continue;
+                }
+                for (Path path : pending) {
+                    run(path, () -> report(Files.isRegularFile(path) ? index(path) : remove(path)));
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed by close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Adds the paths touched by {@code key}'s events to {@code pending}; true if events were lost. */
+    private boolean collect(WatchKey key, Set<Path> pending) {
+        boolean overflow = false;
+        Path watched;
+        synchronized (this) {
+            watched = watchedDirectories.get(key);
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || watched == null) {
+                overflow = true;
+                continue;
+            }
+            Path path = watched.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                run(path, () -> {
+                    registerTree(path);
+                    try (Stream<Path> paths = Files.walk(path)) {
+                        paths.filter(Files::isRegularFile).filter(this::matches).forEach(pending::add);
+                    }
+                });
+            } else if (event.kind() == ENTRY_DELETE || matches(path)) {
+                pending.add(path);
+            }
+        }
+        if (!key.reset()) {
+            synchronized (this) {
+                watchedDirectories.remove(key);
+            }
+        }
+        return overflow;
+    }
+
+    private synchronized void registerTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path dir : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+            }
+        }
+    }
+
+    private void run(Path path, IoAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            failed(path, new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            failed(path, e);
+        }
+    }
+
+    private void failed(Path path, RuntimeException e) {
+        failures.increment();
+        onError.accept(path, e);
+    }
+
+    private void report(Change change) {
+        if (change.embedded() > 0 || change.removed() > 0) {
+            onChange.accept(change);
+        }
+    }
+
+    /** The parsed file, or null if it has no text (the loader rejects blank documents). */
+    private Document load(Path file) {
+        try {
+            return documentParser == null
+                    ? FileSystemDocumentLoader.loadDocument(file)
+                    : FileSystemDocumentLoader.loadDocument(file, documentParser);
+        } catch (BlankDocumentException e) {
+            return null;
+        }
+    }
+
+    private boolean matches(Path file) {
+        return include.matches(directory.relativize(file.toAbsolutePath().normalize()));
+    }
+
+    /** Stable ids: the same text at the same occurrence in the same file always gets the same id. */
+    private List<String> segmentIds(Path file, List<TextSegment> segments) {
+        Map<String, Integer> occurrences = new HashMap<>();
+        List<String> ids = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            int occurrence = occurrences.merge(segment.text(), 1, Integer::sum);
+            String key = directory.relativize(file) + "\n" + occurrence + "\n" + segment.text();
+            ids.add(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString());
+        }
+        return ids;
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private record FileState(String contentId, List<String> ids) {
+        static final FileState EMPTY = new FileState("", List.of());
+    }
+
+    /**
+     * One file update: {@code segments} now indexed for it, how many were {@code embedded}, how many
+     * were {@code skipped} because an identical segment was already stored, and how many {@code
+     * removed}.
+     */
+    public record Change(Path file, int segments, int embedded, int skipped, int removed) {}
+
+    public static class Builder {
+        private Path directory;
+        private EmbeddingModel embeddingModel;
+        private EmbeddingStore<TextSegment> embeddingStore;
+        private DocumentSplitter documentSplitter;
+        private DocumentParser documentParser;
+        private String include = "glob:**";
+        private Duration debounce = Duration.ofMillis(200);
+        private Consumer<Change> onChange = change -> {};
+        private BiConsumer<Path, RuntimeException> onError = (path, e) -> {};
+
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        public Builder embeddingStore(EmbeddingStore<TextSegment> embeddingStore) {
+            this.embeddingStore = embeddingStore;
+            return this;
+        }
+
+        /** Defaults to a {@link ContentDefinedChunker}; a size-based splitter re-embeds far more. */
+        public Builder documentSplitter(DocumentSplitter documentSplitter) {
+            this.documentSplitter = documentSplitter;
+            return this;
+        }
+
+        /** Defaults to the loader's SPI-discovered parser. */
+        public Builder documentParser(DocumentParser documentParser) {
+            this.documentParser = documentParser;
+            return this;
+        }
+
+        /** A {@code glob:} or {@code regex:} pattern matched against paths relative to the directory. */
+        public Builder include(String include) {
+            this.include = include;
+            return this;
+        }
+
+        /** How long the watcher waits for more events before applying a batch of changes. */
+        public Builder debounce(Duration debounce) {
+            this.debounce = debounce;
+            return this;
+        }
+
+        /** Called from the watcher thread for every update that embedded or removed something. */
+        public Builder onChange(Consumer<Change> onChange) {
+            this.onChange = onChange;
+            return this;
+        }
+
+        /** Called from the watcher thread when a file cannot be indexed; watching continues. */
+        public Builder onError(BiConsumer<Path, RuntimeException> onError) {
+            this.onError = onError;
+            return this;
+        }
+
+        public IncrementalIndexer build() {
+            return new IncrementalIndexer(this);
+        }
+    }
+}
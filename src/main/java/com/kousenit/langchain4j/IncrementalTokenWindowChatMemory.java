@@ -0,0 +1,226 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link ChatMemory} that keeps as many of the most recent messages as fit in {@code maxTokens},
+ * counting each message's tokens once.
+ *
+ * <p>{@code TokenWindowChatMemory} reads the whole history back from its store and estimates the
+ * tokens of every message on each {@code add}, so the cost of a turn grows with the conversation,
+ * and with a real tokenizer that cost is not small. This memory counts a message's tokens when it is
+ * added, keeps the count next to the message, and keeps a running total. Evicting the oldest
+ * messages subtracts their counts, so an {@code add} costs one estimate plus the messages it evicts,
+ * however long the window is.
+ *
+ * <p>The window follows {@code TokenWindowChatMemory}: the system message counts toward the budget
+ * but is never evicted, an equal system message is ignored and a different one replaces it, and tool
+ * results are evicted together with the AI message that requested them. Tokens are counted with the
+ * configured {@link TokenCountEstimator} (any local tokenizer, for example {@code
+ * OpenAiTokenCountEstimator}), or estimated at four characters per token of the message's text.
+ *
+ * <p>With a {@link ChatMemoryStore}, the stored messages are read once, on first use, and counted
+ * then. From there on the window lives on the heap and is written back with {@code updateMessages}
+ * after every change; {@link #clear()} calls {@code deleteMessages}. Without a store, nothing is
+ * persisted.
+ */
+public class IncrementalTokenWindowChatMemory implements ChatMemory {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final Object id;
+    private final int maxTokens;
+    private final TokenCountEstimator tokenCountEstimator;
+    private final ChatMemoryStore store;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private Entry systemMessage;
+    private int tokens;
+    private boolean loaded;
+
+    private IncrementalTokenWindowChatMemory(Builder builder) {
+        if (builder.id == null) {
+            throw new IllegalArgumentException("id cannot be null");
+        }
+        if (builder.maxTokens < 1) {
+            throw new IllegalArgumentException("maxTokens must be positive");
+        }
+        this.id = builder.id;
+        this.maxTokens = builder.maxTokens;
+        this.tokenCountEstimator = builder.tokenCountEstimator;
+        this.store = builder.chatMemoryStore;
+        this.loaded = store == null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static IncrementalTokenWindowChatMemory withMaxTokens(int maxTokens) {
+        return builder().maxTokens(maxTokens).build();
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        load();
+        if (append(message) && store != null) {
+            store.updateMessages(id, messages());
+        }
+    }
+
+    /** Adds the message to the window; returns {@code false} if it was an equal system message. */
+    private boolean append(ChatMessage message) {
+        if (message instanceof SystemMessage) {
+            if (systemMessage != null) {
+                if (systemMessage.message().equals(message)) {
+                    return false;
+                }
+                tokens -= systemMessage.tokens();
+            }
+            systemMessage = new Entry(message, countTokens(message));
+            tokens += systemMessage.tokens();
+        } else {
+            Entry entry = new Entry(message, countTokens(message));
+            entries.addLast(entry);
+            tokens += entry.tokens();
+        }
+        while (tokens > maxTokens && !entries.isEmpty()) {
+            Entry evicted = entries.removeFirst();
+            tokens -= evicted.tokens();
+            if (evicted.message() instanceof AiMessage ai && ai.hasToolExecutionRequests()) {
+                // results without their request would be rejected by the model
+                while (!entries.isEmpty() && entries.peekFirst().message() instanceof ToolExecutionResultMessage) {
+                    tokens -= entries.removeFirst().tokens();
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized List<ChatMessage> messages() {
+        load();
+        List<ChatMessage> messages = new ArrayList<>(entries.size() + 1);
+        if (systemMessage != null) {
+            messages.add(systemMessage.message());
+        }
+        for (Entry entry : entries) {
+            messages.add(entry.message());
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        systemMessage = null;
+        tokens = 0;
+        if (store != null) {
+            loaded = true;
+            store.deleteMessages(id);
+        }
+    }
+
+    /** Tokens of the messages in the window, as counted when they were added. */
+    public synchronized int tokenCount() {
+        load();
+        return tokens;
+    }
+
+    /** Reads and counts the stored messages the first time the memory is used; callers hold the monitor. */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        for (ChatMessage message : store.getMessages(id)) {
+            append(message);
+        }
+    }
+
+    private int countTokens(ChatMessage message) {
+        if (tokenCountEstimator != null) {
+            return tokenCountEstimator.estimateTokenCountInMessage(message);
+        }
+        return (text(message).length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private static String text(ChatMessage message) {
+        if (message instanceof SystemMessage system) {
+            return system.text();
+        }
+        if (message instanceof UserMessage user) {
+            StringBuilder text = new StringBuilder();
+            for (Content content : user.contents()) {
+                if (content instanceof TextContent textContent) {
+                    text.append(textContent.text());
+                }
+            }
+            return text.toString();
+        }
+        if (message instanceof AiMessage ai) {
+            StringBuilder text = new StringBuilder(ai.text() == null ? "" : ai.text());
+            for (ToolExecutionRequest request : ai.toolExecutionRequests()) {
+                text.append(request.name()).append(request.arguments());
+            }
+            return text.toString();
+        }
+        if (message instanceof ToolExecutionResultMessage result) {
+            return result.text();
+        }
+        return message.toString();
+    }
+
+    private record Entry(ChatMessage message, int tokens) {}
+
+    public static class Builder {
+        private Object id = "default";
+        private int maxTokens;
+        private TokenCountEstimator tokenCountEstimator;
+        private ChatMemoryStore chatMemoryStore;
+
+        public Builder id(Object id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder maxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        /** Counts each message's tokens once, when it is added (default: four characters per token). */
+        public Builder tokenCountEstimator(TokenCountEstimator tokenCountEstimator) {
+            this.tokenCountEstimator = tokenCountEstimator;
+            return this;
+        }
+
+        /** Where the window is loaded from on first use and written to on every change (default none). */
+        public Builder chatMemoryStore(ChatMemoryStore chatMemoryStore) {
+            this.chatMemoryStore = chatMemoryStore;
+            return this;
+        }
+
+        public IncrementalTokenWindowChatMemory build() {
+            return new IncrementalTokenWindowChatMemory(this);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentParser;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A streaming load &rarr; split &rarr; embed &rarr; store ingestion pipeline.
+ *
+ * <p>The Lab 9 examples ingest with {@code splitter.splitAll(documents)}, one {@code
+ * embeddingModel.embedAll(segments)} call and one {@code embeddingStore.addAll(...)}. That is fine
+ * for a handful of documents, but every document, segment and embedding is held in memory at once
+ * and only one core does the (expensive) ONNX inference.
+ *
+ * <p>This pipeline connects the four stages with bounded queues:
+ *
+ * <ul>
+ *   <li>the calling thread loads documents one at a time
+ *   <li>one splitter thread turns documents into fixed-size batches of segments
+ *   <li>{@code embeddingWorkers} threads (one per core by default) call {@code embedAll} per batch
+ *   <li>one writer thread adds each embedded batch to the store
+ * </ul>
+ *
+ * <p>Because every queue is bounded, a fast stage blocks once it gets {@code queueCapacity} items
+ * ahead of the next one. Heap usage therefore depends on the queue capacity and batch size, not on
+ * the size of the corpus. If any stage fails, the remaining stages are cancelled and the first
+ * failure is rethrown from {@link #ingest(Iterable)}.
+ *
+ * <p>With a {@link NearDuplicateFilter} configured, the splitter thread drops near-duplicate segments
+ * before they are batched, so they are never embedded or stored; the report counts them.
+ */
+public class IngestionPipeline {
+
+    private static final Document END_OF_DOCUMENTS = Document.from("end of documents");
+    private static final List<TextSegment> END_OF_BATCHES = new ArrayList<>();
+    private static final EmbeddedBatch END_OF_EMBEDDINGS = new EmbeddedBatch(List.of(), List.of());
+    private static final long POLL_MILLIS = 100;
+
+    private final DocumentSplitter documentSplitter;
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final DocumentParser documentParser;
+    private final NearDuplicateFilter nearDuplicateFilter;
+    private final int embeddingBatchSize;
+    private final int embeddingWorkers;
+    private final int queueCapacity;
+
+    private IngestionPipeline(Builder builder) {
+        if (builder.documentSplitter == null || builder.embeddingModel == null || builder.embeddingStore == null) {
+            throw new IllegalArgumentException("documentSplitter, embeddingModel and embeddingStore are required");
+        }
+        if (builder.embeddingBatchSize < 1 || builder.embeddingWorkers < 1 || builder.queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "embeddingBatchSize, embeddingWorkers and queueCapacity must be positive");
+        }
+        this.documentSplitter = builder.documentSplitter;
+        this.embeddingModel = builder.embeddingModel;
+        this.embeddingStore = builder.embeddingStore;
+        this.documentParser = builder.documentParser;
+        this.nearDuplicateFilter = builder.nearDuplicateFilter;
+        this.embeddingBatchSize = builder.embeddingBatchSize;
+        this.embeddingWorkers = builder.embeddingWorkers;
+        this.queueCapacity = builder.queueCapacity;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Loads each file with {@link FileSystemDocumentLoader} and streams it through the pipeline. */
+    public Report ingest(Iterable<Path> files) {
+        return run(files, file -> documentParser == null
+                ? FileSystemDocumentLoader.loadDocument(file)
+                : FileSystemDocumentLoader.loadDocument(file, documentParser));
+    }
+
+    /** Streams already-loaded (or lazily produced) documents through the pipeline. */
+    public Report ingestDocuments(Iterable<Document> documents) {
+        return run(documents, Function.identity());
+    }
+
+    private <T> Report run(Iterable<T> sources, Function<T, Document> loader) {
+        long start = System.nanoTime();
+        BlockingQueue<Document> documents = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<TextSegment>> batches = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<EmbeddedBatch> embedded = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger segmentCount = new AtomicInteger();
+        AtomicInteger duplicateCount = new AtomicInteger();
+        AtomicInteger batchCount = new AtomicInteger();
+        AtomicInteger runningEmbedders = new AtomicInteger(embeddingWorkers);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(embeddingWorkers + 2, runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<?>> stages = new ArrayList<>();
+        stages.add(executor.submit(stage(failure, () -> {
+            List<TextSegment> batch = new ArrayList<>(embeddingBatchSize);
+            for (Document document = take(documents, failure);
+                    document != END_OF_DOCUMENTS;
+                    document = take(documents, failure)) {
+                for (TextSegment segment : documentSplitter.split(document)) {
+                    if (nearDuplicateFilter != null && !nearDuplicateFilter.accept(segment)) {
+                        duplicateCount.incrementAndGet();
+                        continue;
+                    }
+                    batch.add(segment);
+                    if (batch.size() == embeddingBatchSize) {
+                        put(batches, batch, failure);
+                        batch = new ArrayList<>(embeddingBatchSize);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                put(batches, batch, failure);
+            }
+            for (int i = 0; i < embeddingWorkers; i++) {
+                put(batches, END_OF_BATCHES, failure);
+            }
+        })));
+        for (int i = 0; i < embeddingWorkers; i++) {
+            stages.add(executor.submit(stage(failure, () -> {
+                for (List<TextSegment> batch = take(batches, failure);
+                        batch != END_OF_BATCHES;
+                        batch = take(batches, failure)) {
+                    List<Embedding> embeddings = embeddingModel.embedAll(batch).content();
+                    put(embedded, new EmbeddedBatch(embeddings, batch), failure);
+                }
+                if (runningEmbedders.decrementAndGet() == 0) {
+                    put(embedded, END_OF_EMBEDDINGS, failure);
+                }
+            })));
+        }
+        stages.add(executor.submit(stage(failure, () -> {
+            for (EmbeddedBatch batch = take(embedded, failure);
+                    batch != END_OF_EMBEDDINGS;
+                    batch = take(embedded, failure)) {
+                embeddingStore.addAll(batch.embeddings(), batch.segments());
+                segmentCount.addAndGet(batch.segments().size());
+                batchCount.incrementAndGet();
+            }
+        })));
+
+        int documentCount = 0;
+        try {
+            for (T source : sources) {
+                put(documents, loader.apply(source), failure);
+                documentCount++;
+            }
+            put(documents, END_OF_DOCUMENTS, failure);
+            for (Future<?> stage : stages) {
+                stage.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ingestion was interrupted", e);
+        } catch (ExecutionException | RuntimeException e) {
+            failure.compareAndSet(null, e instanceof ExecutionException ? e.getCause() : e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new IllegalStateException("Ingestion failed: " + cause.getMessage(), cause);
+        }
+        return new Report(
+                documentCount,
+                segmentCount.get(),
+                duplicateCount.get(),
+                batchCount.get(),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static Runnable stage(AtomicReference<Throwable> failure, StageBody body) {
+        return () -> {
+            try {
+                body.run();
+            } catch (PipelineAbortedException e) {
+                // another stage failed first; its exception is the one reported
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        };
+    }
+
+    /** Blocking put that gives up as soon as any stage has failed, so no thread waits forever. */
+    private static <E> void put(BlockingQueue<E> queue, E item, AtomicReference<Throwable> failure) {
+        try {
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    throw new PipelineAbortedException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipelineAbortedException();
+        }
+    }
+
+    private static <E> E take(BlockingQueue<E> queue, AtomicReference<Throwable> failure) {
+        try {
+            E item;
+            while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (failure.get() != null) {
+                    throw new PipelineAbortedException();
+                }
+            }
+            return item;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipelineAbortedException();
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run();
+    }
+
+    private static final class PipelineAbortedException extends RuntimeException {
+        PipelineAbortedException() {
+            super("Ingestion pipeline aborted", null, false, false);
+        }
+    }
+
+    private record EmbeddedBatch(List<Embedding> embeddings, List<TextSegment> segments) {}
+
+    /** Counts and wall-clock time for one {@code ingest} call; {@code segments} excludes duplicates. */
+    public record Report(int documents, int segments, int duplicates, int batches, Duration elapsed) {
+
+        public double documentsPerSecond() {
+            return documents / Math.max(elapsed.toNanos() / 1e9, 1e-9);
+        }
+
+        public double segmentsPerSecond() {
+            return segments / Math.max(elapsed.toNanos() / 1e9, 1e-9);
+        }
+    }
+
+    public static class Builder {
+        private DocumentSplitter documentSplitter;
+        private EmbeddingModel embeddingModel;
+        private EmbeddingStore<TextSegment> embeddingStore;
+        private DocumentParser documentParser;
+        private NearDuplicateFilter nearDuplicateFilter;
+        private int embeddingBatchSize = 32;
+        private int embeddingWorkers = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = 16;
+
+        public Builder documentSplitter(DocumentSplitter documentSplitter) {
+            this.documentSplitter = documentSplitter;
+            return this;
+        }
+
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        public Builder embeddingStore(EmbeddingStore<TextSegment> embeddingStore) {
+            this.embeddingStore = embeddingStore;
+            return this;
+        }
+
+        /** Parser used by {@link #ingest(Iterable)}; defaults to the loader's SPI-discovered parser. */
+        public Builder documentParser(DocumentParser documentParser) {
+            this.documentParser = documentParser;
+            return this;
+        }
+
+        /** Drops near-duplicate segments before they are embedded; off by default. */
+        public Builder nearDuplicateFilter(NearDuplicateFilter nearDuplicateFilter) {
+            this.nearDuplicateFilter = nearDuplicateFilter;
+            return this;
+        }
+
+        /** Number of segments per {@code embedAll} call. */
+        public Builder embeddingBatchSize(int embeddingBatchSize) {
+            this.embeddingBatchSize = embeddingBatchSize;
+            return this;
+        }
+
+        /** Number of threads running {@code embedAll}; defaults to the number of available cores. */
+        public Builder embeddingWorkers(int embeddingWorkers) {
+            this.embeddingWorkers = embeddingWorkers;
+            return this;
+        }
+
+        /** Capacity of each queue between stages; this is what bounds heap usage. */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public IngestionPipeline build() {
+            return new IngestionPipeline(this);
+        }
+    }
+}
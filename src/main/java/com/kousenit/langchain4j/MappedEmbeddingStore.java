@@ -0,0 +1,567 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent {@link EmbeddingStore} whose vectors live in a memory-mapped file.
+ *
+ * <p>The store directory holds:
+ *
+ * <ul>
+ *   <li>{@code vectors.f32} - fixed-stride float vectors (see {@link MappedVectorFile})
+ *   <li>{@code segments.dat} - id, text and metadata of each entry, length-prefixed
+ *   <li>{@code segments.idx} - offset and length of each entry in {@code segments.dat}
+ *   <li>{@code manifest} - the committed entry count and file lengths, with a CRC
+ * </ul>
+ *
+ * <p>Opening a store reads the manifest and maps the vector file, so startup cost does not depend on
+ * the number of entries and nothing has to be re-embedded. Searches score vectors in place from the
+ * page cache; only the top matches are copied onto the heap. The first filtered search reads the
+ * segment records once into a {@link MetadataIndex}, and later filtered searches only score the
+ * entries whose metadata can match.
+ *
+ * <p>Appends are visible to this instance immediately but are only durable after {@link #commit()}
+ * (called after every {@code add} when {@code autoCommit} is on, the default). A commit forces the
+ * data files to disk and then atomically replaces the manifest, so after a crash the store reopens
+ * at the last commit and any torn appends beyond it are overwritten by the next ones. Files never
+ * shrink, because read-only processes may still have a region mapped that the writer no longer uses,
+ * and reading a mapped page past the end of a file crashes the process.
+ *
+ * <p>Only one process can open a directory for writing (enforced with a file lock). Any number of
+ * processes on the same host can open it with {@code readOnly(true)} and call {@link #refresh()} to
+ * pick up newly committed entries. The format is append-only, so removing individual entries is not
+ * supported; {@link #removeAll()} empties the store.
+ */
+public class MappedEmbeddingStore implements EmbeddingStore<TextSegment>, Closeable {
+
+    private static final String VECTORS = "vectors.f32";
+    private static final String SEGMENTS = "segments.dat";
+    private static final String INDEX = "segments.idx";
+    private static final String MANIFEST = "manifest";
+    private static final String LOCK = "write.lock";
+    private static final int MANIFEST_MAGIC = 0x454D424D; // "EMBM"
+    private static final int MANIFEST_VERSION = 1;
+    private static final int MANIFEST_BYTES = 36;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final boolean readOnly;
+    private final boolean autoCommit;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel lockChannel;
+    private FileLock fileLock;
+    private FileChannel segments;
+    private FileChannel index;
+    private MappedVectorFile vectors;
+    private int dimension = -1;
+    private int count;
+    private long segmentsLength;
+    private int generation;
+    private MetadataIndex metadataIndex;
+    private int indexedCount;
+
+    private MappedEmbeddingStore(Builder builder) {
+        if (builder.directory == null) {
+            throw new IllegalArgumentException("directory is required");
+        }
+        this.directory = builder.directory;
+        this.readOnly = builder.readOnly;
+        this.autoCommit = builder.autoCommit;
+        try {
+            if (readOnly) {
+                openReadOnly();
+            } else {
+                openForWriting();
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException("Cannot open embedding store in " + directory, e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private void openForWriting() throws IOException {
+        Files.createDirectories(directory);
+        lockChannel =
+                FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            throw new IOException("Store is already open for writing by another process or instance");
+        }
+
+        Manifest manifest = readManifest();
+        if (manifest == null) {
+            // never committed: anything on disk is a torn first append
+            Files.deleteIfExists(directory.resolve(VECTORS));
+            manifest = new Manifest(-1, 0, 0, 0);
+        }
+        dimension = manifest.dimension();
+        count = manifest.count();
+        segmentsLength = manifest.segmentsLength();
+        generation = manifest.generation();
+
+        // anything past the committed lengths is left in place for the next appends to overwrite
+        segments = openForAppend(directory.resolve(SEGMENTS));
+        index = openForAppend(directory.resolve(INDEX));
+        if (dimension > 0) {
+            vectors = MappedVectorFile.open(directory.resolve(VECTORS), dimension, false);
+            vectors.map(count);
+        }
+    }
+
+    private void openReadOnly() throws IOException {
+        Manifest manifest = readManifest();
+        if (manifest == null) {
+            return;
+        }
+        segments = FileChannel.open(directory.resolve(SEGMENTS), StandardOpenOption.READ);
+        index = FileChannel.open(directory.resolve(INDEX), StandardOpenOption.READ);
+        apply(manifest);
+    }
+
+    private void apply(Manifest manifest) throws IOException {
+        if (vectors == null && manifest.dimension() > 0) {
+            vectors = MappedVectorFile.open(directory.resolve(VECTORS), manifest.dimension(), true);
+        }
+        if (manifest.generation() != generation) {
+            // the store was emptied since the last refresh, so indexed positions now hold other entries
+            clearMetadataIndex();
+        }
+        dimension = manifest.dimension();
+        count = manifest.count();
+        segmentsLength = manifest.segmentsLength();
+        generation = manifest.generation();
+        if (vectors != null) {
+            vectors.map(count);
+        }
+    }
+
+    /**
+     * Re-reads the manifest so a read-only instance sees entries committed since it was opened (or
+     * last refreshed). Does nothing for the writing instance, which always sees its own appends.
+     */
+    public void refresh() {
+        if (!readOnly) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Manifest manifest = readManifest();
+            if (manifest == null || (manifest.count() == count && manifest.generation() == generation)) {
+                return;
+            }
+            if (segments == null) {
+                segments = FileChannel.open(directory.resolve(SEGMENTS), StandardOpenOption.READ);
+                index = FileChannel.open(directory.resolve(INDEX), StandardOpenOption.READ);
+            }
+            apply(manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Makes all appended entries durable; other processes see them after their next refresh. */
+    public void commit() {
+        checkWritable();
+        lock.writeLock().lock();
+        try {
+            writeCommit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), textSegment == null ? null : List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        checkWritable();
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (vectors == null) {
+                dimension = embeddings.get(0).dimension();
+                vectors = MappedVectorFile.open(directory.resolve(VECTORS), dimension, false);
+            }
+
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(records);
+            ByteBuffer offsets = ByteBuffer.allocate(ids.size() * INDEX_ENTRY_BYTES);
+            List<float[]> vectorList = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                int start = out.size();
+                SegmentRecords.write(out, ids.get(i), embedded == null ? null : embedded.get(i));
+                offsets.putLong(segmentsLength + start).putInt(out.size() - start);
+                vectorList.add(embeddings.get(i).vector());
+            }
+            out.flush();
+
+            vectors.write(count, vectorList);
+            writeFully(segments, ByteBuffer.wrap(records.toByteArray()), segmentsLength);
+            writeFully(index, offsets.flip(), (long) count * INDEX_ENTRY_BYTES);
+            segmentsLength += records.size();
+            count += ids.size();
+            vectors.map(count);
+
+            if (autoCommit) {
+                writeCommit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        checkWritable();
+        lock.writeLock().lock();
+        try {
+            // Files are not truncated: read-only processes may still have the old region mapped.
+            // Later appends overwrite it.
+            count = 0;
+            segmentsLength = 0;
+            generation++;
+            clearMetadataIndex();
+            if (vectors != null) {
+                vectors.map(0);
+            }
+            writeCommit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            if (count == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = request.queryEmbedding().vector();
+            if (query.length != dimension) {
+                throw new IllegalArgumentException(
+                        "Embedding dimension " + query.length + " does not match store dimension " + dimension);
+            }
+            float[] scratch = new float[dimension];
+            float queryNorm = VectorMath.squaredNorm(query);
+            Filter filter = request.filter();
+            int maxResults = request.maxResults();
+
+            // the metadata index narrows a filtered search to the entries that can match
+            MetadataIndex.Candidates allowed = filter == null ? null : indexedCandidates(filter);
+            BitSet scan = allowed == null ? null : allowed.entries();
+            boolean testFilter = filter != null && (allowed == null || !allowed.exact());
+
+            PriorityQueue<Candidate> top = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+            for (int i = scan == null ? 0 : scan.nextSetBit(0);
+                    i >= 0 && i < count;
+                    i = scan == null ? i + 1 : scan.nextSetBit(i + 1)) {
+                double score = RelevanceScore.fromCosineSimilarity(vectors.cosine(i, query, queryNorm, scratch));
+                if (score < request.minScore()) {
+                    continue;
+                }
+                if (top.size() == maxResults && score <= top.peek().score()) {
+                    continue;
+                }
+                if (testFilter && !matches(filter, i)) {
+                    continue;
+                }
+                top.add(new Candidate(i, score));
+                if (top.size() > maxResults) {
+                    top.poll();
+                }
+            }
+
+            List<Candidate> ranked = new ArrayList<>(top);
+            ranked.sort(Comparator.comparingDouble(Candidate::score).reversed());
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(ranked.size());
+            for (Candidate candidate : ranked) {
+                SegmentRecords.Entry entry = readEntry(candidate.index());
+                matches.add(new EmbeddingMatch<>(
+                        candidate.score(),
+                        entry.id(),
+                        Embedding.from(vectors.read(candidate.index())),
+                        entry.segment()));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Resolves a filter against the metadata index, first building the index (on the first filtered
+     * search) or extending it with entries appended or refreshed since. Synchronized because
+     * searches only hold the read lock.
+     */
+    private synchronized MetadataIndex.Candidates indexedCandidates(Filter filter) throws IOException {
+        if (metadataIndex == null) {
+            metadataIndex = new MetadataIndex();
+            indexedCount = 0;
+        }
+        if (indexedCount < count) {
+            ByteBuffer location = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+            readFully(index, location, (long) indexedCount * INDEX_ENTRY_BYTES);
+            long start = location.flip().getLong();
+            // a private channel, so the sequential read does not move a shared position
+            try (FileChannel channel = FileChannel.open(directory.resolve(SEGMENTS), StandardOpenOption.READ)) {
+                DataInputStream in =
+                        new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(start))));
+                for (; indexedCount < count; indexedCount++) {
+                    TextSegment segment = SegmentRecords.read(in).segment();
+                    if (segment != null) {
+                        metadataIndex.add(indexedCount, segment.metadata());
+                    }
+                }
+            }
+        }
+        return metadataIndex.candidates(filter);
+    }
+
+    private synchronized void clearMetadataIndex() {
+        metadataIndex = null;
+        indexedCount = 0;
+    }
+
+    private boolean matches(Filter filter, int entryIndex) throws IOException {
+        TextSegment segment = readEntry(entryIndex).segment();
+        return segment != null && filter.test(segment.metadata());
+    }
+
+    private SegmentRecords.Entry readEntry(int entryIndex) throws IOException {
+        ByteBuffer location = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        readFully(index, location, (long) entryIndex * INDEX_ENTRY_BYTES);
+        long offset = location.flip().getLong();
+        int length = location.getInt();
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(segments, record, offset);
+        return SegmentRecords.read(new DataInputStream(new ByteArrayInputStream(record.array())));
+    }
+
+    private void writeCommit() throws IOException {
+        if (vectors != null) {
+            vectors.force();
+        }
+        segments.force(true);
+        index.force(true);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MANIFEST_MAGIC);
+        out.writeInt(MANIFEST_VERSION);
+        out.writeInt(dimension);
+        out.writeInt(count);
+        out.writeLong(segmentsLength);
+        out.writeInt(generation);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        try (FileChannel channel = FileChannel.open(
+                temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()), 0);
+            channel.force(true);
+        }
+        Files.move(
+                temp, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Manifest readManifest() throws IOException {
+        Path file = directory.resolve(MANIFEST);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (bytes.length != MANIFEST_BYTES || in.readInt() != MANIFEST_MAGIC || in.readInt() != MANIFEST_VERSION) {
+            throw new IOException("Corrupt or unsupported manifest in " + directory);
+        }
+        int storedDimension = in.readInt();
+        int storedCount = in.readInt();
+        long storedSegmentsLength = in.readLong();
+        int storedGeneration = in.readInt();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, MANIFEST_BYTES - Long.BYTES);
+        if (in.readLong() != crc.getValue()) {
+            throw new IOException("Manifest checksum mismatch in " + directory);
+        }
+        return new Manifest(storedDimension, storedCount, storedSegmentsLength, storedGeneration);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Store was opened read-only");
+        }
+    }
+
+    private static FileChannel openForAppend(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closeQuietly();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeQuietly() {
+        for (AutoCloseable closeable : new AutoCloseable[] {vectors, segments, index, fileLock, lockChannel}) {
+            if (closeable != null) {
+                try {
+                    closeable.close();
+                } catch (Exception ignored) {
+                    // nothing useful to do while closing
+                }
+            }
+        }
+    }
+
+    /** {@code generation} counts {@link #removeAll()} calls. */
+    private record Manifest(int dimension, int count, long segmentsLength, int generation) {}
+
+    private record Candidate(int index, double score) {}
+
+    public static class Builder {
+        private Path directory;
+        private boolean readOnly;
+        private boolean autoCommit = true;
+
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /** Opens without taking the write lock; mutations throw {@link UnsupportedOperationException}. */
+        public Builder readOnly(boolean readOnly) {
+            this.readOnly = readOnly;
+            return this;
+        }
+
+        /** Commit after every add (the default); turn off for bulk loads and call {@code commit()}. */
+        public Builder autoCommit(boolean autoCommit) {
+            this.autoCommit = autoCommit;
+            return this;
+        }
+
+        public MappedEmbeddingStore build() {
+            return new MappedEmbeddingStore(this);
+        }
+    }
+}
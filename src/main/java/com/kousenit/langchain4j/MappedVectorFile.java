@@ -0,0 +1,176 @@
+package com.kousenit.langchain4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file of fixed-stride little-endian float vectors, read through memory-mapped chunks.
+ *
+ * <p>The file starts with a 16-byte header (magic, version, dimension, reserved) followed by one
+ * {@code dimension * 4}-byte record per vector, so vector {@code i} lives at a computable offset and
+ * can be scored straight from the page cache without a per-vector heap allocation. Mappings are split
+ * into chunks of whole records below 1 GiB, because a single {@link MappedByteBuffer} is limited to
+ * {@code Integer.MAX_VALUE} bytes.
+ *
+ * <p>Appends go through the channel; {@link #map(int)} then extends the readable region. Callers are
+ * responsible for coordinating appends with concurrent reads.
+ */
+final class MappedVectorFile implements Closeable {
+
+    static final int HEADER_BYTES = 16;
+    private static final int MAGIC = 0x454D4256; // "EMBV"
+    private static final int VERSION = 1;
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private final int dimension;
+    private final int stride;
+    private final int recordsPerChunk;
+    private final List<FloatBuffer> chunks = new ArrayList<>();
+    private int mappedCount;
+
+    private MappedVectorFile(FileChannel channel, boolean readOnly, int dimension) {
+        this.channel = channel;
+        this.readOnly = readOnly;
+        this.dimension = dimension;
+        this.stride = dimension * Float.BYTES;
+        this.recordsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / stride);
+    }
+
+    /** Opens an existing file, or creates one with the given dimension when {@code readOnly} is false. */
+    static MappedVectorFile open(Path file, int dimension, boolean readOnly) throws IOException {
+        if (!Files.exists(file)) {
+            if (readOnly) {
+                throw new IOException("Vector file does not exist: " + file);
+            }
+            FileChannel channel = FileChannel.open(
+                    file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(0).flip();
+            channel.write(header, 0);
+            return new MappedVectorFile(channel, false, dimension);
+        }
+
+        FileChannel channel = readOnly
+                ? FileChannel.open(file, StandardOpenOption.READ)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("Not a vector file: " + file);
+        }
+        int version = header.getInt();
+        int storedDimension = header.getInt();
+        if (version != VERSION || storedDimension != dimension) {
+            channel.close();
+            throw new IOException("Vector file " + file + " has version " + version + " and dimension "
+                    + storedDimension + ", expected version " + VERSION + " and dimension " + dimension);
+        }
+        return new MappedVectorFile(channel, readOnly, dimension);
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int mappedCount() {
+        return mappedCount;
+    }
+
+    /** Writes vectors starting at record {@code firstIndex}; they become readable after {@link #map(int)}. */
+    void write(int firstIndex, List<float[]> vectors) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(vectors.size() * stride).order(ByteOrder.LITTLE_ENDIAN);
+        for (float[] vector : vectors) {
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "Embedding dimension " + vector.length + " does not match store dimension " + dimension);
+            }
+            for (float v : vector) {
+                buffer.putFloat(v);
+            }
+        }
+        buffer.flip();
+        long position = offset(firstIndex);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /** Maps (or remaps) the file so that records {@code [0, count)} are readable. */
+    void map(int count) throws IOException {
+        int fullChunks = count / recordsPerChunk;
+        int tail = count % recordsPerChunk;
+        int wanted = fullChunks + (tail > 0 ? 1 : 0);
+        // drop a trailing partial chunk (or chunks past a truncation) and map again
+        while (chunks.size() > Math.min(wanted, Math.max(0, mappedCount / recordsPerChunk))) {
+            chunks.remove(chunks.size() - 1);
+        }
+        FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+        for (int chunk = chunks.size(); chunk < wanted; chunk++) {
+            int records = chunk < fullChunks ? recordsPerChunk : tail;
+            long position = offset(chunk * recordsPerChunk);
+            ByteBuffer bytes = channel.map(mode, position, (long) records * stride);
+            chunks.add(bytes.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+        }
+        mappedCount = count;
+    }
+
+    /** Discards everything after record {@code count}, e.g. an append that was never committed. */
+    void truncate(int count) throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException("Vector file is read-only");
+        }
+        channel.truncate(offset(count));
+        chunks.clear();
+        mappedCount = 0;
+        map(count);
+    }
+
+    void force() throws IOException {
+        channel.force(true);
+    }
+
+    /** Copies vector {@code index} onto the heap, e.g. to return it in an {@code EmbeddingMatch}. */
+    float[] read(int index) {
+        FloatBuffer chunk = chunks.get(index / recordsPerChunk);
+        int base = (index % recordsPerChunk) * dimension;
+        float[] vector = new float[dimension];
+        chunk.get(base, vector);
+        return vector;
+    }
+
+    /**
+     * Cosine similarity between a query, whose squared norm the caller computes once per search, and
+     * vector {@code index}. The vector is bulk-copied from the mapping into the caller's reusable
+     * {@code scratch} array (one {@code memcpy} from the page cache, no allocation) so that {@link
+     * VectorMath} can score it with the SIMD kernel.
+     */
+    float cosine(int index, float[] query, float squaredQueryNorm, float[] scratch) {
+        FloatBuffer chunk = chunks.get(index / recordsPerChunk);
+        chunk.get((index % recordsPerChunk) * dimension, scratch, 0, dimension);
+        return VectorMath.cosine(query, squaredQueryNorm, scratch);
+    }
+
+    private long offset(int index) {
+        return HEADER_BYTES + (long) index * stride;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunks.clear();
+        channel.close();
+    }
+}
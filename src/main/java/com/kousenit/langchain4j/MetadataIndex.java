@@ -0,0 +1,148 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An inverted index from metadata key and value to the entries (by store position) that carry it.
+ *
+ * <p>Stores keep one alongside their vectors and ask it for the {@link #candidates(Filter)} of a
+ * search before scoring anything, so a selective filter such as {@code
+ * metadataKey("tenant").isEqualTo("acme")} scores a few hundred vectors instead of the whole corpus.
+ * Equality and membership ({@code isEqualTo}, {@code isNotEqualTo}, {@code isIn}, {@code isNotIn})
+ * and any {@code and}/{@code or}/{@code not} combination of them are answered from the bitmaps.
+ * Range comparisons are not indexed; an {@code and} that contains one still narrows the candidates
+ * using its other side, and the store checks each candidate with {@link Filter#test(Object)}.
+ *
+ * <p>Values are indexed the way LangChain4j compares them: numbers by decimal value (so an {@code
+ * Integer} 5 finds a stored {@code Long} 5) and UUIDs by their string form. Lookups of {@code float}
+ * or {@code double} values are left to {@code Filter.test}. Not thread-safe; the owning store guards
+ * it with its own lock.
+ */
+final class MetadataIndex {
+
+    private final Map<String, Map<Object, BitSet>> postings = new HashMap<>();
+    private final BitSet indexed = new BitSet();
+
+    /** Records the metadata of the entry at {@code position}; entries without a segment are never added. */
+    void add(int position, Metadata metadata) {
+        indexed.set(position);
+        for (Map.Entry<String, Object> entry : metadata.toMap().entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>())
+                    .computeIfAbsent(normalize(entry.getValue()), value -> new BitSet())
+                    .set(position);
+        }
+    }
+
+    void clear() {
+        postings.clear();
+        indexed.clear();
+    }
+
+    /**
+     * Entries that may match {@code filter}, or {@code null} if the index cannot narrow the search
+     * at all. The returned bitmap is a fresh copy the caller may modify; when {@link
+     * Candidates#exact()} is false it may contain entries the filter rejects.
+     */
+    Candidates candidates(Filter filter) {
+        if (filter instanceof IsEqualTo isEqualTo) {
+            return lookup(isEqualTo.key(), isEqualTo.comparisonValue());
+        }
+        if (filter instanceof IsIn isIn) {
+            return union(isIn.key(), isIn.comparisonValues());
+        }
+        if (filter instanceof IsNotEqualTo isNotEqualTo) {
+            // entries without the key match isNotEqualTo, so complement within everything indexed
+            return complement(lookup(isNotEqualTo.key(), isNotEqualTo.comparisonValue()));
+        }
+        if (filter instanceof IsNotIn isNotIn) {
+            return complement(union(isNotIn.key(), isNotIn.comparisonValues()));
+        }
+        if (filter instanceof Not not) {
+            return complement(candidates(not.expression()));
+        }
+        if (filter instanceof And and) {
+            Candidates left = candidates(and.left());
+            Candidates right = candidates(and.right());
+            if (left == null || right == null) {
+                // one side is enough to narrow the search, but the survivors must be tested
+                Candidates known = left != null ? left : right;
+                return known == null ? null : new Candidates(known.entries(), false);
+            }
+            left.entries().and(right.entries());
+            return new Candidates(left.entries(), left.exact() && right.exact());
+        }
+        if (filter instanceof Or or) {
+            Candidates left = candidates(or.left());
+            Candidates right = candidates(or.right());
+            if (left == null || right == null) {
+                return null;
+            }
+            left.entries().or(right.entries());
+            return new Candidates(left.entries(), left.exact() && right.exact());
+        }
+        return null;
+    }
+
+    private Candidates lookup(String key, Object value) {
+        if (value instanceof Float || value instanceof Double) {
+            // binary fractions may compare equal to stored values with a different decimal form
+            return null;
+        }
+        BitSet entries = postings.getOrDefault(key, Map.of()).get(normalize(value));
+        return new Candidates(entries == null ? new BitSet() : (BitSet) entries.clone(), true);
+    }
+
+    private Candidates union(String key, Collection<?> values) {
+        BitSet entries = new BitSet();
+        for (Object value : values) {
+            Candidates candidates = lookup(key, value);
+            if (candidates == null) {
+                return null;
+            }
+            entries.or(candidates.entries());
+        }
+        return new Candidates(entries, true);
+    }
+
+    private Candidates complement(Candidates candidates) {
+        // the complement of a superset would drop real matches, so only exact sets are negated
+        if (candidates == null || !candidates.exact()) {
+            return null;
+        }
+        BitSet entries = (BitSet) indexed.clone();
+        entries.andNot(candidates.entries());
+        return new Candidates(entries, true);
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Number number) {
+            try {
+                return new BigDecimal(number.toString()).stripTrailingZeros();
+            } catch (NumberFormatException e) {
+                // NaN and infinities have no decimal form
+                return number.toString();
+            }
+        }
+        if (value instanceof UUID uuid) {
+            return uuid.toString();
+        }
+        return value;
+    }
+
+    /** Entries selected by a filter; {@code exact} is false when they still need {@link Filter#test}. */
+    record Candidates(BitSet entries, boolean exact) {}
+}
@@ -0,0 +1,365 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.segment.TextSegment;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.ObjLongConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Drops segments whose text nearly duplicates one seen before, so copies never reach the embedding
+ * model or the store.
+ *
+ * <p>Release notes, copied READMEs and mirrored docs split into many segments that differ only in a
+ * version number or a reworded sentence. Each copy costs an embedding, store space, and a top-k slot
+ * that a different segment could have used. This filter estimates the Jaccard similarity of the
+ * segments' word {@code shingleSize}-grams with MinHash: every segment gets a signature of {@code
+ * numHashes} minimum hash values, and two signatures agree in a fraction of positions that
+ * approximates the Jaccard similarity of the shingle sets.
+ *
+ * <p>Comparing against every kept signature would be quadratic, so signatures are also split into
+ * {@code bands} bands and each band is hashed into a bucket (locality-sensitive hashing). Only
+ * segments sharing at least one bucket are compared, and one counts as a duplicate when the
+ * estimated similarity is at least {@code jaccardThreshold}. With the defaults of 128 hashes in 16
+ * bands of 8 rows, pairs above roughly 0.7 similarity almost always share a bucket.
+ *
+ * <p>The first copy of a text is kept. Later copies are dropped and passed to {@code onDuplicate}
+ * along with the {@link #fingerprint(TextSegment) fingerprint} of the segment they duplicate, which
+ * is the place to merge their metadata into a record of their own (say, every file a paragraph
+ * appeared in, keyed by fingerprint). The filter does not hold on to segments: per kept segment it
+ * keeps the signature, the fingerprint and the bucket entries in flat arrays, about a kilobyte with
+ * the defaults however long the text, so it can run over a whole corpus. It is thread-safe.
+ */
+public final class NearDuplicateFilter {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final double jaccardThreshold;
+    private final int shingleSize;
+    private final int bands;
+    private final int rows;
+    private final long[] seeds;
+    private final ObjLongConsumer<TextSegment> onDuplicate;
+
+    private int kept;
+    private int[] signatures = new int[0]; // numHashes values per kept segment
+    private long[] fingerprints = new long[0];
+    private final BucketTable buckets = new BucketTable();
+    private long segments;
+    private long duplicates;
+    private long duplicateTextBytes;
+
+    private NearDuplicateFilter(Builder builder) {
+        if (builder.jaccardThreshold <= 0 || builder.jaccardThreshold > 1) {
+            throw new IllegalArgumentException("jaccardThreshold must be in (0, 1]");
+        }
+        if (builder.shingleSize < 1 || builder.bands < 1 || builder.numHashes < 1) {
+            throw new IllegalArgumentException("shingleSize, bands and numHashes must be positive");
+        }
+        if (builder.numHashes % builder.bands != 0) {
+            throw new IllegalArgumentException("numHashes must be a multiple of bands");
+        }
+        this.jaccardThreshold = builder.jaccardThreshold;
+        this.shingleSize = builder.shingleSize;
+        this.bands = builder.bands;
+        this.rows = builder.numHashes / builder.bands;
+        this.seeds = new SplittableRandom(builder.seed).longs(builder.numHashes).toArray();
+        this.onDuplicate = builder.onDuplicate;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Returns {@code true} and remembers {@code segment} if it is not a near-duplicate of an earlier one. */
+    public synchronized boolean accept(TextSegment segment) {
+        segments++;
+        int[] signature = signature(segment.text());
+        long[] bandKeys = bandKeys(signature);
+
+        Set<Integer> compared = new HashSet<>();
+        for (int b = 0; b < bands; b++) {
+            for (int entry = buckets.first(bandKeys[b]); entry >= 0; entry = buckets.next(entry)) {
+                int candidate = entry / bands;
+                if (compared.add(candidate) && similarity(signature, candidate) >= jaccardThreshold) {
+                    duplicates++;
+                    duplicateTextBytes += segment.text().getBytes(StandardCharsets.UTF_8).length;
+                    if (onDuplicate != null) {
+                        onDuplicate.accept(segment, fingerprints[candidate]);
+                    }
+                    return false;
+                }
+            }
+        }
+
+        int index = kept++;
+        if (fingerprints.length < kept) {
+            int capacity = Math.max(16, fingerprints.length * 2);
+            fingerprints = Arrays.copyOf(fingerprints, capacity);
+            signatures = Arrays.copyOf(signatures, capacity * seeds.length);
+        }
+        fingerprints[index] = fingerprint(segment);
+        System.arraycopy(signature, 0, signatures, index * seeds.length, seeds.length);
+        for (int b = 0; b < bands; b++) {
+            buckets.add(bandKeys[b], index * bands + b);
+        }
+        return true;
+    }
+
+    /**
+     * The handle {@code onDuplicate} receives for a kept segment: a 64-bit hash of its text, so the
+     * caller can compute the same value when a segment is accepted.
+     */
+    public static long fingerprint(TextSegment segment) {
+        return mix(hash(segment.text()));
+    }
+
+    /** The segments of {@code segments} that {@link #accept(TextSegment)} keeps, in order. */
+    public List<TextSegment> filter(List<TextSegment> segments) {
+        List<TextSegment> accepted = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            if (accept(segment)) {
+                accepted.add(segment);
+            }
+        }
+        return accepted;
+    }
+
+    /** MinHash estimate of the Jaccard similarity of two texts' shingle sets. */
+    public double estimateSimilarity(String first, String second) {
+        int[] a = signature(first);
+        int[] b = signature(second);
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    public synchronized DedupStats stats() {
+        return new DedupStats(segments, duplicates, duplicateTextBytes);
+    }
+
+    /** Forgets every kept segment and resets the counts. */
+    public synchronized void clear() {
+        kept = 0;
+        signatures = new int[0];
+        fingerprints = new long[0];
+        buckets.clear();
+        segments = 0;
+        duplicates = 0;
+        duplicateTextBytes = 0;
+    }
+
+    private int[] signature(String text) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        long[] wordHashes = NON_WORD.splitAsStream(text.toLowerCase(Locale.ROOT))
+                .filter(word -> !word.isEmpty())
+                .mapToLong(NearDuplicateFilter::hash)
+                .toArray();
+        // texts shorter than one shingle are a single shingle of all their words
+        int shingles = Math.max(1, wordHashes.length - shingleSize + 1);
+        for (int s = 0; s < shingles; s++) {
+            long shingle = 0;
+            for (int w = s; w < Math.min(wordHashes.length, s + shingleSize); w++) {
+                shingle = mix(shingle * 31 + wordHashes[w]);
+            }
+            for (int h = 0; h < seeds.length; h++) {
+                int value = (int) mix(shingle ^ seeds[h]);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private long[] bandKeys(int[] signature) {
+        long[] keys = new long[bands];
+        for (int b = 0; b < bands; b++) {
+            long key = b;
+            for (int r = b * rows; r < (b + 1) * rows; r++) {
+                key = key * 0x100000001B3L + signature[r];
+            }
+            keys[b] = mix(key);
+        }
+        return keys;
+    }
+
+    /** Share of equal positions between {@code signature} and the kept segment {@code candidate}'s. */
+    private double similarity(int[] signature, int candidate) {
+        int offset = candidate * signature.length;
+        int equal = 0;
+        for (int i = 0; i < signature.length; i++) {
+            if (signature[i] == signatures[offset + i]) {
+                equal++;
+            }
+        }
+        return (double) equal / signature.length;
+    }
+
+    /** 64-bit FNV-1a over the UTF-16 code units. */
+    private static long hash(String word) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash = (hash ^ word.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /** The SplitMix64 finalizer: every input bit affects every output bit. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * LSH buckets without boxing: an open-addressing table from band key to the newest entry (kept
+     * segment times bands plus band) in that bucket, and a chain from each entry to the one before.
+     */
+    private static final class BucketTable {
+        private long[] keys = new long[64];
+        private int[] heads = filled(64);
+        private int[] chain = new int[64];
+        private int size;
+
+        int first(long key) {
+            int mask = keys.length - 1;
+            for (int slot = (int) key & mask; heads[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return heads[slot];
+                }
+            }
+            return -1;
+        }
+
+        int next(int entry) {
+            return chain[entry];
+        }
+
+        void add(long key, int entry) {
+            if (entry >= chain.length) {
+                chain = Arrays.copyOf(chain, Math.max(chain.length * 2, entry + 1));
+            }
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (heads[slot] >= 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (heads[slot] < 0) {
+                keys[slot] = key;
+                chain[entry] = -1;
+                if (++size * 2 > keys.length) {
+                    heads[slot] = entry;
+                    grow();
+                    return;
+                }
+            } else {
+                chain[entry] = heads[slot];
+            }
+            heads[slot] = entry;
+        }
+
+        void clear() {
+            keys = new long[64];
+            heads = filled(64);
+            chain = new int[64];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldHeads = heads;
+            keys = new long[oldKeys.length * 2];
+            heads = filled(keys.length);
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldHeads[i] >= 0) {
+                    int slot = (int) oldKeys[i] & mask;
+                    while (heads[slot] >= 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    heads[slot] = oldHeads[i];
+                }
+            }
+        }
+
+        private static int[] filled(int length) {
+            int[] array = new int[length];
+            Arrays.fill(array, -1);
+            return array;
+        }
+    }
+
+    /** Segments seen, how many were dropped as duplicates, and the UTF-8 bytes of their text. */
+    public record DedupStats(long segments, long duplicates, long duplicateTextBytes) {
+
+        public double duplicateRatio() {
+            return segments == 0 ? 0.0 : (double) duplicates / segments;
+        }
+
+        /** Float32 vector bytes not stored because of the dropped duplicates. */
+        public long savedVectorBytes(int dimension) {
+            return duplicates * dimension * Float.BYTES;
+        }
+    }
+
+    public static class Builder {
+        private double jaccardThreshold = 0.8;
+        private int shingleSize = 3;
+        private int numHashes = 128;
+        private int bands = 16;
+        private long seed = 42L;
+        private ObjLongConsumer<TextSegment> onDuplicate;
+
+        /** Estimated Jaccard similarity at or above which a segment counts as a duplicate. */
+        public Builder jaccardThreshold(double jaccardThreshold) {
+            this.jaccardThreshold = jaccardThreshold;
+            return this;
+        }
+
+        /** Words per shingle; smaller values make reordered text look more alike. */
+        public Builder shingleSize(int shingleSize) {
+            this.shingleSize = shingleSize;
+            return this;
+        }
+
+        /** Signature length; the similarity estimate's error shrinks with its square root. */
+        public Builder numHashes(int numHashes) {
+            this.numHashes = numHashes;
+            return this;
+        }
+
+        /** LSH bands; more bands catch less similar pairs at the cost of more comparisons. */
+        public Builder bands(int bands) {
+            this.bands = bands;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** Called with each dropped segment and the fingerprint of the kept segment it duplicates. */
+        public Builder onDuplicate(ObjLongConsumer<TextSegment> onDuplicate) {
+            this.onDuplicate = onDuplicate;
+            return this;
+        }
+
+        public NearDuplicateFilter build() {
+            return new NearDuplicateFilter(this);
+        }
+    }
+}
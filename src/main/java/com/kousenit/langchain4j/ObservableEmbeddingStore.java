@@ -0,0 +1,125 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An {@link EmbeddingStore} decorator that tells listeners whenever the store's contents change.
+ *
+ * <p>Anything that caches results derived from a store (such as {@link
+ * SemanticCachingContentRetriever}) needs to know when those results may have gone stale. Every
+ * {@code add}, {@code addAll} and {@code removeAll} is passed to the delegate and then, once it has
+ * returned, each registered listener runs on the calling thread. Searches are passed through
+ * untouched. Mutations must go through this wrapper, not the delegate, to be seen.
+ */
+public class ObservableEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private final EmbeddingStore<TextSegment> delegate;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private ObservableEmbeddingStore(EmbeddingStore<TextSegment> delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate is required");
+        }
+        this.delegate = delegate;
+    }
+
+    public static ObservableEmbeddingStore of(EmbeddingStore<TextSegment> delegate) {
+        return new ObservableEmbeddingStore(delegate);
+    }
+
+    /** Runs {@code listener} after every mutation of the store. */
+    public void addMutationListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeMutationListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    public EmbeddingStore<TextSegment> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = delegate.add(embedding);
+        mutated();
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        delegate.add(id, embedding);
+        mutated();
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = delegate.add(embedding, textSegment);
+        mutated();
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = delegate.addAll(embeddings);
+        mutated();
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = delegate.addAll(embeddings, embedded);
+        mutated();
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        delegate.addAll(ids, embeddings, embedded);
+        mutated();
+    }
+
+    @Override
+    public void remove(String id) {
+        delegate.remove(id);
+        mutated();
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        delegate.removeAll(ids);
+        mutated();
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delegate.removeAll(filter);
+        mutated();
+    }
+
+    @Override
+    public void removeAll() {
+        delegate.removeAll();
+        mutated();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return delegate.search(request);
+    }
+
+    private void mutated() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
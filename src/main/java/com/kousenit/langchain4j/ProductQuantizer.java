@@ -0,0 +1,157 @@
+package com.kousenit.langchain4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Product quantization codebooks: the vector is cut into {@code subspaces} contiguous slices and
+ * each slice is replaced by the index of its nearest centroid among (at most) 256, learned with
+ * k-means on a training sample. A 384-d vector with 48 subspaces becomes 48 bytes instead of 1,536.
+ *
+ * <p>Queries are scored asymmetrically: {@link #scoreTable(float[])} computes the dot product of each
+ * query slice with every centroid once, after which {@link #score(float[], byte[], int)} is one table
+ * lookup and add per subspace.
+ */
+final class ProductQuantizer {
+
+    static final int MAX_CENTROIDS = 256;
+
+    private final int[] bounds;
+    private final int centroids;
+    private final float[][] codebooks;
+
+    private ProductQuantizer(int[] bounds, int centroids, float[][] codebooks) {
+        this.bounds = bounds;
+        this.centroids = centroids;
+        this.codebooks = codebooks;
+    }
+
+    /** Learns codebooks from {@code sample} with {@code iterations} rounds of k-means per subspace. */
+    static ProductQuantizer train(List<float[]> sample, int subspaces, int iterations, long seed) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("Cannot train a product quantizer without vectors");
+        }
+        int dimension = sample.get(0).length;
+        if (subspaces < 1 || subspaces > dimension) {
+            throw new IllegalArgumentException("subspaces must be between 1 and the dimension " + dimension);
+        }
+        int[] bounds = new int[subspaces + 1];
+        for (int s = 0; s <= subspaces; s++) {
+            bounds[s] = s * dimension / subspaces;
+        }
+        int centroids = Math.min(MAX_CENTROIDS, sample.size());
+        float[][] codebooks = new float[subspaces][];
+        IntStream.range(0, subspaces)
+                .parallel()
+                .forEach(s -> codebooks[s] =
+                        kMeans(sample, bounds[s], bounds[s + 1], centroids, iterations, new Random(seed + s)));
+        return new ProductQuantizer(bounds, centroids, codebooks);
+    }
+
+    int subspaces() {
+        return codebooks.length;
+    }
+
+    /** Writes the {@link #subspaces()} centroid indexes of {@code vector} into {@code codes}. */
+    void encode(float[] vector, byte[] codes, int offset) {
+        for (int s = 0; s < codebooks.length; s++) {
+            codes[offset + s] = (byte) nearest(codebooks[s], vector, bounds[s], bounds[s + 1] - bounds[s], centroids);
+        }
+    }
+
+    /** Per-subspace dot products of the query with every centroid, laid out as {@code [s * 256 + c]}. */
+    float[] scoreTable(float[] query) {
+        float[] table = new float[codebooks.length * MAX_CENTROIDS];
+        for (int s = 0; s < codebooks.length; s++) {
+            int start = bounds[s];
+            int width = bounds[s + 1] - start;
+            float[] codebook = codebooks[s];
+            for (int c = 0; c < centroids; c++) {
+                float dot = 0;
+                for (int d = 0; d < width; d++) {
+                    dot += query[start + d] * codebook[c * width + d];
+                }
+                table[s * MAX_CENTROIDS + c] = dot;
+            }
+        }
+        return table;
+    }
+
+    /** Approximate dot product of the query behind {@code table} with an encoded vector. */
+    float score(float[] table, byte[] codes, int offset) {
+        float sum = 0;
+        for (int s = 0; s < codebooks.length; s++) {
+            sum += table[s * MAX_CENTROIDS + (codes[offset + s] & 0xFF)];
+        }
+        return sum;
+    }
+
+    /** Heap used by the codebooks, shared by all encoded vectors. */
+    long codebookBytes() {
+        long floats = 0;
+        for (float[] codebook : codebooks) {
+            floats += codebook.length;
+        }
+        return floats * Float.BYTES;
+    }
+
+    private static float[] kMeans(List<float[]> sample, int start, int end, int k, int iterations, Random random) {
+        int width = end - start;
+        int n = sample.size();
+        float[] centres = new float[k * width];
+        // seed with k distinct sample points (partial Fisher-Yates shuffle)
+        int[] order = IntStream.range(0, n).toArray();
+        for (int c = 0; c < k; c++) {
+            int pick = c + random.nextInt(n - c);
+            int swap = order[c];
+            order[c] = order[pick];
+            order[pick] = swap;
+            System.arraycopy(sample.get(order[c]), start, centres, c * width, width);
+        }
+
+        float[] sums = new float[k * width];
+        int[] sizes = new int[k];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(sizes, 0);
+            for (int i = 0; i < n; i++) {
+                float[] vector = sample.get(i);
+                int c = nearest(centres, vector, start, width, k);
+                sizes[c]++;
+                for (int d = 0; d < width; d++) {
+                    sums[c * width + d] += vector[start + d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (sizes[c] == 0) {
+                    // an empty cluster restarts on a random point rather than wasting a code
+                    System.arraycopy(sample.get(random.nextInt(n)), start, centres, c * width, width);
+                    continue;
+                }
+                for (int d = 0; d < width; d++) {
+                    centres[c * width + d] = sums[c * width + d] / sizes[c];
+                }
+            }
+        }
+        return centres;
+    }
+
+    private static int nearest(float[] centres, float[] vector, int start, int width, int k) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < k; c++) {
+            float distance = 0;
+            for (int d = 0; d < width; d++) {
+                float diff = vector[start + d] - centres[c * width + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,594 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An {@link EmbeddingStore} that keeps only compressed vectors on the heap.
+ *
+ * <p>A float32 MiniLM embedding costs 1,536 bytes. This store holds one of three compressed codes per
+ * entry instead:
+ *
+ * <ul>
+ *   <li>{@link Quantization#INT8} - each normalized vector scaled into signed bytes, plus one float
+ *       scale: 388 bytes for 384 dimensions
+ *   <li>{@link Quantization#PRODUCT} - product quantization (see {@link ProductQuantizer}), one byte
+ *       per subspace: 48 bytes for 384 dimensions with the default of one subspace per 8 dimensions
+ *   <li>{@link Quantization#BINARY} - the sign bit of each dimension, packed into {@code long}s: 48
+ *       bytes for 384 dimensions. Codes are compared by Hamming distance (XOR and {@link
+ *       Long#bitCount}, a single instruction per 64 dimensions), which makes the scan an order of
+ *       magnitude cheaper than float dot products, at the price of a coarser ranking
+ * </ul>
+ *
+ * <p>A search scores the query against every code, keeps the best {@code maxResults *
+ * rerankFactor} candidates, then re-ranks just those with the full-precision vectors. The default
+ * factor is 10, or 40 for {@code BINARY}, whose Hamming ranking needs a few hundred candidates to
+ * keep recall high. The full
+ * vectors are appended to a {@link MappedVectorFile} in a scratch directory and are only read (from
+ * the page cache) for those candidates, so returned scores are exact cosine similarities and the
+ * quantization only costs recall when a true neighbour falls outside the candidate list. Metadata
+ * filters are resolved through a {@link MetadataIndex}, so only matching entries are scored.
+ * Closing the store deletes the scratch file, or the JVM deletes it on exit if the store is never
+ * closed.
+ *
+ * <p>Product codebooks need training data: until {@code trainingSize} entries have been added (or
+ * {@link #train()} is called) a {@code PRODUCT} store searches the full-precision vectors directly.
+ * Entries added after training are encoded with the existing codebooks.
+ */
+public class QuantizedEmbeddingStore implements EmbeddingStore<TextSegment>, Closeable {
+
+    /** How vectors are compressed on the heap. */
+    public enum Quantization {
+        INT8,
+        PRODUCT,
+        BINARY
+    }
+
+    private static final int ENTRIES_PER_PAGE = 1 << 12;
+    private static final int KMEANS_ITERATIONS = 10;
+    private static final int DEFAULT_RERANK_FACTOR = 10;
+    private static final int DEFAULT_BINARY_RERANK_FACTOR = 40;
+
+    private final Quantization quantization;
+    private final int rerankFactor;
+    private final int configuredSubspaces;
+    private final int trainingSize;
+    private final long seed;
+    private final Path workDirectory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private final MetadataIndex metadataIndex = new MetadataIndex();
+    private final List<byte[]> pages = new ArrayList<>();
+    private final List<long[]> bitPages = new ArrayList<>();
+    private float[] scales = new float[0];
+
+    private Path vectorPath;
+    private MappedVectorFile vectors;
+    private ProductQuantizer productQuantizer;
+    private int dimension = -1;
+    private int codeLength;
+    private int codeWords;
+    private boolean closed;
+
+    private QuantizedEmbeddingStore(Builder builder) {
+        if (builder.quantization == null) {
+            throw new IllegalArgumentException("quantization is required");
+        }
+        if (builder.rerankFactor != null && builder.rerankFactor < 1) {
+            throw new IllegalArgumentException("rerankFactor must be positive");
+        }
+        if (builder.subspaces < 0 || builder.trainingSize < 1) {
+            throw new IllegalArgumentException("subspaces cannot be negative and trainingSize must be positive");
+        }
+        this.quantization = builder.quantization;
+        this.rerankFactor = builder.rerankFactor != null
+                ? builder.rerankFactor
+                : builder.quantization == Quantization.BINARY ? DEFAULT_BINARY_RERANK_FACTOR : DEFAULT_RERANK_FACTOR;
+        this.configuredSubspaces = builder.subspaces;
+        this.trainingSize = builder.trainingSize;
+        this.seed = builder.seed;
+        this.workDirectory =
+                builder.workDirectory != null ? builder.workDirectory : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Number of live (not removed) entries. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size() - deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Heap bytes spent on vectors per stored entry: the codes (bytes or bit words), the int8 scales
+     * and the product codebooks amortised over all entries. The float32 equivalent is {@code 4 * dimension}.
+     */
+    public double vectorBytesPerEntry() {
+        lock.readLock().lock();
+        try {
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            long bytes = (long) codeLength * ids.size();
+            if (quantization == Quantization.INT8) {
+                bytes += (long) Float.BYTES * ids.size();
+            } else if (productQuantizer != null) {
+                bytes += productQuantizer.codebookBytes();
+            } else if (quantization == Quantization.PRODUCT) {
+                // untrained: nothing is encoded yet
+                bytes = 0;
+            }
+            return (double) bytes / ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Trains the product codebooks on the entries added so far and encodes them. Happens
+     * automatically once {@code trainingSize} entries exist; does nothing for {@code INT8} stores or
+     * when the codebooks are already trained.
+     */
+    public void train() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (quantization == Quantization.PRODUCT && productQuantizer == null && !ids.isEmpty()) {
+                trainProductQuantizer();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), textSegment == null ? null : List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            // validate the whole batch before the first one opens the vector file
+            int batchDimension = vectors == null ? embeddings.get(0).dimension() : dimension;
+            for (Embedding embedding : embeddings) {
+                if (embedding.dimension() != batchDimension) {
+                    throw new IllegalArgumentException("Embedding dimension " + embedding.dimension()
+                            + " does not match store dimension " + batchDimension);
+                }
+            }
+            if (vectors == null) {
+                if (quantization == Quantization.PRODUCT && configuredSubspaces > batchDimension) {
+                    throw new IllegalArgumentException("subspaces (" + configuredSubspaces
+                            + ") cannot exceed the embedding dimension " + batchDimension);
+                }
+                open(batchDimension);
+            }
+            List<float[]> normalized = new ArrayList<>(ids.size());
+            for (Embedding embedding : embeddings) {
+                normalized.add(VectorMath.normalizedCopy(embedding.vector()));
+            }
+
+            int first = this.ids.size();
+            vectors.write(first, normalized);
+            vectors.map(first + normalized.size());
+            for (int i = 0; i < ids.size(); i++) {
+                int index = first + i;
+                Integer previous = indexById.put(ids.get(i), index);
+                if (previous != null) {
+                    deleted.set(previous);
+                }
+                this.ids.add(ids.get(i));
+                TextSegment segment = embedded == null ? null : embedded.get(i);
+                segments.add(segment);
+                if (segment != null) {
+                    metadataIndex.add(index, segment.metadata());
+                }
+                encode(index, normalized.get(i));
+            }
+
+            if (quantization == Quantization.PRODUCT && productQuantizer == null && this.ids.size() >= trainingSize) {
+                trainProductQuantizer();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer index = indexById.remove(id);
+                if (index != null) {
+                    deleted.set(index);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                TextSegment segment = segments.get(i);
+                if (!deleted.get(i) && segment != null && filter.test(segment.metadata())) {
+                    indexById.remove(ids.get(i));
+                    deleted.set(i);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            segments.clear();
+            indexById.clear();
+            deleted.clear();
+            metadataIndex.clear();
+            pages.clear();
+            bitPages.clear();
+            scales = new float[0];
+            productQuantizer = null;
+            dimension = -1;
+            closeVectors();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            if (ids.isEmpty()) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = VectorMath.normalizedCopy(request.queryEmbedding().vector());
+            checkDimension(query.length);
+            Filter filter = request.filter();
+            int maxResults = request.maxResults();
+            float[] scratch = new float[dimension];
+            float queryNorm = VectorMath.squaredNorm(query);
+
+            // without trained codebooks, every entry is a candidate and is scored exactly
+            boolean approximate = quantization != Quantization.PRODUCT || productQuantizer != null;
+            float[] table = productQuantizer != null ? productQuantizer.scoreTable(query) : null;
+            long[] queryBits = quantization == Quantization.BINARY ? signBits(query) : null;
+            int candidates = approximate ? Math.max(maxResults, maxResults * rerankFactor) : maxResults;
+
+            // the metadata index narrows a filtered search to the entries that can match
+            MetadataIndex.Candidates allowed = filter == null ? null : metadataIndex.candidates(filter);
+            BitSet scan = allowed == null ? null : allowed.entries();
+            boolean testFilter = filter != null && (allowed == null || !allowed.exact());
+
+            PriorityQueue<Candidate> shortlist = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+            int count = ids.size();
+            for (int i = scan == null ? 0 : scan.nextSetBit(0);
+                    i >= 0 && i < count;
+                    i = scan == null ? i + 1 : scan.nextSetBit(i + 1)) {
+                if (deleted.get(i)) {
+                    continue;
+                }
+                float score = approximate
+                        ? approximateScore(i, query, table, queryBits)
+                        : vectors.cosine(i, query, queryNorm, scratch);
+                if (shortlist.size() == candidates && score <= shortlist.peek().score()) {
+                    continue;
+                }
+                if (testFilter && !matches(filter, i)) {
+                    continue;
+                }
+                shortlist.add(new Candidate(i, score));
+                if (shortlist.size() > candidates) {
+                    shortlist.poll();
+                }
+            }
+
+            List<Candidate> ranked = new ArrayList<>(shortlist.size());
+            for (Candidate candidate : shortlist) {
+                float exact = approximate
+                        ? vectors.cosine(candidate.index(), query, queryNorm, scratch)
+                        : candidate.score();
+                ranked.add(new Candidate(candidate.index(), exact));
+            }
+            ranked.sort(Comparator.comparingDouble(Candidate::score).reversed());
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+            for (Candidate candidate : ranked) {
+                double score = RelevanceScore.fromCosineSimilarity(candidate.score());
+                if (matches.size() == maxResults || score < request.minScore()) {
+                    break;
+                }
+                int index = candidate.index();
+                matches.add(new EmbeddingMatch<>(
+                        score, ids.get(index), Embedding.from(vectors.read(index)), segments.get(index)));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean matches(Filter filter, int index) {
+        TextSegment segment = segments.get(index);
+        return segment != null && filter.test(segment.metadata());
+    }
+
+    private float approximateScore(int index, float[] query, float[] table, long[] queryBits) {
+        if (queryBits != null) {
+            long[] page = bitPages.get(index / ENTRIES_PER_PAGE);
+            int offset = (index % ENTRIES_PER_PAGE) * codeWords;
+            int differing = 0;
+            for (int w = 0; w < codeWords; w++) {
+                differing += Long.bitCount(page[offset + w] ^ queryBits[w]);
+            }
+            // fewer differing signs means a smaller angle; only the order matters
+            return 1f - 2f * differing / dimension;
+        }
+        byte[] page = pages.get(index / ENTRIES_PER_PAGE);
+        int offset = (index % ENTRIES_PER_PAGE) * codeLength;
+        if (table != null) {
+            return productQuantizer.score(table, page, offset);
+        }
+        return VectorMath.dot(query, page, offset) * scales[index];
+    }
+
+    private void open(int dimension) throws IOException {
+        this.dimension = dimension;
+        this.codeWords = (dimension + Long.SIZE - 1) / Long.SIZE;
+        this.codeLength = switch (quantization) {
+            case INT8 -> dimension;
+            case PRODUCT -> configuredSubspaces > 0 ? configuredSubspaces : Math.max(1, dimension / 8);
+            case BINARY -> codeWords * Long.BYTES;
+        };
+        Files.createDirectories(workDirectory);
+        // MappedVectorFile.open creates the file itself, so only reserve a unique name here
+        vectorPath = Files.createTempFile(workDirectory, "quantized-store-", ".f32");
+        Files.delete(vectorPath);
+        vectors = MappedVectorFile.open(vectorPath, dimension, false);
+        // a store that is never closed still leaves no scratch file behind when the JVM exits
+        vectorPath.toFile().deleteOnExit();
+    }
+
+    private void encode(int index, float[] vector) {
+        if (quantization == Quantization.PRODUCT && productQuantizer == null) {
+            return;
+        }
+        int pageIndex = index / ENTRIES_PER_PAGE;
+        if (quantization == Quantization.BINARY) {
+            while (bitPages.size() <= pageIndex) {
+                bitPages.add(new long[ENTRIES_PER_PAGE * codeWords]);
+            }
+            long[] bits = signBits(vector);
+            System.arraycopy(bits, 0, bitPages.get(pageIndex), (index % ENTRIES_PER_PAGE) * codeWords, codeWords);
+            return;
+        }
+        while (pages.size() <= pageIndex) {
+            pages.add(new byte[ENTRIES_PER_PAGE * codeLength]);
+        }
+        byte[] page = pages.get(pageIndex);
+        int offset = (index % ENTRIES_PER_PAGE) * codeLength;
+        if (quantization == Quantization.PRODUCT) {
+            productQuantizer.encode(vector, page, offset);
+            return;
+        }
+
+        // symmetric per-vector scaling: the largest component maps to +/-127
+        float max = 0;
+        for (float v : vector) {
+            max = Math.max(max, Math.abs(v));
+        }
+        float scale = max == 0 ? 0 : max / 127f;
+        for (int d = 0; d < vector.length; d++) {
+            page[offset + d] = scale == 0 ? 0 : (byte) Math.round(vector[d] / scale);
+        }
+        if (scales.length <= index) {
+            scales = Arrays.copyOf(scales, Math.max(index + 1, scales.length * 2));
+        }
+        scales[index] = scale;
+    }
+
+    private void trainProductQuantizer() {
+        int count = ids.size();
+        int sampleSize = Math.min(count, trainingSize);
+        List<float[]> sample = new ArrayList<>(sampleSize);
+        for (int i = 0; i < sampleSize; i++) {
+            // evenly strided so the sample spans the whole corpus, not just its first documents
+            sample.add(vectors.read((int) ((long) i * count / sampleSize)));
+        }
+        productQuantizer = ProductQuantizer.train(sample, codeLength, KMEANS_ITERATIONS, seed);
+        for (int i = 0; i < count; i++) {
+            encode(i, vectors.read(i));
+        }
+    }
+
+    /** Bit {@code d} is set when component {@code d} is positive. */
+    private long[] signBits(float[] vector) {
+        long[] bits = new long[codeWords];
+        for (int d = 0; d < vector.length; d++) {
+            if (vector[d] > 0) {
+                bits[d >>> 6] |= 1L << (d & 63);
+            }
+        }
+        return bits;
+    }
+
+    private void checkDimension(int length) {
+        if (dimension >= 0 && length != dimension) {
+            throw new IllegalArgumentException(
+                    "Embedding dimension " + length + " does not match store dimension " + dimension);
+        }
+    }
+
+    /** Closes and deletes the scratch file of full-precision vectors; the store cannot be used afterwards. */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            closeVectors();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("QuantizedEmbeddingStore is closed");
+        }
+    }
+
+    private void closeVectors() {
+        try {
+            if (vectors != null) {
+                vectors.close();
+                Files.deleteIfExists(vectorPath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            vectors = null;
+            vectorPath = null;
+        }
+    }
+
+    private record Candidate(int index, float score) {}
+
+    public static class Builder {
+        private Quantization quantization = Quantization.INT8;
+        private Integer rerankFactor;
+        private int subspaces;
+        private int trainingSize = 10_000;
+        private long seed = 42L;
+        private Path workDirectory;
+
+        public Builder quantization(Quantization quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        /**
+         * Candidates re-ranked with full precision, as a multiple of {@code maxResults}; defaults to
+         * 10, or 40 for {@code BINARY}.
+         */
+        public Builder rerankFactor(int rerankFactor) {
+            this.rerankFactor = rerankFactor;
+            return this;
+        }
+
+        /**
+         * Bytes per vector in {@code PRODUCT} mode; defaults to one subspace per 8 dimensions. A count
+         * above the embedding dimension is rejected by the first {@code add}, before anything is stored.
+         */
+        public Builder subspaces(int subspaces) {
+            this.subspaces = subspaces;
+            return this;
+        }
+
+        /** Entries to collect (and sample) before the product codebooks are trained. */
+        public Builder trainingSize(int trainingSize) {
+            this.trainingSize = trainingSize;
+            return this;
+        }
+
+        /** Seed for k-means initialisation, so codebooks are reproducible. */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** Where the scratch file of full-precision vectors goes; defaults to {@code java.io.tmpdir}. */
+        public Builder workDirectory(Path workDirectory) {
+            this.workDirectory = workDirectory;
+            return this;
+        }
+
+        public QuantizedEmbeddingStore build() {
+            return new QuantizedEmbeddingStore(this);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.kousenit.langchain4j;
+
+/** Plain-loop {@link SimilarityKernel}, used when the Vector API module is not available. */
+final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    static final ScalarSimilarityKernel INSTANCE = new ScalarSimilarityKernel();
+
+    private ScalarSimilarityKernel() {}
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        float dot = 0;
+        float normA = 0;
+        float normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return VectorMath.cosineFrom(dot, normA, normB);
+    }
+
+    @Override
+    public float cosine(float[] a, float squaredNormA, float[] b) {
+        float dot = 0;
+        float normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normB += b[i] * b[i];
+        }
+        return VectorMath.cosineFrom(dot, squaredNormA, normB);
+    }
+
+    @Override
+    public float dot(float[] a, byte[] b, int offset) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,121 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary encoding of an embedding id plus its (optional) {@link TextSegment}, shared by the on-disk
+ * embedding stores.
+ *
+ * <p>Strings are written as a length-prefixed UTF-8 byte array (not {@link DataOutput#writeUTF},
+ * which is limited to 64 KiB). Metadata values keep their type, using one tag byte per entry, so
+ * that filters comparing numbers still work after a round trip.
+ */
+final class SegmentRecords {
+
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte UUID_VALUE = 6;
+
+    private SegmentRecords() {}
+
+    /** An id and its segment as stored on disk; {@code segment} is {@code null} for bare embeddings. */
+    record Entry(String id, TextSegment segment) {}
+
+    static void write(DataOutput out, String id, TextSegment segment) throws IOException {
+        writeString(out, id);
+        out.writeBoolean(segment != null);
+        if (segment != null) {
+            writeString(out, segment.text());
+            writeMetadata(out, segment.metadata());
+        }
+    }
+
+    static Entry read(DataInput in) throws IOException {
+        String id = readString(in);
+        if (!in.readBoolean()) {
+            return new Entry(id, null);
+        }
+        String text = readString(in);
+        return new Entry(id, TextSegment.from(text, readMetadata(in)));
+    }
+
+    static void writeMetadata(DataOutput out, Metadata metadata) throws IOException {
+        Map<String, Object> map = metadata.toMap();
+        out.writeInt(map.size());
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    static Metadata readMetadata(DataInput in) throws IOException {
+        int size = in.readInt();
+        Map<String, Object> map = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            map.put(key, readValue(in));
+        }
+        return Metadata.from(map);
+    }
+
+    static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value instanceof String s) {
+            out.writeByte(STRING);
+            writeString(out, s);
+        } else if (value instanceof Integer i) {
+            out.writeByte(INTEGER);
+            out.writeInt(i);
+        } else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (value instanceof Float f) {
+            out.writeByte(FLOAT);
+            out.writeFloat(f);
+        } else if (value instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        } else if (value instanceof UUID u) {
+            out.writeByte(UUID_VALUE);
+            out.writeLong(u.getMostSignificantBits());
+            out.writeLong(u.getLeastSignificantBits());
+        } else {
+            throw new IllegalArgumentException("Unsupported metadata value type: " + value.getClass());
+        }
+    }
+
+    static Object readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case STRING -> readString(in);
+            case INTEGER -> in.readInt();
+            case LONG -> in.readLong();
+            case FLOAT -> in.readFloat();
+            case DOUBLE -> in.readDouble();
+            case UUID_VALUE -> new UUID(in.readLong(), in.readLong());
+            default -> throw new IOException("Unknown metadata value type: " + type);
+        };
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
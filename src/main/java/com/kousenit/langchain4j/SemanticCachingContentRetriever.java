@@ -0,0 +1,267 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link ContentRetriever} decorator that answers repeated and near-identical queries from a cache.
+ *
+ * <p>A support bot sees the same few questions phrased a hundred ways, and every one of them costs a
+ * query embedding plus a store search in {@code EmbeddingStoreContentRetriever}. This cache sits in
+ * front of any retriever and checks two tiers before calling it:
+ *
+ * <ul>
+ *   <li>exact: the query text, lowercased with whitespace and trailing punctuation normalised, has
+ *       been seen before (no embedding needed)
+ *   <li>semantic: the query embedding has cosine similarity of at least {@code similarityThreshold}
+ *       with a cached query's embedding
+ * </ul>
+ *
+ * <p>On a hit the cached {@link Content} list is returned as is. Entries expire after {@code ttl} and
+ * the least recently used entry is evicted beyond {@code maxEntries}; the semantic tier compares
+ * against every live entry, so {@code maxEntries} also bounds the cost of a lookup. Register the
+ * cache with an {@link ObservableEmbeddingStore} through {@link Builder#invalidatedBy} and every
+ * mutation of the store clears it; a retrieval that was in flight during a mutation is not cached.
+ *
+ * <p>On a miss the query is embedded here and again by the delegate. Giving both the same {@link
+ * CachingEmbeddingModel} makes the second call free. If the delegate's results depend on who is
+ * asking (a dynamic filter on the user, say), set a {@link Builder#partitionKey} so queries only
+ * match within their own partition.
+ */
+public class SemanticCachingContentRetriever implements ContentRetriever {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?!.]+$");
+
+    private final ContentRetriever delegate;
+    private final EmbeddingModel embeddingModel;
+    private final double similarityThreshold;
+    private final long ttlNanos;
+    private final Function<Query, ?> partitionKey;
+    private final Map<CacheKey, Entry> entries;
+    private long generation;
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder semanticHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+
+    private SemanticCachingContentRetriever(Builder builder) {
+        if (builder.delegate == null || builder.embeddingModel == null) {
+            throw new IllegalArgumentException("delegate and embeddingModel are required");
+        }
+        if (builder.similarityThreshold <= 0 || builder.similarityThreshold > 1) {
+            throw new IllegalArgumentException("similarityThreshold must be in (0, 1]");
+        }
+        if (builder.maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (builder.ttl == null || builder.ttl.isNegative() || builder.ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.delegate = builder.delegate;
+        this.embeddingModel = builder.embeddingModel;
+        this.similarityThreshold = builder.similarityThreshold;
+        this.ttlNanos = builder.ttl.toNanos();
+        this.partitionKey = builder.partitionKey;
+        int maxEntries = builder.maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        if (builder.store != null) {
+            builder.store.addMutationListener(this::invalidateAll);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        long start = System.nanoTime();
+        CacheKey key = new CacheKey(partitionKey.apply(query), normalize(query.text()));
+        long observedGeneration;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && !expired(entry, start)) {
+                return hit(exactHits, entry, start);
+            }
+            observedGeneration = generation;
+        }
+
+        float[] vector = unitVector(embeddingModel.embed(query.text()).content().vector());
+        synchronized (entries) {
+            Entry best = null;
+            double bestSimilarity = similarityThreshold;
+            long now = System.nanoTime();
+            for (Iterator<Map.Entry<CacheKey, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<CacheKey, Entry> candidate = it.next();
+                if (expired(candidate.getValue(), now)) {
+                    it.remove();
+                } else if (Objects.equals(candidate.getKey().partition(), key.partition())) {
+                    double similarity = VectorMath.dot(vector, candidate.getValue().vector());
+                    if (similarity >= bestSimilarity) {
+                        bestSimilarity = similarity;
+                        best = candidate.getValue();
+                    }
+                }
+            }
+            if (best != null) {
+                // touch it so the LRU order reflects semantic hits too
+                entries.get(best.key());
+                return hit(semanticHits, best, start);
+            }
+        }
+
+        List<Content> contents = List.copyOf(delegate.retrieve(query));
+        synchronized (entries) {
+            // a store mutation during the delegate call may have made these results stale
+            if (generation == observedGeneration) {
+                entries.put(key, new Entry(key, vector, contents, System.nanoTime()));
+            }
+        }
+        misses.increment();
+        missNanos.add(System.nanoTime() - start);
+        return contents;
+    }
+
+    /** Drops every cached result; called on each mutation of a store registered with the builder. */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            generation++;
+        }
+    }
+
+    /** Number of live entries, expired ones included until a lookup purges them. */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(
+                exactHits.sum(), semanticHits.sum(), misses.sum(), Duration.ofNanos(savedNanos.sum()));
+    }
+
+    private List<Content> hit(LongAdder counter, Entry entry, long start) {
+        counter.increment();
+        long missCount = misses.sum();
+        if (missCount > 0) {
+            // what the hit would have cost as a miss, estimated from the average miss so far
+            savedNanos.add(Math.max(0, missNanos.sum() / missCount - (System.nanoTime() - start)));
+        }
+        return entry.contents();
+    }
+
+    private boolean expired(Entry entry, long now) {
+        return now - entry.createdNanos() > ttlNanos;
+    }
+
+    static String normalize(String text) {
+        String collapsed = WHITESPACE.matcher(text.strip()).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(collapsed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static float[] unitVector(float[] vector) {
+        float norm = (float) Math.sqrt(VectorMath.dot(vector, vector));
+        float[] unit = vector.clone();
+        if (norm > 0) {
+            for (int i = 0; i < unit.length; i++) {
+                unit[i] /= norm;
+            }
+        }
+        return unit;
+    }
+
+    private record CacheKey(Object partition, String text) {}
+
+    private record Entry(CacheKey key, float[] vector, List<Content> contents, long createdNanos) {}
+
+    /**
+     * Cumulative counts per tier, and the latency saved: for each hit, the average miss latency so
+     * far minus the hit's own latency.
+     */
+    public record CacheStats(long exactHits, long semanticHits, long misses, Duration savedLatency) {
+
+        public long hits() {
+            return exactHits + semanticHits;
+        }
+
+        public double hitRatio() {
+            long total = hits() + misses;
+            return total == 0 ? 0.0 : (double) hits() / total;
+        }
+    }
+
+    public static class Builder {
+        private ContentRetriever delegate;
+        private EmbeddingModel embeddingModel;
+        private double similarityThreshold = 0.95;
+        private int maxEntries = 1_000;
+        private Duration ttl = Duration.ofMinutes(10);
+        private Function<Query, ?> partitionKey = query -> null;
+        private ObservableEmbeddingStore store;
+
+        public Builder delegate(ContentRetriever delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /** Embeds queries for the semantic tier; should be the model the delegate uses. */
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /** Minimum cosine similarity between two queries for one to reuse the other's results. */
+        public Builder similarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+            return this;
+        }
+
+        public Builder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public Builder ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        /** Queries with different keys never share results, e.g. {@code q -> q.metadata().chatMemoryId()}. */
+        public Builder partitionKey(Function<Query, ?> partitionKey) {
+            this.partitionKey = partitionKey;
+            return this;
+        }
+
+        /** Clears the cache whenever {@code store} is mutated. */
+        public Builder invalidatedBy(ObservableEmbeddingStore store) {
+            this.store = store;
+            return this;
+        }
+
+        public SemanticCachingContentRetriever build() {
+            return new SemanticCachingContentRetriever(this);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link EmbeddingStore} that hash-partitions entries across several underlying stores and
+ * searches them all in parallel.
+ *
+ * <p>Each entry lives on the shard chosen by a hash of its id, so writes and deletes by id touch one
+ * shard, while {@code removeAll(Filter)} and {@code removeAll()} go to every shard. A search sends the
+ * same request to every shard at once and merges their top {@code maxResults} through a bounded heap;
+ * since each shard returns its own best matches, the merged list is exactly what one store holding
+ * everything would return.
+ *
+ * <p>Shards can be any store: in-process ones such as {@link CompactingEmbeddingStore}, or clients of
+ * remote vector databases. A search waits at most {@code shardTimeout} for all shards together. A
+ * shard that misses the deadline is cancelled and its results are left out, so one slow node
+ * degrades recall instead of latency; {@link #stats()} counts how often that happened. A shard that
+ * throws fails the search.
+ *
+ * <p>Every shard has its own pool of at most {@code threadsPerShard} threads and a bounded queue.
+ * Cancelling cannot stop a remote call that ignores interrupts, so a stalled shard keeps its threads
+ * busy; its later searches wait in the queue and, once that is full, skip the shard at once. Either
+ * way the stall costs a fixed number of threads and never slows the other shards.
+ *
+ * <p>Use it wherever a store is expected, e.g. as the {@code embeddingStore} of an {@code
+ * EmbeddingStoreContentRetriever}. Closing it stops the search threads; the shards are not closed.
+ */
+public class ShardedEmbeddingStore implements EmbeddingStore<TextSegment>, Closeable {
+
+    /** Queue slots per shard thread; past that, a search skips the shard instead of waiting. */
+    private static final int QUEUED_TASKS_PER_THREAD = 16;
+
+    private final List<EmbeddingStore<TextSegment>> shards;
+    private final long shardTimeoutNanos;
+    private final List<ThreadPoolExecutor> executors;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder partialSearches = new LongAdder();
+    private final LongAdder timedOutShards = new LongAdder();
+
+    private ShardedEmbeddingStore(Builder builder) {
+        if (builder.shards == null || builder.shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        if (builder.shardTimeout == null || builder.shardTimeout.isNegative() || builder.shardTimeout.isZero()) {
+            throw new IllegalArgumentException("shardTimeout must be positive");
+        }
+        if (builder.threadsPerShard < 1) {
+            throw new IllegalArgumentException("threadsPerShard must be positive");
+        }
+        this.shards = List.copyOf(builder.shards);
+        this.shardTimeoutNanos = builder.shardTimeout.toNanos();
+        List<ThreadPoolExecutor> executors = new ArrayList<>(shards.size());
+        for (int s = 0; s < shards.size(); s++) {
+            executors.add(shardExecutor(s, builder.threadsPerShard));
+        }
+        this.executors = List.copyOf(executors);
+    }
+
+    private static ThreadPoolExecutor shardExecutor(int shard, int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                30,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_TASKS_PER_THREAD),
+                runnable -> {
+                    Thread thread =
+                            new Thread(runnable, "shard-" + shard + "-search-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /** Index of the shard that stores {@code id}. */
+    public int shardOf(String id) {
+        // spread the bits so ids with a common prefix and suffix still scatter
+        int hash = id.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    public ShardStats stats() {
+        return new ShardStats(searches.sum(), partialSearches.sum(), timedOutShards.sum());
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        shards.get(shardOf(id)).add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        if (textSegment == null) {
+            add(id, embedding);
+        } else {
+            addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        }
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        List<Batch> batches = new ArrayList<>(shards.size());
+        for (int s = 0; s < shards.size(); s++) {
+            batches.add(new Batch());
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            Batch batch = batches.get(shardOf(ids.get(i)));
+            batch.ids().add(ids.get(i));
+            batch.embeddings().add(embeddings.get(i));
+            batch.segments().add(embedded == null ? null : embedded.get(i));
+        }
+        List<Runnable> writes = new ArrayList<>(shards.size());
+        for (int s = 0; s < shards.size(); s++) {
+            Batch batch = batches.get(s);
+            EmbeddingStore<TextSegment> shard = shards.get(s);
+            List<TextSegment> segments = embedded == null ? null : batch.segments();
+            writes.add(batch.ids().isEmpty() ? null : () -> shard.addAll(batch.ids(), batch.embeddings(), segments));
+        }
+        runOnEveryShard(writes);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        List<List<String>> byShard = new ArrayList<>(shards.size());
+        for (int s = 0; s < shards.size(); s++) {
+            byShard.add(new ArrayList<>());
+        }
+        ids.forEach(id -> byShard.get(shardOf(id)).add(id));
+        List<Runnable> removals = new ArrayList<>(shards.size());
+        for (int s = 0; s < shards.size(); s++) {
+            List<String> shardIds = byShard.get(s);
+            EmbeddingStore<TextSegment> shard = shards.get(s);
+            removals.add(shardIds.isEmpty() ? null : () -> shard.removeAll(shardIds));
+        }
+        runOnEveryShard(removals);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter cannot be null");
+        }
+        runOnEveryShard(shards.stream().<Runnable>map(shard -> () -> shard.removeAll(filter)).toList());
+    }
+
+    @Override
+    public void removeAll() {
+        runOnEveryShard(shards.stream().<Runnable>map(shard -> shard::removeAll).toList());
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        long deadline = System.nanoTime() + shardTimeoutNanos;
+        List<Future<EmbeddingSearchResult<TextSegment>>> futures = new ArrayList<>(shards.size());
+        int timedOut = 0;
+        for (int s = 0; s < shards.size(); s++) {
+            EmbeddingStore<TextSegment> shard = shards.get(s);
+            try {
+                futures.add(executors.get(s).submit(() -> shard.search(request)));
+            } catch (RejectedExecutionException e) {
+                // the shard's queue is full of searches it has not answered; do not add to it
+                timedOut++;
+            }
+        }
+
+        int maxResults = request.maxResults();
+        PriorityQueue<EmbeddingMatch<TextSegment>> best =
+                new PriorityQueue<>(Comparator.comparingDouble(EmbeddingMatch::score));
+        for (Future<EmbeddingSearchResult<TextSegment>> future : futures) {
+            EmbeddingSearchResult<TextSegment> result;
+            try {
+                result = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timedOut++;
+                continue;
+            } catch (ExecutionException e) {
+                futures.forEach(pending -> pending.cancel(true));
+                throw shardFailure(e);
+            } catch (InterruptedException e) {
+                futures.forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while searching shards", e);
+            }
+            for (EmbeddingMatch<TextSegment> match : result.matches()) {
+                if (best.size() < maxResults) {
+                    best.add(match);
+                } else if (match.score() > best.peek().score()) {
+                    best.poll();
+                    best.add(match);
+                }
+            }
+        }
+
+        searches.increment();
+        if (timedOut > 0) {
+            partialSearches.increment();
+            timedOutShards.add(timedOut);
+        }
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(best);
+        matches.sort(Comparator.comparingDouble(EmbeddingMatch<TextSegment>::score).reversed());
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /** Stops the search threads. The shards themselves stay open. */
+    @Override
+    public void close() {
+        executors.forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    /**
+     * Runs {@code tasks.get(s)} on the threads of shard {@code s}, all in parallel, and waits for them; no
+     * deadline applies to writes. A null task means that shard has nothing to do.
+     */
+    private void runOnEveryShard(List<Runnable> tasks) {
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        for (int s = 0; s < tasks.size(); s++) {
+            if (tasks.get(s) != null) {
+                futures.add(executors.get(s).submit(tasks.get(s)));
+            }
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw shardFailure(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing to shards", e);
+        }
+    }
+
+    private static RuntimeException shardFailure(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new IllegalStateException("Shard operation failed", e.getCause());
+    }
+
+    private record Batch(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        Batch() {
+            this(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+    }
+
+    /** Searches run, searches answered without some shard, and the shard timeouts behind them. */
+    public record ShardStats(long searches, long partialSearches, long timedOutShards) {}
+
+    public static class Builder {
+        private List<EmbeddingStore<TextSegment>> shards;
+        private Duration shardTimeout = Duration.ofMillis(500);
+        private int threadsPerShard = 4;
+
+        public Builder shards(List<? extends EmbeddingStore<TextSegment>> shards) {
+            this.shards = new ArrayList<>(shards);
+            return this;
+        }
+
+        /** Longest a search waits for the shards before returning what it has. */
+        public Builder shardTimeout(Duration shardTimeout) {
+            this.shardTimeout = shardTimeout;
+            return this;
+        }
+
+        /**
+         * Most searches and writes one shard runs at once (default 4), which also caps the threads a stalled
+         * shard can hold.
+         */
+        public Builder threadsPerShard(int threadsPerShard) {
+            this.threadsPerShard = threadsPerShard;
+            return this;
+        }
+
+        public ShardedEmbeddingStore build() {
+            return new ShardedEmbeddingStore(this);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.kousenit.langchain4j;
+
+/**
+ * The float math behind similarity scoring, implemented once with plain loops ({@link
+ * ScalarSimilarityKernel}) and once with the incubating Vector API ({@code VectorApiKernel}).
+ *
+ * <p>Use it through {@link VectorMath}, which picks the fastest implementation available at
+ * runtime. Both vectors passed to one call must have the same length.
+ */
+interface SimilarityKernel {
+
+    float dot(float[] a, float[] b);
+
+    /** Cosine similarity, or 0 when either vector has zero length. */
+    float cosine(float[] a, float[] b);
+
+    /** {@link #cosine(float[], float[])} when the squared norm of {@code a} is already known. */
+    float cosine(float[] a, float squaredNormA, float[] b);
+
+    /** Dot product of {@code a} with the {@code a.length} signed bytes of {@code b} from {@code offset}. */
+    float dot(float[] a, byte[] b, int offset);
+
+    /** Name reported by {@link VectorMath#kernelName()}, e.g. in benchmark output. */
+    String name();
+}
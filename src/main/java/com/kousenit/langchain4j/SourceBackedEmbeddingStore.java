@@ -0,0 +1,492 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory {@link EmbeddingStore} that keeps no segment text on the heap: each segment is stored
+ * as a span (source file, byte offset, byte length) and decoded from a memory-mapped copy of the
+ * source only when a search returns it.
+ *
+ * <p>Segments loaded with {@code FileSystemDocumentLoader} carry the {@code absolute_directory_path}
+ * and {@code file_name} of their document, and splitters cut them out of the document text. So on
+ * {@code add} the store maps the source file read-only (once per file), finds the segment's text in
+ * it and records where it is; the text is checked by decoding the span back, so only an exact match
+ * is stored this way. Segments without a source, or whose text is not a verbatim slice of it (for
+ * example from a PDF, or joined from several paragraphs), keep their text on the heap.
+ *
+ * <p>Metadata is shared as well: the segments of one source usually differ only in the splitter's
+ * {@code index}, so the store keeps the source's metadata once and each segment's index as an {@code
+ * int}. Filters are answered from a {@link MetadataIndex}, so they never decode text. Vectors are
+ * held as they are, so the saving is in the text and metadata, which is most of the heap for
+ * segments of a few hundred characters or more.
+ *
+ * <p>Source files must not change while the store uses them; the text of a match is whatever the
+ * file holds at its span when it is returned.
+ */
+public class SourceBackedEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private static final String INDEX_KEY = "index";
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int HELD = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Source> sources = new ArrayList<>();
+    private final Map<Path, Integer> sourceIds = new HashMap<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final BitSet removed = new BitSet();
+    private final MetadataIndex metadataIndex = new MetadataIndex();
+
+    private int count;
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private float[][] vectors = new float[INITIAL_CAPACITY][];
+    private int[] sourceOf = new int[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] segmentIndexes = new int[INITIAL_CAPACITY];
+    // set only when the segment's metadata differs from its source's, or it has no source
+    private Metadata[] ownMetadata = new Metadata[INITIAL_CAPACITY];
+    private TextSegment[] held = new TextSegment[INITIAL_CAPACITY];
+    private Locator locator; // set only during addAll
+
+    public SourceBackedEmbeddingStore() {}
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return positions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public SourceStats stats() {
+        lock.readLock().lock();
+        try {
+            int mappedSegments = 0;
+            int heldSegments = 0;
+            for (int i = removed.nextClearBit(0); i < count; i = removed.nextClearBit(i + 1)) {
+                if (sourceOf[i] != HELD) {
+                    mappedSegments++;
+                } else if (held[i] != null) {
+                    heldSegments++;
+                }
+            }
+            return new SourceStats(positions.size(), mappedSegments, heldSegments, sources.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), textSegment == null ? null : List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    /** Adding an id that already exists replaces its entry. */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(count + ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                Integer previous = positions.put(ids.get(i), count);
+                if (previous != null) {
+                    removed.set(previous);
+                }
+                this.ids[count] = ids.get(i);
+                vectors[count] = embeddings.get(i).vector().clone();
+                TextSegment segment = embedded == null ? null : embedded.get(i);
+                store(count, segment);
+                if (segment != null) {
+                    metadataIndex.add(count, segment.metadata());
+                }
+                count++;
+            }
+        } finally {
+            locator = null; // it holds the decoded text of a whole file, needed only while adding
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer position = positions.remove(id);
+                if (position != null) {
+                    removed.set(position);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            MetadataIndex.Candidates candidates = metadataIndex.candidates(filter);
+            BitSet scan = candidates == null ? null : candidates.entries();
+            boolean test = candidates == null || !candidates.exact();
+            for (int i = scan == null ? 0 : scan.nextSetBit(0);
+                    i >= 0 && i < count;
+                    i = scan == null ? i + 1 : scan.nextSetBit(i + 1)) {
+                if (!removed.get(i) && hasSegment(i) && (!test || filter.test(metadata(i)))) {
+                    positions.remove(ids[i]);
+                    removed.set(i);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            count = 0;
+            Arrays.fill(ids, null);
+            Arrays.fill(vectors, null);
+            Arrays.fill(ownMetadata, null);
+            Arrays.fill(held, null);
+            positions.clear();
+            removed.clear();
+            metadataIndex.clear();
+            // mappings are released once nothing refers to them
+            sources.clear();
+            sourceIds.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            float[] query = request.queryEmbedding().vector();
+            Filter filter = request.filter();
+            int maxResults = request.maxResults();
+            MetadataIndex.Candidates allowed = filter == null ? null : metadataIndex.candidates(filter);
+            BitSet scan = allowed == null ? null : allowed.entries();
+            boolean testFilter = filter != null && (allowed == null || !allowed.exact());
+
+            PriorityQueue<Candidate> top = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+            for (int i = scan == null ? 0 : scan.nextSetBit(0);
+                    i >= 0 && i < count;
+                    i = scan == null ? i + 1 : scan.nextSetBit(i + 1)) {
+                if (removed.get(i)) {
+                    continue;
+                }
+                double score = RelevanceScore.fromCosineSimilarity(VectorMath.cosine(query, vectors[i]));
+                if (score < request.minScore() || (top.size() == maxResults && score <= top.peek().score())) {
+                    continue;
+                }
+                if (testFilter && (!hasSegment(i) || !filter.test(metadata(i)))) {
+                    continue;
+                }
+                top.add(new Candidate(i, score));
+                if (top.size() > maxResults) {
+                    top.poll();
+                }
+            }
+
+            List<Candidate> ranked = new ArrayList<>(top);
+            ranked.sort(Comparator.comparingDouble(Candidate::score).reversed());
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(ranked.size());
+            for (Candidate candidate : ranked) {
+                int i = candidate.position();
+                matches.add(new EmbeddingMatch<>(
+                        candidate.score(), ids[i], Embedding.from(vectors[i].clone()), segment(i)));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Records a segment as a span of its source when possible, otherwise keeps it (or null) as it is. */
+    private void store(int position, TextSegment segment) {
+        sourceOf[position] = HELD;
+        ownMetadata[position] = null;
+        held[position] = segment;
+        if (segment == null) {
+            return;
+        }
+
+        Source source = source(segment.metadata());
+        if (source == null) {
+            return;
+        }
+        if (locator == null || locator.source() != source) {
+            locator = new Locator(source, source.decodeAll());
+        }
+        long[] span = locator.locate(segment.text());
+        if (span == null
+                || span[0] + span[1] > source.length()
+                || !source.decode(span[0], (int) span[1]).equals(segment.text())) {
+            return;
+        }
+        sourceOf[position] = sourceIds.get(source.file());
+        offsets[position] = span[0];
+        lengths[position] = (int) span[1];
+        held[position] = null;
+
+        Map<String, Object> values = segment.metadata().toMap();
+        Object index = values.remove(INDEX_KEY);
+        if (source.metadata() == null) {
+            source.metadata(Metadata.from(values));
+        }
+        int parsed = parseIndex(index);
+        if ((index != null && parsed < 0) || !source.metadata().toMap().equals(values)) {
+            ownMetadata[position] = segment.metadata();
+        } else {
+            segmentIndexes[position] = parsed;
+        }
+    }
+
+    /** The mapped source of a segment loaded from a file, mapping it on first use; null if there is none. */
+    private Source source(Metadata segmentMetadata) {
+        Object directory = segmentMetadata.toMap().get(Document.ABSOLUTE_DIRECTORY_PATH);
+        Object fileName = segmentMetadata.toMap().get(Document.FILE_NAME);
+        if (!(directory instanceof String) || !(fileName instanceof String)) {
+            return null;
+        }
+        Path file = Path.of((String) directory, (String) fileName);
+        Integer id = sourceIds.get(file);
+        if (id != null) {
+            return sources.get(id);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (!Files.isRegularFile(file) || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            Source source = new Source(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            sourceIds.put(file, sources.size());
+            sources.add(source);
+            return source;
+        } catch (IOException e) {
+            // an unreadable source just means the text stays on the heap
+            return null;
+        }
+    }
+
+    private boolean hasSegment(int position) {
+        return sourceOf[position] != HELD || held[position] != null;
+    }
+
+    private Metadata metadata(int position) {
+        if (held[position] != null) {
+            return held[position].metadata();
+        }
+        if (ownMetadata[position] != null) {
+            return ownMetadata[position];
+        }
+        Metadata copy = sources.get(sourceOf[position]).metadata().copy();
+        return segmentIndexes[position] < 0 ? copy : copy.put(INDEX_KEY, String.valueOf(segmentIndexes[position]));
+    }
+
+    private TextSegment segment(int position) {
+        if (sourceOf[position] == HELD) {
+            return held[position];
+        }
+        Source source = sources.get(sourceOf[position]);
+        return TextSegment.from(source.decode(offsets[position], lengths[position]), metadata(position));
+    }
+
+    /** Caller holds the write lock. */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newLength);
+        vectors = Arrays.copyOf(vectors, newLength);
+        sourceOf = Arrays.copyOf(sourceOf, newLength);
+        offsets = Arrays.copyOf(offsets, newLength);
+        lengths = Arrays.copyOf(lengths, newLength);
+        segmentIndexes = Arrays.copyOf(segmentIndexes, newLength);
+        ownMetadata = Arrays.copyOf(ownMetadata, newLength);
+        held = Arrays.copyOf(held, newLength);
+    }
+
+    /** Splitters store the segment index as a decimal string; -1 for anything else. */
+    private static int parseIndex(Object index) {
+        if (index instanceof String text) {
+            try {
+                int parsed = Integer.parseInt(text);
+                // only a canonical form turns back into the same string
+                return parsed >= 0 && String.valueOf(parsed).equals(text) ? parsed : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Bytes that {@code text[from, to)} takes in UTF-8. Each half of a surrogate pair counts two of
+     * its four bytes, so the sum stays right when a range starts or ends inside a pair.
+     */
+    private static long utf8Length(String text, int from, int to) {
+        long bytes = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                bytes += 2;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /** A mapped source file and the metadata its segments share (set by the first segment stored). */
+    private static final class Source {
+        private final Path file;
+        private final MappedByteBuffer bytes;
+        private Metadata metadata;
+
+        Source(Path file, MappedByteBuffer bytes) {
+            this.file = file;
+            this.bytes = bytes;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        Metadata metadata() {
+            return metadata;
+        }
+
+        void metadata(Metadata metadata) {
+            this.metadata = metadata;
+        }
+
+        int length() {
+            return bytes.capacity();
+        }
+
+        String decodeAll() {
+            return StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+        }
+
+        String decode(long offset, int length) {
+            byte[] text = new byte[length];
+            bytes.get((int) offset, text);
+            return new String(text, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The decoded text of the source being ingested, with the position of the last segment found in
+     * it. Splitters emit segments in order, so the next one is searched for from there first. Only
+     * the most recent source is kept decoded.
+     */
+    private static final class Locator {
+        private final Source source;
+        private final String text;
+        private int lastChar;
+        private long lastByte;
+
+        Locator(Source source, String text) {
+            this.source = source;
+            this.text = text;
+        }
+
+        Source source() {
+            return source;
+        }
+
+        /** Byte offset and length of {@code segment} in the source, or null if it is not a slice of it. */
+        long[] locate(String segment) {
+            int start = text.indexOf(segment, lastChar);
+            if (start < 0) {
+                start = text.indexOf(segment);
+                if (start < 0) {
+                    return null;
+                }
+                lastChar = 0;
+                lastByte = 0;
+            }
+            lastByte += utf8Length(text, lastChar, start);
+            lastChar = start;
+            return new long[] {lastByte, utf8Length(segment, 0, segment.length())};
+        }
+    }
+
+    private record Candidate(int position, double score) {}
+
+    /**
+     * Live entries, how many segments were stored as spans of a source file and how many keep their
+     * text on the heap, and the number of source files mapped.
+     */
+    public record SourceStats(int entries, int mappedSegments, int heldSegments, int sources) {}
+}
@@ -0,0 +1,245 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Loads a file with Apache Tika one page (or section) at a time instead of as a single {@link
+ * Document}.
+ *
+ * <p>{@code FileSystemDocumentLoader.loadDocument(path, new ApacheTikaDocumentParser())} collects the
+ * whole extracted text in one string before anything is split, so a 2,000-page manual costs hundreds
+ * of MB of transient heap. Tika itself produces text incrementally as SAX events; this loader listens
+ * to them directly and hands each page to the caller as soon as Tika closes it. For PDFs (and other
+ * formats that Tika emits as {@code <div class="page">}) that is one page; for formats without pages
+ * the text is cut into sections at the first paragraph boundary after {@code maxSectionChars}.
+ *
+ * <p>{@link #loadSegments(Path, Consumer)} runs every section through the {@code documentSplitter}
+ * (typically {@code DocumentSplitters.recursive}) as it arrives, so peak heap is one section plus its
+ * segments rather than the whole file. Segments keep the loader's metadata ({@code file_name}, {@code
+ * absolute_directory_path}, {@code page_number} or {@code section_number}) and get an {@code index}
+ * that runs across the whole file, as if the file had been split in one piece. A segment never spans
+ * two pages.
+ *
+ * <p>The file is handed to Tika as a {@link TikaInputStream} on the path, which lets the PDF parser
+ * read it from disk rather than buffering the bytes in memory.
+ */
+public class StreamingTikaDocumentLoader {
+
+    public static final String PAGE_NUMBER = "page_number";
+    public static final String SECTION_NUMBER = "section_number";
+
+    private static final Set<String> BLOCK_ELEMENTS =
+            Set.of("p", "div", "li", "tr", "h1", "h2", "h3", "h4", "h5", "h6", "pre", "blockquote");
+
+    private final Parser parser;
+    private final DocumentSplitter documentSplitter;
+    private final int maxSectionChars;
+
+    private StreamingTikaDocumentLoader(Builder builder) {
+        if (builder.maxSectionChars < 1) {
+            throw new IllegalArgumentException("maxSectionChars must be positive");
+        }
+        this.parser = builder.parser != null ? builder.parser : new AutoDetectParser();
+        this.documentSplitter = builder.documentSplitter;
+        this.maxSectionChars = builder.maxSectionChars;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Passes each page or section of {@code file} to {@code pages} as Tika produces it. */
+    public Report loadPages(Path file, Consumer<Document> pages) {
+        long start = System.nanoTime();
+        Metadata fileMetadata = new Metadata();
+        fileMetadata.put(Document.FILE_NAME, String.valueOf(file.getFileName()));
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            fileMetadata.put(Document.ABSOLUTE_DIRECTORY_PATH, directory.toString());
+        }
+
+        SectionHandler handler = new SectionHandler(fileMetadata, pages);
+        try (InputStream in = TikaInputStream.get(file)) {
+            parser.parse(in, handler, new org.apache.tika.metadata.Metadata(), new ParseContext());
+        } catch (IOException e) {
+            rethrowConsumerFailure(handler);
+            throw new UncheckedIOException("Cannot read " + file, e);
+        } catch (SAXException | TikaException e) {
+            rethrowConsumerFailure(handler);
+            throw new IllegalStateException("Cannot parse " + file + ": " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            rethrowConsumerFailure(handler);
+            throw e;
+        }
+        return new Report(
+                handler.sections, 0, handler.largestSection, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Splits each page or section of {@code file} with the {@code documentSplitter} as soon as Tika
+     * produces it and passes the segments to {@code segments}.
+     */
+    public Report loadSegments(Path file, Consumer<TextSegment> segments) {
+        if (documentSplitter == null) {
+            throw new IllegalStateException("loadSegments requires a documentSplitter");
+        }
+        int[] index = {0};
+        Report report = loadPages(file, page -> {
+            for (TextSegment segment : documentSplitter.split(page)) {
+                Metadata metadata = segment.metadata().copy();
+                metadata.put("index", String.valueOf(index[0]++));
+                segments.accept(TextSegment.from(segment.text(), metadata));
+            }
+        });
+        return new Report(report.sections(), index[0], report.largestSectionChars(), report.elapsed());
+    }
+
+    private static void rethrowConsumerFailure(SectionHandler handler) {
+        // parsers wrap whatever a handler throws; report the caller's own exception instead
+        if (handler.consumerFailure != null) {
+            throw handler.consumerFailure;
+        }
+    }
+
+    private static String elementName(String localName, String qName) {
+        return localName == null || localName.isEmpty() ? qName : localName;
+    }
+
+    /** Collects XHTML body text and emits it at page ends, or at block ends once it is long enough. */
+    private final class SectionHandler extends DefaultHandler {
+        private final Metadata fileMetadata;
+        private final Consumer<Document> pages;
+        private final StringBuilder text = new StringBuilder();
+        private boolean inBody;
+        private int pageDivDepth; // 0 outside a page, else the number of open divs inside it
+        private int pageNumber;
+        private int sections;
+        private int largestSection;
+        private RuntimeException consumerFailure;
+
+        SectionHandler(Metadata fileMetadata, Consumer<Document> pages) {
+            this.fileMetadata = fileMetadata;
+            this.pages = pages;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            String name = elementName(localName, qName);
+            if (name.equals("body")) {
+                inBody = true;
+            } else if (name.equals("div")) {
+                if (pageDivDepth > 0) {
+                    pageDivDepth++;
+                } else if ("page".equals(attributes.getValue("class"))) {
+                    // text before the first page (or between pages) becomes its own section
+                    emit(false);
+                    pageDivDepth = 1;
+                    pageNumber++;
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            String name = elementName(localName, qName);
+            if (name.equals("body")) {
+                emit(false);
+                inBody = false;
+            } else if (name.equals("br")) {
+                text.append('\n');
+            } else if (BLOCK_ELEMENTS.contains(name)) {
+                // a blank line lets the recursive splitter see paragraph boundaries
+                text.append("\n\n");
+                if (name.equals("div") && pageDivDepth > 0 && --pageDivDepth == 0) {
+                    emit(true);
+                } else if (pageDivDepth == 0 && text.length() >= maxSectionChars) {
+                    emit(false);
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inBody) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            characters(ch, start, length);
+        }
+
+        private void emit(boolean page) throws SAXException {
+            String section = text.toString().strip();
+            text.setLength(0);
+            if (section.isEmpty()) {
+                return;
+            }
+            sections++;
+            largestSection = Math.max(largestSection, section.length());
+            Metadata metadata = fileMetadata.copy();
+            if (page) {
+                metadata.put(PAGE_NUMBER, pageNumber);
+            } else {
+                metadata.put(SECTION_NUMBER, sections);
+            }
+            try {
+                pages.accept(Document.from(section, metadata));
+            } catch (RuntimeException e) {
+                consumerFailure = e;
+                throw new SAXException("Page consumer failed", e);
+            }
+        }
+    }
+
+    /** Counts for one load: sections emitted, segments produced and the longest section in chars. */
+    public record Report(int sections, int segments, int largestSectionChars, Duration elapsed) {}
+
+    public static class Builder {
+        private Parser parser;
+        private DocumentSplitter documentSplitter;
+        private int maxSectionChars = 64_000;
+
+        /** The Tika parser; defaults to an {@link AutoDetectParser}. */
+        public Builder parser(Parser parser) {
+            this.parser = parser;
+            return this;
+        }
+
+        /** Splits each page or section; required by {@link #loadSegments(Path, Consumer)}. */
+        public Builder documentSplitter(DocumentSplitter documentSplitter) {
+            this.documentSplitter = documentSplitter;
+            return this;
+        }
+
+        /** Section size for formats without pages; text is cut at the next paragraph boundary after it. */
+        public Builder maxSectionChars(int maxSectionChars) {
+            this.maxSectionChars = maxSectionChars;
+            return this;
+        }
+
+        public StreamingTikaDocumentLoader build() {
+            return new StreamingTikaDocumentLoader(this);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ChatMemory} that compacts older messages into a summary written by a chat model, off the
+ * caller's thread.
+ *
+ * <p>Compacting with {@code memory.set(List.of(summary))} in the request path makes the user whose
+ * turn crosses the limit wait for an extra model call. Here, once the memory holds more than {@code
+ * maxMessages} messages besides the system message, {@code add} hands all but the {@code
+ * keepRecent} newest of them to {@code executor} and returns at once. Until the summary arrives the
+ * memory keeps serving every message it has. When it arrives, the summarized messages are replaced
+ * by one user message holding the summary, and anything added in the meantime stays after it, so no
+ * message is lost. If {@code clear} or {@code set} ran meanwhile, the summary is dropped.
+ *
+ * <p>At most one summarization per memory is in flight. The split never leaves a tool result in the
+ * recent messages without the AI message that requested it. A summary that fails leaves the memory
+ * uncompacted, and the next {@code add} tries again. Unless an executor is configured, summaries run
+ * on a shared pool of daemon threads.
+ */
+public class SummarizingChatMemory implements ChatMemory {
+
+    private static final String DEFAULT_INSTRUCTIONS = "Summarize the conversation below for your own later "
+            + "reference. Keep names, facts, numbers, decisions and open questions; drop greetings and "
+            + "repetition. Reply with the summary only.";
+    private static final String SUMMARY_PREFIX = "Summary of the conversation so far:\n";
+
+    private final Object id;
+    private final ChatModel chatModel;
+    private final int maxMessages;
+    private final int keepRecent;
+    private final String instructions;
+    private final Executor executor;
+
+    private SystemMessage systemMessage;
+    private final List<ChatMessage> messages = new ArrayList<>();
+    private boolean summarizing;
+    private int generation;
+
+    private long summaries;
+    private long summarizedMessages;
+    private long failures;
+    private long discarded;
+
+    private SummarizingChatMemory(Builder builder) {
+        if (builder.id == null || builder.chatModel == null) {
+            throw new IllegalArgumentException("id and chatModel are required");
+        }
+        if (builder.keepRecent < 0 || builder.maxMessages <= builder.keepRecent) {
+            throw new IllegalArgumentException("maxMessages must be greater than keepRecent");
+        }
+        if (builder.instructions == null) {
+            throw new IllegalArgumentException("instructions cannot be null");
+        }
+        this.id = builder.id;
+        this.chatModel = builder.chatModel;
+        this.maxMessages = builder.maxMessages;
+        this.keepRecent = builder.keepRecent;
+        this.instructions = builder.instructions;
+        this.executor = builder.executor != null ? builder.executor : DefaultExecutor.EXECUTOR;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        if (message instanceof SystemMessage system) {
+            systemMessage = system;
+        } else {
+            messages.add(message);
+        }
+        if (!summarizing && messages.size() > maxMessages) {
+            startSummary();
+        }
+    }
+
+    @Override
+    public synchronized List<ChatMessage> messages() {
+        List<ChatMessage> window = new ArrayList<>(messages.size() + 1);
+        if (systemMessage != null) {
+            window.add(systemMessage);
+        }
+        window.addAll(messages);
+        return window;
+    }
+
+    /** Replaces the messages in one step, so a summary still running for the old ones is dropped. */
+    @Override
+    public synchronized void set(Iterable<ChatMessage> messages) {
+        clear();
+        for (ChatMessage message : messages) {
+            add(message);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        systemMessage = null;
+        messages.clear();
+        generation++;
+    }
+
+    public synchronized SummaryStats stats() {
+        return new SummaryStats(summaries, summarizedMessages, failures, discarded, summarizing);
+    }
+
+    /** Called with the monitor held. */
+    private void startSummary() {
+        int cut = messages.size() - keepRecent;
+        while (cut < messages.size() && messages.get(cut) instanceof ToolExecutionResultMessage) {
+            cut++; // keep a tool call and its results on the same side
+        }
+        List<ChatMessage> older = List.copyOf(messages.subList(0, cut));
+        int startedGeneration = generation;
+        summarizing = true;
+        try {
+            executor.execute(() -> summarize(older, startedGeneration));
+        } catch (RejectedExecutionException e) {
+            summarizing = false;
+            failures++;
+        }
+    }
+
+    private void summarize(List<ChatMessage> older, int startedGeneration) {
+        String summary = null;
+        try {
+            summary = chatModel.chat(prompt(older));
+        } catch (RuntimeException e) {
+            // leave the memory uncompacted; the next add tries again
+        }
+        synchronized (this) {
+            summarizing = false;
+            if (summary == null || summary.isBlank()) {
+                failures++;
+            } else if (generation != startedGeneration || !startsWith(older)) {
+                discarded++;
+            } else {
+                messages.subList(0, older.size()).clear();
+                messages.add(0, UserMessage.from(SUMMARY_PREFIX + summary.strip()));
+                summaries++;
+                summarizedMessages += older.size();
+            }
+            if (messages.size() > maxMessages && summary != null && !summary.isBlank()) {
+                startSummary();
+            }
+        }
+    }
+
+    /** Whether the summarized messages are still the oldest ones, the same objects in the same order. */
+    private boolean startsWith(List<ChatMessage> older) {
+        if (messages.size() < older.size()) {
+            return false;
+        }
+        for (int i = 0; i < older.size(); i++) {
+            if (messages.get(i) != older.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String prompt(List<ChatMessage> older) {
+        StringBuilder prompt = new StringBuilder(instructions).append("\n\n");
+        for (ChatMessage message : older) {
+            if (message instanceof UserMessage user) {
+                prompt.append("User: ");
+                for (Content content : user.contents()) {
+                    if (content instanceof TextContent text) {
+                        prompt.append(text.text());
+                    }
+                }
+            } else if (message instanceof AiMessage ai) {
+                prompt.append("Assistant: ").append(ai.text() == null ? "" : ai.text());
+                for (ToolExecutionRequest request : ai.toolExecutionRequests()) {
+                    prompt.append("[calls ")
+                            .append(request.name())
+                            .append(' ')
+                            .append(request.arguments())
+                            .append(']');
+                }
+            } else if (message instanceof ToolExecutionResultMessage result) {
+                prompt.append("Tool ").append(result.toolName()).append(": ").append(result.text());
+            } else {
+                prompt.append(message);
+            }
+            prompt.append('\n');
+        }
+        return prompt.toString();
+    }
+
+    /** Summaries written, messages they replaced, summaries that failed or were dropped, and whether one is running. */
+    public record SummaryStats(
+            long summaries, long summarizedMessages, long failures, long discarded, boolean summarizing) {}
+
+    private static final class DefaultExecutor {
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-summarizer-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static class Builder {
+        private Object id = "default";
+        private ChatModel chatModel;
+        private int maxMessages = 20;
+        private int keepRecent = 6;
+        private String instructions = DEFAULT_INSTRUCTIONS;
+        private Executor executor;
+
+        public Builder id(Object id) {
+            this.id = id;
+            return this;
+        }
+
+        /** Writes the summaries; a small, fast model is usually enough. */
+        public Builder chatModel(ChatModel chatModel) {
+            this.chatModel = chatModel;
+            return this;
+        }
+
+        /** Summarize once there are more messages than this, not counting the system message (default 20). */
+        public Builder maxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        /** Newest messages left out of each summary (default 6). */
+        public Builder keepRecent(int keepRecent) {
+            this.keepRecent = keepRecent;
+            return this;
+        }
+
+        /** Put before the transcript in the summary prompt. */
+        public Builder instructions(String instructions) {
+            this.instructions = instructions;
+            return this;
+        }
+
+        /** Runs the summaries (default: a shared pool of daemon threads). */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public SummarizingChatMemory build() {
+            return new SummarizingChatMemory(this);
+        }
+    }
+}
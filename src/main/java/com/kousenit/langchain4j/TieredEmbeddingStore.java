@@ -0,0 +1,637 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An {@link EmbeddingStore} that keeps frequently retrieved entries on the heap and everything else
+ * on disk.
+ *
+ * <p>Every entry is written to the cold tier in {@code directory}: its vector to a memory-mapped
+ * {@link MappedVectorFile} and its id, text and metadata to a record file. Scoring a cold vector
+ * reads it straight from the page cache, and only the matches a search returns are read back into
+ * objects. The hot tier is an on-heap copy (vector and segment) of the entries that searches keep
+ * returning, so their matches cost no disk read and no decoding. The heap then holds the hot tier,
+ * each entry's record offset, the ids and the {@link MetadataIndex}, instead of every vector and
+ * text.
+ *
+ * <p>Each returned match counts a hit for its entry. A cold entry reaching {@code promotionThreshold}
+ * hits is promoted straight away if the hot tier has room under {@code maxHotBytes}. Every {@code
+ * rebalanceInterval} searches the store rebalances: the entries with the most hits that fit in
+ * {@code maxHotBytes} become the hot tier, the others are demoted (dropped from the heap; the cold
+ * copy is always there), and all counts are halved so that popularity decays. Hot-tier bytes are an
+ * estimate of the vector, text and metadata sizes plus object overhead.
+ *
+ * <p>Searches scan both tiers and are transparent to callers; {@link #stats()} reports how many
+ * matches each tier served. The cold tier is a working copy rather than a durable store: opening a
+ * directory discards whatever an earlier instance left there, and removed entries keep their cold
+ * records until {@link #removeAll()}. Use {@link MappedEmbeddingStore} when the entries must survive a
+ * restart.
+ */
+public class TieredEmbeddingStore implements EmbeddingStore<TextSegment>, Closeable {
+
+    private static final String VECTORS = "cold-vectors.f32";
+    private static final String SEGMENTS = "cold-segments.dat";
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path directory;
+    private final long maxHotBytes;
+    private final int promotionThreshold;
+    private final int rebalanceInterval;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // cold tier: every entry, guarded by the lock
+    private MappedVectorFile vectors;
+    private final FileChannel segments;
+    private long segmentsLength;
+    private int dimension = -1;
+    private int count;
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final BitSet removed = new BitSet();
+    private final MetadataIndex metadataIndex = new MetadataIndex();
+
+    // hot tier: written under the tiering monitor while the read lock is held, read by searches
+    private final Object tiering = new Object();
+    private HotEntry[] hot = new HotEntry[INITIAL_CAPACITY];
+    private int[] hits = new int[INITIAL_CAPACITY];
+    private long hotBytes;
+    private int hotEntries;
+    private int searchesSinceRebalance;
+    private long promotions;
+    private long demotions;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder hotHits = new LongAdder();
+    private final LongAdder coldHits = new LongAdder();
+
+    private TieredEmbeddingStore(Builder builder) {
+        if (builder.directory == null) {
+            throw new IllegalArgumentException("directory is required");
+        }
+        if (builder.maxHotBytes < 0) {
+            throw new IllegalArgumentException("maxHotBytes cannot be negative");
+        }
+        if (builder.promotionThreshold < 1 || builder.rebalanceInterval < 1) {
+            throw new IllegalArgumentException("promotionThreshold and rebalanceInterval must be positive");
+        }
+        this.directory = builder.directory;
+        this.maxHotBytes = builder.maxHotBytes;
+        this.promotionThreshold = builder.promotionThreshold;
+        this.rebalanceInterval = builder.rebalanceInterval;
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(directory.resolve(VECTORS));
+            this.segments = FileChannel.open(
+                    directory.resolve(SEGMENTS),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open cold tier in " + directory, e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Live entries in both tiers. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return positions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public TierStats stats() {
+        synchronized (tiering) {
+            return new TierStats(
+                    searches.sum(), hotHits.sum(), coldHits.sum(), hotEntries, hotBytes, promotions, demotions);
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), textSegment == null ? null : List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    /** New entries start in the cold tier. Adding an id that already exists replaces its entry. */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (vectors == null) {
+                dimension = embeddings.get(0).dimension();
+                vectors = MappedVectorFile.open(directory.resolve(VECTORS), dimension, false);
+            }
+            ensureCapacity(count + ids.size());
+
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(records);
+            List<float[]> vectorList = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                int position = count + i;
+                int start = out.size();
+                TextSegment segment = embedded == null ? null : embedded.get(i);
+                SegmentRecords.write(out, ids.get(i), segment);
+                offsets[position] = segmentsLength + start;
+                lengths[position] = out.size() - start;
+                vectorList.add(embeddings.get(i).vector());
+            }
+            out.flush();
+            vectors.write(count, vectorList);
+            ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+            for (long position = segmentsLength; buffer.hasRemaining(); ) {
+                position += segments.write(buffer, position);
+            }
+            segmentsLength += records.size();
+
+            for (int i = 0; i < ids.size(); i++) {
+                Integer previous = positions.put(ids.get(i), count + i);
+                if (previous != null) {
+                    remove(previous);
+                }
+                if (embedded != null && embedded.get(i) != null) {
+                    metadataIndex.add(count + i, embedded.get(i).metadata());
+                }
+            }
+            count += ids.size();
+            vectors.map(count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer position = positions.remove(id);
+                if (position != null) {
+                    remove(position);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            MetadataIndex.Candidates candidates = metadataIndex.candidates(filter);
+            BitSet scan = candidates == null ? null : candidates.entries();
+            boolean test = candidates == null || !candidates.exact();
+            for (int i = scan == null ? 0 : scan.nextSetBit(0);
+                    i >= 0 && i < count;
+                    i = scan == null ? i + 1 : scan.nextSetBit(i + 1)) {
+                if (removed.get(i)) {
+                    continue;
+                }
+                TextSegment segment = test ? segment(i) : null;
+                if (!test || (segment != null && filter.test(segment.metadata()))) {
+                    positions.remove(hot[i] != null ? hot[i].id() : readEntry(i).id());
+                    remove(i);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            // positions restart at zero, so the old cold records are simply overwritten
+            count = 0;
+            segmentsLength = 0;
+            segments.truncate(0);
+            if (vectors != null) {
+                vectors.truncate(0);
+            }
+            positions.clear();
+            removed.clear();
+            metadataIndex.clear();
+            synchronized (tiering) {
+                Arrays.fill(hot, null);
+                Arrays.fill(hits, 0);
+                hotBytes = 0;
+                hotEntries = 0;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            searches.increment();
+            if (positions.isEmpty()) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = request.queryEmbedding().vector();
+            if (query.length != dimension) {
+                throw new IllegalArgumentException(
+                        "Embedding dimension " + query.length + " does not match store dimension " + dimension);
+            }
+            float[] scratch = new float[dimension];
+            float queryNorm = VectorMath.squaredNorm(query);
+            Filter filter = request.filter();
+            int maxResults = request.maxResults();
+            MetadataIndex.Candidates allowed = filter == null ? null : metadataIndex.candidates(filter);
+            BitSet scan = allowed == null ? null : allowed.entries();
+            boolean testFilter = filter != null && (allowed == null || !allowed.exact());
+            HotEntry[] hotTier = hot;
+
+            PriorityQueue<Candidate> top = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+            for (int i = scan == null ? 0 : scan.nextSetBit(0);
+                    i >= 0 && i < count;
+                    i = scan == null ? i + 1 : scan.nextSetBit(i + 1)) {
+                if (removed.get(i)) {
+                    continue;
+                }
+                HotEntry entry = hotTier[i];
+                double cosine = entry != null
+                        ? VectorMath.cosine(query, queryNorm, entry.vector())
+                        : vectors.cosine(i, query, queryNorm, scratch);
+                double score = RelevanceScore.fromCosineSimilarity(cosine);
+                if (score < request.minScore() || (top.size() == maxResults && score <= top.peek().score())) {
+                    continue;
+                }
+                if (testFilter) {
+                    TextSegment segment = entry != null ? entry.segment() : segment(i);
+                    if (segment == null || !filter.test(segment.metadata())) {
+                        continue;
+                    }
+                }
+                top.add(new Candidate(i, score));
+                if (top.size() > maxResults) {
+                    top.poll();
+                }
+            }
+
+            List<Candidate> ranked = new ArrayList<>(top);
+            ranked.sort(Comparator.comparingDouble(Candidate::score).reversed());
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(ranked.size());
+            for (Candidate candidate : ranked) {
+                HotEntry entry = hotTier[candidate.position()];
+                if (entry != null) {
+                    hotHits.increment();
+                } else {
+                    coldHits.increment();
+                    SegmentRecords.Entry record = readEntry(candidate.position());
+                    entry = new HotEntry(
+                            record.id(),
+                            vectors.read(candidate.position()),
+                            record.segment(),
+                            estimateBytes(record.id(), dimension, record.segment()));
+                }
+                matches.add(new EmbeddingMatch<>(
+                        candidate.score(), entry.id(), Embedding.from(entry.vector().clone()), entry.segment()));
+                recordHit(candidate.position(), entry);
+            }
+            boolean rebalanceDue;
+            synchronized (tiering) {
+                rebalanceDue = ++searchesSinceRebalance >= rebalanceInterval;
+                if (rebalanceDue) {
+                    searchesSinceRebalance = 0;
+                }
+            }
+            if (rebalanceDue) {
+                rebalanceTiers();
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes the most-hit entries that fit in {@code maxHotBytes} the hot tier and halves all hit
+     * counts. Searches call this every {@code rebalanceInterval} searches.
+     */
+    public void rebalance() {
+        lock.readLock().lock();
+        try {
+            rebalanceTiers();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (vectors != null) {
+                vectors.close();
+            }
+            segments.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Counts a hit and promotes a cold entry that has earned it, if the hot tier has room. */
+    private void recordHit(int position, HotEntry entry) {
+        synchronized (tiering) {
+            int entryHits = ++hits[position];
+            if (hot[position] == null && entryHits >= promotionThreshold && hotBytes + entry.bytes() <= maxHotBytes) {
+                promote(position, entry);
+            }
+        }
+    }
+
+    /**
+     * Caller holds the read lock (so positions are stable) but not the tiering monitor. The new hot
+     * tier is chosen under the monitor, the entries it promotes are read from disk outside it, so
+     * concurrent searches keep recording hits meanwhile, and they are installed under it again.
+     */
+    private void rebalanceTiers() throws IOException {
+        List<Integer> toPromote;
+        synchronized (tiering) {
+            toPromote = planRebalance();
+        }
+        List<HotEntry> loaded = new ArrayList<>(toPromote.size());
+        for (int position : toPromote) {
+            SegmentRecords.Entry record = readEntry(position);
+            loaded.add(new HotEntry(
+                    record.id(),
+                    vectors.read(position),
+                    record.segment(),
+                    estimateBytes(record.id(), dimension, record.segment())));
+        }
+        synchronized (tiering) {
+            for (int i = 0; i < toPromote.size(); i++) {
+                int position = toPromote.get(i);
+                HotEntry entry = loaded.get(i);
+                // a search may have promoted it, or taken the room it was planned into, meanwhile
+                if (hot[position] == null && hotBytes + entry.bytes() <= maxHotBytes) {
+                    promote(position, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Demotes the hot entries that no longer rank within {@code maxHotBytes}, halves all hit counts
+     * and returns the cold entries to promote. Caller holds the tiering monitor.
+     */
+    private List<Integer> planRebalance() {
+        searchesSinceRebalance = 0;
+        List<Integer> ranked = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if ((hits[i] >= promotionThreshold || hot[i] != null) && !removed.get(i)) {
+                ranked.add(i);
+            }
+        }
+        ranked.sort(Comparator.comparingInt((Integer position) -> hits[position])
+                .reversed());
+
+        BitSet keep = new BitSet();
+        long budget = maxHotBytes;
+        List<Integer> toPromote = new ArrayList<>();
+        for (int position : ranked) {
+            long bytes = hot[position] != null ? hot[position].bytes() : estimateBytes(position);
+            if (bytes <= budget) {
+                budget -= bytes;
+                keep.set(position);
+                if (hot[position] == null) {
+                    toPromote.add(position);
+                }
+            }
+        }
+        for (int position : ranked) {
+            if (hot[position] != null && !keep.get(position)) {
+                demote(position);
+                demotions++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            hits[i] >>>= 1;
+        }
+        return toPromote;
+    }
+
+    private void promote(int position, HotEntry entry) {
+        hot[position] = entry;
+        hotBytes += entry.bytes();
+        hotEntries++;
+        promotions++;
+    }
+
+    private void demote(int position) {
+        hotBytes -= hot[position].bytes();
+        hotEntries--;
+        hot[position] = null;
+    }
+
+    /** Caller holds the write lock. */
+    private void remove(int position) {
+        removed.set(position);
+        synchronized (tiering) {
+            if (hot[position] != null) {
+                demote(position);
+            }
+            hits[position] = 0;
+        }
+    }
+
+    /** Caller holds the write lock. */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= offsets.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, offsets.length * 2);
+        offsets = Arrays.copyOf(offsets, newLength);
+        lengths = Arrays.copyOf(lengths, newLength);
+        synchronized (tiering) {
+            hot = Arrays.copyOf(hot, newLength);
+            hits = Arrays.copyOf(hits, newLength);
+        }
+    }
+
+    private TextSegment segment(int position) throws IOException {
+        HotEntry entry = hot[position];
+        return entry != null ? entry.segment() : readEntry(position).segment();
+    }
+
+    private SegmentRecords.Entry readEntry(int position) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(lengths[position]);
+        for (long offset = offsets[position]; record.hasRemaining(); ) {
+            int read = segments.read(record, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            offset += read;
+        }
+        return SegmentRecords.read(new DataInputStream(new ByteArrayInputStream(record.array())));
+    }
+
+    /** Estimate for a cold entry, from the size of its record rather than by decoding it. */
+    private long estimateBytes(int position) {
+        return ENTRY_OVERHEAD_BYTES + (long) dimension * Float.BYTES + 2L * lengths[position];
+    }
+
+    /** Heap estimate of a hot entry: the vector, UTF-16 strings at worst, and object headers. */
+    private static long estimateBytes(String id, int dimension, TextSegment segment) {
+        long bytes = ENTRY_OVERHEAD_BYTES + (long) dimension * Float.BYTES + 2L * id.length();
+        if (segment != null) {
+            bytes += 2L * segment.text().length();
+            for (Map.Entry<String, Object> entry : segment.metadata().toMap().entrySet()) {
+                bytes += ENTRY_OVERHEAD_BYTES / 2
+                        + 2L * (entry.getKey().length() + entry.getValue().toString().length());
+            }
+        }
+        return bytes;
+    }
+
+    private record HotEntry(String id, float[] vector, TextSegment segment, long bytes) {}
+
+    private record Candidate(int position, double score) {}
+
+    /**
+     * Searches so far, the matches they returned from each tier, and the current hot tier's size and
+     * estimated bytes. Promotions and demotions count moves between tiers.
+     */
+    public record TierStats(
+            long searches,
+            long hotHits,
+            long coldHits,
+            int hotEntries,
+            long hotBytes,
+            long promotions,
+            long demotions) {
+
+        /** Fraction of returned matches served from the hot tier. */
+        public double hotHitRatio() {
+            long hits = hotHits + coldHits;
+            return hits == 0 ? 0.0 : (double) hotHits / hits;
+        }
+    }
+
+    public static class Builder {
+        private Path directory;
+        private long maxHotBytes = 64L << 20;
+        private int promotionThreshold = 2;
+        private int rebalanceInterval = 1_000;
+
+        /** Where the cold tier's files go; existing cold-tier files there are replaced. */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /** Estimated heap bytes the hot tier may use; 64 MiB by default. */
+        public Builder maxHotBytes(long maxHotBytes) {
+            this.maxHotBytes = maxHotBytes;
+            return this;
+        }
+
+        /** Hits (since the last decay) before a cold entry is promoted; 2 keeps one-off matches cold. */
+        public Builder promotionThreshold(int promotionThreshold) {
+            this.promotionThreshold = promotionThreshold;
+            return this;
+        }
+
+        /** Searches between rebalances, which also halve the hit counts. */
+        public Builder rebalanceInterval(int rebalanceInterval) {
+            this.rebalanceInterval = rebalanceInterval;
+            return this;
+        }
+
+        public TieredEmbeddingStore build() {
+            return new TieredEmbeddingStore(this);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.kousenit.langchain4j;
+
+import java.util.Objects;
+
+/**
+ * Entry point for the similarity math used by the project's embedding stores.
+ *
+ * <p>At class initialisation this tries to load {@code VectorApiKernel}, which the Gradle build
+ * compiles in its own {@code vectorApi} source set so that only it needs the incubator module. That
+ * succeeds when the JVM runs with {@code --add-modules jdk.incubator.vector} (the {@code test} task
+ * adds it); otherwise, or when the system property {@code vectormath.scalar} is {@code true}, the
+ * plain-loop {@link ScalarSimilarityKernel} is used. Callers never need to know which one is active.
+ */
+public final class VectorMath {
+
+    private static final SimilarityKernel KERNEL = loadKernel();
+
+    private VectorMath() {}
+
+    public static float dot(float[] a, float[] b) {
+        checkLengths(a, b);
+        return KERNEL.dot(a, b);
+    }
+
+    public static float cosine(float[] a, float[] b) {
+        checkLengths(a, b);
+        return KERNEL.cosine(a, b);
+    }
+
+    /**
+     * Cosine similarity when {@code squaredNormA} is already known, e.g. from {@link #squaredNorm} on a
+     * query scored against many vectors, so only the dot product and the norm of {@code b} are computed.
+     */
+    public static float cosine(float[] a, float squaredNormA, float[] b) {
+        checkLengths(a, b);
+        return KERNEL.cosine(a, squaredNormA, b);
+    }
+
+    public static float squaredNorm(float[] a) {
+        return KERNEL.dot(a, a);
+    }
+
+    /**
+     * A unit-length copy of {@code vector}, or all zeros when its norm is zero, for stores that keep
+     * normalized vectors so that cosine similarity is a plain dot product. The norm is summed in
+     * double precision.
+     */
+    public static float[] normalizedCopy(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] copy = new float[vector.length];
+        if (norm == 0) {
+            return copy;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            copy[i] = (float) (vector[i] / norm);
+        }
+        return copy;
+    }
+
+    /**
+     * Dot product of {@code a} with an int8-quantized vector: the {@code a.length} signed bytes of
+     * {@code codes} starting at {@code offset}, so many vectors can share one code page.
+     */
+    public static float dot(float[] a, byte[] codes, int offset) {
+        Objects.checkFromIndexSize(offset, a.length, codes.length);
+        return KERNEL.dot(a, codes, offset);
+    }
+
+    /** Name of the active kernel, e.g. {@code "scalar"} or {@code "vector-api (256-bit)"}. */
+    public static String kernelName() {
+        return KERNEL.name();
+    }
+
+    static SimilarityKernel scalarKernel() {
+        return ScalarSimilarityKernel.INSTANCE;
+    }
+
+    static SimilarityKernel activeKernel() {
+        return KERNEL;
+    }
+
+    static float cosineFrom(float dot, float squaredNormA, float squaredNormB) {
+        float denominator = (float) Math.sqrt(squaredNormA) * (float) Math.sqrt(squaredNormB);
+        return denominator == 0 ? 0 : dot / denominator;
+    }
+
+    private static void checkLengths(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException(
+                    "Length of vector a (" + a.length + ") must be equal to the length of vector b (" + b.length + ")");
+        }
+    }
+
+    private static SimilarityKernel loadKernel() {
+        if (Boolean.getBoolean("vectormath.scalar")) {
+            return ScalarSimilarityKernel.INSTANCE;
+        }
+        try {
+            return (SimilarityKernel) Class.forName("com.kousenit.langchain4j.VectorApiKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // jdk.incubator.vector is not resolved in this JVM
+            return ScalarSimilarityKernel.INSTANCE;
+        }
+    }
+}
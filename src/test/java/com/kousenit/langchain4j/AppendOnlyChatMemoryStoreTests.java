@@ -0,0 +1,345 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link AppendOnlyChatMemoryStore}: conversations survive a reopen after windows slid and
+ * segments were compacted, deletions are logged, and turn latency compared with a store that
+ * rewrites the whole conversation on every turn.
+ */
+class AppendOnlyChatMemoryStoreTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void conversationsSurviveReopeningAfterCompaction() {
+        Map<Integer, List<ChatMessage>> expected = new HashMap<>();
+        try (AppendOnlyChatMemoryStore store = AppendOnlyChatMemoryStore.builder()
+                .directory(tempDir)
+                .segmentBytes(16 * 1024)
+                .build()) {
+            List<ChatMemory> memories = new ArrayList<>();
+            for (int user = 0; user < 20; user++) {
+                ChatMemory memory = MessageWindowChatMemory.builder()
+                        .id(user)
+                        .maxMessages(10)
+                        .chatMemoryStore(store)
+                        .build();
+                memory.add(SystemMessage.from("You are a helpful assistant for user " + user));
+                memories.add(memory);
+            }
+            for (int turn = 0; turn < 100; turn++) {
+                for (ChatMemory memory : memories) {
+                    memory.add(UserMessage.from("Question " + turn + " from user " + memory.id()));
+                    if (turn % 10 == 3) {
+                        ToolExecutionRequest request = ToolExecutionRequest.builder()
+                                .id("call-" + turn)
+                                .name("lookup")
+                                .arguments("{\"turn\":" + turn + "}")
+                                .build();
+                        memory.add(AiMessage.from(request));
+                        memory.add(ToolExecutionResultMessage.from(request, "result " + turn));
+                    }
+                    memory.add(AiMessage.from("Answer " + turn + " for user " + memory.id()));
+                }
+            }
+            memories.get(7).clear();
+            for (ChatMemory memory : memories) {
+                expected.put((Integer) memory.id(), memory.messages());
+            }
+
+            AppendOnlyChatMemoryStore.LogStats stats = store.stats();
+            System.out.println(stats);
+            assertTrue(stats.compactions() > 0, "sealed segments were compacted");
+            assertTrue(stats.logBytes() < stats.bytesAppended() / 2, "compaction reclaimed the log");
+            assertEquals(19, stats.memories());
+        }
+
+        try (AppendOnlyChatMemoryStore reopened = AppendOnlyChatMemoryStore.builder()
+                .directory(tempDir)
+                .segmentBytes(16 * 1024)
+                .build()) {
+            for (Map.Entry<Integer, List<ChatMessage>> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), reopened.getMessages(entry.getKey()), "memory " + entry.getKey());
+            }
+            assertTrue(reopened.getMessages(7).isEmpty());
+            assertEquals(SystemMessage.from("You are a helpful assistant for user 3"), reopened.getMessages(3).get(0));
+
+            reopened.compact();
+            assertEquals(expected.get(11), reopened.getMessages(11));
+            assertEquals(1, reopened.stats().segments());
+        }
+    }
+
+    @Test
+    void idleMemoryKeepsItsWindowWhenTheSegmentWithItsLatestViewIsCompacted() {
+        List<ChatMessage> idle = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            idle.add(UserMessage.from("idle message " + i));
+        }
+        try (AppendOnlyChatMemoryStore store = AppendOnlyChatMemoryStore.builder()
+                .directory(tempDir)
+                .segmentBytes(16 * 1024)
+                .build()) {
+            // the idle memory's messages share the first segment with an archive that stays live
+            List<ChatMessage> archive = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                archive.add(UserMessage.from("archived " + i + " " + "x".repeat(500)));
+            }
+            store.updateMessages("archive", archive);
+            store.updateMessages("idle", idle);
+            chatter(store, 0, 20);
+
+            // the window slides by dropping messages only: a VIEW record far from the messages it names
+            store.updateMessages("idle", idle.subList(3, 6));
+            chatter(store, 20, 400);
+
+            assertTrue(store.stats().compactions() > 0);
+            assertEquals(idle.subList(3, 6), store.getMessages("idle"));
+        }
+        try (AppendOnlyChatMemoryStore reopened = AppendOnlyChatMemoryStore.builder()
+                .directory(tempDir)
+                .segmentBytes(16 * 1024)
+                .build()) {
+            assertEquals(idle.subList(3, 6), reopened.getMessages("idle"));
+        }
+    }
+
+    @Test
+    void memoryClearedAndCreatedAgainKeepsOnlyItsNewMessagesAfterCompaction() throws IOException {
+        List<ChatMessage> recreated = List.of(UserMessage.from("new first"), AiMessage.from("new second"));
+        try (AppendOnlyChatMemoryStore store = AppendOnlyChatMemoryStore.builder()
+                .directory(tempDir)
+                .segmentBytes(16 * 1024)
+                .build()) {
+            // the old messages go in the first segment, next to an archive that keeps it from being compacted
+            store.updateMessages(
+                    "alice",
+                    List.of(UserMessage.from("old one"), AiMessage.from("old two"), UserMessage.from("old three")));
+            List<ChatMessage> archive = new ArrayList<>();
+            while (store.stats().segments() < 2) {
+                archive.add(UserMessage.from("archived " + archive.size() + " " + "x".repeat(500)));
+                store.updateMessages("archive", archive);
+            }
+            store.deleteMessages("alice");
+            Path cleared = newestSegment();
+
+            // filler stays live until alice is back, so the segment with the CLEAR is not compacted early
+            List<ChatMessage> filler = new ArrayList<>();
+            while (store.stats().segments() < 3) {
+                filler.add(UserMessage.from("filler " + filler.size() + " " + "z".repeat(500)));
+                store.updateMessages("filler", filler);
+            }
+            store.updateMessages("alice", recreated);
+            store.deleteMessages("filler");
+
+            assertEquals(1, store.stats().compactions());
+            assertFalse(Files.exists(cleared), "the segment with the CLEAR was compacted");
+            assertEquals(recreated, store.getMessages("alice"));
+        }
+        try (AppendOnlyChatMemoryStore reopened = AppendOnlyChatMemoryStore.builder()
+                .directory(tempDir)
+                .segmentBytes(16 * 1024)
+                .build()) {
+            assertEquals(recreated, reopened.getMessages("alice"));
+        }
+    }
+
+    private Path newestSegment() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.max(Comparator.naturalOrder()).orElseThrow();
+        }
+    }
+
+    /** Ten users talking through windows of four messages, from turn {@code from} to {@code to}. */
+    private static void chatter(ChatMemoryStore store, int from, int to) {
+        for (int turn = from; turn < to; turn++) {
+            for (int user = 0; user < 10; user++) {
+                List<ChatMessage> messages = new ArrayList<>(store.getMessages("user-" + user));
+                messages.add(UserMessage.from("Turn " + turn + " of user " + user + " " + "y".repeat(100)));
+                store.updateMessages(
+                        "user-" + user, messages.subList(Math.max(0, messages.size() - 4), messages.size()));
+            }
+        }
+    }
+
+    @Test
+    void tornRecordAtTheEndIsIgnored() throws IOException {
+        try (AppendOnlyChatMemoryStore store =
+                AppendOnlyChatMemoryStore.builder().directory(tempDir).build()) {
+            store.updateMessages("alice", List.of(UserMessage.from("first")));
+            store.updateMessages("alice", List.of(UserMessage.from("first"), AiMessage.from("second")));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int end = bytes.length - 1;
+        while (bytes[end] == 0) {
+            end--;
+        }
+        bytes[end] ^= 0x20; // corrupt the last byte of the second message
+        Files.write(segment, bytes);
+
+        try (AppendOnlyChatMemoryStore store =
+                AppendOnlyChatMemoryStore.builder().directory(tempDir).build()) {
+            assertEquals(List.of(UserMessage.from("first")), store.getMessages("alice"));
+            store.updateMessages("alice", List.of(UserMessage.from("first"), AiMessage.from("again")));
+        }
+        try (AppendOnlyChatMemoryStore store =
+                AppendOnlyChatMemoryStore.builder().directory(tempDir).build()) {
+            assertEquals(List.of(UserMessage.from("first"), AiMessage.from("again")), store.getMessages("alice"));
+        }
+    }
+
+    /** Times turns against the clock; run with {@code gradle benchmark}, excluded from {@code gradle test}. */
+    @Test
+    @Tag("benchmark")
+    void turnLatencyStaysFlatAsConversationsGrow() throws IOException {
+        int conversations = 5;
+        int turns = 500;
+        Files.createDirectories(tempDir.resolve("rewriting"));
+        RewritingChatMemoryStore rewriting = new RewritingChatMemoryStore(tempDir.resolve("rewriting"));
+        try (AppendOnlyChatMemoryStore appending = AppendOnlyChatMemoryStore.builder()
+                .directory(tempDir.resolve("appending"))
+                .build()) {
+            // one store after the other, so that the garbage of one does not pause the other's turns
+            converse(rewriting, "warm-up", turns);
+            long[][] rewritingNanos = new long[conversations][];
+            for (int c = 0; c < conversations; c++) {
+                rewritingNanos[c] = converse(rewriting, "conversation-" + c, turns);
+            }
+            System.gc();
+            for (int c = 0; c < 50; c++) {
+                converse(appending, "warm-up-" + c, turns);
+            }
+            long appendedBefore = appending.stats().bytesAppended();
+            long[][] appendingNanos = new long[conversations][];
+            for (int c = 0; c < conversations; c++) {
+                appendingNanos[c] = converse(appending, "conversation-" + c, turns);
+            }
+            long appended = appending.stats().bytesAppended() - appendedBefore;
+            long rewritten = rewriting.bytesWritten * conversations / (conversations + 1);
+
+            double rewritingEarly = medianMicros(rewritingNanos, 0, 50);
+            double rewritingLate = medianMicros(rewritingNanos, turns - 50, turns);
+            double appendingEarly = medianMicros(appendingNanos, 0, 50);
+            double appendingLate = medianMicros(appendingNanos, turns - 50, turns);
+            System.out.printf("%-10s %16s %16s %18s%n", "store", "turns 1-50 us", "turns 451-500 us", "bytes written");
+            System.out.printf("%-10s %16.1f %16.1f %,18d%n", "rewriting", rewritingEarly, rewritingLate, rewritten);
+            System.out.printf("%-10s %16.1f %16.1f %,18d%n", "appending", appendingEarly, appendingLate, appended);
+            assertTrue(appended * 50 < rewritten, "appending writes each message once");
+            // what growth is left is copying the message list, which the ChatMemoryStore interface implies
+            assertTrue(appendingLate < appendingEarly * 4, "late turns cost about what early turns do");
+            assertTrue(
+                    (appendingLate - appendingEarly) * 20 < rewritingLate - rewritingEarly,
+                    "turns grow far less than when the whole conversation is rewritten");
+
+            // bytes written per turn do not grow at all
+            List<ChatMessage> messages = new ArrayList<>();
+            long[] bytesPerTurn = new long[turns];
+            for (int turn = 0; turn < turns; turn++) {
+                messages.add(UserMessage.from("Question " + (1_000 + turn)));
+                long before = appending.stats().bytesAppended();
+                appending.updateMessages("bytes", messages);
+                bytesPerTurn[turn] = appending.stats().bytesAppended() - before;
+            }
+            assertEquals(bytesPerTurn[10], bytesPerTurn[turns - 1]);
+        }
+    }
+
+    /** Runs a conversation the way {@code MessageWindowChatMemory} uses its store, timing each turn. */
+    private static long[] converse(ChatMemoryStore store, String memoryId, int turns) {
+        long[] nanos = new long[turns];
+        for (int turn = 0; turn < turns; turn++) {
+            long start = System.nanoTime();
+            List<ChatMessage> messages = new ArrayList<>(store.getMessages(memoryId));
+            messages.add(turn % 2 == 0
+                    ? UserMessage.from("Question " + turn + ": what else should I know about chat memory?")
+                    : AiMessage.from("Answer " + turn + ": memories hold the messages a model has to see again."));
+            store.updateMessages(memoryId, messages);
+            nanos[turn] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+    /** Median turn time over turns {@code from} to {@code to} of every conversation. */
+    private static double medianMicros(long[][] nanos, int from, int to) {
+        long[] samples = new long[nanos.length * (to - from)];
+        for (int c = 0; c < nanos.length; c++) {
+            System.arraycopy(nanos[c], from, samples, c * (to - from), to - from);
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2] / 1e3;
+    }
+
+    /** The straightforward persistent store: one JSON file per memory, rewritten on every update. */
+    private static final class RewritingChatMemoryStore implements ChatMemoryStore {
+        private final Path directory;
+        private long bytesWritten;
+
+        RewritingChatMemoryStore(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public List<ChatMessage> getMessages(Object memoryId) {
+            Path file = directory.resolve(memoryId + ".json");
+            try {
+                return Files.exists(file)
+                        ? ChatMessageDeserializer.messagesFromJson(Files.readString(file))
+                        : List.of();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+            String json = ChatMessageSerializer.messagesToJson(messages);
+            try {
+                Files.writeString(directory.resolve(memoryId + ".json"), json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bytesWritten += json.length();
+        }
+
+        @Override
+        public void deleteMessages(Object memoryId) {
+            try {
+                Files.deleteIfExists(directory.resolve(memoryId + ".json"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link BatchingEmbeddingModel}: results match the direct path, failures and errors reach
+ * every caller, and a 200-caller load test comparing throughput and tail latency with the direct path.
+ */
+class BatchingEmbeddingModelTests {
+
+    private static final EmbeddingModel MODEL = new AllMiniLmL6V2QuantizedEmbeddingModel();
+
+    @Test
+    void concurrentCallsShareBatchesAndGetTheirOwnResults() throws Exception {
+        CountingEmbeddingModel counting = new CountingEmbeddingModel(MODEL);
+        int callers = 50;
+        List<Embedding> batched;
+        try (BatchingEmbeddingModel batching = BatchingEmbeddingModel.builder()
+                .delegate(counting)
+                .maxDelay(Duration.ofMillis(20))
+                .build()) {
+            batched = runConcurrently(callers, i -> batching.embed(question(i)).content());
+            assertEquals(callers, batching.stats().requests());
+            System.out.println(batching.stats());
+        }
+
+        assertTrue(counting.calls.get() < callers / 2, "calls should have been merged: " + counting.calls.get());
+        for (int i = 0; i < callers; i++) {
+            float[] direct = MODEL.embed(question(i)).content().vector();
+            assertTrue(VectorMath.cosine(direct, batched.get(i).vector()) > 0.999f, "result " + i);
+        }
+    }
+
+    @Test
+    void aFailedBatchFailsEveryCallerInIt() throws Exception {
+        EmbeddingModel failing = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                throw new IllegalStateException("model unavailable");
+            }
+        };
+        try (BatchingEmbeddingModel batching = BatchingEmbeddingModel.builder()
+                .delegate(failing)
+                .maxDelay(Duration.ofMillis(20))
+                .build()) {
+            List<String> messages = runConcurrently(10, i -> {
+                try {
+                    batching.embed(question(i));
+                    return "no exception";
+                } catch (IllegalStateException e) {
+                    return e.getMessage();
+                }
+            });
+            assertEquals(List.of("model unavailable"), messages.stream().distinct().toList());
+        }
+    }
+
+    @Test
+    void anErrorFromTheDelegateReachesTheCaller() throws Exception {
+        EmbeddingModel crashing = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                throw new AssertionError("native runtime crashed");
+            }
+        };
+        try (BatchingEmbeddingModel batching = BatchingEmbeddingModel.builder()
+                .delegate(crashing)
+                .maxDelay(Duration.ofMillis(20))
+                .build()) {
+            String message = CompletableFuture.supplyAsync(() -> {
+                        try {
+                            batching.embed(question(0));
+                            return "no error";
+                        } catch (AssertionError e) {
+                            return e.getMessage();
+                        }
+                    })
+                    .get(10, TimeUnit.SECONDS);
+            assertEquals("native runtime crashed", message);
+        }
+    }
+
+    /** A 200-thread load test against the ONNX model; run with {@code gradle benchmark}. */
+    @Test
+    @Tag("benchmark")
+    void loadTestWith200ConcurrentCallers() throws Exception {
+        int callers = 200;
+        int callsPerCaller = 10;
+        // warm up the ONNX session
+        MODEL.embedAll(List.of(TextSegment.from(question(0)), TextSegment.from(question(1))));
+
+        Result direct = load(MODEL, callers, callsPerCaller);
+        Result batched;
+        BatchingEmbeddingModel.BatchStats stats;
+        try (BatchingEmbeddingModel batching = BatchingEmbeddingModel.builder().delegate(MODEL).build()) {
+            batched = load(batching, callers, callsPerCaller);
+            stats = batching.stats();
+        }
+
+        System.out.printf("%d callers x %d queries%n", callers, callsPerCaller);
+        System.out.printf("%-8s %12s %10s %10s%n", "path", "queries/s", "p50 ms", "p99 ms");
+        System.out.printf("%-8s %12.0f %10.1f %10.1f%n", "direct", direct.throughput(), direct.p50(), direct.p99());
+        System.out.printf(
+                "%-8s %12.0f %10.1f %10.1f  (%.1f queries per batch)%n",
+                "batched", batched.throughput(), batched.p50(), batched.p99(), stats.averageBatchSize());
+
+        assertEquals((long) callers * callsPerCaller, stats.requests());
+        assertTrue(stats.averageBatchSize() > 4);
+    }
+
+    private static Result load(EmbeddingModel model, int callers, int callsPerCaller) throws Exception {
+        long start = System.nanoTime();
+        List<long[]> latencies = runConcurrently(callers, i -> {
+            long[] nanos = new long[callsPerCaller];
+            for (int call = 0; call < callsPerCaller; call++) {
+                long callStart = System.nanoTime();
+                model.embed(question(i * callsPerCaller + call));
+                nanos[call] = System.nanoTime() - callStart;
+            }
+            return nanos;
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all.length / seconds, percentile(all, 0.50), percentile(all, 0.99));
+    }
+
+    private static double percentile(long[] sortedNanos, double quantile) {
+        int index = (int) Math.ceil(quantile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    /** Runs {@code task} on {@code callers} threads released at the same moment. */
+    private static <T> List<T> runConcurrently(int callers, Task<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                int caller = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(caller);
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String question(int i) {
+        String[] topics = {"chat memory", "tools", "streaming", "embedding stores", "AiServices", "RAG"};
+        return "Question " + i + ": how do I configure " + topics[i % topics.length] + " in LangChain4j?";
+    }
+
+    @FunctionalInterface
+    private interface Task<T> {
+        T run(int caller) throws Exception;
+    }
+
+    private record Result(double throughput, double p50, double p99) {}
+
+    /** Delegating model that counts calls to {@code embedAll}. */
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+        private final EmbeddingModel delegate;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            calls.incrementAndGet();
+            return delegate.embedAll(textSegments);
+        }
+    }
+}
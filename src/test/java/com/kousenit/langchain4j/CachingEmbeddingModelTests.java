@@ -0,0 +1,122 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link CachingEmbeddingModel} using the Lab 9 document and both MiniLM models. */
+class CachingEmbeddingModelTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reingestingUnchangedDocumentSkipsInference() throws URISyntaxException {
+        List<TextSegment> segments = DocumentSplitters.recursive(300, 50).split(loadModernFeaturesDocument());
+        CountingEmbeddingModel counting = new CountingEmbeddingModel(new AllMiniLmL6V2QuantizedEmbeddingModel());
+        CachingEmbeddingModel cached = CachingEmbeddingModel.builder()
+                .delegate(counting)
+                .cacheDirectory(tempDir)
+                .build();
+
+        long start = System.nanoTime();
+        List<Embedding> first = cached.embedAll(segments).content();
+        double coldMillis = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        List<Embedding> second = cached.embedAll(segments).content();
+        double warmMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf(
+                "%d segments: cold %.1f ms, warm %.1f ms, %s%n",
+                segments.size(), coldMillis, warmMillis, cached.stats());
+
+        assertEquals(first, second);
+        assertTrue(counting.embedded.get() <= segments.size());
+        assertEquals(segments.size(), cached.stats().memoryHits());
+    }
+
+    @Test
+    void diskTierSurvivesNewInstanceAndModelsDoNotShareEntries() {
+        List<TextSegment> segments = List.of(
+                TextSegment.from("LangChain4j is a Java library for building AI applications."),
+                TextSegment.from("The library uses a builder pattern for configuration."));
+
+        CachingEmbeddingModel quantized = CachingEmbeddingModel.builder()
+                .delegate(new AllMiniLmL6V2QuantizedEmbeddingModel())
+                .cacheDirectory(tempDir)
+                .build();
+        quantized.embedAll(segments);
+
+        CountingEmbeddingModel counting = new CountingEmbeddingModel(new AllMiniLmL6V2QuantizedEmbeddingModel());
+        CachingEmbeddingModel restarted = CachingEmbeddingModel.builder()
+                .delegate(counting)
+                .modelId(AllMiniLmL6V2QuantizedEmbeddingModel.class.getName())
+                .cacheDirectory(tempDir)
+                .build();
+        restarted.embedAll(segments);
+        assertEquals(0, counting.embedded.get());
+        assertEquals(2, restarted.stats().diskHits());
+
+        CachingEmbeddingModel fullPrecision = CachingEmbeddingModel.builder()
+                .delegate(new AllMiniLmL6V2EmbeddingModel())
+                .cacheDirectory(tempDir)
+                .build();
+        fullPrecision.embedAll(segments);
+        assertEquals(2, fullPrecision.stats().misses());
+    }
+
+    @Test
+    void inHeapTierIsBounded() {
+        CountingEmbeddingModel counting = new CountingEmbeddingModel(new AllMiniLmL6V2QuantizedEmbeddingModel());
+        CachingEmbeddingModel cached = CachingEmbeddingModel.builder()
+                .delegate(counting)
+                .maxCachedEmbeddings(1)
+                .build();
+
+        cached.embed("first");
+        cached.embed("second");
+        cached.embed("first");
+
+        assertEquals(3, counting.embedded.get());
+        assertEquals(0, cached.stats().hits());
+    }
+
+    private static Document loadModernFeaturesDocument() throws URISyntaxException {
+        Path path = Path.of(Objects.requireNonNull(CachingEmbeddingModelTests.class.getResource(
+                        "/langchain4j-modern-features.txt"))
+                .toURI());
+        return FileSystemDocumentLoader.loadDocument(path);
+    }
+
+    /** Delegating model that counts how many segments really reach the ONNX runtime. */
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+        private final EmbeddingModel delegate;
+        private final AtomicInteger embedded = new AtomicInteger();
+
+        CountingEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            embedded.addAndGet(textSegments.size());
+            return delegate.embedAll(textSegments);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CompactChatMemoryStore} behind {@code MessageWindowChatMemory}, against the same
+ * conversations in an {@code InMemoryChatMemoryStore}.
+ */
+class CompactChatMemoryStoreTests {
+
+    @Test
+    void memoriesMatchTheInMemoryStoreInAFractionOfTheBytes() {
+        CompactChatMemoryStore compact = CompactChatMemoryStore.builder().build();
+        InMemoryChatMemoryStore reference = new InMemoryChatMemoryStore();
+        List<ChatMemory> compactMemories = new ArrayList<>();
+        List<ChatMemory> referenceMemories = new ArrayList<>();
+        for (int user = 0; user < 200; user++) {
+            compactMemories.add(memory(user, compact));
+            referenceMemories.add(memory(user, reference));
+        }
+        for (int turn = 0; turn < 30; turn++) {
+            for (int user = 0; user < 200; user++) {
+                for (ChatMemory memory : List.of(compactMemories.get(user), referenceMemories.get(user))) {
+                    if (turn == 0) {
+                        memory.add(SystemMessage.from("You are a helpful assistant. Answer briefly and cite "
+                                + "the tools you used. Tenant: " + (user % 3)));
+                    }
+                    memory.add(UserMessage.from("Question " + turn + " from user " + user));
+                    if (turn % 5 == 2) {
+                        ToolExecutionRequest request = ToolExecutionRequest.builder()
+                                .id("call-" + user + "-" + turn)
+                                .name("lookupOrder")
+                                .arguments("{\"user\":" + user + "}")
+                                .build();
+                        memory.add(AiMessage.from(request));
+                        memory.add(ToolExecutionResultMessage.from(request, "order " + user + " shipped"));
+                    }
+                    memory.add(AiMessage.from("Answer " + turn + " for user " + user));
+                }
+            }
+        }
+        compactMemories.get(13).clear();
+        referenceMemories.get(13).clear();
+
+        long jsonBytes = 0;
+        for (int user = 0; user < 200; user++) {
+            assertEquals(reference.getMessages(user), compact.getMessages(user), "memory " + user);
+            jsonBytes += ChatMessageSerializer.messagesToJson(reference.getMessages(user))
+                    .getBytes(StandardCharsets.UTF_8)
+                    .length;
+        }
+        CompactChatMemoryStore.StoreStats stats = compact.stats();
+        System.out.printf("%s, JSON would be %,d bytes%n", stats, jsonBytes);
+        assertEquals(199, stats.memories());
+        assertEquals(4, stats.dictionaryEntries(), "three system messages and one tool name");
+        assertEquals(0, stats.jsonMessages());
+        assertTrue(stats.bytes() * 2 < jsonBytes);
+        assertTrue(compact.getMessages("nobody").isEmpty());
+    }
+
+    private static ChatMemory memory(int user, ChatMemoryStore store) {
+        return MessageWindowChatMemory.builder()
+                .id(user)
+                .maxMessages(12)
+                .chatMemoryStore(store)
+                .build();
+    }
+}
@@ -0,0 +1,234 @@
+package com.kousenit.langchain4j;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CompactingEmbeddingStore}: upserts, tombstoned deletes by id and filter, writes
+ * racing compactions, and a bound on p99 search latency while a background compaction runs under
+ * concurrent readers.
+ */
+class CompactingEmbeddingStoreTests {
+
+    private static final int DIMENSION = SyntheticEmbeddings.MINILM_DIMENSION;
+
+    /** How much slower the 99th percentile search may get while churn and compaction run. */
+    private static final int MAX_P99_SLOWDOWN = 4;
+
+    @Test
+    void upsertReplacesTheEntryWithTheSameId() {
+        try (CompactingEmbeddingStore store =
+                CompactingEmbeddingStore.builder().backgroundCompaction(false).build()) {
+            List<Embedding> embeddings = SyntheticEmbeddings.clustered(2, DIMENSION, 2, 3L);
+            store.upsert("doc-1", embeddings.get(0), TextSegment.from("first version"));
+            store.upsert("doc-1", embeddings.get(1), TextSegment.from("second version"));
+
+            assertEquals(1, store.size());
+            assertEquals(1, store.tombstones());
+            List<EmbeddingMatch<TextSegment>> matches = search(store, embeddings.get(0), 10);
+            assertEquals(1, matches.size());
+            assertEquals("second version", matches.get(0).embedded().text());
+        }
+    }
+
+    @Test
+    void deletesByIdAndFilterAreSkippedAndReclaimedByCompaction() {
+        int count = 5_000;
+        try (CompactingEmbeddingStore store =
+                CompactingEmbeddingStore.builder().backgroundCompaction(false).build()) {
+            List<Embedding> embeddings = SyntheticEmbeddings.clustered(count, DIMENSION, 20, 5L);
+            List<String> ids = store.addAll(embeddings, segments(count));
+
+            store.removeAll(metadataKey("source").isEqualTo("source-3"));
+            store.removeAll(ids.subList(0, 100));
+            int removed = store.tombstones();
+            assertEquals(count - removed, store.size());
+            assertTrue(removed > 1_000, "filter and id deletes should both apply: " + removed);
+
+            Embedding query = embeddings.get(7);
+            List<String> before = ids(search(store, query, 20));
+            assertTrue(before.stream().noneMatch(id -> ids.indexOf(id) < 100));
+            for (EmbeddingMatch<TextSegment> match : search(store, query, 20)) {
+                assertNotEquals("source-3", match.embedded().metadata().getString("source"));
+            }
+
+            store.compact();
+            assertEquals(0, store.tombstones());
+            assertEquals(count - removed, store.size());
+            assertEquals(1, store.compactions());
+            assertEquals(before, ids(search(store, query, 20)));
+        }
+    }
+
+    @Test
+    void writesMadeDuringACompactionSurviveTheSwap() throws Exception {
+        int count = 20_000;
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(count, 32, 50, 13L);
+        try (CompactingEmbeddingStore store =
+                CompactingEmbeddingStore.builder().backgroundCompaction(false).build()) {
+            List<String> ids = store.addAll(embeddings, segments(count));
+            Set<String> live = new HashSet<>(ids);
+            AtomicBoolean writing = new AtomicBoolean(true);
+            Thread compactor = new Thread(() -> {
+                while (writing.get()) {
+                    store.compact();
+                }
+            });
+            compactor.start();
+
+            Random random = new Random(17L);
+            for (int round = 0; round < 2_000; round++) {
+                int i = random.nextInt(count);
+                if (live.remove(ids.get(i))) {
+                    store.removeAll(List.of(ids.get(i)));
+                } else {
+                    store.add(ids.get(i), embeddings.get(i));
+                    live.add(ids.get(i));
+                }
+                if (round % 3 == 0) {
+                    int j = random.nextInt(count);
+                    store.upsert(ids.get(j), embeddings.get(j), TextSegment.from("rewritten " + j));
+                    live.add(ids.get(j));
+                }
+            }
+            writing.set(false);
+            compactor.join();
+            store.compact();
+
+            assertTrue(store.compactions() > 1, "compactions ran while writing: " + store.compactions());
+            assertEquals(0, store.tombstones());
+            assertEquals(live.size(), store.size());
+            for (int i = 0; i < count; i += 97) {
+                Set<String> top = SyntheticEmbeddings.topIds(store, embeddings.get(i), 1);
+                assertEquals(live.contains(ids.get(i)), top.contains(ids.get(i)), "entry " + i);
+            }
+        }
+    }
+
+    /**
+     * Measures search latency while 30% of a 40,000-entry store is churned and compacted, so it only runs with
+     * {@code gradle benchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    void searchLatencyDuringBackgroundCompaction() throws Exception {
+        int count = 40_000;
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(count, DIMENSION, 100, 11L);
+        List<Embedding> queries = SyntheticEmbeddings.clustered(50, DIMENSION, 100, 12L);
+        try (CompactingEmbeddingStore store = CompactingEmbeddingStore.builder()
+                .compactionThreshold(0.2)
+                .minTombstones(1_000)
+                .build()) {
+            List<TextSegment> segments = segments(count);
+            List<String> ids = store.addAll(embeddings, segments);
+
+            long[] quiet = searchWhile(store, queries, () -> {});
+
+            // delete and rewrite 30% of the corpus while the readers run
+            int churn = count * 3 / 10;
+            long[] during = searchWhile(store, queries, () -> {
+                for (int i = 0; i < churn; i += 500) {
+                    store.removeAll(ids.subList(i, i + 500));
+                }
+                for (int i = 0; i < churn; i += 500) {
+                    store.addAll(ids.subList(i, i + 500), embeddings.subList(i, i + 500), segments.subList(i, i + 500));
+                }
+                long deadline = System.nanoTime() + 30_000_000_000L;
+                while (store.compactions() == 0 && System.nanoTime() < deadline) {
+                    LockSupport.parkNanos(10_000_000);
+                }
+            });
+            System.out.printf("%,d entries, %,d deleted then re-added%n", count, churn);
+            System.out.printf("%-20s %10s %10s%n", "phase", "p50 ms", "p99 ms");
+            System.out.printf("%-20s %10.2f %10.2f%n", "quiet", percentile(quiet, 0.5), percentile(quiet, 0.99));
+            System.out.printf(
+                    "%-20s %10.2f %10.2f  (%d compactions)%n",
+                    "churn + compaction", percentile(during, 0.5), percentile(during, 0.99), store.compactions());
+
+            assertTrue(store.compactions() > 0, "background compaction should have run");
+            assertEquals(count, store.size());
+            // compaction rebuilds off to the side, so readers see at most the cost of sharing the CPU
+            assertTrue(
+                    percentile(during, 0.99) < percentile(quiet, 0.99) * MAX_P99_SLOWDOWN,
+                    "p99 during compaction should stay within " + MAX_P99_SLOWDOWN + "x of p99 when idle");
+            Set<String> expected = SyntheticEmbeddings.topIds(store, embeddings.get(0), 1);
+            assertEquals(Set.of(ids.get(0)), expected);
+        }
+    }
+
+    /** Runs four concurrent readers while {@code writes} runs; returns their sorted search latencies. */
+    private static long[] searchWhile(CompactingEmbeddingStore store, List<Embedding> queries, Runnable writes)
+            throws InterruptedException {
+        int searchesPerReader = 300;
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> readers = new ArrayList<>();
+        List<long[]> latencies = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            long[] nanos = new long[searchesPerReader];
+            latencies.add(nanos);
+            Thread reader = new Thread(() -> {
+                try {
+                    for (int i = 0; i < nanos.length; i++) {
+                        long start = System.nanoTime();
+                        search(store, queries.get(i % queries.size()), 10);
+                        nanos[i] = System.nanoTime() - start;
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        writes.run();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertTrue(failures.isEmpty(), "readers failed: " + failures);
+        return latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+    }
+
+    private static double percentile(long[] sortedNanos, double quantile) {
+        int index = (int) Math.ceil(quantile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    private static List<TextSegment> segments(int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(TextSegment.from(
+                    "Segment " + i, Metadata.from("source", "source-" + (i % 4)).put("index", i)));
+        }
+        return segments;
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(
+            CompactingEmbeddingStore store, Embedding query, int maxResults) {
+        return store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(query)
+                        .maxResults(maxResults)
+                        .build())
+                .matches();
+    }
+
+    private static List<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+        return matches.stream().map(EmbeddingMatch::embeddingId).toList();
+    }
+}
@@ -0,0 +1,91 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link ContentDefinedChunker}: size limits, and boundary stability under edits. */
+class ContentDefinedChunkerTests {
+
+    private static final List<String> WORDS = List.of(
+            "the", "model", "returns", "a", "response", "with", "tokens", "embedding", "store", "segment",
+            "retriever", "query", "memory", "tool", "agent", "streaming", "handler", "builder", "prompt", "chat");
+
+    @Test
+    void chunksRespectSizeLimitsAndKeepEveryWord() {
+        String text = sampleText(300, 1L);
+        ContentDefinedChunker chunker = ContentDefinedChunker.builder()
+                .minChars(100)
+                .averageChars(300)
+                .maxChars(600)
+                .build();
+
+        List<TextSegment> segments = chunker.split(Document.from(text));
+
+        double average = segments.stream().mapToInt(s -> s.text().length()).average().orElse(0);
+        System.out.printf("%,d chars -> %d chunks, %.0f chars on average%n", text.length(), segments.size(), average);
+        for (int i = 0; i < segments.size(); i++) {
+            String chunk = segments.get(i).text();
+            assertTrue(chunk.length() <= 600);
+            if (i < segments.size() - 1) {
+                assertTrue(chunk.length() >= 100 - 1, "only the last chunk may be short");
+            }
+            assertEquals(String.valueOf(i), segments.get(i).metadata().getString("index"));
+        }
+        String joined = segments.stream().map(TextSegment::text).collect(Collectors.joining(" "));
+        assertEquals(List.of(text.split("\\s+")), List.of(joined.split("\\s+")));
+    }
+
+    @Test
+    void anEditOnlyChangesTheChunksAroundIt() {
+        String original = sampleText(400, 2L);
+        int middle = original.indexOf(". ", original.length() / 3) + 2;
+        String edited = original.substring(0, middle)
+                + "This sentence was inserted by an editor. "
+                + original.substring(middle);
+
+        DocumentSplitter recursive = DocumentSplitters.recursive(400, 0);
+        DocumentSplitter contentDefined = ContentDefinedChunker.builder().build();
+        double recursiveReuse = reuse(recursive, original, edited);
+        double contentDefinedReuse = reuse(contentDefined, original, edited);
+
+        System.out.printf("Chunks reused after one insertion: recursive %.1f%%, content-defined %.1f%%%n",
+                recursiveReuse * 100, contentDefinedReuse * 100);
+        assertTrue(contentDefinedReuse >= 0.9);
+        assertTrue(contentDefinedReuse > recursiveReuse);
+    }
+
+    private static double reuse(DocumentSplitter splitter, String original, String edited) {
+        Set<String> before = new HashSet<>();
+        splitter.split(Document.from(original)).forEach(segment -> before.add(segment.text()));
+        List<TextSegment> after = splitter.split(Document.from(edited));
+        long reused = after.stream().filter(segment -> before.contains(segment.text())).count();
+        return (double) reused / after.size();
+    }
+
+    private static String sampleText(int sentences, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            int length = 6 + random.nextInt(10);
+            for (int w = 0; w < length; w++) {
+                String word = WORDS.get(random.nextInt(WORDS.size()));
+                text.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                text.append(w == length - 1 ? ". " : " ");
+            }
+            if (random.nextInt(8) == 0) {
+                text.append("\n\n");
+            }
+        }
+        return text.toString().strip();
+    }
+}
@@ -0,0 +1,178 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ContextCompressingContentRetriever}: output fits the budget and keeps the relevant
+ * sentence, small results pass through, and a prompt-size check with a latency report against a stub
+ * chat model whose response time grows with the prompt.
+ */
+class ContextCompressingContentRetrieverTests {
+
+    private static final List<TextSegment> SEGMENTS = List.of(
+            TextSegment.from(
+                    "LangChain4j offers two chat interfaces. ChatModel is the synchronous interface and returns "
+                            + "the whole response at once. StreamingChatModel delivers partial responses token by "
+                            + "token through a StreamingChatResponseHandler. Both are configured with builders that "
+                            + "take an API key and a model name. Timeouts and retries are builder options too.",
+                    Metadata.from("file_name", "chat.md")),
+            TextSegment.from(
+                    "AiServices creates an implementation of your own interface. Methods may return String, "
+                            + "records or TokenStream. Returning TokenStream streams the answer; register "
+                            + "onPartialResponse and onCompleteResponse callbacks, then call start. System "
+                            + "messages come from the @SystemMessage annotation. Chat memory is attached per user "
+                            + "with @MemoryId.",
+                    Metadata.from("file_name", "ai-services.md")),
+            TextSegment.from(
+                    "Embedding stores keep vectors so that similar text can be found quickly. The in-memory "
+                            + "store is fine for tests and small corpora. Chroma and pgvector are options for larger "
+                            + "ones. Metadata filters narrow a search to matching segments. Segments are created by "
+                            + "document splitters.",
+                    Metadata.from("file_name", "rag.md")),
+            TextSegment.from(
+                    "Tools are Java methods annotated with @Tool. The model decides when to call them and with "
+                            + "which arguments. Tool results are sent back to the model as ToolExecutionResultMessage. "
+                            + "Keep tool descriptions short and specific so the model picks the right one.",
+                    Metadata.from("file_name", "tools.md")));
+
+    private final EmbeddingModel embeddingModel = new AllMiniLmL6V2QuantizedEmbeddingModel();
+
+    @Test
+    void keepsTheMostRelevantSentencesWithinTheBudget() {
+        ContentRetriever retriever = retriever(3);
+        ContextCompressingContentRetriever compressing = ContextCompressingContentRetriever.builder()
+                .delegate(retriever)
+                .embeddingModel(embeddingModel)
+                .tokenBudget(40)
+                .build();
+
+        Query query = Query.from("How do I stream partial responses token by token?");
+        List<Content> contents = compressing.retrieve(query);
+
+        int tokens = contents.stream()
+                .mapToInt(content -> (content.textSegment().text().length() + 3) / 4)
+                .sum();
+        assertTrue(tokens <= 40 + contents.size(), "sentences were packed into the budget: " + tokens);
+        String joined = contents.stream().map(content -> content.textSegment().text()).collect(Collectors.joining(" "));
+        assertTrue(joined.contains("StreamingChatModel delivers partial responses"), joined);
+        for (Content content : contents) {
+            assertNotNull(content.textSegment().metadata().getString("file_name"));
+        }
+        assertTrue(compressing.stats().reduction() > 0.5);
+
+        // a query embedding the caller already has is used as is
+        assertEquals(contents, compressing.retrieve(query, embeddingModel.embed(query.text()).content()));
+    }
+
+    @Test
+    void resultsWithinTheBudgetAreReturnedUntouched() {
+        ContentRetriever retriever = retriever(2);
+        ContextCompressingContentRetriever compressing = ContextCompressingContentRetriever.builder()
+                .delegate(retriever)
+                .embeddingModel(embeddingModel)
+                .tokenBudget(10_000)
+                .build();
+
+        Query query = Query.from("What are tools?");
+        assertEquals(retriever.retrieve(query), compressing.retrieve(query));
+        assertEquals(0.0, compressing.stats().reduction(), 1e-9);
+    }
+
+    @Test
+    void promptSizeAndLatencyAgainstAStubChatModel() {
+        // prefill dominates for short answers: 200 microseconds per prompt token
+        ChatModel chatModel = new ChatModel() {
+            @Override
+            public String chat(String prompt) {
+                sleepNanos(TimeUnit.MICROSECONDS.toNanos(200L * tokens(prompt)));
+                return "ok";
+            }
+        };
+        List<String> questions = List.of(
+                "How do I stream partial responses?",
+                "Which annotation defines a system message?",
+                "Which embedding stores suit larger corpora?",
+                "How does the model call a tool?",
+                "How is chat memory attached to a user?");
+        ContentRetriever plain = retriever(3);
+        ContextCompressingContentRetriever compressing = ContextCompressingContentRetriever.builder()
+                .delegate(plain)
+                .embeddingModel(embeddingModel)
+                .tokenBudget(60)
+                .build();
+        // warm up the ONNX session
+        ask(chatModel, plain, questions.get(0));
+        ask(chatModel, compressing, questions.get(0));
+
+        long plainTokens = 0;
+        long compressedTokens = 0;
+        // latency is reported only: it depends on the machine, prompt tokens do not
+        long plainNanos = 0;
+        long compressedNanos = 0;
+        int rounds = 10;
+        for (int round = 0; round < rounds; round++) {
+            for (String question : questions) {
+                long start = System.nanoTime();
+                plainTokens += ask(chatModel, plain, question);
+                plainNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                compressedTokens += ask(chatModel, compressing, question);
+                compressedNanos += System.nanoTime() - start;
+            }
+        }
+
+        int queries = rounds * questions.size();
+        System.out.printf("%-12s %14s %14s%n", "retriever", "prompt tokens", "latency ms");
+        System.out.printf("%-12s %14d %14.1f%n", "plain", plainTokens / queries, plainNanos / 1e6 / queries);
+        System.out.printf(
+                "%-12s %14d %14.1f%n", "compressed", compressedTokens / queries, compressedNanos / 1e6 / queries);
+        assertTrue(compressedTokens < plainTokens * 0.6, "prompts should shrink by more than 40%");
+    }
+
+    /** Retrieves, builds the prompt the way the default content injector does, and returns its tokens. */
+    private static int ask(ChatModel chatModel, ContentRetriever retriever, String question) {
+        String context = retriever.retrieve(Query.from(question)).stream()
+                .map(content -> content.textSegment().text())
+                .collect(Collectors.joining("\n\n"));
+        String prompt = question + "\n\nAnswer using the following information:\n" + context;
+        chatModel.chat(prompt);
+        return tokens(prompt);
+    }
+
+    private ContentRetriever retriever(int maxResults) {
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        store.addAll(embeddingModel.embedAll(SEGMENTS).content(), SEGMENTS);
+        return EmbeddingStoreContentRetriever.builder()
+                .embeddingStore(store)
+                .embeddingModel(embeddingModel)
+                .maxResults(maxResults)
+                .build();
+    }
+
+    private static int tokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
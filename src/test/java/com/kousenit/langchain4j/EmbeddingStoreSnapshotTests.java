@@ -0,0 +1,190 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link EmbeddingStoreSnapshot}: an exact round trip, corruption detection and a
+ * size and speed comparison with the JSON serialization of {@link InMemoryEmbeddingStore}.
+ */
+class EmbeddingStoreSnapshotTests {
+
+    private static final int DIMENSION = SyntheticEmbeddings.MINILM_DIMENSION;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTripPreservesIdsTextMetadataAndSearchResults() {
+        int count = EmbeddingStoreSnapshot.BLOCK_ENTRIES * 2 + 17;
+        InMemoryEmbeddingStore<TextSegment> original = store(count);
+        Path file = tempDir.resolve("store.snapshot");
+        EmbeddingStoreSnapshot.write(original, DIMENSION, file);
+
+        InMemoryEmbeddingStore<TextSegment> restored = EmbeddingStoreSnapshot.read(file);
+
+        for (Embedding query : SyntheticEmbeddings.clustered(20, DIMENSION, 30, 99)) {
+            List<EmbeddingMatch<TextSegment>> expected = search(original, query);
+            List<EmbeddingMatch<TextSegment>> actual = search(restored, query);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).embeddingId(), actual.get(i).embeddingId());
+                assertEquals(expected.get(i).score(), actual.get(i).score(), 1e-9);
+                assertEquals(expected.get(i).embedded(), actual.get(i).embedded());
+            }
+        }
+    }
+
+    @Test
+    void streamingWriterKeepsBareEmbeddingsAndRejectsWrongDimensions() {
+        Path file = tempDir.resolve("bare.snapshot");
+        Embedding embedding = Embedding.from(new float[] {0.6f, 0.8f});
+        String text = "\u00dcn\u00efc\u00f6d\u00e9 text \u2713";
+        try (EmbeddingStoreSnapshot.Writer writer = EmbeddingStoreSnapshot.writer(file, 2)) {
+            writer.add("bare", embedding, null);
+            writer.add("text", embedding, TextSegment.from(text, Metadata.from("lang", "de")));
+            assertThrows(IllegalArgumentException.class, () -> writer.add("wrong", Embedding.from(new float[3]), null));
+            // a rejected entry leaves nothing behind in the block
+            assertThrows(IllegalArgumentException.class, () -> writer.add(null, embedding, TextSegment.from("lost")));
+            assertFalse(Files.exists(file), "nothing is visible until commit");
+            writer.commit();
+        }
+
+        InMemoryEmbeddingStore<TextSegment> restored = EmbeddingStoreSnapshot.read(file);
+        List<EmbeddingMatch<TextSegment>> matches = search(restored, embedding);
+        assertEquals(2, matches.size());
+        Map<String, TextSegment> byId = new HashMap<>();
+        matches.forEach(match -> byId.put(match.embeddingId(), match.embedded()));
+        assertNull(byId.get("bare"));
+        assertEquals(text, byId.get("text").text());
+        assertEquals("de", byId.get("text").metadata().getString("lang"));
+    }
+
+    @Test
+    void writerClosedWithoutCommitKeepsThePreviousSnapshot() throws IOException {
+        Path file = tempDir.resolve("kept.snapshot");
+        EmbeddingStoreSnapshot.write(store(100), DIMENSION, file);
+
+        assertThrows(IllegalStateException.class, () -> {
+            try (EmbeddingStoreSnapshot.Writer writer = EmbeddingStoreSnapshot.writer(file, DIMENSION)) {
+                writer.add("first", Embedding.from(new float[DIMENSION]), null);
+                throw new IllegalStateException("the source failed midway");
+            }
+        });
+
+        assertEquals(100, EmbeddingStoreSnapshot.readInto(file, new InMemoryEmbeddingStore<>()));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of(file), files.toList(), "the temporary file was deleted");
+        }
+    }
+
+    @Test
+    void corruptBlocksAreDetected() throws IOException {
+        Path file = tempDir.resolve("corrupt.snapshot");
+        EmbeddingStoreSnapshot.write(store(100), DIMENSION, file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(100);
+            raf.write(raf.read() ^ 0xFF);
+        }
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> EmbeddingStoreSnapshot.read(file));
+        assertTrue(e.getMessage().contains("Corrupt block"), e.getMessage());
+    }
+
+    /** Compares read times against the clock, so it only runs with {@code gradle benchmark}. */
+    @Test
+    @Tag("benchmark")
+    void snapshotVersusJsonBenchmark() throws IOException {
+        int count = 20_000;
+        InMemoryEmbeddingStore<TextSegment> store = store(count);
+        Path jsonFile = tempDir.resolve("store.json");
+        Path snapshotFile = tempDir.resolve("store.snapshot");
+
+        // warm up both paths once so the JIT is not measured
+        InMemoryEmbeddingStore.fromJson(store(500).serializeToJson());
+        EmbeddingStoreSnapshot.write(store(500), DIMENSION, snapshotFile);
+        EmbeddingStoreSnapshot.read(snapshotFile);
+
+        long start = System.nanoTime();
+        Files.writeString(jsonFile, store.serializeToJson());
+        long jsonWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        InMemoryEmbeddingStore<TextSegment> fromJson =
+                InMemoryEmbeddingStore.fromJson(Files.readString(jsonFile, StandardCharsets.UTF_8));
+        long jsonRead = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        EmbeddingStoreSnapshot.write(store, DIMENSION, snapshotFile);
+        long snapshotWrite = System.nanoTime() - start;
+        start = System.nanoTime();
+        InMemoryEmbeddingStore<TextSegment> fromSnapshot = EmbeddingStoreSnapshot.read(snapshotFile);
+        long snapshotRead = System.nanoTime() - start;
+
+        long jsonBytes = Files.size(jsonFile);
+        long snapshotBytes = Files.size(snapshotFile);
+        System.out.printf("%,d entries x %d dimensions%n", count, DIMENSION);
+        System.out.printf("%-9s %12s %10s %10s%n", "format", "bytes", "write ms", "read ms");
+        System.out.printf(
+                "%-9s %,12d %10d %10d%n", "json", jsonBytes, jsonWrite / 1_000_000, jsonRead / 1_000_000);
+        System.out.printf(
+                "%-9s %,12d %10d %10d%n",
+                "snapshot", snapshotBytes, snapshotWrite / 1_000_000, snapshotRead / 1_000_000);
+
+        assertTrue(snapshotBytes < jsonBytes / 2, "snapshot should be far smaller than JSON");
+        assertTrue(snapshotRead < jsonRead, "snapshot should restore faster than JSON");
+        Embedding query = SyntheticEmbeddings.clustered(1, DIMENSION, 30, 5).get(0);
+        assertEquals(ids(search(fromJson, query)), ids(search(fromSnapshot, query)));
+    }
+
+    private static InMemoryEmbeddingStore<TextSegment> store(int count) {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(count, DIMENSION, 30, 42);
+        List<String> ids = new ArrayList<>(count);
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(new UUID(42, i).toString());
+            Metadata metadata = new Metadata()
+                    .put("file_name", "document-" + (i / 50) + ".pdf")
+                    .put("index", i % 50)
+                    .put("offset", i * 400L)
+                    .put("score", i / 7.0);
+            segments.add(TextSegment.from("Synthetic segment number " + i + " about topic " + i % 30, metadata));
+        }
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        store.addAll(ids, embeddings, segments);
+        return store;
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(
+            InMemoryEmbeddingStore<TextSegment> store, Embedding query) {
+        return store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(query)
+                        .maxResults(10)
+                        .build())
+                .matches();
+    }
+
+    private static List<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+        return matches.stream().map(EmbeddingMatch::embeddingId).toList();
+    }
+}
@@ -0,0 +1,239 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link EvictingChatMemoryProvider}: evicted memories come back from the store, idle
+ * memories are spilled by the timing wheel on a test clock, the window follows {@code
+ * MessageWindowChatMemory}, and a load test with a million memory ids from concurrent threads stays
+ * within its bound.
+ */
+class EvictingChatMemoryProviderTests {
+
+    @Test
+    void evictedMemoriesAreReloadedFromTheStore() {
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        try (EvictingChatMemoryProvider provider = EvictingChatMemoryProvider.builder()
+                .maxMemories(4)
+                .stripes(1)
+                .chatMemoryStore(store)
+                .build()) {
+            ChatMemory alice = provider.get("alice");
+            alice.add(UserMessage.from("My name is Alice"));
+            alice.add(AiMessage.from("Hello, Alice"));
+            assertTrue(store.getMessages("alice").isEmpty(), "nothing is written while the memory is on the heap");
+
+            for (int i = 0; i < 4; i++) {
+                provider.get("user-" + i).add(UserMessage.from("hi"));
+            }
+            assertEquals(4, provider.size());
+            assertEquals(2, store.getMessages("alice").size(), "least recently used memory was spilled");
+
+            // the old handle passes its calls on to the reloaded memory
+            alice.add(UserMessage.from("Who am I?"));
+            assertEquals(
+                    List.of(
+                            UserMessage.from("My name is Alice"),
+                            AiMessage.from("Hello, Alice"),
+                            UserMessage.from("Who am I?")),
+                    provider.get("alice").messages());
+
+            EvictingChatMemoryProvider.ProviderStats stats = provider.stats();
+            System.out.println(stats);
+            assertEquals(1, stats.reloads());
+            assertTrue(stats.lruEvictions() >= 2);
+
+            provider.get("alice").clear();
+            assertTrue(provider.get("alice").messages().isEmpty());
+            assertTrue(store.getMessages("alice").isEmpty());
+        }
+    }
+
+    @Test
+    void idleMemoriesAreSpilledByTheTimingWheel() throws InterruptedException {
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        try (EvictingChatMemoryProvider provider = EvictingChatMemoryProvider.builder()
+                .idleTimeout(Duration.ofMillis(200))
+                .backgroundEviction(false)
+                .nanoTime(clock::get)
+                .chatMemoryStore(store)
+                .build()) {
+            for (int i = 0; i < 100; i++) {
+                provider.get("user-" + i).add(UserMessage.from("message " + i));
+            }
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(120));
+            // half of them stay busy
+            for (int i = 0; i < 50; i++) {
+                provider.get("user-" + i);
+            }
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(120));
+            provider.cleanUp();
+
+            assertEquals(50, provider.size());
+            assertEquals(50, provider.stats().idleEvictions());
+            assertEquals(List.of(UserMessage.from("message 99")), store.getMessages("user-99"));
+            assertTrue(store.getMessages("user-0").isEmpty());
+        }
+
+        try (EvictingChatMemoryProvider provider = EvictingChatMemoryProvider.builder()
+                .idleTimeout(Duration.ofMillis(100))
+                .nanoTime(clock::get)
+                .chatMemoryStore(store)
+                .build()) {
+            provider.get("background").add(UserMessage.from("left alone"));
+            provider.cleanUp();
+            assertEquals(1, provider.size(), "no time has passed on the clock");
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (provider.size() > 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(0, provider.size(), "the eviction thread spilled the idle memory");
+            assertEquals(1, store.getMessages("background").size());
+        }
+    }
+
+    @Test
+    void idleMemoriesAreSpilledWhenTheClockIsNegative() {
+        // System.nanoTime() has an arbitrary origin and may well be negative
+        AtomicLong clock = new AtomicLong(Long.MIN_VALUE / 2);
+        try (EvictingChatMemoryProvider provider = EvictingChatMemoryProvider.builder()
+                .idleTimeout(Duration.ofMillis(200))
+                .backgroundEviction(false)
+                .nanoTime(clock::get)
+                .build()) {
+            provider.get("alice").add(UserMessage.from("hello"));
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+            provider.cleanUp();
+
+            assertEquals(0, provider.size());
+            assertEquals(1, provider.stats().idleEvictions());
+        }
+    }
+
+    @Test
+    void memoriesEvictedAsLeastRecentlyUsedLeaveTheTimingWheel() throws InterruptedException {
+        try (EvictingChatMemoryProvider provider = EvictingChatMemoryProvider.builder()
+                .maxMemories(2)
+                .stripes(1)
+                .idleTimeout(Duration.ofHours(1))
+                .backgroundEviction(false)
+                .build()) {
+            ChatMemory first = provider.get("first");
+            first.add(UserMessage.from("x".repeat(1_000)));
+            WeakReference<ChatMemory> evicted = new WeakReference<>(first);
+            first = null;
+            provider.get("second");
+            provider.get("third");
+            assertEquals(1, provider.stats().lruEvictions());
+
+            // the idle deadline is an hour away, and nothing else refers to the evicted memory
+            for (int attempt = 0; attempt < 20 && evicted.get() != null; attempt++) {
+                System.gc();
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertNull(evicted.get(), "the evicted memory can be collected before its idle deadline");
+        }
+    }
+
+    @Test
+    void windowKeepsTheSystemMessageAndDropsOrphanedToolResults() {
+        try (EvictingChatMemoryProvider provider =
+                EvictingChatMemoryProvider.builder().maxMessages(3).build()) {
+            ChatMemory memory = provider.get(42);
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("call-1")
+                    .name("getWeather")
+                    .arguments("{\"city\":\"Boston\"}")
+                    .build();
+            memory.add(SystemMessage.from("You are a helpful assistant"));
+            memory.add(SystemMessage.from("You are a helpful assistant"));
+            memory.add(UserMessage.from("What's the weather in Boston?"));
+            memory.add(AiMessage.from(request));
+            memory.add(ToolExecutionResultMessage.from(request, "Sunny, 22 degrees"));
+            assertEquals(3, memory.messages().size());
+
+            memory.add(AiMessage.from("It is sunny and 22 degrees in Boston."));
+            List<ChatMessage> messages = memory.messages();
+            assertEquals(
+                    List.of(
+                            SystemMessage.from("You are a helpful assistant"),
+                            AiMessage.from("It is sunny and 22 degrees in Boston.")),
+                    messages);
+        }
+    }
+
+    /** Load test; run with {@code gradle benchmark}, excluded from {@code gradle test}. */
+    @Test
+    @Tag("benchmark")
+    void millionMemoryIdsFromConcurrentThreads() throws Exception {
+        int ids = 1_000_000;
+        int maxMemories = 50_000;
+        int threads = 8;
+        int requestsPerThread = 250_000;
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        try (EvictingChatMemoryProvider provider = EvictingChatMemoryProvider.builder()
+                .maxMemories(maxMemories)
+                .idleTimeout(Duration.ofSeconds(30))
+                .chatMemoryStore(store)
+                .build()) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(thread);
+                    for (int r = 0; r < requestsPerThread; r++) {
+                        // every id turns up once, and half of all requests come from 20,000 regulars
+                        int id = r % 2 == 0 ? (r / 2) * threads + thread : random.nextInt(20_000);
+                        ChatMemory memory = provider.get("user-" + id);
+                        memory.add(UserMessage.from("question " + r));
+                        memory.messages();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            executor.shutdown();
+
+            EvictingChatMemoryProvider.ProviderStats stats = provider.stats();
+            long requests = (long) threads * requestsPerThread;
+            System.out.println(stats);
+            System.out.printf(
+                    "%,d requests for %,d memory ids on %d threads: %,.0f requests/s, %,d memories on the heap,"
+                            + " %.0f%% served from the heap%n",
+                    requests, ids, threads, requests / (elapsed / 1e9), stats.memories(), stats.hitRatio() * 100);
+            assertTrue(stats.memories() <= maxMemories, "memories on the heap stay within the bound");
+            assertEquals(requests, stats.hits() + stats.loads());
+            assertTrue(stats.hitRatio() > 0.3, "regulars stay on the heap");
+
+            // a user seen once, long evicted, gets their history back
+            assertEquals(List.of(UserMessage.from("question 200000")), provider.get("user-800005").messages());
+        }
+    }
+}
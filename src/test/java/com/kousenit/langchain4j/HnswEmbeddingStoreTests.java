@@ -0,0 +1,122 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link HnswEmbeddingStore}: a drop-in check against the Lab 9 retriever setup, and a
+ * recall@k versus latency report against the brute-force {@link InMemoryEmbeddingStore}.
+ */
+class HnswEmbeddingStoreTests {
+
+    @Test
+    void plugsIntoEmbeddingStoreContentRetriever() {
+        EmbeddingModel embeddingModel = new AllMiniLmL6V2QuantizedEmbeddingModel();
+        EmbeddingStore<TextSegment> embeddingStore =
+                HnswEmbeddingStore.builder().m(8).efConstruction(64).efSearch(32).build();
+
+        List<TextSegment> segments = DocumentSplitters.recursive(100, 20)
+                .splitAll(List.of(
+                        Document.from("LangChain4j is a Java library for building AI applications."),
+                        Document.from("It provides integration with language models like OpenAI and Anthropic."),
+                        Document.from("Python was created by Guido van Rossum in 1991.")));
+        embeddingStore.addAll(embeddingModel.embedAll(segments).content(), segments);
+
+        ContentRetriever retriever = EmbeddingStoreContentRetriever.builder()
+                .embeddingStore(embeddingStore)
+                .embeddingModel(embeddingModel)
+                .maxResults(1)
+                .build();
+
+        List<Content> contents = retriever.retrieve(Query.from("What is LangChain4j?"));
+
+        assertEquals(1, contents.size());
+        assertTrue(contents.get(0).textSegment().text().contains("LangChain4j"));
+    }
+
+    @Test
+    void removedEntriesAreNeverReturned() {
+        HnswEmbeddingStore store = HnswEmbeddingStore.builder().build();
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(500, 32, 5, 7L);
+        List<String> ids = store.addAll(embeddings, SyntheticEmbeddings.segments(500));
+
+        store.remove(ids.get(0));
+
+        Set<String> top = SyntheticEmbeddings.topIds(store, embeddings.get(0), 10);
+        assertFalse(top.contains(ids.get(0)));
+        assertEquals(10, top.size());
+        assertEquals(499, store.size());
+    }
+
+    /** Builds a 20,000-vector graph and sweeps efSearch against the clock; part of {@code gradle benchmark}. */
+    @Test
+    @Tag("benchmark")
+    void recallVersusLatencyAgainstBruteForce() {
+        int corpusSize = 20_000;
+        int queryCount = 200;
+        int k = 10;
+
+        List<Embedding> corpus =
+                SyntheticEmbeddings.clustered(corpusSize, SyntheticEmbeddings.MINILM_DIMENSION, 200, 1L);
+        List<TextSegment> segments = SyntheticEmbeddings.segments(corpusSize);
+        List<Embedding> queries =
+                SyntheticEmbeddings.heldOutQueries(queryCount, SyntheticEmbeddings.MINILM_DIMENSION, 200, 1L, 101L);
+
+        InMemoryEmbeddingStore<TextSegment> bruteForce = new InMemoryEmbeddingStore<>();
+        HnswEmbeddingStore hnsw = HnswEmbeddingStore.builder().m(16).efConstruction(100).build();
+
+        List<String> ids = bruteForce.addAll(corpus, segments);
+        long buildStart = System.nanoTime();
+        hnsw.addAll(ids, corpus, segments);
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        long exactStart = System.nanoTime();
+        List<Set<String>> truth = queries.stream()
+                .map(query -> SyntheticEmbeddings.topIds(bruteForce, query, k))
+                .toList();
+        double exactMicros = (System.nanoTime() - exactStart) / 1_000.0 / queryCount;
+
+        System.out.printf(
+                "HNSW build of %,d x %d-d vectors: %,d ms%n",
+                corpusSize,
+                SyntheticEmbeddings.MINILM_DIMENSION,
+                buildMillis);
+        System.out.printf("%-12s %10s %14s%n", "store", "recall@" + k, "latency (us)");
+        System.out.printf("%-12s %10.3f %14.1f%n", "brute-force", 1.0, exactMicros);
+
+        double recallAt256 = 0;
+        for (int ef : new int[] {16, 32, 64, 128, 256}) {
+            hnsw.efSearch(ef);
+            double recallSum = 0;
+            long start = System.nanoTime();
+            for (int q = 0; q < queryCount; q++) {
+                Set<String> approximate = SyntheticEmbeddings.topIds(hnsw, queries.get(q), k);
+                recallSum += SyntheticEmbeddings.recall(truth.get(q), approximate);
+            }
+            double micros = (System.nanoTime() - start) / 1_000.0 / queryCount;
+            double recall = recallSum / queryCount;
+            if (ef == 256) {
+                recallAt256 = recall;
+            }
+            System.out.printf("%-12s %10.3f %14.1f%n", "hnsw ef=" + ef, recall, micros);
+        }
+
+        assertTrue(recallAt256 >= 0.95, "HNSW recall@10 at ef=256 should be at least 0.95");
+    }
+}
@@ -0,0 +1,187 @@
+package com.kousenit.langchain4j;
+
+import static dev.langchain4j.model.openai.OpenAiChatModelName.GPT_4_1_NANO;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link HybridContentRetriever}: identifier lookups, the latency budget, replacing and
+ * removing ids, and AiServices.
+ */
+class HybridContentRetrieverTests {
+
+    private static final List<TextSegment> SEGMENTS = List.of(
+            TextSegment.from("LangChain4j is a Java library for building applications on large language models."),
+            TextSegment.from("Language models generate text one token at a time from a prompt."),
+            TextSegment.from("ChatModel is the synchronous interface; call chat() with a String or ChatRequest."),
+            TextSegment.from("StreamingChatModel delivers partial responses through a handler as they arrive."),
+            TextSegment.from("AiServices creates an implementation of your interface backed by a chat model."),
+            TextSegment.from("Embedding stores keep vectors so that similar text can be found quickly."),
+            TextSegment.from("Python was created by Guido van Rossum in 1991."),
+            TextSegment.from("Java was first released by Sun Microsystems in 1995."));
+
+    @Test
+    void exactIdentifiersAreRetrieved() {
+        EmbeddingModel embeddingModel = new AllMiniLmL6V2QuantizedEmbeddingModel();
+        InMemoryEmbeddingStore<TextSegment> embeddingStore = new InMemoryEmbeddingStore<>();
+        HybridContentRetriever hybrid = HybridContentRetriever.builder()
+                .embeddingStore(embeddingStore)
+                .embeddingModel(embeddingModel)
+                .maxResults(2)
+                .build();
+        hybrid.add(SEGMENTS);
+        EmbeddingStoreContentRetriever vectorOnly = EmbeddingStoreContentRetriever.builder()
+                .embeddingStore(embeddingStore)
+                .embeddingModel(embeddingModel)
+                .maxResults(2)
+                .build();
+
+        for (String identifier : List.of("ChatModel", "AiServices", "StreamingChatModel")) {
+            List<Content> vectorContents = vectorOnly.retrieve(Query.from(identifier));
+            List<Content> hybridContents = hybrid.retrieve(Query.from(identifier));
+            System.out.printf(
+                    "%-20s vector: %s%n%-20s hybrid: %s%n",
+                    identifier, firstText(vectorContents), "", firstText(hybridContents));
+
+            assertTrue(
+                    hybridContents.stream()
+                            .anyMatch(content -> content.textSegment().text().startsWith(identifier + " ")),
+                    identifier);
+        }
+        assertEquals(0, hybrid.vectorTimeouts());
+    }
+
+    @Test
+    void slowVectorSearchFallsBackToKeywordsWithinBudget() {
+        EmbeddingModel slowModel = new EmbeddingModel() {
+            private final EmbeddingModel delegate = new AllMiniLmL6V2QuantizedEmbeddingModel();
+
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                if (textSegments.size() == 1) {
+                    // only the query embedding is slow
+                    sleep(Duration.ofSeconds(1));
+                }
+                return delegate.embedAll(textSegments);
+            }
+        };
+        HybridContentRetriever hybrid = HybridContentRetriever.builder()
+                .embeddingStore(new InMemoryEmbeddingStore<>())
+                .embeddingModel(slowModel)
+                .timeout(Duration.ofMillis(100))
+                .build();
+        hybrid.add(SEGMENTS);
+
+        long start = System.nanoTime();
+        List<Content> contents = hybrid.retrieve(Query.from("When was Python created?"));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("Retrieval with a 1 s embedding call and a 100 ms budget: %d ms%n", millis);
+
+        assertTrue(millis < 500, "retrieval should return close to its budget");
+        assertTrue(firstText(contents).contains("Guido van Rossum"));
+        assertEquals(1, hybrid.vectorTimeouts());
+    }
+
+    @Test
+    void addingAnIdAgainReplacesItAndRemovedIdsAreNotRetrieved() {
+        EmbeddingModel embeddingModel = new AllMiniLmL6V2QuantizedEmbeddingModel();
+        HybridContentRetriever hybrid = HybridContentRetriever.builder()
+                .embeddingStore(new InMemoryEmbeddingStore<>())
+                .embeddingModel(embeddingModel)
+                .maxResults(8)
+                .build();
+        hybrid.add(SEGMENTS);
+        TextSegment python = TextSegment.from("Python 3.0 was released in 2008, long after Python was created.");
+        for (int i = 0; i < 3; i++) {
+            hybrid.addAll(List.of("python"), List.of(embeddingModel.embed(python).content()), List.of(python));
+        }
+
+        List<Content> contents = hybrid.retrieve(Query.from("When was Python created?"));
+        assertEquals(1, contents.stream().filter(HybridContentRetrieverTests::isPython).count(), "fused once");
+        assertEquals(python, contents.get(0).textSegment());
+
+        hybrid.remove(List.of("python"));
+        assertTrue(hybrid.retrieve(Query.from("When was Python created?")).stream()
+                .noneMatch(HybridContentRetrieverTests::isPython));
+    }
+
+    @Test
+    void keywordIndexDropsReplacedPostings() {
+        Bm25Index index = new Bm25Index();
+        index.add("other", TextSegment.from("Java was first released in 1995."));
+        for (int i = 0; i < 5_000; i++) {
+            index.add("python", TextSegment.from("Python release " + i));
+        }
+
+        assertEquals(2, index.size());
+        List<Bm25Index.Hit> hits = index.search("python release 4999", 10);
+        assertEquals(1, hits.size());
+        assertEquals("Python release 4999", hits.get(0).segment().text());
+        assertEquals(List.of(), index.search("1234", 10), "replaced text is no longer indexed");
+        assertTrue(index.remove("python"));
+        assertFalse(index.remove("python"));
+        assertEquals("other", index.search("java release", 10).get(0).id());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void plugsIntoAiServices() {
+        ChatModel chatModel = OpenAiChatModel.builder()
+                .apiKey(System.getenv("OPENAI_API_KEY"))
+                .modelName(GPT_4_1_NANO)
+                .build();
+
+        HybridContentRetriever retriever = HybridContentRetriever.builder()
+                .embeddingStore(new InMemoryEmbeddingStore<>())
+                .embeddingModel(new AllMiniLmL6V2QuantizedEmbeddingModel())
+                .build();
+        retriever.add(SEGMENTS);
+
+        interface DocumentAssistant {
+            String answer(String question);
+        }
+
+        DocumentAssistant assistant = AiServices.builder(DocumentAssistant.class)
+                .chatModel(chatModel)
+                .contentRetriever(retriever)
+                .build();
+
+        String answer = assistant.answer("Which method do I call on ChatModel?");
+
+        System.out.println("Answer: " + answer);
+        assertNotNull(answer);
+        assertTrue(answer.contains("chat"));
+    }
+
+    private static boolean isPython(Content content) {
+        return "python".equals(content.metadata().get(ContentMetadata.EMBEDDING_ID));
+    }
+
+    private static String firstText(List<Content> contents) {
+        return contents.isEmpty() ? "" : contents.get(0).textSegment().text();
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
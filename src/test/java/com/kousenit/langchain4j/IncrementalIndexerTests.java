@@ -0,0 +1,185 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link IncrementalIndexer}: skipped embeddings on edits, deletions, failed updates and
+ * the file watcher.
+ */
+class IncrementalIndexerTests {
+
+    @TempDir
+    Path tempDir;
+
+    private final EmbeddingModel model = new AllMiniLmL6V2QuantizedEmbeddingModel();
+
+    @Test
+    void editsReembedOnlyTheChangedSegments() throws IOException {
+        Path guide = tempDir.resolve("guide.txt");
+        Path faq = tempDir.resolve("faq.txt");
+        Files.writeString(guide, manual("ChatModel", 40));
+        Files.writeString(faq, manual("EmbeddingStore", 20));
+        CountingEmbeddingModel counting = new CountingEmbeddingModel(model);
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+
+        try (IncrementalIndexer indexer = IncrementalIndexer.builder()
+                .directory(tempDir)
+                .embeddingModel(counting)
+                .embeddingStore(store)
+                .build()) {
+            List<IncrementalIndexer.Change> initial = indexer.scan();
+            int indexed = initial.stream().mapToInt(IncrementalIndexer.Change::segments).sum();
+            assertEquals(indexed, counting.embedded.get());
+            assertEquals(indexed, storeSize(store));
+
+            String text = Files.readString(guide);
+            int middle = text.indexOf("\n\n", text.length() / 2);
+            Files.writeString(guide, text.substring(0, middle)
+                    + "\n\nChatModel now also accepts a list of messages in a single call."
+                    + text.substring(middle));
+            counting.embedded.set(0);
+            IncrementalIndexer.Change edit = indexer.index(guide);
+
+            System.out.printf(
+                    "Edit: %d segments, %d embedded, %d skipped, %d removed%n",
+                    edit.segments(), edit.embedded(), edit.skipped(), edit.removed());
+            assertEquals(edit.embedded(), counting.embedded.get());
+            assertEquals(edit.segments(), edit.embedded() + edit.skipped());
+            assertTrue(edit.skipped() > edit.embedded() * 3, "most segments should be reused");
+            assertEquals(indexed + edit.embedded() - edit.removed(), storeSize(store));
+
+            IncrementalIndexer.Change unchanged = indexer.index(guide);
+            assertEquals(0, unchanged.embedded());
+            assertEquals(edit.segments(), unchanged.skipped());
+
+            Files.delete(faq);
+            List<IncrementalIndexer.Change> rescan = indexer.scan();
+            assertEquals(1, indexer.indexedFiles());
+            assertTrue(rescan.stream().anyMatch(change -> change.file().endsWith("faq.txt") && change.removed() > 0));
+            assertEquals(edit.segments(), storeSize(store));
+        }
+    }
+
+    @Test
+    void aFailedEmbeddingKeepsThePreviousVersionSearchable() throws IOException {
+        Path guide = tempDir.resolve("guide.txt");
+        Files.writeString(guide, manual("ChatModel", 10));
+        CountingEmbeddingModel counting = new CountingEmbeddingModel(model);
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+
+        try (IncrementalIndexer indexer = IncrementalIndexer.builder()
+                .directory(tempDir)
+                .embeddingModel(counting)
+                .embeddingStore(store)
+                .build()) {
+            int before = indexer.index(guide).segments();
+
+            Files.writeString(guide, manual("StreamingChatModel", 10));
+            counting.failing = true;
+            assertThrows(IllegalStateException.class, () -> indexer.index(guide));
+            assertEquals(before, storeSize(store), "the old segments are still stored");
+
+            counting.failing = false;
+            IncrementalIndexer.Change retry = indexer.index(guide);
+            assertEquals(before, retry.removed());
+            assertEquals(retry.segments(), storeSize(store));
+        }
+    }
+
+    @Test
+    void watcherIndexesChangesAsTheyHappen() throws Exception {
+        Path notes = tempDir.resolve("notes.txt");
+        Files.writeString(notes, manual("AiServices", 30));
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        BlockingQueue<IncrementalIndexer.Change> changes = new LinkedBlockingQueue<>();
+
+        try (IncrementalIndexer indexer = IncrementalIndexer.builder()
+                .directory(tempDir)
+                .embeddingModel(model)
+                .embeddingStore(store)
+                .include("glob:**.txt")
+                .onChange(changes::add)
+                .build()) {
+            indexer.scan();
+            indexer.start();
+
+            Files.writeString(notes, Files.readString(notes) + "\n\nAiServices can also stream its responses.");
+            IncrementalIndexer.Change change = changes.poll(30, TimeUnit.SECONDS);
+            assertNotNull(change, "watcher should report the edit");
+            System.out.printf(
+                    "Watched edit: %d embedded, %d skipped, %d removed%n",
+                    change.embedded(), change.skipped(), change.removed());
+            assertTrue(change.skipped() > 0);
+
+            Path subdirectory = Files.createDirectory(tempDir.resolve("more"));
+            Files.writeString(subdirectory.resolve("extra.txt"), manual("ChatMemory", 5));
+            Files.writeString(tempDir.resolve("ignored.md"), manual("Ignored", 5));
+            change = changes.poll(30, TimeUnit.SECONDS);
+            assertNotNull(change, "watcher should index files in new directories");
+            assertTrue(change.file().endsWith("extra.txt"));
+            assertEquals(0, change.skipped());
+            assertEquals(0, indexer.failures());
+        }
+    }
+
+    private static String manual(String topic, int paragraphs) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < paragraphs; i++) {
+            text.append("Section ").append(i).append(" of the ").append(topic).append(" guide. ");
+            text.append("It explains option ").append(i * 7 % 13).append(" and how it interacts with retries, ");
+            text.append("timeouts and logging, with an example that readers can adapt to their own ")
+                    .append(i % 2 == 0 ? "services" : "tests")
+                    .append(".\n\n");
+        }
+        return text.toString();
+    }
+
+    private static int storeSize(InMemoryEmbeddingStore<TextSegment> store) {
+        Embedding query = new AllMiniLmL6V2QuantizedEmbeddingModel().embed("guide").content();
+        return store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(query)
+                        .maxResults(10_000)
+                        .minScore(0.0)
+                        .build())
+                .matches()
+                .size();
+    }
+
+    /** Delegating model that counts how many segments are actually embedded, or fails while {@code failing}. */
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+        private final EmbeddingModel delegate;
+        private final AtomicInteger embedded = new AtomicInteger();
+        private volatile boolean failing;
+
+        CountingEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            if (failing) {
+                throw new IllegalStateException("embedding service unavailable");
+            }
+            embedded.addAndGet(textSegments.size());
+            return delegate.embedAll(textSegments);
+        }
+    }
+}
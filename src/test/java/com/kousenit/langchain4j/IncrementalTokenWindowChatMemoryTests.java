@@ -0,0 +1,235 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.TokenWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link IncrementalTokenWindowChatMemory}: the window matches {@code TokenWindowChatMemory}
+ * message for message, a store is read once and kept up to date, an {@code add} estimates only the
+ * new message, and a microbenchmark of {@code add} at 10, 100 and 1,000 messages against it.
+ */
+class IncrementalTokenWindowChatMemoryTests {
+
+    @Test
+    void windowMatchesTokenWindowChatMemory() {
+        WordCountEstimator estimator = new WordCountEstimator();
+        ChatMemory reference = TokenWindowChatMemory.withMaxTokens(200, estimator);
+        IncrementalTokenWindowChatMemory incremental = IncrementalTokenWindowChatMemory.builder()
+                .maxTokens(200)
+                .tokenCountEstimator(estimator)
+                .build();
+
+        Random random = new Random(1L);
+        for (int turn = 0; turn < 500; turn++) {
+            for (ChatMessage message : turn(random, turn)) {
+                reference.add(message);
+                incremental.add(message);
+                assertEquals(reference.messages(), incremental.messages(), "after turn " + turn);
+            }
+            assertEquals(estimator.estimateTokenCountInMessages(incremental.messages()), incremental.tokenCount());
+            assertTrue(incremental.tokenCount() <= 200);
+        }
+
+        incremental.clear();
+        assertTrue(incremental.messages().isEmpty());
+        assertEquals(0, incremental.tokenCount());
+    }
+
+    @Test
+    void storeIsReadOnceAndWrittenOnEveryChange() {
+        WordCountEstimator estimator = new WordCountEstimator();
+        LongAdder reads = new LongAdder();
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore() {
+            @Override
+            public List<ChatMessage> getMessages(Object memoryId) {
+                reads.increment();
+                return super.getMessages(memoryId);
+            }
+        };
+        IncrementalTokenWindowChatMemory first = memory(store, estimator);
+        Random random = new Random(2L);
+        for (int turn = 0; turn < 50; turn++) {
+            turn(random, turn).forEach(first::add);
+            assertEquals(first.messages(), store.getMessages("user-1"), "after turn " + turn);
+        }
+        reads.reset();
+
+        IncrementalTokenWindowChatMemory reopened = memory(store, estimator);
+        assertEquals(first.messages(), reopened.messages());
+        assertEquals(first.tokenCount(), reopened.tokenCount());
+        reopened.add(UserMessage.from("one more question"));
+        reopened.messages();
+        assertEquals(1, reads.sum(), "the store is read once, on first use");
+        assertEquals(reopened.messages(), store.getMessages("user-1"));
+
+        reopened.clear();
+        assertTrue(store.getMessages("user-1").isEmpty());
+        assertTrue(memory(store, estimator).messages().isEmpty());
+    }
+
+    @Test
+    void addEstimatesOneMessageWhateverTheWindowSize() {
+        for (Comparison comparison : compare(new int[] {10, 100, 1_000}, 200)) {
+            assertEquals(1.0, comparison.incremental().estimatesPerAdd(), 1e-9);
+            assertTrue(comparison.reference().estimatesPerAdd() > comparison.size());
+        }
+    }
+
+    /** Times {@code add} against the clock, so it only runs with {@code gradle benchmark}. */
+    @Test
+    @Tag("benchmark")
+    void addCostAgainstTokenWindowChatMemory() {
+        System.out.printf(
+                "%-9s %20s %20s %20s %20s%n",
+                "messages", "token window ns/add", "incremental ns/add", "token window counts", "incremental counts");
+        List<Comparison> comparisons = compare(new int[] {10, 100, 1_000}, 2_000);
+        for (Comparison comparison : comparisons) {
+            System.out.printf(
+                    "%-9d %,20.0f %,20.0f %20.1f %20.1f%n",
+                    comparison.size(),
+                    comparison.reference().nanosPerAdd(),
+                    comparison.incremental().nanosPerAdd(),
+                    comparison.reference().estimatesPerAdd(),
+                    comparison.incremental().estimatesPerAdd());
+        }
+        Comparison largest = comparisons.get(comparisons.size() - 1);
+        assertTrue(
+                largest.reference().nanosPerAdd() > 10 * largest.incremental().nanosPerAdd(),
+                "at 1,000 messages an add should be at least ten times cheaper");
+    }
+
+    /** Both memories at each window size, checked to hold the same messages after the timed adds. */
+    private static List<Comparison> compare(int[] sizes, int adds) {
+        WordCountEstimator estimator = new WordCountEstimator();
+        int tokensPerMessage = estimator.estimateTokenCountInMessage(message(0));
+        List<Comparison> comparisons = new ArrayList<>(sizes.length);
+        for (int size : sizes) {
+            int maxTokens = size * tokensPerMessage;
+            ChatMemory reference = TokenWindowChatMemory.withMaxTokens(maxTokens, estimator);
+            ChatMemory incremental = IncrementalTokenWindowChatMemory.builder()
+                    .maxTokens(maxTokens)
+                    .tokenCountEstimator(estimator)
+                    .build();
+
+            Measurement referenceCost = measure(reference, estimator, size, adds);
+            Measurement incrementalCost = measure(incremental, estimator, size, adds);
+            assertEquals(size, incremental.messages().size());
+            assertEquals(reference.messages(), incremental.messages());
+            comparisons.add(new Comparison(size, referenceCost, incrementalCost));
+        }
+        return comparisons;
+    }
+
+    private static IncrementalTokenWindowChatMemory memory(ChatMemoryStore store, WordCountEstimator estimator) {
+        return IncrementalTokenWindowChatMemory.builder()
+                .id("user-1")
+                .maxTokens(200)
+                .tokenCountEstimator(estimator)
+                .chatMemoryStore(store)
+                .build();
+    }
+
+    /** Fills the window, then times {@code adds} more messages, each of which evicts one. */
+    private static Measurement measure(ChatMemory memory, WordCountEstimator estimator, int size, int adds) {
+        for (int i = 0; i < size + adds; i++) {
+            memory.add(message(i));
+        }
+        List<ChatMessage> timed = new ArrayList<>(adds);
+        for (int i = 0; i < adds; i++) {
+            timed.add(message(size + adds + i));
+        }
+        long estimatesBefore = estimator.estimates.sum();
+        long start = System.nanoTime();
+        for (ChatMessage message : timed) {
+            memory.add(message);
+        }
+        long elapsed = System.nanoTime() - start;
+        long estimates = estimator.estimates.sum() - estimatesBefore;
+        return new Measurement((double) elapsed / adds, (double) estimates / adds);
+    }
+
+    private record Measurement(double nanosPerAdd, double estimatesPerAdd) {}
+
+    private record Comparison(int size, Measurement reference, Measurement incremental) {}
+
+    /** Messages of equal length, so that a window of n messages' tokens holds exactly n of them. */
+    private static ChatMessage message(int i) {
+        String text = String.format("message %06d about tokens windows and memories for a chat", i);
+        return i % 2 == 0 ? UserMessage.from(text) : AiMessage.from(text);
+    }
+
+    private static List<ChatMessage> turn(Random random, int turn) {
+        String question = "question " + turn + " " + "word ".repeat(random.nextInt(20));
+        return switch (random.nextInt(10)) {
+            case 0 -> List.of(SystemMessage.from("You are assistant number " + random.nextInt(3)));
+            case 1, 2 -> {
+                ToolExecutionRequest request = ToolExecutionRequest.builder()
+                        .id("call-" + turn)
+                        .name("lookup")
+                        .arguments("{\"turn\": " + turn + "}")
+                        .build();
+                yield List.of(
+                        UserMessage.from(question),
+                        AiMessage.from(request),
+                        ToolExecutionResultMessage.from(request, "result " + "word ".repeat(random.nextInt(30))),
+                        AiMessage.from("answer " + turn));
+            }
+            default -> List.of(
+                    UserMessage.from(question), AiMessage.from("answer " + "word ".repeat(random.nextInt(40))));
+        };
+    }
+
+    /** A local tokenizer stand-in: one token per word plus three per message, counting its calls. */
+    private static final class WordCountEstimator implements TokenCountEstimator {
+        private final LongAdder estimates = new LongAdder();
+
+        @Override
+        public int estimateTokenCountInText(String text) {
+            return text.isBlank() ? 0 : text.trim().split("\\s+").length;
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            estimates.increment();
+            String text;
+            if (message instanceof SystemMessage system) {
+                text = system.text();
+            } else if (message instanceof UserMessage user) {
+                text = user.singleText();
+            } else if (message instanceof AiMessage ai) {
+                text = ai.hasToolExecutionRequests()
+                        ? ai.toolExecutionRequests().get(0).arguments()
+                        : ai.text();
+            } else {
+                text = ((ToolExecutionResultMessage) message).text();
+            }
+            return 3 + estimateTokenCountInText(text);
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            int tokens = 0;
+            for (ChatMessage message : messages) {
+                tokens += estimateTokenCountInMessage(message);
+            }
+            return tokens;
+        }
+    }
+}
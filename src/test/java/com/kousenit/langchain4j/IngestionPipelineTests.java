@@ -0,0 +1,145 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link IngestionPipeline}, including a docs/sec and peak-heap comparison against the
+ * sequential {@code splitAll} &rarr; {@code embedAll} &rarr; {@code addAll} code used in Lab 9.
+ */
+class IngestionPipelineTests {
+
+    private static final int FILE_COUNT = 400;
+
+    @TempDir
+    Path tempDir;
+
+    /** Measures throughput and peak heap, so it is excluded from {@code gradle test}. */
+    @Test
+    @Tag("benchmark")
+    void pipelineVersusSequentialIngestion() throws IOException {
+        List<Path> files = writeCorpus(FILE_COUNT);
+        EmbeddingModel embeddingModel = new AllMiniLmL6V2QuantizedEmbeddingModel();
+        DocumentSplitter splitter = DocumentSplitters.recursive(300, 50);
+
+        // Warm up the ONNX runtime so neither run pays for model initialisation
+        embeddingModel.embed("warm up");
+
+        InMemoryEmbeddingStore<TextSegment> sequentialStore = new InMemoryEmbeddingStore<>();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        List<Document> documents = new ArrayList<>();
+        for (Path file : files) {
+            documents.add(FileSystemDocumentLoader.loadDocument(file));
+        }
+        List<TextSegment> segments = splitter.splitAll(documents);
+        List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+        sequentialStore.addAll(embeddings, segments);
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+        long sequentialPeak = peakHeapBytes();
+
+        InMemoryEmbeddingStore<TextSegment> pipelineStore = new InMemoryEmbeddingStore<>();
+        IngestionPipeline pipeline = IngestionPipeline.builder()
+                .documentSplitter(splitter)
+                .embeddingModel(embeddingModel)
+                .embeddingStore(pipelineStore)
+                .embeddingBatchSize(32)
+                .queueCapacity(8)
+                .build();
+        resetPeakHeap();
+        IngestionPipeline.Report report = pipeline.ingest(files);
+        long pipelinePeak = peakHeapBytes();
+
+        System.out.printf("%-12s %10s %14s%n", "ingestion", "docs/sec", "peak heap (MB)");
+        System.out.printf(
+                "%-12s %10.1f %14.1f%n", "sequential", FILE_COUNT / sequentialSeconds, sequentialPeak / 1048576.0);
+        System.out.printf(
+                "%-12s %10.1f %14.1f%n", "pipeline", report.documentsPerSecond(), pipelinePeak / 1048576.0);
+
+        assertEquals(FILE_COUNT, report.documents());
+        assertEquals(segments.size(), report.segments());
+    }
+
+    @Test
+    void firstFailureIsRethrownAndStagesStop() {
+        EmbeddingModel failingModel = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                throw new IllegalStateException("model unavailable");
+            }
+        };
+        IngestionPipeline pipeline = IngestionPipeline.builder()
+                .documentSplitter(DocumentSplitters.recursive(50, 0))
+                .embeddingModel(failingModel)
+                .embeddingStore(new InMemoryEmbeddingStore<>())
+                .embeddingBatchSize(2)
+                .embeddingWorkers(2)
+                .queueCapacity(1)
+                .build();
+
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            documents.add(Document.from("Document " + i + " has enough text to make a segment."));
+        }
+
+        IllegalStateException exception =
+                assertThrows(IllegalStateException.class, () -> pipeline.ingestDocuments(documents));
+        assertTrue(exception.getMessage().contains("model unavailable"));
+    }
+
+    private List<Path> writeCorpus(int count) throws IOException {
+        List<Path> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Path file = tempDir.resolve("doc-" + i + ".txt");
+            Files.writeString(file, """
+                    Document %d describes LangChain4j feature number %d.
+                    LangChain4j integrates chat models, embedding models and embedding stores.
+                    Retrieval-Augmented Generation splits documents into segments, embeds them,
+                    and retrieves the most relevant segments to ground the model's answers.
+                    Tools, memory and streaming are configured with builders.
+                    """.formatted(i, i % 17));
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
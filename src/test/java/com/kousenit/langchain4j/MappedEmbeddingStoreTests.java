@@ -0,0 +1,208 @@
+package com.kousenit.langchain4j;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link MappedEmbeddingStore}: persistence, crash recovery and read-only sharing. */
+class MappedEmbeddingStoreTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reopenedStoreMatchesInMemoryStoreWithoutReembedding() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(2_000, 64, 20, 3L);
+        List<TextSegment> segments = segmentsWithMetadata(2_000);
+        InMemoryEmbeddingStore<TextSegment> reference = new InMemoryEmbeddingStore<>();
+        List<String> ids = reference.addAll(embeddings, segments);
+
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(tempDir)
+                .autoCommit(false)
+                .build()) {
+            store.addAll(ids, embeddings, segments);
+            store.commit();
+        }
+
+        long start = System.nanoTime();
+        try (MappedEmbeddingStore reopened =
+                MappedEmbeddingStore.builder().directory(tempDir).build()) {
+            System.out.printf(
+                    "Reopened %,d entries in %.2f ms%n", reopened.size(), (System.nanoTime() - start) / 1e6);
+
+            for (Embedding query : embeddings.subList(0, 20)) {
+                assertEquals(
+                        SyntheticEmbeddings.topIds(reference, query, 5),
+                        SyntheticEmbeddings.topIds(reopened, query, 5));
+            }
+            EmbeddingMatch<TextSegment> best = reopened.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(embeddings.get(7))
+                            .maxResults(1)
+                            .build())
+                    .matches()
+                    .get(0);
+            assertEquals(segments.get(7), best.embedded());
+            assertArrayEquals(embeddings.get(7).vector(), best.embedding().vector());
+        }
+    }
+
+    @Test
+    void uncommittedAppendsAreDiscardedOnReopen() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(15, 8, 2, 5L);
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.builder()
+                .directory(tempDir)
+                .autoCommit(false)
+                .build()) {
+            store.addAll(embeddings.subList(0, 10), SyntheticEmbeddings.segments(10));
+            store.commit();
+            store.addAll(embeddings.subList(10, 15), SyntheticEmbeddings.segments(5));
+            assertEquals(15, store.size());
+            // simulated crash: no commit before close
+        }
+
+        try (MappedEmbeddingStore reopened =
+                MappedEmbeddingStore.builder().directory(tempDir).build()) {
+            assertEquals(10, reopened.size());
+            reopened.addAll(embeddings.subList(10, 12), SyntheticEmbeddings.segments(2));
+            assertEquals(12, reopened.size());
+        }
+    }
+
+    @Test
+    void readOnlyInstanceSeesCommitsAfterRefresh() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(20, 8, 2, 9L);
+        try (MappedEmbeddingStore writer =
+                        MappedEmbeddingStore.builder().directory(tempDir).build();
+                MappedEmbeddingStore reader = MappedEmbeddingStore.builder()
+                        .directory(tempDir)
+                        .readOnly(true)
+                        .build()) {
+            assertEquals(0, reader.size());
+
+            writer.addAll(embeddings, SyntheticEmbeddings.segments(20));
+            assertEquals(0, reader.size());
+
+            reader.refresh();
+            assertEquals(20, reader.size());
+            assertEquals(3, SyntheticEmbeddings.topIds(reader, embeddings.get(0), 3).size());
+            assertThrows(UnsupportedOperationException.class, () -> reader.add(embeddings.get(0)));
+        }
+    }
+
+    @Test
+    void secondWriterIsRejected() {
+        try (MappedEmbeddingStore ignored =
+                MappedEmbeddingStore.builder().directory(tempDir).build()) {
+            assertThrows(
+                    RuntimeException.class,
+                    () -> MappedEmbeddingStore.builder().directory(tempDir).build());
+        }
+    }
+
+    @Test
+    void metadataFilterIsApplied() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(100, 16, 4, 11L);
+        try (MappedEmbeddingStore store =
+                MappedEmbeddingStore.builder().directory(tempDir).build()) {
+            store.addAll(embeddings, segmentsWithMetadata(100));
+
+            List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(embeddings.get(0))
+                            .maxResults(10)
+                            .filter(metadataKey("source").isEqualTo("python_docs"))
+                            .build())
+                    .matches();
+
+            assertEquals(10, matches.size());
+            matches.forEach(match -> assertEquals(
+                    "python_docs", match.embedded().metadata().getString("source")));
+        }
+    }
+
+    @Test
+    void readOnlyMetadataIndexFollowsRemoveAll() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(40, 16, 4, 13L);
+        try (MappedEmbeddingStore writer =
+                        MappedEmbeddingStore.builder().directory(tempDir).build();
+                MappedEmbeddingStore reader = MappedEmbeddingStore.builder()
+                        .directory(tempDir)
+                        .readOnly(true)
+                        .build()) {
+            writer.addAll(embeddings.subList(0, 20), segmentsWithMetadata(20));
+            reader.refresh();
+            assertEquals(10, filteredCount(reader, "python_docs"));
+
+            // same entry count, but every position now holds a different entry
+            writer.removeAll();
+            List<TextSegment> replacements = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                replacements.add(TextSegment.from("Replacement " + i, Metadata.from("source", "java_docs")));
+            }
+            writer.addAll(embeddings.subList(20, 40), replacements);
+            reader.refresh();
+
+            assertEquals(0, filteredCount(reader, "python_docs"));
+            assertEquals(20, filteredCount(reader, "java_docs"));
+        }
+    }
+
+    @Test
+    void readerKeepsItsMappingWhenTheWriterEmptiesAndReopensTheStore() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(20, 16, 4, 17L);
+        try (MappedEmbeddingStore reader = MappedEmbeddingStore.builder()
+                .directory(tempDir)
+                .readOnly(true)
+                .build()) {
+            try (MappedEmbeddingStore writer =
+                    MappedEmbeddingStore.builder().directory(tempDir).build()) {
+                writer.addAll(embeddings, SyntheticEmbeddings.segments(20));
+                reader.refresh();
+                writer.removeAll();
+            }
+            // reopening must not shrink the files under the reader's mapping
+            try (MappedEmbeddingStore writer =
+                    MappedEmbeddingStore.builder().directory(tempDir).build()) {
+                assertEquals(0, writer.size());
+                assertEquals(20, reader.size());
+                assertEquals(3, SyntheticEmbeddings.topIds(reader, embeddings.get(0), 3).size());
+
+                writer.addAll(embeddings.subList(0, 5), SyntheticEmbeddings.segments(5));
+                reader.refresh();
+                assertEquals(5, reader.size());
+            }
+        }
+    }
+
+    private static int filteredCount(MappedEmbeddingStore store, String source) {
+        return store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(Embedding.from(new float[16]))
+                        .maxResults(100)
+                        .filter(metadataKey("source").isEqualTo(source))
+                        .build())
+                .matches()
+                .size();
+    }
+
+    private static List<TextSegment> segmentsWithMetadata(int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Metadata metadata = Metadata.from(Map.of(
+                    "source", i % 2 == 0 ? "langchain4j_docs" : "python_docs", "chunk", i, "weight", i / 10.0));
+            segments.add(TextSegment.from("Segment " + i + " with some text", metadata));
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,177 @@
+package com.kousenit.langchain4j;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link MetadataIndex}: agreement with {@link Filter#test(Object)}, filtered search in
+ * every store that uses the index, and a filtered search latency report on a multi-tenant corpus.
+ */
+class MetadataIndexTests {
+
+    private static final int TENANTS = 100;
+    private static final Filter TENANT_42 = metadataKey("tenant").isEqualTo("tenant-42");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void candidatesAgreeWithFilterTest() {
+        List<Metadata> metadata = new ArrayList<>();
+        MetadataIndex index = new MetadataIndex();
+        for (int i = 0; i < 300; i++) {
+            Metadata entry = Metadata.from(Map.of("tenant", "tenant-" + (i % 7), "chunk", i % 5));
+            if (i % 3 == 0) {
+                entry.put("source", i % 2 == 0 ? "langchain4j_docs" : "python_docs");
+            }
+            metadata.add(entry);
+            index.add(i, entry);
+        }
+
+        List<Filter> filters = List.of(
+                metadataKey("tenant").isEqualTo("tenant-3"),
+                metadataKey("chunk").isEqualTo(4L),
+                metadataKey("source").isNotEqualTo("python_docs"),
+                metadataKey("tenant").isIn("tenant-1", "tenant-2"),
+                metadataKey("tenant").isNotIn("tenant-1", "tenant-2"),
+                Filter.not(metadataKey("source").isEqualTo("langchain4j_docs")),
+                metadataKey("tenant").isEqualTo("tenant-3").and(metadataKey("chunk").isEqualTo(2)),
+                metadataKey("tenant").isEqualTo("tenant-3").or(metadataKey("source").isEqualTo("python_docs")),
+                metadataKey("tenant").isEqualTo("tenant-3").and(metadataKey("chunk").isGreaterThan(2)),
+                metadataKey("tenant").isEqualTo("missing"));
+
+        for (Filter filter : filters) {
+            MetadataIndex.Candidates candidates = index.candidates(filter);
+            assertNotNull(candidates, filter.toString());
+            for (int i = 0; i < metadata.size(); i++) {
+                boolean matches = filter.test(metadata.get(i));
+                if (candidates.exact()) {
+                    assertEquals(matches, candidates.entries().get(i), filter + " at " + i);
+                } else if (matches) {
+                    assertTrue(candidates.entries().get(i), filter + " dropped " + i);
+                }
+            }
+        }
+
+        assertFalse(index.candidates(metadataKey("tenant")
+                        .isEqualTo("tenant-3")
+                        .and(metadataKey("chunk").isGreaterThan(2)))
+                .exact());
+        assertNull(index.candidates(metadataKey("chunk").isGreaterThan(2)));
+        assertNull(index.candidates(Filter.not(metadataKey("chunk").isGreaterThan(2))));
+        assertNull(index.candidates(metadataKey("weight").isEqualTo(0.5)));
+    }
+
+    @Test
+    void filteredSearchAgreesWithTheInMemoryStore() {
+        forEachStore(2_000, 64, (name, store, reference, queries) -> {
+            for (Embedding query : queries.subList(0, 5)) {
+                List<EmbeddingMatch<TextSegment>> expected = search(reference, query, TENANT_42);
+                List<EmbeddingMatch<TextSegment>> actual = search(store, query, TENANT_42);
+                assertEquals(ids(expected), ids(actual), name);
+            }
+        });
+    }
+
+    /** Reports and compares search latency; run with {@code gradle benchmark}, not {@code gradle test}. */
+    @Test
+    @Tag("benchmark")
+    void selectiveFiltersAreFasterThanUnfilteredSearch() {
+        int corpusSize = 20_000;
+        System.out.printf("%,d entries, 1 tenant in %d: search latency (us)%n", corpusSize, TENANTS);
+        System.out.printf("%-10s %12s %12s%n", "store", "unfiltered", "filtered");
+        forEachStore(corpusSize, SyntheticEmbeddings.MINILM_DIMENSION, (name, store, reference, queries) -> {
+            // warm up both paths, including the mapped store's lazily built index
+            averageMicros(store, queries, null);
+            averageMicros(store, queries, TENANT_42);
+            double unfiltered = averageMicros(store, queries, null);
+            double filtered = averageMicros(store, queries, TENANT_42);
+            System.out.printf("%-10s %12.1f %12.1f%n", name, unfiltered, filtered);
+            if (!name.equals("in-memory")) {
+                assertTrue(filtered < unfiltered, name + " filtered search should be faster");
+            }
+        });
+    }
+
+    /** Loads a multi-tenant corpus into every store that uses the index and hands each one to {@code check}. */
+    private void forEachStore(int corpusSize, int dimension, StoreCheck check) {
+        List<Embedding> corpus = SyntheticEmbeddings.clustered(corpusSize, dimension, 200, 1L);
+        List<TextSegment> segments = new ArrayList<>(corpusSize);
+        for (int i = 0; i < corpusSize; i++) {
+            segments.add(TextSegment.from(
+                    "Segment " + i, Metadata.from(Map.of("tenant", "tenant-" + (i % TENANTS), "chunk", i))));
+        }
+
+        InMemoryEmbeddingStore<TextSegment> inMemory = new InMemoryEmbeddingStore<>();
+        List<String> ids = inMemory.addAll(corpus, segments);
+        HnswEmbeddingStore hnsw = HnswEmbeddingStore.builder().efConstruction(100).build();
+        hnsw.addAll(ids, corpus, segments);
+
+        try (MappedEmbeddingStore mapped = MappedEmbeddingStore.builder()
+                        .directory(tempDir.resolve("mapped"))
+                        .build();
+                QuantizedEmbeddingStore quantized = QuantizedEmbeddingStore.builder()
+                        .workDirectory(tempDir)
+                        .build()) {
+            mapped.addAll(ids, corpus, segments);
+            quantized.addAll(ids, corpus, segments);
+
+            Map<String, EmbeddingStore<TextSegment>> stores = new LinkedHashMap<>();
+            stores.put("in-memory", inMemory);
+            stores.put("hnsw", hnsw);
+            stores.put("mapped", mapped);
+            stores.put("quantized", quantized);
+            List<Embedding> queries = corpus.subList(0, 50);
+            stores.forEach((name, store) -> check.check(name, store, inMemory, queries));
+        }
+    }
+
+    private interface StoreCheck {
+        void check(
+                String name,
+                EmbeddingStore<TextSegment> store,
+                InMemoryEmbeddingStore<TextSegment> reference,
+                List<Embedding> queries);
+    }
+
+    private static double averageMicros(EmbeddingStore<TextSegment> store, List<Embedding> queries, Filter filter) {
+        long start = System.nanoTime();
+        for (Embedding query : queries) {
+            search(store, query, filter);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / queries.size();
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(
+            EmbeddingStore<TextSegment> store, Embedding query, Filter filter) {
+        return store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(query)
+                        .maxResults(10)
+                        .filter(filter)
+                        .build())
+                .matches();
+    }
+
+    private static Set<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+        return matches.stream().map(EmbeddingMatch::embeddingId).collect(Collectors.toSet());
+    }
+}
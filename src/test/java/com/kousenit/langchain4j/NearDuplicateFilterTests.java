@@ -0,0 +1,149 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link NearDuplicateFilter}: copies with small edits are dropped, distinct text is kept,
+ * and the embeddings and bytes saved when it runs inside an {@link IngestionPipeline}.
+ */
+class NearDuplicateFilterTests {
+
+    private static final String[] VOCABULARY = ("model chat memory tool stream token embedding store segment "
+                    + "document splitter retriever query vector index filter metadata batch request response "
+                    + "provider client server cache latency timeout retry error message user assistant system "
+                    + "prompt template image audio json schema record field method service agent workflow "
+                    + "release version support upgrade deprecated removed added fixed improved default option")
+            .split(" ");
+
+    @Test
+    void editedCopiesAreDroppedAndDistinctParagraphsKept() {
+        List<String> originals = paragraphs(200, 60, 1L);
+        List<TextSegment> segments = new ArrayList<>();
+        originals.forEach(text -> segments.add(TextSegment.from(text)));
+        for (int release = 2; release <= 3; release++) {
+            for (String text : originals) {
+                // the same note in a later release, with only the version changed
+                segments.add(TextSegment.from(text.replaceFirst("version \\d+\\.\\d+", "version " + release + ".0")));
+            }
+        }
+
+        NearDuplicateFilter filter = NearDuplicateFilter.builder().build();
+        List<TextSegment> kept = filter.filter(segments);
+
+        NearDuplicateFilter.DedupStats stats = filter.stats();
+        System.out.println(stats);
+        assertEquals(segments.size(), stats.segments());
+        assertTrue(kept.containsAll(segments.subList(0, originals.size())), "every original is kept");
+        assertTrue(stats.duplicates() >= 0.98 * 2 * originals.size(), "copies are dropped: " + stats.duplicates());
+    }
+
+    @Test
+    void similarityEstimateFollowsShingleOverlap() {
+        NearDuplicateFilter filter = NearDuplicateFilter.builder().build();
+        List<String> texts = paragraphs(2, 60, 2L);
+        String edited = texts.get(0).replaceFirst("version \\d+\\.\\d+", "version 9.9");
+
+        assertEquals(1.0, filter.estimateSimilarity(texts.get(0), texts.get(0).toUpperCase()), 1e-9);
+        // the new version number alters 4 of 58 shingles: Jaccard 54/62, about 0.87
+        assertEquals(0.87, filter.estimateSimilarity(texts.get(0), edited), 0.1);
+        assertTrue(filter.estimateSimilarity(texts.get(0), texts.get(1)) < 0.2);
+    }
+
+    @Test
+    void duplicatesAreReportedWithTheFingerprintOfTheSegmentTheyRepeat() {
+        List<TextSegment> duplicates = new ArrayList<>();
+        List<Long> originals = new ArrayList<>();
+        NearDuplicateFilter filter = NearDuplicateFilter.builder()
+                .onDuplicate((duplicate, original) -> {
+                    duplicates.add(duplicate);
+                    originals.add(original);
+                })
+                .build();
+        String text = paragraphs(1, 40, 3L).get(0);
+        TextSegment original = TextSegment.from(text);
+        TextSegment copy = TextSegment.from("  " + text.replace(".", "!") + "  ");
+
+        assertTrue(filter.accept(original));
+        assertFalse(filter.accept(copy));
+        assertEquals(1, duplicates.size());
+        assertSame(copy, duplicates.get(0));
+        assertEquals(List.of(NearDuplicateFilter.fingerprint(original)), originals);
+        assertNotEquals(NearDuplicateFilter.fingerprint(original), NearDuplicateFilter.fingerprint(copy));
+    }
+
+    @Test
+    void pipelineSkipsEmbeddingDuplicates() {
+        // ten releases of 100 notes, each carrying over 80 notes of the release before
+        List<String> notes = paragraphs(280, 50, 4L);
+        List<Document> documents = new ArrayList<>();
+        for (int release = 0; release < 10; release++) {
+            for (int i = release * 20; i < release * 20 + 100; i++) {
+                documents.add(Document.from(notes.get(i), Metadata.from("release", "1." + release)));
+            }
+        }
+
+        CountingEmbeddingModel model = new CountingEmbeddingModel();
+        NearDuplicateFilter filter = NearDuplicateFilter.builder().build();
+        IngestionPipeline.Report report = IngestionPipeline.builder()
+                .documentSplitter(DocumentSplitters.recursive(600, 0))
+                .embeddingModel(model)
+                .embeddingStore(new InMemoryEmbeddingStore<>())
+                .nearDuplicateFilter(filter)
+                .build()
+                .ingestDocuments(documents);
+
+        NearDuplicateFilter.DedupStats stats = filter.stats();
+        System.out.printf(
+                "%d segments, %d embedded, %d duplicates skipped (%.0f%%): %,d text bytes and %,d vector bytes saved%n",
+                stats.segments(),
+                report.segments(),
+                report.duplicates(),
+                stats.duplicateRatio() * 100,
+                stats.duplicateTextBytes(),
+                stats.savedVectorBytes(SyntheticEmbeddings.MINILM_DIMENSION));
+        assertEquals(report.segments(), model.embedded.get());
+        assertEquals(stats.duplicates(), report.duplicates());
+        assertTrue(stats.duplicateRatio() > 0.7, "720 of 1000 notes are repeats");
+    }
+
+    /** Paragraphs of random words, each mentioning a version number. */
+    private static List<String> paragraphs(int count, int words, long seed) {
+        Random random = new Random(seed);
+        List<String> paragraphs = new ArrayList<>(count);
+        for (int p = 0; p < count; p++) {
+            StringBuilder text = new StringBuilder("In version 1." + p);
+            for (int w = 0; w < words - 3; w++) {
+                text.append(w % 12 == 11 ? ". " : " ").append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+            }
+            paragraphs.add(text.append('.').toString());
+        }
+        return paragraphs;
+    }
+
+    /** Returns the same vector for everything and counts the segments it was asked to embed. */
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+        private final AtomicInteger embedded = new AtomicInteger();
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            embedded.addAndGet(textSegments.size());
+            float[] vector = new float[SyntheticEmbeddings.MINILM_DIMENSION];
+            vector[0] = 1;
+            return Response.from(textSegments.stream().map(segment -> Embedding.from(vector)).toList());
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.kousenit.langchain4j;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link QuantizedEmbeddingStore}: a memory per vector and recall@10 report for every
+ * quantization mode against the float {@link InMemoryEmbeddingStore}, recall and a brute-force
+ * speedup report for the binary prefilter, plus the untrained, validation, removal and closed paths.
+ */
+class QuantizedEmbeddingStoreTests {
+
+    @TempDir
+    Path tempDir;
+
+    /** Builds six 50,000-entry stores and times their searches; {@code gradle benchmark} runs it. */
+    @Test
+    @Tag("benchmark")
+    void memoryPerVectorAndRecallAgainstFloatStore() {
+        int corpusSize = 50_000;
+        int queryCount = 200;
+        int k = 10;
+
+        List<Embedding> corpus =
+                SyntheticEmbeddings.clustered(corpusSize, SyntheticEmbeddings.MINILM_DIMENSION, 200, 1L);
+        List<TextSegment> segments = SyntheticEmbeddings.segments(corpusSize);
+        List<Embedding> queries =
+                SyntheticEmbeddings.heldOutQueries(queryCount, SyntheticEmbeddings.MINILM_DIMENSION, 200, 1L, 101L);
+
+        InMemoryEmbeddingStore<TextSegment> floatStore = new InMemoryEmbeddingStore<>();
+        List<String> ids = floatStore.addAll(corpus, segments);
+        long exactStart = System.nanoTime();
+        List<Set<String>> truth = queries.stream()
+                .map(query -> SyntheticEmbeddings.topIds(floatStore, query, k))
+                .toList();
+        double exactMicros = (System.nanoTime() - exactStart) / 1_000.0 / queryCount;
+
+        System.out.printf("%-14s %14s %10s %14s%n", "store", "bytes/vector", "recall@" + k, "latency (us)");
+        System.out.printf(
+                "%-14s %14d %10.3f %14.1f%n", "float32", SyntheticEmbeddings.MINILM_DIMENSION * 4, 1.0, exactMicros);
+
+        Map<String, Double> recalls = new LinkedHashMap<>();
+        for (QuantizedEmbeddingStore.Quantization quantization : QuantizedEmbeddingStore.Quantization.values()) {
+            for (int rerankFactor : new int[] {10, 30}) {
+                try (QuantizedEmbeddingStore store = QuantizedEmbeddingStore.builder()
+                        .quantization(quantization)
+                        .rerankFactor(rerankFactor)
+                        .workDirectory(tempDir)
+                        .build()) {
+                    store.addAll(ids, corpus, segments);
+
+                    double recallSum = 0;
+                    long start = System.nanoTime();
+                    for (int q = 0; q < queryCount; q++) {
+                        recallSum += SyntheticEmbeddings.recall(
+                                truth.get(q), SyntheticEmbeddings.topIds(store, queries.get(q), k));
+                    }
+                    double micros = (System.nanoTime() - start) / 1_000.0 / queryCount;
+                    String name = quantization + " x" + rerankFactor;
+                    recalls.put(name, recallSum / queryCount);
+                    System.out.printf(
+                            "%-14s %14.1f %10.3f %14.1f%n",
+                            name, store.vectorBytesPerEntry(), recalls.get(name), micros);
+                    assertTrue(store.vectorBytesPerEntry() * 3 < SyntheticEmbeddings.MINILM_DIMENSION * 4);
+                }
+            }
+        }
+
+        // int8 keeps nearly all the ranking information; product codes need a longer re-rank list
+        assertTrue(recalls.get("INT8 x10") >= 0.95, "INT8 recall@10 should be at least 0.95");
+        assertTrue(recalls.get("PRODUCT x30") >= 0.95, "PRODUCT recall@10 with x30 re-ranking should be at least 0.95");
+    }
+
+    @Test
+    void binaryPrefilterRecallOnHeldOutQueries() {
+        BinaryRun run = binaryAgainstFloatBruteForce();
+        assertEquals(48.0, run.bytesPerVector(), 1e-9);
+        assertTrue(run.recall() >= 0.9, "binary prefilter recall@10 should be at least 0.9");
+    }
+
+    /** Wall-clock comparison; run with {@code gradle benchmark}, excluded from {@code gradle test}. */
+    @Test
+    @Tag("benchmark")
+    void binaryPrefilterSpeedupOverFloatBruteForce() {
+        BinaryRun run = binaryAgainstFloatBruteForce();
+        assertTrue(run.binaryMicros() * 3 < run.exactMicros(), "Hamming scan should be much faster than float scoring");
+    }
+
+    /** Searches 100,000 vectors with held-out queries, by float scan and by binary prefilter. */
+    private BinaryRun binaryAgainstFloatBruteForce() {
+        int corpusSize = 100_000;
+        int queryCount = 100;
+        int k = 10;
+
+        List<Embedding> corpus =
+                SyntheticEmbeddings.clustered(corpusSize, SyntheticEmbeddings.MINILM_DIMENSION, 400, 2L);
+        List<TextSegment> segments = SyntheticEmbeddings.segments(corpusSize);
+        List<Embedding> queries =
+                SyntheticEmbeddings.heldOutQueries(queryCount, SyntheticEmbeddings.MINILM_DIMENSION, 400, 2L, 202L);
+
+        InMemoryEmbeddingStore<TextSegment> floatStore = new InMemoryEmbeddingStore<>();
+        List<String> ids = floatStore.addAll(corpus, segments);
+        // warm up before timing
+        queries.subList(0, 10).forEach(query -> SyntheticEmbeddings.topIds(floatStore, query, k));
+        long exactStart = System.nanoTime();
+        List<Set<String>> truth = queries.stream()
+                .map(query -> SyntheticEmbeddings.topIds(floatStore, query, k))
+                .toList();
+        double exactMicros = (System.nanoTime() - exactStart) / 1_000.0 / queryCount;
+
+        try (QuantizedEmbeddingStore store = QuantizedEmbeddingStore.builder()
+                .quantization(QuantizedEmbeddingStore.Quantization.BINARY)
+                .workDirectory(tempDir)
+                .build()) {
+            store.addAll(ids, corpus, segments);
+            queries.subList(0, 10).forEach(query -> SyntheticEmbeddings.topIds(store, query, k));
+
+            double recallSum = 0;
+            long start = System.nanoTime();
+            for (int q = 0; q < queryCount; q++) {
+                recallSum += SyntheticEmbeddings.recall(
+                        truth.get(q), SyntheticEmbeddings.topIds(store, queries.get(q), k));
+            }
+            double binaryMicros = (System.nanoTime() - start) / 1_000.0 / queryCount;
+            double recall = recallSum / queryCount;
+
+            System.out.printf("%,d vectors, top %d, %d candidates re-ranked%n", corpusSize, k, k * 40);
+            System.out.printf("%-16s %14s %10s %14s%n", "search", "bytes/vector", "recall@" + k, "latency (us)");
+            System.out.printf(
+                    "%-16s %14d %10.3f %14.1f%n",
+                    "float32 scan", SyntheticEmbeddings.MINILM_DIMENSION * 4, 1.0, exactMicros);
+            System.out.printf(
+                    "%-16s %14.1f %10.3f %14.1f%n",
+                    "binary + rerank", store.vectorBytesPerEntry(), recall, binaryMicros);
+            System.out.printf("speedup %.1fx%n", exactMicros / binaryMicros);
+            return new BinaryRun(store.vectorBytesPerEntry(), recall, exactMicros, binaryMicros);
+        }
+    }
+
+    private record BinaryRun(double bytesPerVector, double recall, double exactMicros, double binaryMicros) {}
+
+    @Test
+    void returnsExactScoresAndFullPrecisionVectors() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(300, 64, 4, 5L);
+        try (QuantizedEmbeddingStore store =
+                QuantizedEmbeddingStore.builder().workDirectory(tempDir).build()) {
+            store.addAll(embeddings, SyntheticEmbeddings.segments(300));
+
+            EmbeddingMatch<TextSegment> best = store.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(embeddings.get(3))
+                            .maxResults(1)
+                            .build())
+                    .matches()
+                    .get(0);
+
+            assertEquals(1.0, best.score(), 1e-6);
+            assertEquals("Synthetic segment number 3", best.embedded().text());
+            assertArrayEquals(embeddings.get(3).vector(), best.embedding().vector(), 1e-6f);
+        }
+    }
+
+    @Test
+    void productModeSearchesExactlyUntilTrained() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(600, 32, 4, 9L);
+        InMemoryEmbeddingStore<TextSegment> reference = new InMemoryEmbeddingStore<>();
+        List<String> ids = reference.addAll(embeddings);
+        try (QuantizedEmbeddingStore store = QuantizedEmbeddingStore.builder()
+                .quantization(QuantizedEmbeddingStore.Quantization.PRODUCT)
+                .trainingSize(1_000)
+                .workDirectory(tempDir)
+                .build()) {
+            store.addAll(ids, embeddings, null);
+            assertEquals(0.0, store.vectorBytesPerEntry());
+            assertEquals(
+                    SyntheticEmbeddings.topIds(reference, embeddings.get(0), 10),
+                    SyntheticEmbeddings.topIds(store, embeddings.get(0), 10));
+
+            store.train();
+            assertTrue(store.vectorBytesPerEntry() > 0);
+            assertTrue(SyntheticEmbeddings.topIds(store, embeddings.get(0), 10).contains(ids.get(0)));
+        }
+    }
+
+    @Test
+    void moreSubspacesThanDimensionsIsRejectedBeforeAnythingIsStored() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(10, 32, 2, 13L);
+        try (QuantizedEmbeddingStore store = QuantizedEmbeddingStore.builder()
+                .quantization(QuantizedEmbeddingStore.Quantization.PRODUCT)
+                .subspaces(33)
+                .workDirectory(tempDir)
+                .build()) {
+            assertThrows(IllegalArgumentException.class, () -> store.addAll(embeddings));
+            assertEquals(0, store.size());
+        }
+        try (QuantizedEmbeddingStore store =
+                QuantizedEmbeddingStore.builder().workDirectory(tempDir).build()) {
+            List<Embedding> mixed = new ArrayList<>(embeddings);
+            mixed.add(Embedding.from(new float[16]));
+            assertThrows(IllegalArgumentException.class, () -> store.addAll(mixed));
+            assertEquals(0, store.size());
+            store.addAll(SyntheticEmbeddings.clustered(10, 16, 2, 13L));
+            assertEquals(10, store.size(), "a rejected batch does not fix the store's dimension");
+        }
+    }
+
+    @Test
+    void removedAndFilteredEntriesAreNeverReturned() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(200, 16, 4, 11L);
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            segments.add(TextSegment.from(
+                    "Segment " + i, Metadata.from(Map.of("source", i % 2 == 0 ? "langchain4j_docs" : "python_docs"))));
+        }
+        try (QuantizedEmbeddingStore store =
+                QuantizedEmbeddingStore.builder().workDirectory(tempDir).build()) {
+            List<String> ids = store.addAll(embeddings, segments);
+            store.remove(ids.get(0));
+            assertEquals(199, store.size());
+            assertFalse(SyntheticEmbeddings.topIds(store, embeddings.get(0), 10).contains(ids.get(0)));
+
+            List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(embeddings.get(0))
+                            .maxResults(10)
+                            .filter(metadataKey("source").isEqualTo("python_docs"))
+                            .build())
+                    .matches();
+            assertEquals(10, matches.size());
+            matches.forEach(match -> assertEquals(
+                    "python_docs", match.embedded().metadata().getString("source")));
+        }
+    }
+
+    @Test
+    void closedStoreDeletesItsScratchFileAndRejectsFurtherUse() throws IOException {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(20, 16, 2, 17L);
+        QuantizedEmbeddingStore store = QuantizedEmbeddingStore.builder().workDirectory(tempDir).build();
+        store.addAll(embeddings);
+        store.close();
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count(), "the scratch file was deleted");
+        }
+        assertThrows(IllegalStateException.class, () -> SyntheticEmbeddings.topIds(store, embeddings.get(0), 1));
+        assertThrows(IllegalStateException.class, () -> store.addAll(embeddings));
+    }
+}
@@ -0,0 +1,177 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SemanticCachingContentRetriever}: both cache tiers, eviction, invalidation on store
+ * mutation and a hit-ratio report.
+ */
+class SemanticCachingContentRetrieverTests {
+
+    private static final List<TextSegment> SEGMENTS = List.of(
+            TextSegment.from("ChatModel is the synchronous interface; call chat() with a String or ChatRequest."),
+            TextSegment.from("StreamingChatModel delivers partial responses through a handler as they arrive."),
+            TextSegment.from("AiServices creates an implementation of your interface backed by a chat model."),
+            TextSegment.from("Embedding stores keep vectors so that similar text can be found quickly."),
+            TextSegment.from("Chat memory keeps the recent messages of a conversation within a window."),
+            TextSegment.from("Tools are Java methods annotated with @Tool that the model may ask to call."));
+
+    private final EmbeddingModel embeddingModel = new AllMiniLmL6V2QuantizedEmbeddingModel();
+
+    @Test
+    void repeatedAndRephrasedQueriesHitTheCache() {
+        ObservableEmbeddingStore store = store();
+        CountingRetriever delegate = new CountingRetriever(retriever(store));
+        SemanticCachingContentRetriever cache = SemanticCachingContentRetriever.builder()
+                .delegate(delegate)
+                .embeddingModel(embeddingModel)
+                .similarityThreshold(0.9)
+                .build();
+
+        List<Content> first = cache.retrieve(Query.from("How do I stream a response?"));
+        assertSame(first, cache.retrieve(Query.from("  how do I stream a response  ")));
+        assertSame(first, cache.retrieve(Query.from("How do I stream a response??")));
+        assertSame(first, cache.retrieve(Query.from("How can I stream a response?")));
+        cache.retrieve(Query.from("What are tools?"));
+
+        SemanticCachingContentRetriever.CacheStats stats = cache.stats();
+        System.out.println(stats);
+        assertEquals(2, stats.exactHits());
+        assertEquals(1, stats.semanticHits());
+        assertEquals(2, stats.misses());
+        assertEquals(2, delegate.calls.get());
+    }
+
+    @Test
+    void storeMutationsInvalidateTheCache() {
+        ObservableEmbeddingStore store = store();
+        CountingRetriever delegate = new CountingRetriever(retriever(store));
+        SemanticCachingContentRetriever cache = SemanticCachingContentRetriever.builder()
+                .delegate(delegate)
+                .embeddingModel(embeddingModel)
+                .invalidatedBy(store)
+                .build();
+
+        cache.retrieve(Query.from("What is chat memory?"));
+        cache.retrieve(Query.from("What is chat memory?"));
+        assertEquals(1, delegate.calls.get());
+
+        TextSegment update = TextSegment.from("Chat memory can also be persisted with a ChatMemoryStore.");
+        store.add(embeddingModel.embed(update).content(), update);
+        assertEquals(0, cache.size());
+
+        List<Content> fresh = cache.retrieve(Query.from("What is chat memory?"));
+        assertEquals(2, delegate.calls.get());
+        assertTrue(fresh.stream().anyMatch(content -> content.textSegment().equals(update)));
+    }
+
+    @Test
+    void entriesExpireAndAreEvicted() throws InterruptedException {
+        CountingRetriever delegate = new CountingRetriever(retriever(store()));
+        SemanticCachingContentRetriever cache = SemanticCachingContentRetriever.builder()
+                .delegate(delegate)
+                .embeddingModel(embeddingModel)
+                .maxEntries(2)
+                .ttl(Duration.ofMillis(200))
+                .build();
+
+        cache.retrieve(Query.from("What are tools?"));
+        cache.retrieve(Query.from("What is chat memory?"));
+        cache.retrieve(Query.from("How do embedding stores work?"));
+        assertEquals(2, cache.size());
+        cache.retrieve(Query.from("What are tools?"));
+        assertEquals(4, delegate.calls.get(), "least recently used entry was evicted");
+
+        Thread.sleep(300);
+        cache.retrieve(Query.from("What are tools?"));
+        assertEquals(5, delegate.calls.get(), "entry expired");
+    }
+
+    @Test
+    void supportTrafficReport() {
+        ContentRetriever retriever = retriever(store());
+        ContentRetriever slowDelegate = query -> {
+            // stands in for a remote vector database round trip
+            sleep(Duration.ofMillis(5));
+            return retriever.retrieve(query);
+        };
+        SemanticCachingContentRetriever cache = SemanticCachingContentRetriever.builder()
+                .delegate(slowDelegate)
+                .embeddingModel(embeddingModel)
+                .build();
+
+        List<String> questions = List.of(
+                "How do I stream a response?",
+                "What is chat memory?",
+                "How do I define a tool?",
+                "Which interface do I call for chat?",
+                "How do embedding stores work?");
+        Random random = new Random(7);
+        long start = System.nanoTime();
+        int queries = 500;
+        for (int i = 0; i < queries; i++) {
+            String question = questions.get(random.nextInt(questions.size()));
+            String variant = random.nextBoolean() ? question.toLowerCase() : "  " + question + " ";
+            cache.retrieve(Query.from(variant));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        SemanticCachingContentRetriever.CacheStats stats = cache.stats();
+        System.out.printf(
+                "%d queries in %d ms: hit ratio %.1f%%, %d misses, saved %d ms%n",
+                queries, millis, stats.hitRatio() * 100, stats.misses(), stats.savedLatency().toMillis());
+        assertTrue(stats.hitRatio() > 0.95);
+        assertTrue(stats.savedLatency().toMillis() > queries * 5L / 2);
+    }
+
+    private ObservableEmbeddingStore store() {
+        InMemoryEmbeddingStore<TextSegment> delegate = new InMemoryEmbeddingStore<>();
+        delegate.addAll(embeddingModel.embedAll(SEGMENTS).content(), SEGMENTS);
+        return ObservableEmbeddingStore.of(delegate);
+    }
+
+    private ContentRetriever retriever(ObservableEmbeddingStore store) {
+        return EmbeddingStoreContentRetriever.builder()
+                .embeddingStore(store)
+                .embeddingModel(embeddingModel)
+                .maxResults(2)
+                .build();
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CountingRetriever implements ContentRetriever {
+        private final ContentRetriever delegate;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingRetriever(ContentRetriever delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<Content> retrieve(Query query) {
+            calls.incrementAndGet();
+            return delegate.retrieve(query);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.kousenit.langchain4j;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ShardedEmbeddingStore}: merged results equal a single store's, a slow shard is
+ * cut off at the deadline, a stalled shard holds a bounded number of threads, and the store works
+ * behind an {@link EmbeddingStoreContentRetriever}.
+ */
+class ShardedEmbeddingStoreTests {
+
+    private static final int DIMENSION = SyntheticEmbeddings.MINILM_DIMENSION;
+
+    @Test
+    void mergedResultsMatchASingleStore() {
+        int count = 20_000;
+        List<Embedding> corpus = SyntheticEmbeddings.clustered(count, DIMENSION, 100, 21L);
+        List<TextSegment> segments = SyntheticEmbeddings.segments(count);
+        List<Embedding> queries = SyntheticEmbeddings.clustered(50, DIMENSION, 100, 22L);
+
+        InMemoryEmbeddingStore<TextSegment> single = new InMemoryEmbeddingStore<>();
+        List<String> ids = single.addAll(corpus, segments);
+        List<InMemoryEmbeddingStore<TextSegment>> shards = new ArrayList<>();
+        for (int s = 0; s < 4; s++) {
+            shards.add(new InMemoryEmbeddingStore<>());
+        }
+        try (ShardedEmbeddingStore sharded = ShardedEmbeddingStore.builder().shards(shards).build()) {
+            sharded.addAll(ids, corpus, segments);
+
+            int[] perShard = new int[sharded.shardCount()];
+            ids.forEach(id -> perShard[sharded.shardOf(id)]++);
+            for (int size : perShard) {
+                assertEquals(count / 4.0, size, count * 0.02, "shards should be balanced");
+            }
+
+            long singleNanos = 0;
+            long shardedNanos = 0;
+            for (Embedding query : queries) {
+                long start = System.nanoTime();
+                Set<String> expected = SyntheticEmbeddings.topIds(single, query, 10);
+                singleNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                Set<String> actual = SyntheticEmbeddings.topIds(sharded, query, 10);
+                shardedNanos += System.nanoTime() - start;
+                assertEquals(expected, actual);
+            }
+            System.out.printf(
+                    "%,d entries: single store %.2f ms/query, 4 shards %.2f ms/query%n",
+                    count, singleNanos / 1e6 / queries.size(), shardedNanos / 1e6 / queries.size());
+
+            sharded.removeAll(ids.subList(0, 1_000));
+            assertFalse(SyntheticEmbeddings.topIds(sharded, corpus.get(0), 10).contains(ids.get(0)));
+        }
+    }
+
+    @Test
+    void aSlowShardIsLeftOutAfterTheDeadline() {
+        List<Embedding> corpus = SyntheticEmbeddings.clustered(400, DIMENSION, 10, 31L);
+        InMemoryEmbeddingStore<TextSegment> fast = new InMemoryEmbeddingStore<>();
+        InMemoryEmbeddingStore<TextSegment> slow = new InMemoryEmbeddingStore<>() {
+            @Override
+            public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+                // stands in for an overloaded remote node
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.search(request);
+            }
+        };
+        try (ShardedEmbeddingStore sharded = ShardedEmbeddingStore.builder()
+                .shards(List.of(fast, slow))
+                .shardTimeout(Duration.ofMillis(200))
+                .build()) {
+            List<String> ids = sharded.addAll(corpus, SyntheticEmbeddings.segments(corpus.size()));
+
+            long start = System.nanoTime();
+            Set<String> found = SyntheticEmbeddings.topIds(sharded, corpus.get(0), 10);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("search with a stalled shard returned %d matches in %d ms%n", found.size(), millis);
+            assertTrue(millis < 2_000, "search should not wait for the slow shard: " + millis + " ms");
+            assertEquals(10, found.size());
+            assertTrue(found.stream().allMatch(id -> sharded.shardOf(id) == 0));
+            assertTrue(ids.stream().anyMatch(id -> sharded.shardOf(id) == 1));
+            assertEquals(new ShardedEmbeddingStore.ShardStats(1, 1, 1), sharded.stats());
+        }
+    }
+
+    @Test
+    void aShardThatIgnoresInterruptsHoldsOnlyItsOwnThreads() {
+        List<Embedding> corpus = SyntheticEmbeddings.clustered(100, 16, 4, 33L);
+        CountDownLatch released = new CountDownLatch(1);
+        InMemoryEmbeddingStore<TextSegment> stalled = new InMemoryEmbeddingStore<>() {
+            @Override
+            public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+                // a blocking remote client that swallows the interrupt from cancel(true)
+                while (released.getCount() > 0) {
+                    try {
+                        released.await();
+                    } catch (InterruptedException e) {
+                        // keep waiting
+                    }
+                }
+                return super.search(request);
+            }
+        };
+        try (ShardedEmbeddingStore sharded = ShardedEmbeddingStore.builder()
+                .shards(List.of(new InMemoryEmbeddingStore<>(), stalled))
+                .shardTimeout(Duration.ofMillis(50))
+                .threadsPerShard(2)
+                .build()) {
+            sharded.addAll(corpus);
+            int searches = 100;
+            for (int i = 0; i < searches; i++) {
+                SyntheticEmbeddings.topIds(sharded, corpus.get(i), 5);
+            }
+
+            long stalledThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("shard-1-"))
+                    .count();
+            System.out.printf("%d searches against a stalled shard left %d of its threads%n", searches, stalledThreads);
+            assertEquals(2, stalledThreads, "the stalled shard keeps only its own pool busy");
+            assertEquals(new ShardedEmbeddingStore.ShardStats(searches, searches, searches), sharded.stats());
+        } finally {
+            released.countDown();
+        }
+    }
+
+    @Test
+    void worksBehindAnEmbeddingStoreContentRetriever() {
+        EmbeddingModel model = new AllMiniLmL6V2QuantizedEmbeddingModel();
+        List<TextSegment> segments = List.of(
+                TextSegment.from("ChatModel is the synchronous chat interface.", Metadata.from("topic", "chat")),
+                TextSegment.from("StreamingChatModel streams partial responses.", Metadata.from("topic", "chat")),
+                TextSegment.from("Embedding stores hold vectors for similarity search.", Metadata.from("topic", "rag")),
+                TextSegment.from("Document splitters cut documents into segments.", Metadata.from("topic", "rag")),
+                TextSegment.from("Tools are methods annotated with @Tool.", Metadata.from("topic", "tools")));
+        List<InMemoryEmbeddingStore<TextSegment>> shards =
+                List.of(new InMemoryEmbeddingStore<>(), new InMemoryEmbeddingStore<>(), new InMemoryEmbeddingStore<>());
+        try (ShardedEmbeddingStore sharded = ShardedEmbeddingStore.builder().shards(shards).build()) {
+            sharded.addAll(model.embedAll(segments).content(), segments);
+            ContentRetriever retriever = EmbeddingStoreContentRetriever.builder()
+                    .embeddingStore(sharded)
+                    .embeddingModel(model)
+                    .maxResults(2)
+                    .build();
+
+            List<Content> contents = retriever.retrieve(Query.from("Where are vectors kept for similarity search?"));
+            assertEquals(2, contents.size());
+            assertEquals(segments.get(2), contents.get(0).textSegment());
+
+            sharded.removeAll(metadataKey("topic").isEqualTo("rag"));
+            List<Content> remaining = retriever.retrieve(Query.from("Where are vectors kept?"));
+            assertTrue(remaining.stream()
+                    .noneMatch(content -> "rag".equals(content.textSegment().metadata().getString("topic"))));
+        }
+    }
+}
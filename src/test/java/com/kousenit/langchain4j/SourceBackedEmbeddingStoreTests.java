@@ -0,0 +1,192 @@
+package com.kousenit.langchain4j;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link SourceBackedEmbeddingStore}: matches decode to the segments that were added,
+ * segments without a source keep working, vectors are copied, and the retained heap compared with
+ * {@link InMemoryEmbeddingStore} for the same corpus.
+ */
+class SourceBackedEmbeddingStoreTests {
+
+    private static final String[] VOCABULARY = ("model chat memory tool stream token embedding store segment "
+                    + "document splitter retriever query vector index filter metadata batch request response "
+                    + "provider client server cache latency timeout retry error message user assistant system "
+                    + "caf\u00e9 na\u00efve r\u00e9sum\u00e9 \u00fcber \u65e5\u672c\u8a9e \ud83d\ude80 \u2192")
+            .split(" ");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void matchesDecodeToTheSegmentsThatWereAdded() throws IOException {
+        writeCorpus(20, 4_000);
+        List<TextSegment> segments = split(FileSystemDocumentLoader.loadDocuments(tempDir), 300);
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(segments.size(), 64, 10, 1L);
+
+        SourceBackedEmbeddingStore store = new SourceBackedEmbeddingStore();
+        List<String> ids = store.addAll(embeddings, segments);
+
+        SourceBackedEmbeddingStore.SourceStats stats = store.stats();
+        System.out.println(stats);
+        // a segment cut through the middle of a character is not a slice of the file's text
+        assertTrue(stats.mappedSegments() > 0.95 * segments.size(), "segments are slices of their file");
+        assertEquals(segments.size(), stats.mappedSegments() + stats.heldSegments());
+        assertEquals(20, stats.sources());
+        for (int i = 0; i < segments.size(); i += 7) {
+            EmbeddingMatch<TextSegment> best = store.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(embeddings.get(i))
+                            .maxResults(1)
+                            .build())
+                    .matches()
+                    .get(0);
+            assertEquals(ids.get(i), best.embeddingId());
+            assertEquals(segments.get(i), best.embedded());
+        }
+    }
+
+    @Test
+    void segmentsWithoutASourceKeepTheirTextAndFiltersSeeEverything() throws IOException {
+        writeCorpus(3, 2_000);
+        List<TextSegment> segments = new ArrayList<>(split(FileSystemDocumentLoader.loadDocuments(tempDir), 300));
+        int fromFiles = segments.size();
+        segments.addAll(split(List.of(Document.from("A note typed into the chat, with no file behind it.")), 300));
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(segments.size(), 32, 4, 2L);
+
+        SourceBackedEmbeddingStore store = new SourceBackedEmbeddingStore();
+        store.addAll(embeddings, segments);
+        store.add(embeddings.get(0));
+        assertEquals(fromFiles, store.stats().mappedSegments());
+        assertEquals(1, store.stats().heldSegments());
+
+        String fileName = segments.get(0).metadata().getString(Document.FILE_NAME);
+        List<EmbeddingMatch<TextSegment>> inFile = store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(embeddings.get(0))
+                        .maxResults(1_000)
+                        .filter(metadataKey(Document.FILE_NAME).isEqualTo(fileName))
+                        .build())
+                .matches();
+        assertEquals(
+                segments.stream()
+                        .filter(segment -> fileName.equals(segment.metadata().getString(Document.FILE_NAME)))
+                        .count(),
+                inFile.size());
+
+        store.removeAll(metadataKey(Document.FILE_NAME).isEqualTo(fileName));
+        assertEquals(segments.size() + 1 - inFile.size(), store.size());
+        EmbeddingMatch<TextSegment> note = store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(embeddings.get(fromFiles))
+                        .maxResults(1)
+                        .build())
+                .matches()
+                .get(0);
+        assertEquals(segments.get(fromFiles), note.embedded());
+    }
+
+    @Test
+    void vectorsAreCopiedInAndOut() {
+        float[] vector = {1, 0, 0, 0};
+        SourceBackedEmbeddingStore store = new SourceBackedEmbeddingStore();
+        String id = store.add(Embedding.from(vector));
+        vector[0] = -1;
+
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[] {1, 0, 0, 0}))
+                .maxResults(1)
+                .build();
+        EmbeddingMatch<TextSegment> match = store.search(request).matches().get(0);
+        assertEquals(id, match.embeddingId());
+        assertEquals(1.0, match.score(), 1e-6, "changing the caller's array does not change the store");
+
+        match.embedding().vector()[0] = -1;
+        assertEquals(1.0, store.search(request).matches().get(0).score(), 1e-6);
+    }
+
+    /** Measures the heap with System.gc(); run with {@code gradle benchmark}, excluded from {@code gradle test}. */
+    @Test
+    @Tag("benchmark")
+    void retainedHeapComparedWithInMemoryStore() throws IOException {
+        writeCorpus(200, 20_000);
+        List<Document> documents = FileSystemDocumentLoader.loadDocuments(tempDir);
+        int segmentCount = split(documents, 500).size();
+        int vectorBytes = segmentCount * (SyntheticEmbeddings.MINILM_DIMENSION * Float.BYTES + 16);
+
+        long inMemory = retainedBytes(() -> fill(new InMemoryEmbeddingStore<>(), documents));
+        long sourceBacked = retainedBytes(() -> fill(new SourceBackedEmbeddingStore(), documents));
+
+        System.out.printf("%,d segments of up to 500 characters%n", segmentCount);
+        System.out.printf("%-14s %16s %22s%n", "store", "retained bytes", "excluding vectors");
+        System.out.printf("%-14s %,16d %,22d%n", "in-memory", inMemory, inMemory - vectorBytes);
+        System.out.printf("%-14s %,16d %,22d%n", "source-backed", sourceBacked, sourceBacked - vectorBytes);
+        assertTrue(sourceBacked < inMemory);
+        assertTrue(
+                sourceBacked - vectorBytes < (inMemory - vectorBytes) / 2,
+                "text and metadata should take less than half the heap");
+    }
+
+    /** Heap still in use once {@code build} has run and everything but its result is garbage. */
+    private static long retainedBytes(Supplier<Object> build) {
+        long before = usedHeapAfterGc();
+        Object retained = build.get();
+        long after = usedHeapAfterGc();
+        assertNotNull(retained);
+        return after - before;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static EmbeddingStore<TextSegment> fill(EmbeddingStore<TextSegment> store, List<Document> documents) {
+        List<TextSegment> segments = split(documents, 500);
+        store.addAll(
+                SyntheticEmbeddings.clustered(segments.size(), SyntheticEmbeddings.MINILM_DIMENSION, 50, 3L),
+                segments);
+        return store;
+    }
+
+    private static List<TextSegment> split(List<Document> documents, int maxChars) {
+        return DocumentSplitters.recursive(maxChars, 50).splitAll(documents);
+    }
+
+    /** Files of paragraphs of random words, some of them outside ASCII. */
+    private void writeCorpus(int files, int chars) throws IOException {
+        Random random = new Random(files);
+        for (int f = 0; f < files; f++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < chars) {
+                for (int w = 0; w < 60; w++) {
+                    text.append(w == 0 ? "" : w % 12 == 0 ? ". " : " ")
+                            .append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+                }
+                text.append(".\n\n");
+            }
+            Files.writeString(tempDir.resolve("notes-" + f + ".txt"), text);
+        }
+    }
+}
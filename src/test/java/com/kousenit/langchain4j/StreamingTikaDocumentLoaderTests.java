@@ -0,0 +1,137 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link StreamingTikaDocumentLoader}: page-at-a-time parsing of the Lab 9 PDF, sections
+ * for formats without pages, and incremental splitting.
+ */
+class StreamingTikaDocumentLoaderTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void pagesContainTheSameTextAsTheWholeDocument() throws URISyntaxException {
+        Path pdf = modernFeaturesPdf();
+        Document whole = FileSystemDocumentLoader.loadDocument(pdf, new ApacheTikaDocumentParser());
+
+        List<Document> pages = new ArrayList<>();
+        StreamingTikaDocumentLoader.Report report =
+                StreamingTikaDocumentLoader.builder().build().loadPages(pdf, pages::add);
+
+        System.out.printf(
+                "Whole document: %,d chars; streamed: %d pages, largest %,d chars (%.1f%% of the whole)%n",
+                whole.text().length(),
+                report.sections(),
+                report.largestSectionChars(),
+                100.0 * report.largestSectionChars() / whole.text().length());
+
+        assertEquals(pages.size(), report.sections());
+        assertTrue(report.largestSectionChars() < whole.text().length());
+        List<Integer> pageNumbers = pages.stream()
+                .map(page -> page.metadata().getInteger(StreamingTikaDocumentLoader.PAGE_NUMBER))
+                .filter(Objects::nonNull)
+                .toList();
+        assertTrue(pageNumbers.size() > 1);
+        for (int i = 1; i < pageNumbers.size(); i++) {
+            assertTrue(pageNumbers.get(i) > pageNumbers.get(i - 1));
+        }
+        for (Document page : pages) {
+            assertEquals("LangChain4j-Modern-Features.pdf", page.metadata().getString(Document.FILE_NAME));
+        }
+        String streamed = pages.stream().map(Document::text).collect(Collectors.joining(" "));
+        assertEquals(words(whole.text()), words(streamed));
+    }
+
+    @Test
+    void segmentsAreSplitPageByPage() throws URISyntaxException {
+        Path pdf = modernFeaturesPdf();
+        List<TextSegment> segments = new ArrayList<>();
+        StreamingTikaDocumentLoader loader = StreamingTikaDocumentLoader.builder()
+                .documentSplitter(DocumentSplitters.recursive(300, 50))
+                .build();
+
+        StreamingTikaDocumentLoader.Report report = loader.loadSegments(pdf, segments::add);
+
+        System.out.printf(
+                "%d pages -> %d segments in %d ms%n",
+                report.sections(), report.segments(), report.elapsed().toMillis());
+        assertEquals(segments.size(), report.segments());
+        assertTrue(segments.size() >= report.sections());
+        for (int i = 0; i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            assertTrue(segment.text().length() <= 300);
+            assertEquals(String.valueOf(i), segment.metadata().getString("index"));
+            assertTrue(segment.metadata().containsKey(StreamingTikaDocumentLoader.PAGE_NUMBER)
+                    || segment.metadata().containsKey(StreamingTikaDocumentLoader.SECTION_NUMBER));
+        }
+    }
+
+    @Test
+    void textWithoutPagesIsCutIntoSections() throws IOException {
+        Path file = tempDir.resolve("manual.txt");
+        List<String> paragraphs = IntStream.range(0, 200)
+                .mapToObj(i -> "Paragraph " + i + " explains one more configuration option of the chat model.")
+                .toList();
+        Files.writeString(file, String.join("\n\n", paragraphs));
+
+        List<Document> sections = new ArrayList<>();
+        StreamingTikaDocumentLoader.Report report = StreamingTikaDocumentLoader.builder()
+                .maxSectionChars(1_000)
+                .build()
+                .loadPages(file, sections::add);
+
+        System.out.printf("%d paragraphs -> %d sections%n", paragraphs.size(), report.sections());
+        assertTrue(sections.size() > 5);
+        for (int i = 0; i < sections.size(); i++) {
+            Document section = sections.get(i);
+            assertTrue(section.text().length() < 1_000 + 100, "cut at the next paragraph boundary");
+            assertEquals(i + 1, (int) section.metadata().getInteger(StreamingTikaDocumentLoader.SECTION_NUMBER));
+            assertNull(section.metadata().getInteger(StreamingTikaDocumentLoader.PAGE_NUMBER));
+        }
+        String streamed = sections.stream().map(Document::text).collect(Collectors.joining(" "));
+        assertEquals(words(String.join(" ", paragraphs)), words(streamed));
+    }
+
+    @Test
+    void consumerFailuresAreRethrownUnchanged() throws IOException {
+        Path file = tempDir.resolve("notes.txt");
+        Files.writeString(file, "First paragraph.\n\nSecond paragraph.");
+        StreamingTikaDocumentLoader loader = StreamingTikaDocumentLoader.builder().build();
+
+        IllegalStateException failure = new IllegalStateException("store is full");
+        IllegalStateException thrown =
+                assertThrows(IllegalStateException.class, () -> loader.loadPages(file, page -> {
+                    throw failure;
+                }));
+        assertSame(failure, thrown);
+    }
+
+    private static List<String> words(String text) {
+        return List.of(text.strip().split("\\s+"));
+    }
+
+    private static Path modernFeaturesPdf() throws URISyntaxException {
+        return Path.of(Objects.requireNonNull(StreamingTikaDocumentLoaderTests.class.getResource(
+                        "/LangChain4j-Modern-Features.pdf"))
+                .toURI());
+    }
+}
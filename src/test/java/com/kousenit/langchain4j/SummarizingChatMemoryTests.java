@@ -0,0 +1,260 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SummarizingChatMemory}, with stub chat models that hand back canned summaries when
+ * the test lets them or after an artificial delay.
+ */
+class SummarizingChatMemoryTests {
+
+    @Test
+    void messagesAddedWhileSummarizingAreKept() throws InterruptedException {
+        GatedModel model = new GatedModel();
+        SummarizingChatMemory memory = SummarizingChatMemory.builder()
+                .chatModel(model)
+                .maxMessages(10)
+                .keepRecent(4)
+                .build();
+        SystemMessage system = SystemMessage.from("You are a helpful assistant");
+        memory.add(system);
+        List<ChatMessage> added = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            added.add(message(i));
+            memory.add(added.get(i)); // the eleventh starts a summary and must not wait for it
+        }
+        assertTrue(model.started.await(5, TimeUnit.SECONDS));
+        assertTrue(memory.stats().summarizing());
+        assertEquals(12, memory.messages().size(), "the full window is served until the summary is ready");
+
+        for (int i = 11; i < 14; i++) {
+            added.add(message(i));
+            memory.add(added.get(i));
+        }
+        model.release.countDown();
+        await(() -> memory.stats().summaries() == 1);
+
+        List<ChatMessage> expected = new ArrayList<>();
+        expected.add(system);
+        expected.add(UserMessage.from("Summary of the conversation so far:\nThe user asked about messages 0 to 6."));
+        expected.addAll(added.subList(7, 14));
+        assertEquals(expected, memory.messages());
+        assertTrue(model.prompts.get(0).contains("User: message 0"));
+        assertTrue(model.prompts.get(0).contains("Assistant: message 5"));
+        assertFalse(model.prompts.get(0).contains("message 7"));
+        assertEquals(7, memory.stats().summarizedMessages());
+    }
+
+    @Test
+    void summaryIsDroppedWhenTheMemoryWasClearedMeanwhile() throws InterruptedException {
+        GatedModel model = new GatedModel();
+        SummarizingChatMemory memory = SummarizingChatMemory.builder()
+                .chatModel(model)
+                .maxMessages(4)
+                .keepRecent(2)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            memory.add(message(i));
+        }
+        assertTrue(model.started.await(5, TimeUnit.SECONDS));
+        memory.clear();
+        memory.add(message(100));
+        model.release.countDown();
+        await(() -> memory.stats().discarded() == 1);
+
+        assertEquals(List.of(message(100)), memory.messages());
+        assertEquals(0, memory.stats().summaries());
+    }
+
+    @Test
+    void summaryIsDroppedWhenTheMessagesWereSetMeanwhile() throws InterruptedException {
+        GatedModel model = new GatedModel();
+        SummarizingChatMemory memory = SummarizingChatMemory.builder()
+                .chatModel(model)
+                .maxMessages(4)
+                .keepRecent(2)
+                .build();
+        List<ChatMessage> added = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            added.add(message(i));
+            memory.add(added.get(i));
+        }
+        assertTrue(model.started.await(5, TimeUnit.SECONDS));
+        // the same oldest messages, but a new list: the summary no longer belongs to it
+        List<ChatMessage> replaced = List.of(added.get(0), added.get(1), added.get(2), message(200));
+        memory.set(replaced);
+        model.release.countDown();
+        await(() -> memory.stats().discarded() == 1);
+
+        assertEquals(replaced, memory.messages());
+        assertEquals(0, memory.stats().summaries());
+    }
+
+    @Test
+    void toolResultsStayWithTheirRequest() throws InterruptedException {
+        GatedModel model = new GatedModel();
+        model.release.countDown();
+        SummarizingChatMemory memory = SummarizingChatMemory.builder()
+                .chatModel(model)
+                .maxMessages(5)
+                .keepRecent(2)
+                .build();
+        ToolExecutionRequest request = ToolExecutionRequest.builder()
+                .id("call-1")
+                .name("weather")
+                .arguments("{\"city\":\"Paris\"}")
+                .build();
+        List<ChatMessage> added = List.of(
+                message(0),
+                message(1),
+                message(2),
+                AiMessage.from(request),
+                ToolExecutionResultMessage.from(request, "sunny"),
+                AiMessage.from("It is sunny in Paris"));
+        added.forEach(memory::add);
+        await(() -> memory.stats().summaries() == 1);
+
+        // two recent messages would have started at the tool result, so the result went into the summary too
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(2, messages.size());
+        assertEquals(added.get(5), messages.get(1));
+        assertTrue(model.prompts.get(0).contains("[calls weather {\"city\":\"Paris\"}]"));
+        assertTrue(model.prompts.get(0).contains("Tool weather: sunny"));
+    }
+
+    @Test
+    void failedSummaryIsRetriedOnTheNextAdd() {
+        AtomicInteger calls = new AtomicInteger();
+        ChatModel flaky = new ChatModel() {
+            @Override
+            public String chat(String prompt) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("rate limited");
+                }
+                return "canned summary";
+            }
+        };
+        SummarizingChatMemory memory = SummarizingChatMemory.builder()
+                .chatModel(flaky)
+                .maxMessages(4)
+                .keepRecent(2)
+                .executor(Runnable::run)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            memory.add(message(i));
+        }
+        assertEquals(1, memory.stats().failures());
+        assertEquals(5, memory.messages().size(), "nothing is lost when the summary fails");
+
+        memory.add(message(5));
+        assertEquals(1, memory.stats().summaries());
+        assertEquals(3, memory.messages().size());
+        assertEquals(UserMessage.from("Summary of the conversation so far:\ncanned summary"), memory.messages().get(0));
+    }
+
+    /** Wall-clock comparison; the gated tests above cover the same behaviour without timing. */
+    @Test
+    @Tag("benchmark")
+    void turnsDoNotWaitForASlowSummarizer() {
+        long delayMillis = 200;
+        ChatModel slow = new ChatModel() {
+            @Override
+            public String chat(String prompt) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "canned summary";
+            }
+        };
+        SummarizingChatMemory background = SummarizingChatMemory.builder()
+                .chatModel(slow)
+                .maxMessages(20)
+                .keepRecent(6)
+                .build();
+        SummarizingChatMemory inline = SummarizingChatMemory.builder()
+                .chatModel(slow)
+                .maxMessages(20)
+                .keepRecent(6)
+                .executor(Runnable::run)
+                .build();
+
+        int turns = 100;
+        long backgroundWorst = 0;
+        long inlineWorst = 0;
+        for (int turn = 0; turn < turns; turn++) {
+            ChatMessage message = message(turn);
+            long start = System.nanoTime();
+            background.add(message);
+            backgroundWorst = Math.max(backgroundWorst, System.nanoTime() - start);
+            start = System.nanoTime();
+            inline.add(message);
+            inlineWorst = Math.max(inlineWorst, System.nanoTime() - start);
+        }
+        await(() -> !background.stats().summarizing());
+
+        System.out.printf("%-12s %16s %12s%n", "summarizing", "worst add ms", "summaries");
+        System.out.printf(
+                "%-12s %16.2f %12d%n", "background", backgroundWorst / 1e6, background.stats().summaries());
+        System.out.printf("%-12s %16.2f %12d%n", "inline", inlineWorst / 1e6, inline.stats().summaries());
+        assertTrue(inlineWorst >= TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        assertTrue(backgroundWorst < TimeUnit.MILLISECONDS.toNanos(delayMillis) / 4, "no turn waits for the model");
+        assertTrue(background.stats().summaries() >= 1);
+        assertTrue(background.messages().size() <= 21, "the window is compacted once the model catches up");
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for the summary");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("interrupted while waiting for the summary");
+            }
+        }
+    }
+
+    private static ChatMessage message(int i) {
+        return i % 2 == 0 ? UserMessage.from("message " + i) : AiMessage.from("message " + i);
+    }
+
+    /** Answers with a canned summary once the test releases it. */
+    private static final class GatedModel implements ChatModel {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> prompts = new ArrayList<>();
+
+        @Override
+        public String chat(String prompt) {
+            synchronized (prompts) {
+                prompts.add(prompt);
+            }
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "The user asked about messages 0 to 6.";
+        }
+    }
+}
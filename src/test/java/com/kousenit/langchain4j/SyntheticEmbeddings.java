@@ -0,0 +1,96 @@
+package com.kousenit.langchain4j;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Test helper that produces a scaled-up, MiniLM-shaped corpus without paying for ONNX inference.
+ *
+ * <p>Vectors are drawn around a fixed number of random cluster centres, which mimics how real
+ * sentence embeddings bunch up by topic far better than uniform noise does. Everything is seeded, so
+ * recall numbers are reproducible between runs.
+ */
+final class SyntheticEmbeddings {
+
+    static final int MINILM_DIMENSION = 384;
+
+    private SyntheticEmbeddings() {}
+
+    static List<Embedding> clustered(int count, int dimension, int clusters, long seed) {
+        Random random = new Random(seed);
+        return around(centres(clusters, dimension, random), count, random);
+    }
+
+    /**
+     * Queries around the same centres as {@code clustered(..., clusters, seed)}, with their own noise
+     * from {@code querySeed}, so that none of them is a copy of a corpus vector.
+     */
+    static List<Embedding> heldOutQueries(int count, int dimension, int clusters, long seed, long querySeed) {
+        return around(centres(clusters, dimension, new Random(seed)), count, new Random(querySeed));
+    }
+
+    private static float[][] centres(int clusters, int dimension, Random random) {
+        float[][] centres = new float[clusters][dimension];
+        for (float[] centre : centres) {
+            for (int d = 0; d < dimension; d++) {
+                centre[d] = (float) random.nextGaussian();
+            }
+        }
+        return centres;
+    }
+
+    /** {@code count} unit vectors, each a random centre plus Gaussian noise drawn from {@code random}. */
+    private static List<Embedding> around(float[][] centres, int count, Random random) {
+        int dimension = centres[0].length;
+        List<Embedding> embeddings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] centre = centres[random.nextInt(centres.length)];
+            float[] vector = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = centre[d] + (float) random.nextGaussian() * 0.6f;
+            }
+            Embedding embedding = Embedding.from(vector);
+            embedding.normalize();
+            embeddings.add(embedding);
+        }
+        return embeddings;
+    }
+
+    static List<TextSegment> segments(int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(TextSegment.from("Synthetic segment number " + i));
+        }
+        return segments;
+    }
+
+    static Set<String> topIds(EmbeddingStore<TextSegment> store, Embedding query, int k) {
+        Set<String> ids = new HashSet<>();
+        for (EmbeddingMatch<TextSegment> match : store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(query)
+                        .maxResults(k)
+                        .build())
+                .matches()) {
+            ids.add(match.embeddingId());
+        }
+        return ids;
+    }
+
+    static double recall(Set<String> expected, Set<String> actual) {
+        int hits = 0;
+        for (String id : actual) {
+            if (expected.contains(id)) {
+                hits++;
+            }
+        }
+        return expected.isEmpty() ? 1.0 : (double) hits / expected.size();
+    }
+}
@@ -0,0 +1,177 @@
+package com.kousenit.langchain4j;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link TieredEmbeddingStore}: results match a single in-memory store whichever tier
+ * serves them, popular entries end up hot within the byte cap, and removals reach both tiers.
+ */
+class TieredEmbeddingStoreTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void searchesMatchAnInMemoryStoreAcrossBothTiers() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(5_000, 64, 25, 1L);
+        List<TextSegment> segments = segmentsWithTopic(5_000);
+        InMemoryEmbeddingStore<TextSegment> reference = new InMemoryEmbeddingStore<>();
+        List<String> ids = reference.addAll(embeddings, segments);
+
+        try (TieredEmbeddingStore store = TieredEmbeddingStore.builder()
+                .directory(tempDir)
+                .maxHotBytes(50_000)
+                .promotionThreshold(1)
+                .rebalanceInterval(10)
+                .build()) {
+            store.addAll(ids, embeddings, segments);
+            for (int round = 0; round < 3; round++) {
+                for (Embedding query : embeddings.subList(0, 40)) {
+                    assertEquals(
+                            SyntheticEmbeddings.topIds(reference, query, 5),
+                            SyntheticEmbeddings.topIds(store, query, 5));
+                }
+            }
+            EmbeddingMatch<TextSegment> best = store.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(embeddings.get(3))
+                            .maxResults(1)
+                            .build())
+                    .matches()
+                    .get(0);
+            assertEquals(ids.get(3), best.embeddingId());
+            assertEquals(segments.get(3), best.embedded());
+            assertArrayEquals(embeddings.get(3).vector(), best.embedding().vector());
+
+            TieredEmbeddingStore.TierStats stats = store.stats();
+            System.out.println(stats);
+            assertTrue(stats.hotHits() > 0 && stats.coldHits() > 0, "both tiers served matches");
+            assertTrue(stats.hotBytes() <= 50_000);
+        }
+    }
+
+    @Test
+    void popularEntriesArePromotedWithinTheByteCap() {
+        int corpus = 20_000;
+        List<Embedding> embeddings =
+                SyntheticEmbeddings.clustered(corpus, SyntheticEmbeddings.MINILM_DIMENSION, 100, 2L);
+        List<TextSegment> segments = segmentsWithTopic(corpus);
+        long entryBytes = SyntheticEmbeddings.MINILM_DIMENSION * Float.BYTES + 200;
+        long maxHotBytes = 1_000 * entryBytes;
+
+        try (TieredEmbeddingStore store = TieredEmbeddingStore.builder()
+                .directory(tempDir)
+                .maxHotBytes(maxHotBytes)
+                .rebalanceInterval(500)
+                .build()) {
+            store.addAll(embeddings, segments);
+
+            // nine in ten questions ask about the same 200 segments, the rest about anything
+            Random random = new Random(7L);
+            List<Embedding> popular = embeddings.subList(0, 200);
+            TieredEmbeddingStore.TierStats warm = null;
+            long start = 0;
+            for (int search = 0; search < 4_000; search++) {
+                if (search == 3_000) {
+                    warm = store.stats();
+                    start = System.nanoTime();
+                }
+                Embedding query = random.nextInt(10) < 9
+                        ? popular.get(random.nextInt(popular.size()))
+                        : embeddings.get(random.nextInt(corpus));
+                store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(query)
+                        .maxResults(3)
+                        .build());
+            }
+            long elapsed = System.nanoTime() - start;
+
+            TieredEmbeddingStore.TierStats stats = store.stats();
+            long hotHits = stats.hotHits() - warm.hotHits();
+            long coldHits = stats.coldHits() - warm.coldHits();
+            double hotRatio = (double) hotHits / (hotHits + coldHits);
+            long allBytes = corpus * entryBytes;
+            System.out.printf(
+                    "%,d entries, %,d hot (%,d of %,d bytes on heap, %.1f%%): %.0f%% of matches hot, %.3f ms/search%n",
+                    store.size(),
+                    stats.hotEntries(),
+                    stats.hotBytes(),
+                    allBytes,
+                    100.0 * stats.hotBytes() / allBytes,
+                    hotRatio * 100,
+                    elapsed / 1e6 / 1_000);
+            System.out.println(stats);
+            assertTrue(stats.hotBytes() <= maxHotBytes, "hot tier stays under its cap");
+            assertTrue(hotRatio > 0.8, "popular entries are served from the heap: " + hotRatio);
+        }
+    }
+
+    @Test
+    void removalsReachBothTiers() {
+        List<Embedding> embeddings = SyntheticEmbeddings.clustered(1_000, 32, 10, 3L);
+        List<TextSegment> segments = segmentsWithTopic(1_000);
+        try (TieredEmbeddingStore store = TieredEmbeddingStore.builder()
+                .directory(tempDir)
+                .promotionThreshold(1)
+                .build()) {
+            List<String> ids = store.addAll(embeddings, segments);
+            for (Embedding query : embeddings.subList(0, 10)) {
+                SyntheticEmbeddings.topIds(store, query, 1);
+            }
+            assertTrue(store.stats().hotEntries() >= 10);
+
+            store.removeAll(List.of(ids.get(0)));
+            assertFalse(SyntheticEmbeddings.topIds(store, embeddings.get(0), 5).contains(ids.get(0)));
+
+            store.removeAll(metadataKey("topic").isEqualTo("topic-1"));
+            assertEquals(899, store.size());
+            for (EmbeddingMatch<TextSegment> match : store.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(embeddings.get(1))
+                            .maxResults(50)
+                            .build())
+                    .matches()) {
+                assertNotEquals("topic-1", match.embedded().metadata().getString("topic"));
+            }
+            assertEquals(
+                    50,
+                    store.search(EmbeddingSearchRequest.builder()
+                                    .queryEmbedding(embeddings.get(2))
+                                    .maxResults(50)
+                                    .filter(metadataKey("topic").isEqualTo("topic-2"))
+                                    .build())
+                            .matches()
+                            .size());
+
+            // re-adding a removed id brings it back as a fresh cold entry
+            store.addAll(List.of(ids.get(0)), List.of(embeddings.get(0)), List.of(segments.get(0)));
+            assertTrue(SyntheticEmbeddings.topIds(store, embeddings.get(0), 1).contains(ids.get(0)));
+
+            store.removeAll();
+            assertEquals(0, store.size());
+            assertEquals(0, store.stats().hotEntries());
+        }
+    }
+
+    private static List<TextSegment> segmentsWithTopic(int count) {
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            segments.add(TextSegment.from(
+                    "Synthetic segment number " + i + " about topic " + i % 10,
+                    Metadata.from("topic", "topic-" + i % 10)));
+        }
+        return segments;
+    }
+}
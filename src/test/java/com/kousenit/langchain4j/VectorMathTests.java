@@ -0,0 +1,76 @@
+package com.kousenit.langchain4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link VectorMath}: the kernel chosen for this JVM, the scalar kernel against double
+ * precision, and agreement between the active and scalar kernels. The {@code test} task runs them with
+ * the Vector API module and {@code scalarFallbackTest} without it.
+ */
+class VectorMathTests {
+
+    @Test
+    void activeKernelMatchesTheResolvedModules() {
+        boolean vectorApi = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+                && !Boolean.getBoolean("vectormath.scalar");
+        System.out.println("Active kernel: " + VectorMath.kernelName());
+        assertTrue(VectorMath.kernelName().startsWith(vectorApi ? "vector-api" : "scalar"));
+    }
+
+    @Test
+    void scalarKernelMatchesDoublePrecision() {
+        Random random = new Random(3);
+        SimilarityKernel scalar = VectorMath.scalarKernel();
+        for (int dimension : new int[] {1, 17, 384}) {
+            float[] a = new float[dimension];
+            float[] b = new float[dimension];
+            byte[] codes = new byte[dimension];
+            double dot = 0;
+            double normA = 0;
+            double normB = 0;
+            double codeDot = 0;
+            for (int i = 0; i < dimension; i++) {
+                a[i] = (float) random.nextGaussian();
+                b[i] = (float) random.nextGaussian();
+                codes[i] = (byte) (random.nextInt(256) - 128);
+                dot += (double) a[i] * b[i];
+                normA += (double) a[i] * a[i];
+                normB += (double) b[i] * b[i];
+                codeDot += (double) a[i] * codes[i];
+            }
+            double cosine = dot / Math.sqrt(normA) / Math.sqrt(normB);
+            assertEquals(dot, scalar.dot(a, b), 1e-4 * dimension);
+            assertEquals(cosine, scalar.cosine(a, b), 1e-5);
+            assertEquals(cosine, scalar.cosine(a, (float) normA, b), 1e-5);
+            assertEquals(codeDot, scalar.dot(a, codes, 0), 1e-2 * dimension);
+        }
+    }
+
+    @Test
+    void kernelsAgreeOnOddAndMiniLmDimensions() {
+        Random random = new Random(7);
+        for (int dimension : new int[] {1, 3, 17, 100, 384, 1_000}) {
+            float[] a = new float[dimension];
+            float[] b = new float[dimension];
+            byte[] codes = new byte[dimension + 5];
+            for (int i = 0; i < dimension; i++) {
+                a[i] = (float) random.nextGaussian();
+                b[i] = (float) random.nextGaussian();
+                codes[i + 5] = (byte) (random.nextInt(256) - 128);
+            }
+            SimilarityKernel scalar = VectorMath.scalarKernel();
+            assertEquals(scalar.dot(a, b), VectorMath.dot(a, b), 1e-3f * dimension);
+            assertEquals(scalar.cosine(a, b), VectorMath.cosine(a, b), 1e-4f);
+            assertEquals(scalar.cosine(a, b), VectorMath.cosine(a, VectorMath.squaredNorm(a), b), 1e-4f);
+            assertEquals(scalar.dot(a, codes, 5), VectorMath.dot(a, codes, 5), 1e-1f * dimension);
+        }
+        assertEquals(0f, VectorMath.cosine(new float[4], new float[] {1, 2, 3, 4}));
+        assertEquals(0f, VectorMath.cosine(new float[4], 0f, new float[] {1, 2, 3, 4}));
+        assertThrows(IllegalArgumentException.class, () -> VectorMath.dot(new float[3], new float[4]));
+        assertThrows(IllegalArgumentException.class, () -> VectorMath.cosine(new float[3], 1f, new float[4]));
+        assertThrows(IndexOutOfBoundsException.class, () -> VectorMath.dot(new float[3], new byte[4], 2));
+    }
+}
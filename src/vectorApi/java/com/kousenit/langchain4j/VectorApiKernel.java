@@ -0,0 +1,126 @@
+package com.kousenit.langchain4j;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link SimilarityKernel} built on {@code jdk.incubator.vector}.
+ *
+ * <p>Each loop processes {@code SPECIES.length()} floats per fused multiply-add (8 on AVX2, 16 on
+ * AVX-512), with two independent accumulators so consecutive FMAs do not wait on each other. A 384-d
+ * MiniLM vector is a whole number of lanes on every common species, so the scalar tail loop only
+ * runs for unusual dimensions.
+ *
+ * <p>This class is only loaded by {@link VectorMath} when the module is resolved, i.e. the JVM was
+ * started with {@code --add-modules jdk.incubator.vector}; only {@code fromArray}, {@code fma},
+ * {@code convertShape} and {@code reduceLanes} are used, which have been stable across every
+ * incubator release since JDK 16.
+ */
+final class VectorApiKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // One byte lane per float lane, so a byte load widens into exactly one float vector. There is no
+    // 32-bit byte shape, so on 128-bit hardware (4 float lanes) int8 dot products use the scalar loop.
+    private static final VectorSpecies<Byte> BYTE_SPECIES = SPECIES.length() >= 8
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(SPECIES.length() * Byte.SIZE))
+            : null;
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        int length = a.length;
+        int step = SPECIES.length();
+        int unrolledBound = length - length % (step * 2);
+        FloatVector sum1 = FloatVector.zero(SPECIES);
+        FloatVector sum2 = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < unrolledBound; i += step * 2) {
+            sum1 = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), sum1);
+            sum2 = FloatVector.fromArray(SPECIES, a, i + step)
+                    .fma(FloatVector.fromArray(SPECIES, b, i + step), sum2);
+        }
+        for (; i < SPECIES.loopBound(length); i += step) {
+            sum1 = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), sum1);
+        }
+        float sum = sum1.add(sum2).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        int length = a.length;
+        int step = SPECIES.length();
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normA = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < SPECIES.loopBound(length); i += step) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            dot = va.fma(vb, dot);
+            normA = va.fma(va, normA);
+            normB = vb.fma(vb, normB);
+        }
+        float dotSum = dot.reduceLanes(VectorOperators.ADD);
+        float normASum = normA.reduceLanes(VectorOperators.ADD);
+        float normBSum = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dotSum += a[i] * b[i];
+            normASum += a[i] * a[i];
+            normBSum += b[i] * b[i];
+        }
+        return VectorMath.cosineFrom(dotSum, normASum, normBSum);
+    }
+
+    @Override
+    public float cosine(float[] a, float squaredNormA, float[] b) {
+        int length = a.length;
+        int step = SPECIES.length();
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < SPECIES.loopBound(length); i += step) {
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            dot = FloatVector.fromArray(SPECIES, a, i).fma(vb, dot);
+            normB = vb.fma(vb, normB);
+        }
+        float dotSum = dot.reduceLanes(VectorOperators.ADD);
+        float normBSum = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dotSum += a[i] * b[i];
+            normBSum += b[i] * b[i];
+        }
+        return VectorMath.cosineFrom(dotSum, squaredNormA, normBSum);
+    }
+
+    @Override
+    public float dot(float[] a, byte[] b, int offset) {
+        int length = a.length;
+        float sum = 0;
+        int i = 0;
+        if (BYTE_SPECIES != null) {
+            FloatVector acc = FloatVector.zero(SPECIES);
+            for (; i < SPECIES.loopBound(length); i += SPECIES.length()) {
+                FloatVector widened = (FloatVector)
+                        ByteVector.fromArray(BYTE_SPECIES, b, offset + i).convertShape(VectorOperators.B2F, SPECIES, 0);
+                acc = FloatVector.fromArray(SPECIES, a, i).fma(widened, acc);
+            }
+            sum = acc.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += a[i] * b[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "vector-api (" + SPECIES.vectorBitSize() + "-bit)";
+    }
+}